@@ -0,0 +1,75 @@
+package benchmark;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import services.PrinterService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Micro-benchmark: account lookup cost before (linear equalsIgnoreCase scan) and after (owner index)
+// Run with: java -cp <classes> benchmark.AccountIndexBenchmark
+// Not a JUnit test on purpose: timings are printed, not asserted.
+public class AccountIndexBenchmark {
+
+    private static final int[] SIZES = {1_000, 100_000, 1_000_000};
+    private static final int LOOKUPS = 2_000;
+
+    public static void main(String[] args) {
+        System.out.println("accounts | scan (us/lookup) | index (us/lookup)");
+        for (int size : SIZES) {
+            List<Account> accounts = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) accounts.add(new Account("user" + i, "0000", 10.0));
+
+            ATMMachineV2 atm = new ATMMachineV2(stubService(accounts), new PrinterService(10, 10));
+
+            // Warm-up so both paths are JIT-compiled before measuring
+            scan(accounts, size, LOOKUPS / 10);
+            index(atm, size, LOOKUPS / 10);
+
+            double scanMicros = scan(accounts, size, LOOKUPS);
+            double indexMicros = index(atm, size, LOOKUPS);
+            System.out.printf("%8d | %16.3f | %17.3f%n", size, scanMicros, indexMicros);
+        }
+    }
+
+    // The lookup that checkBalance/deposit/withdraw used to perform
+    private static double scan(List<Account> accounts, int size, int lookups) {
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            String name = "USER" + ((i * 7919L) % size);
+            Optional<Account> acc = accounts.stream()
+                    .filter(a -> a.getOwner().equalsIgnoreCase(name))
+                    .findFirst();
+            sink += acc.map(Account::getBalance).orElse(0.0);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink < 0) System.out.println(sink); // Keep the loop from being optimised away
+        return elapsed / 1_000.0 / lookups;
+    }
+
+    private static double index(ATMMachineV2 atm, int size, int lookups) {
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sink += atm.checkBalance("USER" + ((i * 7919L) % size));
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink < 0) System.out.println(sink);
+        return elapsed / 1_000.0 / lookups;
+    }
+
+    private static IATMStateService stubService(List<Account> accounts) {
+        return new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return accounts; }
+            public int loadPaperLevel() { return 10; }
+            public int loadInkLevel() { return 10; }
+            public double loadCashLevel() { return 1000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import services.CachingATMStateService;
+import services.MappedAccountStore;
+import services.PrinterService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deposits on a skewed workload: lazy ATM on the mapped store directly vs through the write-back cache
+// Run with: java -Xmx1g -cp <classes> benchmark.CachingStoreBenchmark [accounts] [deposits] [hotAccounts]
+// 90% of deposits go to a small hot set of accounts, the rest anywhere. The ATM itself keeps 1,000
+// accounts; the caching store keeps 5% of the base and commits dirty accounts in groups of 32.
+public class CachingStoreBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int deposits = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int hot = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        Path dir = Files.createTempDirectory("atm-cache-bench");
+        String path = dir.resolve("atm_state.accounts").toString();
+        PrintStream console = System.out;
+        try {
+            MappedAccountStore writer = new MappedAccountStore(path);
+            List<Account> list = new ArrayList<>(accounts);
+            for (int i = 0; i < accounts; i++) list.add(Account.ofCents("user" + i, "0000", 10_00));
+            writer.saveChanges(list, list, 0, 1_000_000_00, 1_000_000, 1_000_000, "1.0.0");
+            writer.close();
+            list = null;
+
+            for (int round = 0; round < 2; round++) { // The first round warms up the JIT
+                MappedAccountStore mapped = new MappedAccountStore(path);
+                run(round == 1 ? "mapped store" : null, mapped, mapped, accounts, hot, deposits, console);
+                mapped.close();
+
+                mapped = new MappedAccountStore(path);
+                CachingATMStateService cached = new CachingATMStateService(mapped, accounts / 20, 32);
+                run(round == 1 ? "caching store" : null, cached, mapped, accounts, hot, deposits, console);
+                cached.close();
+                if (round == 1) System.out.println("  " + cached.getStorageStatus());
+                mapped.close();
+            }
+        } finally {
+            System.setOut(console);
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void run(String name, IATMStateService service, MappedAccountStore mapped, int accounts, int hot,
+                            int deposits, PrintStream console) {
+        Random random = new Random(42);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The ATM's messages
+        ATMMachineV2 atm = new ATMMachineV2(service, new PrinterService(1_000_000, 1_000_000), 1_000);
+        long recordsBefore = mapped.getRecordsWritten();
+        long start = System.nanoTime();
+        for (int i = 0; i < deposits; i++) {
+            int n = random.nextInt(10) < 9 ? random.nextInt(hot) : random.nextInt(accounts);
+            atm.deposit("user" + n, 5);
+        }
+        double micros = (System.nanoTime() - start) / 1_000.0 / deposits;
+        System.setOut(console);
+        if (name != null) {
+            System.out.printf("%-14s %,7.2f us per deposit, %,9d records written%n",
+                    name, micros, mapped.getRecordsWritten() - recordsBefore);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import model.ReceiptMode;
+import services.PrinterService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Throughput of concurrent customer sessions: deposits and withdrawals at 1, 2, 4, ... threads on one ATM
+// Run with: java -cp <classes> benchmark.ConcurrentSessionsBenchmark [accounts] [ops per thread] [max threads]
+// Every thread runs the same number of operations on random accounts, half deposits and half withdrawals
+// without a receipt. The store keeps everything in memory, so the numbers show the engine's locking (account
+// stripes, the vault CAS, the cassettes and the save lock), not disk speed. Speedup is against one thread;
+// it levels off at the core count. After every row the vault minus the balances must be what it was before.
+public class ConcurrentSessionsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 2 * cores;
+        System.out.printf("%,d accounts, %,d operations per thread, %d cores%n", accounts, opsPerThread, cores);
+
+        PrintStream console = System.out;
+        try {
+            run(accounts, opsPerThread, 2, console); // Warms up the JIT, including the contended paths
+            double single = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double opsPerSecond = run(accounts, opsPerThread, threads, console);
+                if (threads == 1) single = opsPerSecond;
+                System.out.printf("%3d threads %,12.0f ops/s   speedup %5.2fx%n", threads, opsPerSecond, opsPerSecond / single);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    // Returns the operations per second of all threads together
+    private static double run(int accounts, int opsPerThread, int threads, PrintStream console) throws Exception {
+        List<Account> stored = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) stored.add(Account.ofCents("user" + i, "0000", 1_000_00));
+
+        // In-memory state service: saves cost nothing, so only the engine is measured
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 1_000_000; }
+            public int loadInkLevel() { return 1_000_000; }
+            public double loadCashLevel() { return 100_000_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The ATM's messages
+        ATMMachineV2 atm = new ATMMachineV2(memoryService, new PrinterService(1_000_000, 1_000_000));
+        long before = atm.getCashCents() - totalBalances(stored); // A deposit or withdrawal moves both
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    String owner = "user" + rnd.nextInt(accounts);
+                    int amount = 5 * (1 + rnd.nextInt(20));
+                    if ((i & 1) == 0) atm.deposit(owner, amount);
+                    else atm.withdraw(owner, amount, ReceiptMode.NONE);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get();
+        long nanos = System.nanoTime() - begin;
+        pool.shutdown();
+        System.setOut(console);
+
+        long after = atm.getCashCents() - totalBalances(stored);
+        if (after != before) System.out.printf("[!] Money not conserved with %d threads: %,d -> %,d%n", threads, before, after);
+        return (double) threads * opsPerThread / (nanos / 1_000_000_000.0);
+    }
+
+    private static long totalBalances(List<Account> accounts) {
+        long sum = 0;
+        for (Account a : accounts) sum += a.getBalanceCents();
+        return sum;
+    }
+}
@@ -0,0 +1,51 @@
+package benchmark;
+
+import core.CashCassettes;
+
+import java.util.Random;
+
+// Cost of a dispense plan: rebuilding the tables after a stock change vs looking a plan up
+// Run with: java -cp <classes> benchmark.DispensePlannerBenchmark [plans]
+// "lookup" plans random amounts on an unchanged stock; "dispense" takes (and puts back) the notes of every
+// plan on a full ATM, where the tables stay valid; "low stock" does the same with fewer notes per cassette
+// than one payout may use, so the plan after every dispense (and after putting the notes back) rebuilds.
+public class DispensePlannerBenchmark {
+
+    public static void main(String[] args) {
+        int plans = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        for (int round = 0; round < 3; round++) { // The first rounds warm up the JIT
+            boolean report = round == 2;
+            Random random = new Random(42);
+            CashCassettes cassettes = CashCassettes.standard(100_000_00);
+            long feasible = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < plans; i++) {
+                if (cassettes.plan(5 * (1 + random.nextInt(100))) != null) feasible++;
+            }
+            double lookup = (System.nanoTime() - start) / (double) plans;
+
+            int dispenses = plans / 20;
+            start = System.nanoTime();
+            for (int i = 0; i < dispenses; i++) {
+                int[] notes = cassettes.tryDispense(5 * (1 + random.nextInt(100)));
+                if (notes != null) cassettes.restore(notes); // Keeps the stock level, but drops the tables
+            }
+            double dispense = (System.nanoTime() - start) / (double) dispenses;
+
+            CashCassettes low = CashCassettes.standard(1_000_00);
+            start = System.nanoTime();
+            for (int i = 0; i < dispenses; i++) {
+                int amount = 5 * (1 + random.nextInt(40));
+                int[] notes = low.tryDispense(amount);
+                low.canDispense(amount); // Plans on the lowered stock
+                if (notes != null) low.restore(notes);
+            }
+            double rebuild = (System.nanoTime() - start) / (double) dispenses;
+            if (report) {
+                System.out.printf("lookup    %,10.0f ns per plan (%,d of %,d feasible)%n", lookup, feasible, plans);
+                System.out.printf("dispense  %,10.0f ns per plan, tables built %,d times%n", dispense, cassettes.getPlannerBuilds());
+                System.out.printf("low stock %,10.0f ns per plan, tables built %,d times%n", rebuild, low.getPlannerBuilds());
+            }
+        }
+    }
+}
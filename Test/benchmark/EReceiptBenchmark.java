@@ -0,0 +1,71 @@
+package benchmark;
+
+import model.Receipt;
+import model.TransactionType;
+import services.EReceiptSpool;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Cost per receipt of the paper path's rendering vs the e-receipt spool
+// Run with: java -cp <classes> benchmark.EReceiptBenchmark [receipts]
+// "render" is Receipt.render(), the String the printer worker prints; "render + write" also encodes it and
+// appends it to a file, which is what a String-based spool would do. "spool" is EReceiptSpool.append:
+// byte templates into a pooled direct buffer, one FileChannel.write per receipt.
+// Allocation is measured per thread (com.sun.management.ThreadMXBean), so GC noise does not count.
+public class EReceiptBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        Path dir = Files.createTempDirectory("ereceipt-bench");
+        long now = System.currentTimeMillis();
+
+        for (int round = 0; round < 3; round++) { // The last round is reported; the first ones warm up the JIT
+            long sink = 0;
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) sink += receipt(now, i).render().length();
+            long renderNanos = System.nanoTime() - start;
+            long renderBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+            Path text = dir.resolve("strings-" + round + ".log");
+            try (var out = Files.newBufferedWriter(text, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                before = threads.getThreadAllocatedBytes(thread);
+                start = System.nanoTime();
+                for (int i = 0; i < count; i++) out.write(receipt(now, i).render());
+                out.flush();
+            }
+            long writeNanos = System.nanoTime() - start;
+            long writeBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+            EReceiptSpool spool = new EReceiptSpool(dir.resolve("spool-" + round));
+            before = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) spool.append(receipt(now, i));
+            long spoolNanos = System.nanoTime() - start;
+            long spoolBytes = threads.getThreadAllocatedBytes(thread) - before;
+            spool.close();
+
+            if (round == 2) {
+                System.out.printf("%,d receipts (%d chars rendered)%n", count, sink);
+                print("render", renderNanos, renderBytes, count);
+                print("render + write", writeNanos, writeBytes, count);
+                print("spool", spoolNanos, spoolBytes, count);
+            }
+        }
+    }
+
+    // The Receipt itself (40 B) is allocated in every variant
+    private static Receipt receipt(long now, int i) {
+        return new Receipt("user" + (i & 1023), now + i, TransactionType.WITHDRAW, 70_00, 930_00 + i, "1x€50, 1x€20");
+    }
+
+    private static void print(String name, long nanos, long bytes, int count) {
+        System.out.printf("%-15s %6.1f B allocated, %7.1f ns per receipt%n", name + ":", bytes / (double) count, nanos / (double) count);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import model.Account;
+import model.TransactionRecords;
+import model.TransactionType;
+import services.FileATMStateService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+// Date-range queries over one long history: full scan vs the sparse time index
+// Run with: java -cp <classes> benchmark.HistoryQueryBenchmark [transactions]
+// "scan" reads every entry and filters it, which is what callers had to do with getTransactions().
+// "index" is Account.findTransactions. Both run on an account loaded back from the store, so the
+// archived entries come from the history log; one-hour windows are taken at the newest and oldest end.
+public class HistoryQueryBenchmark {
+
+    private static final long MINUTE = 60_000L;
+
+    public static void main(String[] args) throws IOException {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        Path dir = Files.createTempDirectory("atm-query-bench");
+        Path file = dir.resolve("atm_state.json");
+        try {
+            Account a = Account.ofCents("zoe", "0000", 0);
+            for (int i = 0; i < transactions; i++) a.restoreTransaction(i * MINUTE, TransactionType.DEPOSIT, 1, i);
+            try (FileATMStateService writer = new FileATMStateService(file.toString())) {
+                writer.saveStateCents(new ArrayList<>(List.of(a)), 0, 100, 100, "1.0.0");
+            }
+
+            try (FileATMStateService store = new FileATMStateService(file.toString())) {
+                Account loaded = store.loadSnapshot().accounts().get(0);
+                long newest = (transactions - 60) * MINUTE;
+                long start = System.nanoTime();
+                loaded.findTransactions(0, 1, null); // Builds the index: one pass over the history
+                System.out.printf("%,d transactions, index built in %,.1f ms%n", transactions, (System.nanoTime() - start) / 1e6);
+
+                for (long from : new long[]{newest, 0}) {
+                    String where = from == 0 ? "oldest hour" : "newest hour";
+                    measure("scan  " + where, () -> scan(loaded, from, from + 60 * MINUTE));
+                    measure("index " + where, () -> loaded.findTransactions(from, from + 60 * MINUTE, null).size());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir.resolve("atm_state.json.history"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static int scan(Account a, long from, long to) {
+        TransactionRecords all = a.getTransactionRecords(0, a.getTransactionCount());
+        int found = 0;
+        for (int i = 0; i < all.size(); i++) if (all.getEpochMillis(i) >= from && all.getEpochMillis(i) < to) found++;
+        return found;
+    }
+
+    private static void measure(String name, IntSupplier query) {
+        int rounds = 50;
+        int found = 0;
+        for (int i = 0; i < 5; i++) found = query.getAsInt(); // Warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) found = query.getAsInt();
+        double micros = (System.nanoTime() - start) / 1_000.0 / rounds;
+        System.out.printf("%-20s %,10.1f us  (%d entries)%n", name, micros, found);
+    }
+}
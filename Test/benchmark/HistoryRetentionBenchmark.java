@@ -0,0 +1,73 @@
+package benchmark;
+
+import interfaces.IATMStateService;
+import model.Account;
+import model.HistoryRetention;
+import model.TransactionType;
+import services.FileATMStateService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Long-lived accounts: history on disk as single entries vs rolled into compressed segments
+// Run with: java -cp <classes> benchmark.HistoryRetentionBenchmark [accounts] [transactionsPerAccount]
+// Every account receives its transactions over many saves (one deposit per account per save), then
+// the history log's size on disk (every generation), the heap entries kept hot and the cost of a deep
+// history page are compared.
+public class HistoryRetentionBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int txPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        for (HistoryRetention retention : new HistoryRetention[]{new HistoryRetention(10, 0, 0), HistoryRetention.DEFAULT}) {
+            Path dir = Files.createTempDirectory("atm-retention-bench");
+            try {
+                run(dir, retention, accounts, txPerAccount);
+            } finally {
+                try (var files = Files.list(dir)) {
+                    for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+                }
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    private static void run(Path dir, HistoryRetention retention, int accounts, int txPerAccount) throws IOException {
+        FileATMStateService store = new FileATMStateService(dir.resolve("atm_state.json").toString(), retention);
+        List<Account> list = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) list.add(Account.ofCents("user" + i, "0000", 0));
+        store.saveStateCents(list, 5000_00, 100, 100, "1.0.0");
+
+        long start = System.nanoTime();
+        for (int t = 0; t < txPerAccount; t++) {
+            for (Account a : list) {
+                a.setBalanceCents(a.getBalanceCents() + 20_00);
+                a.addTransactionCents(TransactionType.DEPOSIT, 20_00);
+            }
+            store.saveChanges(list, list, IATMStateService.CASH_CHANGED, 5000_00 + t, 100, 100, "1.0.0");
+        }
+        double saveMillis = (System.nanoTime() - start) / 1_000_000.0 / txPerAccount;
+
+        long inMemory = 0;
+        for (Account a : list) inMemory += a.getInMemoryCount();
+
+        int deepPage = txPerAccount / 10 - 1; // The oldest page of each account
+        int rounds = Math.min(accounts, 500);
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) list.get(i).getTransactionPage(deepPage, 10);
+        double pageMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) list.get(i).getTransactionPage(0, 10);
+        double firstPageMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+        System.out.printf("segment %3d: save %6.2f ms, history on disk %,6d KB (%d compactions), hot entries %,d, "
+                        + "page 0 %6.1f us, page %d %,9.1f us%n",
+                retention.segmentEntries(), saveMillis, store.getHistorySizeBytes() >> 10, store.getHistoryCompactions(),
+                inMemory, firstPageMicros, deepPage, pageMicros);
+        store.close();
+    }
+}
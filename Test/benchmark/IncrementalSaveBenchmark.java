@@ -0,0 +1,80 @@
+package benchmark;
+
+import interfaces.IATMStateService;
+import model.Account;
+import services.FileATMStateService;
+import services.JournaledATMStateService;
+import services.MappedAccountStore;
+import services.StateJournal;
+import services.WriteStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Cost of one save after one deposit: full-state save vs dirty-tracked saveChanges, for every store
+// Run with: java -Xmx3g -cp <classes> benchmark.IncrementalSaveBenchmark [accounts]
+// "before" is the old path: the whole list on every save (for the JSON file, every account re-encoded,
+// i.e. writeSnapshot without the encoding cache). "dirty" passes only the changed account and the
+// cash field, as ATMMachineV2 now does. Bytes and encoded accounts come from each store's WriteStats.
+public class IncrementalSaveBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path dir = Files.createTempDirectory("atm-dirty-bench");
+        try {
+            List<Account> list = new ArrayList<>(accounts + 1);
+            list.add(Account.ofCents("ngaa", "2006", 100_00));
+            for (int i = 0; i < accounts; i++) {
+                Account a = Account.ofCents("user" + i, "0000", 10_00);
+                a.addTransactionCents("Deposit", 10_00);
+                list.add(a);
+            }
+            System.out.printf("%,d accounts, one deposit per save%n", list.size());
+
+            FileATMStateService json = new FileATMStateService(dir.resolve("atm_state.json").toString());
+            run("JSON file", json, json::getWriteStats, list, 5);
+
+            JournaledATMStateService journaled = new JournaledATMStateService(
+                    new FileATMStateService(dir.resolve("journaled.json").toString()),
+                    new StateJournal(dir.resolve("atm_state.journal"), StateJournal.Durability.PER_GROUP));
+            journaled.saveStateCents(list, 5000_00, 100, 100, "1.0.0");
+            run("Journal", journaled, journaled::getWriteStats, list, 50);
+            journaled.close();
+
+            MappedAccountStore mapped = new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+            run("Mapped", mapped, mapped::getWriteStats, list, 200);
+            mapped.close();
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void run(String name, IATMStateService store, Supplier<WriteStats> stats,
+                            List<Account> list, int rounds) {
+        store.saveStateCents(list, 5000_00, 100, 100, "1.0.0"); // Warm state: everything written once
+        for (boolean dirty : new boolean[]{false, true}) {
+            long bytes = 0, encoded = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                Account a = list.get(1 + (i * 7919) % (list.size() - 1));
+                a.setBalanceCents(a.getBalanceCents() + 20_00);
+                a.addTransactionCents("Deposit", 20_00);
+                if (dirty) store.saveChanges(list, List.of(a), IATMStateService.CASH_CHANGED, 5000_00 + i, 100, 100, "1.0.0");
+                else if (store instanceof FileATMStateService file) file.writeSnapshot(list, 5000_00 + i, 100, 100, "1.0.0");
+                else store.saveStateCents(list, 5000_00 + i, 100, 100, "1.0.0");
+                bytes += stats.get().getLastBytes();
+                encoded += stats.get().getLastAccounts();
+            }
+            double micros = (System.nanoTime() - start) / 1_000.0 / rounds;
+            System.out.printf("%-10s %-6s %,12.1f us/save %,14d B/save %,9d accounts encoded/save%n",
+                    name, dirty ? "dirty" : "before", micros, bytes / rounds, encoded / rounds);
+        }
+    }
+}
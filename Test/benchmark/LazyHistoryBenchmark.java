@@ -0,0 +1,90 @@
+package benchmark;
+
+import model.Account;
+import model.StateSnapshot;
+import services.FileATMStateService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Startup with long histories: every entry parsed into memory vs history pointers paged on demand
+// Run with: java -Xmx3g -cp <classes> benchmark.LazyHistoryBenchmark [accounts] [transactionsPerAccount]
+// "before" loads a file with inline "transactions" arrays (the old format, still readable).
+// "after" loads the same state once it was saved in the current format (headers + <file>.history).
+// The page rows show what option 5 pays per screen of 10 entries.
+public class LazyHistoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int txPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Path dir = Files.createTempDirectory("atm-history-bench");
+        Path file = dir.resolve("atm_state.json");
+        try {
+            generate(file, accounts, txPerAccount);
+            System.out.printf("%,d accounts x %d transactions, inline file %,d MB%n", accounts, txPerAccount, Files.size(file) >> 20);
+
+            FileATMStateService inline = new FileATMStateService(file.toString());
+            StateSnapshot state = measure("before: inline history", inline);
+            inline.saveStateCents(state.accounts(), state.cashCents(), state.paper(), state.ink(), state.firmware());
+            inline.close();
+            state = null;
+            System.out.printf("migrated: headers %,d MB + history %,d MB%n", Files.size(file) >> 20,
+                    Files.size(dir.resolve("atm_state.json.history")) >> 20);
+
+            FileATMStateService lazy = new FileATMStateService(file.toString());
+            List<Account> loaded = measure("after:  history pointers", lazy).accounts();
+            for (int page : new int[]{0, 2}) {
+                int rounds = 2000;
+                long start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    loaded.get((int) ((i * 7919L) % loaded.size())).getTransactionPage(page, 10);
+                }
+                System.out.printf("page %d of 10 entries: %,8.1f us per page%n", page, (System.nanoTime() - start) / 1000.0 / rounds);
+            }
+            lazy.close();
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static StateSnapshot measure(String name, FileATMStateService store) {
+        System.gc();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        StateSnapshot state = store.loadSnapshot();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        System.out.printf("%-26s load %,7d ms, state heap %,5d MB%n", name, millis, (usedHeap() - heapBefore) >> 20);
+        return state;
+    }
+
+    // Old layout with inline history, streamed so generating does not need the state in memory
+    private static void generate(Path file, int accounts, int txPerAccount) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"cash\": 5000.00,\n  \"paper\": 100,\n  \"ink\": 100,\n  \"firmware\":\"1.0.0\",\n  \"accounts\": [\n");
+            out.write("    {\"owner\":\"ngaa\", \"pin\":\"2006\", \"balance\":100.00, \"transactions\":[]},\n");
+            for (int i = 0; i < accounts; i++) {
+                out.write("    {\"owner\":\"user" + i + "\", \"pin\":\"0000\", \"balance\":" + (i % 1000) + ".50, \"transactions\":[");
+                for (int t = 0; t < txPerAccount; t++) {
+                    if (t > 0) out.write(',');
+                    out.write("\"2026-01-0" + (1 + t % 9) + " 10:00:" + (10 + t % 50) + " | Deposit: €20.00 | Balance: €" + (20 * (t + 1)) + ".00\"");
+                }
+                out.write(i < accounts - 1 ? "]},\n" : "]}\n");
+            }
+            out.write("  ]\n}");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
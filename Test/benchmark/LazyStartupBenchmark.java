@@ -0,0 +1,73 @@
+package benchmark;
+
+import core.ATMMachineV2;
+import model.Account;
+import services.MappedAccountStore;
+import services.PrinterService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Time to first login over a growing mapped store: every account loaded at startup vs accounts on demand
+// Run with: java -Xmx3g -cp <classes> benchmark.LazyStartupBenchmark [maxAccounts]
+// "eager" is new ATMMachineV2(store, printer): the whole store is read into Account objects.
+// "lazy" passes an account cache size: startup reads the header, the login reads one record via the index.
+// Each row opens the store afresh (the files stay in the page cache) and logs in one existing customer.
+public class LazyStartupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int maxAccounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Path dir = Files.createTempDirectory("atm-lazy-bench");
+        String path = dir.resolve("atm_state.accounts").toString();
+        PrintStream console = System.out;
+        try {
+            int stored = 0;
+            for (int accounts = 10_000; accounts <= maxAccounts; accounts *= 10) {
+                MappedAccountStore writer = new MappedAccountStore(path);
+                List<Account> added = new ArrayList<>(accounts - stored);
+                for (; stored < accounts; stored++) added.add(Account.ofCents("user" + stored, "0000", 10_00));
+                writer.saveChanges(added, added, 0, 5000_00, 100, 100, "1.0.0");
+                writer.close();
+
+                for (int cache : new int[]{0, 10_000}) {
+                    for (int warmup = 0; warmup < 2; warmup++) firstLogin(path, cache, accounts, console, false); // JIT, page cache
+                    firstLogin(path, cache, accounts, console, true);
+                }
+            }
+        } finally {
+            System.setOut(console);
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void firstLogin(String path, int cache, int accounts, PrintStream console, boolean report) {
+        System.gc();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        MappedAccountStore store = new MappedAccountStore(path);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The ATM's welcome lines
+        ATMMachineV2 atm = new ATMMachineV2(store, new PrinterService(100, 100), cache);
+        Account user = atm.authenticateUser("user" + (accounts / 2), "0000");
+        System.setOut(console);
+        double millis = (System.nanoTime() - start) / 1e6;
+        long heap = usedHeap() - heapBefore;
+        if (report) System.out.printf("%,10d accounts  %-5s first login %,9.2f ms  accounts in memory %,9d  heap +%,d MB%s%n",
+                accounts, cache == 0 ? "eager" : "lazy", millis, atm.getLoadedAccountCount(), heap >> 20,
+                user == null ? "  (login failed)" : "");
+        store.close();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
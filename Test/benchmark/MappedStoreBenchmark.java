@@ -0,0 +1,77 @@
+package benchmark;
+
+import interfaces.IATMStateService;
+import model.Account;
+import model.StateSnapshot;
+import services.FileATMStateService;
+import services.MappedAccountStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-transaction save cost and load time: JSON file store vs memory-mapped record store
+// Run with: java -Xmx3g -cp <classes> benchmark.MappedStoreBenchmark [accounts] [transactionsPerAccount]
+// Each "transaction" changes one balance, appends one history entry and saves the state,
+// as ATMMachineV2 does after a deposit. The JSON store rewrites the whole file every time;
+// the mapped store rewrites one record and appends one entry.
+public class MappedStoreBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int txPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        Path dir = Files.createTempDirectory("atm-mapped-bench");
+        try {
+            List<Account> list = new ArrayList<>(accounts + 1);
+            list.add(Account.ofCents("ngaa", "2006", 100_00));
+            for (int i = 0; i < accounts; i++) {
+                Account a = Account.ofCents("user" + i, "0000", i % 1000 * 100 + 50);
+                for (int t = 0; t < txPerAccount; t++) a.addTransaction("Deposit", 20);
+                list.add(a);
+            }
+
+            FileATMStateService json = new FileATMStateService(dir.resolve("atm_state.json").toString());
+            json.saveStateCents(list, 5000_00, 100, 100, "1.0.0");
+            MappedAccountStore mapped = new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+            long start = System.nanoTime();
+            int imported = mapped.importJson(dir.resolve("atm_state.json").toString());
+            System.out.printf("Import: %,d accounts from %,d MB of JSON in %,d ms%n",
+                    imported, Files.size(dir.resolve("atm_state.json")) >> 20, (System.nanoTime() - start) / 1_000_000);
+
+            double jsonMicros = perSave(json, list, 5);
+            double mappedMicros = perSave(mapped, mapped.loadAccounts(), 2_000);
+            System.out.printf("Save after one deposit: JSON %,12.0f us   mapped %,8.1f us   (%,.0fx)%n",
+                    jsonMicros, mappedMicros, jsonMicros / mappedMicros);
+
+            start = System.nanoTime();
+            StateSnapshot fromJson = json.loadSnapshot();
+            long jsonLoad = (System.nanoTime() - start) / 1_000_000;
+            start = System.nanoTime();
+            StateSnapshot fromMapped = mapped.loadSnapshot();
+            long mappedLoad = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("Load everything:        JSON %,9d ms      mapped %,6d ms    (%,d / %,d accounts)%n",
+                    jsonLoad, mappedLoad, fromJson.accounts().size(), fromMapped.accounts().size());
+            mapped.close();
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // Average microseconds for one deposit followed by a save, on rotating accounts
+    private static double perSave(IATMStateService store, List<Account> list, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            Account a = list.get(1 + (i * 7919) % (list.size() - 1));
+            a.setBalanceCents(a.getBalanceCents() + 20_00);
+            a.addTransactionCents("Deposit", 20_00);
+            store.saveStateCents(list, 5000_00 - i, 100, 100, "1.0.0");
+        }
+        return (System.nanoTime() - start) / 1_000.0 / rounds;
+    }
+}
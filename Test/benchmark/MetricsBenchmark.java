@@ -0,0 +1,76 @@
+package benchmark;
+
+import services.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Cost of timing one operation: two System.nanoTime calls plus LatencyHistogram.record
+// Run with: java -cp <classes> benchmark.MetricsBenchmark [recordsPerThread] [threads]
+// "synchronized" is the same bucket layout in one long[] behind a lock, what a first version would do;
+// "striped" is LatencyHistogram (per-thread AtomicLongArray stripes and LongAdders).
+public class MetricsBenchmark {
+
+    // Same buckets as LatencyHistogram, one array, one lock
+    private static final class LockedHistogram {
+        private final long[] counts = new long[608];
+        private long total;
+        private long sum;
+        private long max;
+
+        synchronized void record(long nanos) {
+            int exponent = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+            int bucket = nanos < 32 ? (int) nanos : Math.min(607, (exponent - 3) * 16 + (int) (nanos >>> (exponent - 4)) - 16);
+            counts[bucket]++;
+            total++;
+            sum += nanos;
+            max = Math.max(max, nanos);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        for (int round = 0; round < 3; round++) { // The last round is reported; the first ones warm up the JIT
+            LockedHistogram locked = new LockedHistogram();
+            double lockedOne = run(1, records, () -> timed(locked::record));
+            double lockedMany = run(threads, records, () -> timed(locked::record));
+            LatencyHistogram striped = new LatencyHistogram();
+            double stripedOne = run(1, records, () -> timed(striped::record));
+            double stripedMany = run(threads, records, () -> timed(striped::record));
+
+            if (round == 2) {
+                System.out.printf("%,d timed operations per thread (nanoTime x2 + record)%n", records);
+                System.out.printf("synchronized: %6.1f ns (1 thread), %6.1f ns (%d threads)%n", lockedOne, lockedMany, threads);
+                System.out.printf("striped:      %6.1f ns (1 thread), %6.1f ns (%d threads)%n", stripedOne, stripedMany, threads);
+            }
+        }
+    }
+
+    private interface Recorder { void record(long nanos); }
+
+    private static void timed(Recorder r) {
+        long start = System.nanoTime();
+        r.record(System.nanoTime() - start);
+    }
+
+    // Wall time per operation and thread
+    private static double run(int threads, int records, Runnable op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < records; i++) op.run();
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+        return nanos / (double) records;
+    }
+}
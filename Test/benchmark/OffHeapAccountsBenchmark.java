@@ -0,0 +1,121 @@
+package benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import core.ATMMachineV2;
+import model.Account;
+import model.HistoryRetention;
+import services.MappedAccountStore;
+import services.PrinterService;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Heap and GC pauses with every account on the heap vs flyweight views over the mapped records
+// Run with: java -Xmx4g -cp <classes> benchmark.OffHeapAccountsBenchmark [accounts] [deposits] [heap|copies|views]
+// Without a mode all three run in turn; one mode per JVM gives cleaner pause numbers.
+// "heap"   new ATMMachineV2(store, printer): every record is read into an Account at startup (the old model)
+// "copies" lazy ATM (10,000 cached accounts) over heap copies of the records
+// "views"  lazy ATM over views (-Datm.accounts.offheap): owner, PIN and balance stay in the mapping
+// For each: live heap after startup, the pause of a full collection with the ATM alive, and the
+// collections during random deposits (count, total and longest pause, from the GC notifications).
+public class OffHeapAccountsBenchmark {
+
+    private static final AtomicLong pauses = new AtomicLong();
+    private static final AtomicLong pauseMillis = new AtomicLong();
+    private static final AtomicLong longestPause = new AtomicLong();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int deposits = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        String[] modes = args.length > 2 ? new String[]{args[2]} : new String[]{"heap", "copies", "views"};
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((n, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType())) return;
+                long millis = GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData()).getGcInfo().getDuration();
+                pauses.incrementAndGet();
+                pauseMillis.addAndGet(millis);
+                longestPause.accumulateAndGet(millis, Math::max);
+            }, null, null);
+        }
+
+        Path dir = Files.createTempDirectory("atm-offheap-bench");
+        String path = dir.resolve("atm_state.accounts").toString();
+        PrintStream console = System.out;
+        try {
+            MappedAccountStore writer = new MappedAccountStore(path);
+            for (int from = 0; from < accounts; from += 1_000_000) { // Seeded in batches to bound the heap
+                List<Account> batch = new ArrayList<>(1_000_000);
+                for (int i = from; i < Math.min(accounts, from + 1_000_000); i++) {
+                    batch.add(Account.ofCents("user" + i, "0000", 10_00));
+                }
+                writer.saveChanges(batch, batch, 0, 1_000_000_00, 1_000_000, 1_000_000, "1.0.0");
+            }
+            writer.close();
+
+            System.out.printf("%,d accounts, %,d deposits, %s%n", accounts, deposits,
+                    ManagementFactory.getGarbageCollectorMXBeans().get(0).getName());
+            for (String mode : modes) {
+                try {
+                    run(mode, path, accounts, deposits, console);
+                } catch (OutOfMemoryError e) {
+                    System.setOut(console);
+                    System.out.printf("%-7s out of memory (max heap %,d MB)%n", mode, Runtime.getRuntime().maxMemory() >> 20);
+                }
+            }
+        } finally {
+            System.setOut(console);
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void run(String mode, String path, int accounts, int deposits, PrintStream console)
+            throws InterruptedException {
+        System.gc();
+        long heapBefore = usedHeap();
+        MappedAccountStore store = new MappedAccountStore(path, HistoryRetention.DEFAULT, mode.equals("views"));
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The ATM's messages
+        long start = System.nanoTime();
+        ATMMachineV2 atm = new ATMMachineV2(store, new PrinterService(1_000_000, 1_000_000),
+                mode.equals("heap") ? 0 : 10_000);
+        double startupMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        System.gc(); // A full collection has to trace everything the ATM keeps
+        double fullGcMillis = (System.nanoTime() - start) / 1e6;
+        long heap = usedHeap() - heapBefore;
+        Thread.sleep(500); // GC notifications arrive asynchronously: let the full collection's pass
+
+        Random random = new Random(42);
+        pauses.set(0);
+        pauseMillis.set(0);
+        longestPause.set(0);
+        start = System.nanoTime();
+        for (int i = 0; i < deposits; i++) atm.deposit("user" + random.nextInt(accounts), 5);
+        double micros = (System.nanoTime() - start) / 1_000.0 / deposits;
+        System.setOut(console);
+
+        System.out.printf("%-7s startup %,8.0f ms  live heap %,6d MB  full GC %,6.0f ms  |  deposits %,6.2f us, "
+                        + "%,4d GCs, %,5d ms paused, longest %,4d ms%n",
+                mode, startupMillis, heap >> 20, fullGcMillis, micros, pauses.get(), pauseMillis.get(), longestPause.get());
+        store.close();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
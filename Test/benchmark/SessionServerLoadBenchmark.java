@@ -0,0 +1,131 @@
+package benchmark;
+
+import core.ATMMachineV2;
+import core.SessionManager;
+import interfaces.IATMStateService;
+import model.Account;
+import services.PrinterService;
+import users.SessionServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Thousands of terminals logged in to one ATM through the socket front end at the same time
+// Run with: java -cp <classes> benchmark.SessionServerLoadBenchmark [terminals] [requests per terminal]
+// Every terminal connects and logs in, then waits until all of them are in. While they are all open the
+// benchmark reports the server's sessions, the platform threads of the JVM (the sessions run on virtual
+// threads) and the heap. Then every terminal checks its balance 'requests' times and deposits €10 once,
+// measuring each request's round trip, and logs out. The balances are checked at the end.
+// Clients and server share the JVM, so every terminal holds two sockets: keep terminals below ulimit -n / 2.
+public class SessionServerLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int terminals = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        List<Account> stored = new ArrayList<>();
+        for (int i = 0; i < terminals; i++) stored.add(Account.ofCents("user" + i, "0000", 100_00));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 1_000_000; }
+            public int loadInkLevel() { return 1_000_000; }
+            public double loadCashLevel() { return 1_000_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        PrintStream console = System.out;
+        ATMMachineV2 atm = new ATMMachineV2(memoryService, new PrinterService(1_000_000, 1_000_000));
+        SessionManager sessions = new SessionManager(600_000);
+        SessionServer server = new SessionServer(atm, sessions, 0);
+        System.gc();
+        long heapBefore = usedHeap();
+
+        CountDownLatch loggedIn = new CountDownLatch(terminals);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] latencies = new long[terminals * (requests + 1)];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < terminals; t++) {
+            String owner = "user" + t;
+            futures.add(clients.submit(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                    out.println("1\n" + owner + "\n0000");
+                    readUntil(in, "--- USER MENU");
+                    loggedIn.countDown();
+                    go.await();
+                    for (int r = 0; r <= requests; r++) {
+                        long begin = System.nanoTime();
+                        if (r < requests) {
+                            out.println("1");
+                            readUntil(in, "Balance:");
+                        } else {
+                            out.println("2\n10\n2\n1"); // Deposit 1x€10
+                            readUntil(in, "--- USER MENU");
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - begin;
+                    }
+                    out.println("4\n3");
+                    readUntil(in, "Goodbye!");
+                }
+                return null;
+            }));
+        }
+        loggedIn.await();
+        double loginSeconds = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        long heap = usedHeap() - heapBefore;
+        console.printf("%,d terminals logged in after %.2f s: %,d server sessions, %,d ATM sessions, "
+                        + "%d platform threads, %,d MB heap (%,d bytes per terminal, client side included)%n",
+                terminals, loginSeconds, sessions.size(), atm.getActiveSessions(),
+                ManagementFactory.getThreadMXBean().getThreadCount(), heap >> 20, heap / terminals);
+
+        start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : futures) f.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+
+        long[] sorted = Arrays.copyOf(latencies, next.get());
+        Arrays.sort(sorted);
+        console.printf("%,d requests in %.2f s (%,.0f per second), round trip p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                sorted.length, seconds, sorted.length / seconds, sorted[sorted.length / 2] / 1e6,
+                sorted[(int) (sorted.length * 0.99)] / 1e6, sorted[sorted.length - 1] / 1e6);
+
+        long wrong = 0;
+        for (int i = 0; i < terminals; i++) if (atm.checkBalanceCents("user" + i) != 110_00) wrong++;
+        console.printf("balances wrong: %d, ATM sessions left: %d, cash %s%n", wrong, atm.getActiveSessions(),
+                atm.getCashCents() == 1_000_000_00L + terminals * 10_00L ? "exact" : "WRONG");
+        server.close();
+        System.setOut(console);
+    }
+
+    private static void readUntil(BufferedReader in, String marker) throws IOException {
+        for (String line; (line = in.readLine()) != null; ) {
+            if (line.contains(marker)) return;
+        }
+        throw new IOException("Connection closed before \"" + marker + "\"");
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
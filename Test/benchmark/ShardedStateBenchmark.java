@@ -0,0 +1,76 @@
+package benchmark;
+
+import interfaces.IATMStateService;
+import model.Account;
+import services.FileATMStateService;
+import services.ShardedATMStateService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Startup and save latency: one JSON state file vs N shard files on a fork-join pool
+// Run with: java -Xmx3g -cp <classes> benchmark.ShardedStateBenchmark [accounts] [shards]
+// The sharded store is measured with 1 thread and with one thread per core, so the scaling with cores
+// is visible directly (on a single-core machine both rows are expected to be about equal).
+public class ShardedStateBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Path dir = Files.createTempDirectory("atm-shard-bench");
+        try {
+            List<Account> list = new ArrayList<>(accounts + 1);
+            list.add(Account.ofCents("ngaa", "2006", 100_00));
+            for (int i = 0; i < accounts; i++) {
+                Account a = Account.ofCents("user" + i, "0000", 10_00);
+                a.addTransactionCents("Deposit", 10_00);
+                list.add(a);
+            }
+            System.out.printf("%,d accounts, %d shards, %d cores%n", list.size(), shards, cores);
+
+            FileATMStateService single = new FileATMStateService(dir.resolve("atm_state.json").toString());
+            single.saveStateCents(list, 5000_00, 100, 100, "1.0.0");
+            measure("single file", single, 5);
+
+            Path shardDir = dir.resolve("shards");
+            ShardedATMStateService writer = new ShardedATMStateService(shardDir.toString(), shards, cores);
+            writer.saveStateCents(list, 5000_00, 100, 100, "1.0.0");
+            writer.close();
+            for (int threads : new int[]{1, cores}) {
+                ShardedATMStateService sharded = new ShardedATMStateService(shardDir.toString(), shards, threads);
+                measure(shards + " shards, " + threads + " thr", sharded, 20);
+                sharded.close();
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path p : (Iterable<Path>) files.sorted((a, b) -> b.getNameCount() - a.getNameCount())::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    // Full load, then the average dirty save after one deposit
+    private static void measure(String name, IATMStateService store, int rounds) {
+        System.gc();
+        long start = System.nanoTime();
+        List<Account> loaded = store.loadAccounts();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            Account a = loaded.get(1 + (i * 7919) % (loaded.size() - 1));
+            a.setBalanceCents(a.getBalanceCents() + 20_00);
+            a.addTransactionCents("Deposit", 20_00);
+            store.saveChanges(loaded, List.of(a), IATMStateService.CASH_CHANGED, 5000_00 + i, 100, 100, "1.0.0");
+        }
+        double saveMillis = (System.nanoTime() - start) / 1_000_000.0 / rounds;
+        System.out.printf("%-22s load %,7d ms   save after one deposit %,9.1f ms%n", name, loadMillis, saveMillis);
+    }
+}
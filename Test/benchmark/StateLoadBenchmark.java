@@ -0,0 +1,74 @@
+package benchmark;
+
+import model.StateSnapshot;
+import services.FileATMStateService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Startup benchmark: loading a large atm_state.json
+// Run with: java -Xmx3g -cp <classes> benchmark.StateLoadBenchmark [accounts] [transactionsPerAccount]
+// Defaults (1,000,000 accounts x 4 transactions) produce a state file of roughly 350 MB.
+// "before" is the raw cost the old loaders paid just to read the file: five Files.readString calls
+// (accounts, cash, paper, ink, firmware), before any splitting or parsing.
+// "after" is one FileATMStateService.loadSnapshot() call, parsing included.
+public class StateLoadBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int txPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        Path dir = Files.createTempDirectory("atm-load-bench");
+        Path file = dir.resolve("atm_state.json");
+        try {
+            generate(file, accounts, txPerAccount);
+            System.out.printf("State file: %,d accounts, %,d MB%n", accounts, Files.size(file) >> 20);
+
+            long start = System.nanoTime();
+            long chars = 0;
+            for (int i = 0; i < 5; i++) chars += Files.readString(file).length();
+            long readMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("before: 5 x Files.readString      %,8d ms (%,d chars, parsing not included)%n", readMillis, chars);
+
+            System.gc();
+            long heapBefore = usedHeap();
+            start = System.nanoTime();
+            StateSnapshot snapshot = new FileATMStateService(file.toString()).loadSnapshot();
+            long loadMillis = (System.nanoTime() - start) / 1_000_000;
+            System.gc();
+            long heapAfter = usedHeap();
+            System.out.printf("after:  1 x loadSnapshot (parsed) %,8d ms, %,d accounts, state heap %,d MB%n",
+                    loadMillis, snapshot.accounts().size(), (heapAfter - heapBefore) >> 20);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // Writes the file in the same layout FileATMStateService produces, streaming to keep memory flat
+    private static void generate(Path file, int accounts, int txPerAccount) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"cash\": 5000.00,\n  \"paper\": 100,\n  \"ink\": 100,\n  \"firmware\":\"1.0.0\",\n  \"accounts\": [\n");
+            out.write("    {\"owner\":\"ngaa\", \"pin\":\"2006\", \"balance\":100.00, \"transactions\":[]},\n"); // Preset: no seeding write
+            for (int i = 0; i < accounts; i++) {
+                out.write("    {\"owner\":\"user" + i + "\", \"pin\":\"0000\", \"balance\":" + (i % 1000) + ".50, \"transactions\":[");
+                for (int t = 0; t < txPerAccount; t++) {
+                    if (t > 0) out.write(',');
+                    out.write("\"2026-01-0" + (1 + t % 9) + " 10:00:00 | Deposit: €20.00 | Balance: €" + (20 * (t + 1)) + ".00\"");
+                }
+                out.write(i < accounts - 1 ? "]},\n" : "]}\n");
+            }
+            out.write("  ]\n}");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
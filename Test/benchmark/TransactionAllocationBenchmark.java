@@ -0,0 +1,71 @@
+package benchmark;
+
+import model.Account;
+import model.Money;
+import model.TransactionType;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Allocation and retained memory per recorded transaction: formatted String entries vs primitive columns
+// Run with: java -cp <classes> benchmark.TransactionAllocationBenchmark [transactions]
+// "before" repeats what Account.addTransactionCents did until now: format the entry into a String and keep it
+// in a synchronized list. "after" is the current Account.addTransactionCents, which stores four primitives.
+// Allocation is measured per thread (com.sun.management.ThreadMXBean), so GC noise does not count.
+public class TransactionAllocationBenchmark {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+
+        for (int round = 0; round < 3; round++) { // The last round is reported; the first ones warm up the JIT
+            List<String> strings = Collections.synchronizedList(new ArrayList<>());
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) strings.add(formatted("Deposit", 20_00, i * 20_00L));
+            long oldNanos = System.nanoTime() - start;
+            long oldBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+            Account account = Account.ofCents("bench", "0000", 0);
+            before = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) account.addTransactionCents(TransactionType.DEPOSIT, 20_00);
+            long newNanos = System.nanoTime() - start;
+            long newBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+            if (round == 2) {
+                System.out.printf("%,d transactions%n", count);
+                System.out.printf("before: String entries    %6.1f B allocated, %6.1f ns per transaction%n",
+                        oldBytes / (double) count, oldNanos / (double) count);
+                System.out.printf("after:  primitive columns %6.1f B allocated, %6.1f ns per transaction%n",
+                        newBytes / (double) count, newNanos / (double) count);
+                System.out.printf("kept in memory: ~%d B per String entry vs 25 B per columnar entry (plus growth slack)%n",
+                        retainedPerString(strings.get(0)));
+            }
+        }
+    }
+
+    // The entry the old Account.addTransactionCents built and stored for every transaction
+    private static String formatted(String type, long amountCents, long balanceCents) {
+        StringBuilder entry = new StringBuilder(64);
+        TIME_FORMAT.formatTo(LocalDateTime.now(), entry);
+        entry.append(" | ").append(type).append(": €");
+        Money.appendTo(entry, amountCents).append(" | Balance: €");
+        Money.appendTo(entry, balanceCents);
+        return entry.toString();
+    }
+
+    // String header + byte[] (UTF-16 when the text has a '€') + list slot, compressed oops assumed
+    private static int retainedPerString(String s) {
+        boolean latin1 = s.chars().allMatch(c -> c < 256);
+        int array = 16 + s.length() * (latin1 ? 1 : 2);
+        return 24 + ((array + 7) & ~7) + 4;
+    }
+}
@@ -0,0 +1,142 @@
+package intergration;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import model.BatchItem;
+import model.BatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.PrinterService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Exercises the all-or-nothing batch API of ATMMachineV2.
+class BatchTransactionsTest {
+
+    private ATMMachineV2 atm;
+    private List<Account> stored;
+    private final AtomicInteger saves = new AtomicInteger();
+
+    @BeforeEach
+    void setup() {
+        stored = new ArrayList<>();
+        for (int i = 0; i < 8; i++) stored.add(Account.ofCents("user" + i, "0000", 100_00));
+
+        // [SOLID - DIP] In-memory state service that only counts saves
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) { saves.incrementAndGet(); }
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 1_000; }
+            public int loadInkLevel() { return 1_000; }
+            public double loadCashLevel() { return 500.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        atm = new ATMMachineV2(memoryService, new PrinterService(1_000, 1_000));
+    }
+
+    // [Logic - Happy Path] Items apply in order, a withdrawal may spend an earlier deposit, one save.
+    @Test
+    void testBatchIsAppliedAndPersistedOnce() {
+        BatchResult result = atm.applyBatch(List.of(
+                BatchItem.deposit("user1", 50),
+                BatchItem.withdrawal("USER1", 150),
+                BatchItem.withdrawal("user2", 30),
+                BatchItem.deposit("user3", 20)));
+
+        assertTrue(result.applied());
+        assertEquals(0, result.failures());
+        assertEquals(BatchResult.Status.APPLIED, result.status(1));
+        assertEquals(0, atm.checkBalanceCents("user1"));
+        assertEquals(70_00, atm.checkBalanceCents("user2"));
+        assertEquals(120_00, atm.checkBalanceCents("user3"));
+        assertEquals(500_00 - 110_00, atm.getCashCents());
+        assertEquals(500_00, atm.getCassettes().getTotalCents(), "Batches book money, they move no notes");
+        assertEquals(-110_00, atm.getLedgerCents());
+        assertTrue(atm.largestDispensable(500) <= 390, "The notes batches paid out cannot be dispensed again");
+        assertEquals(2, stored.get(1).getTransactionCount(), "Every item is recorded in the history");
+        assertEquals(1, saves.get(), "One persist for the whole batch");
+    }
+
+    // [Logic - Atomicity] One failing item rejects the batch: nothing changes and every item says why.
+    @Test
+    void testFailingItemRejectsTheWholeBatch() {
+        BatchResult result = atm.applyBatch(List.of(
+                BatchItem.deposit("user1", 50),
+                BatchItem.withdrawal("user2", 101),
+                BatchItem.deposit("nobody", 5),
+                new BatchItem("user3", null, 5_00),
+                BatchItem.deposit("user4", 0)));
+
+        assertFalse(result.applied());
+        assertEquals(List.of(BatchResult.Status.NOT_APPLIED, BatchResult.Status.INSUFFICIENT_FUNDS,
+                BatchResult.Status.UNKNOWN_ACCOUNT, BatchResult.Status.INVALID_ITEM,
+                BatchResult.Status.INVALID_ITEM), result.statuses());
+        assertEquals(4, result.failures());
+        assertEquals(100_00, atm.checkBalanceCents("user1"), "The valid deposit was not applied either");
+        assertEquals(500_00, atm.getCashCents());
+        assertEquals(0, stored.get(1).getTransactionCount());
+        assertEquals(0, saves.get(), "A rejected batch is not persisted");
+    }
+
+    // [Logic - Vault] The batch is checked against the cash it pays out at its peak, not only its net.
+    @Test
+    void testBatchNeedingMoreCashThanTheVaultIsRejected() {
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < 6; i++) items.add(BatchItem.withdrawal("user" + i, 100)); // €600 out of €500
+        items.add(BatchItem.deposit("user7", 200));                                   // Back to €400 net
+
+        BatchResult result = atm.applyBatch(items);
+        assertFalse(result.applied());
+        assertEquals(BatchResult.Status.INSUFFICIENT_CASH, result.status(5), "Blamed on the item at the peak");
+        assertEquals(1, result.failures());
+        assertEquals(500_00, atm.getCashCents(), "The reservation is not kept");
+        assertEquals(100_00, atm.checkBalanceCents("user0"));
+    }
+
+    // [Logic - Invariant] Transfer batches and single withdrawals race: money is conserved, no deadlock.
+    @Test
+    void testBatchesAndSessionsConserveMoney() throws Exception {
+        long before = atm.getCashCents() - totalBalances();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            boolean batches = t % 2 == 0;
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 300; i++) {
+                    String from = "user" + rnd.nextInt(8), to = "user" + rnd.nextInt(8);
+                    int amount = 5 * (1 + rnd.nextInt(4));
+                    if (batches) atm.applyBatch(List.of(BatchItem.withdrawal(from, amount), BatchItem.deposit(to, amount)));
+                    else if (rnd.nextBoolean()) atm.withdraw(from, amount);
+                    else atm.deposit(to, amount);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(before, atm.getCashCents() - totalBalances(), "Money must be conserved");
+        for (Account a : stored) assertTrue(a.getBalanceCents() >= 0, "Balance must never go negative: " + a.getOwner());
+    }
+
+    private long totalBalances() {
+        long sum = 0;
+        for (Account a : stored) sum += a.getBalanceCents();
+        return sum;
+    }
+}
@@ -0,0 +1,108 @@
+package intergration;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.PrinterService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Exercises ATMMachineV2 with many customer sessions running at once.
+class ConcurrentSessionsTest {
+
+    private static final int ACCOUNTS = 16;
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 250;
+
+    private ATMMachineV2 atm;
+    private List<Account> stored;
+
+    @BeforeEach
+    void setup() {
+        stored = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) stored.add(new Account("user" + i, "0000", 100.0));
+
+        // [SOLID - DIP] In-memory state service: this test is about the engine, not the file format.
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 1_000_000; }
+            public int loadInkLevel() { return 1_000_000; }
+            public double loadCashLevel() { return 500.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        atm = new ATMMachineV2(memoryService, new PrinterService(1_000_000, 1_000_000));
+    }
+
+    // [Logic - Invariant] Every deposit adds the same amount to an account and the vault, and every
+    // withdrawal removes it from both, so (vault - sum of balances) never changes under contention.
+    @Test
+    void testMoneyIsConservedUnderContention() throws Exception {
+        double invariantBefore = atm.getCashAvailable() - totalBalances();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    String owner = "USER" + rnd.nextInt(ACCOUNTS); // Mixed case: goes through the folded index
+                    int amount = 5 * (1 + rnd.nextInt(20));
+                    if (rnd.nextBoolean()) atm.deposit(owner, amount);
+                    else atm.withdraw(owner, amount);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(invariantBefore, atm.getCashAvailable() - totalBalances(), 0.001, "Money must be conserved");
+        assertTrue(atm.getCashAvailable() >= 0, "Vault must never go negative");
+        for (Account a : stored) assertTrue(a.getBalance() >= 0, "Balance must never go negative: " + a.getOwner());
+    }
+
+    // [Logic - Registration Race] Concurrent first logins of the same new owner create exactly one account.
+    @Test
+    void testConcurrentRegistrationCreatesOneAccount() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Account>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return atm.authenticateUser("Newcomer", "4242");
+            }));
+        }
+        start.countDown();
+
+        Account first = futures.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<Account> f : futures) assertSame(first, f.get(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(ACCOUNTS + 1, stored.size());
+        assertEquals(THREADS, atm.getActiveSessions());
+        for (int t = 0; t < THREADS; t++) atm.logout();
+        assertEquals(0, atm.getActiveSessions());
+    }
+
+    private double totalBalances() {
+        double sum = 0;
+        for (Account a : stored) sum += a.getBalance();
+        return sum;
+    }
+}
@@ -0,0 +1,171 @@
+package intergration;
+
+import core.ATMMachineV2;
+import core.SessionManager;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.PrinterService;
+import users.SessionServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Drives the shared ATM through the socket front end, many terminals at once.
+class SessionServerTest {
+
+    private static final int ACCOUNTS = 50;
+
+    private ATMMachineV2 atm;
+    private List<Account> stored;
+    private SessionManager sessions;
+    private SessionServer server;
+    private PrintStream console;
+
+    @BeforeEach
+    void setup() throws IOException {
+        console = System.out;
+        stored = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) stored.add(Account.ofCents("user" + i, "0000", 100_00));
+
+        // [SOLID - DIP] In-memory state service: this test is about the front end, not the store.
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 1_000_000; }
+            public int loadInkLevel() { return 1_000_000; }
+            public double loadCashLevel() { return 100_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        atm = new ATMMachineV2(memoryService, new PrinterService(1_000_000, 1_000_000));
+        sessions = new SessionManager(60_000);
+        server = new SessionServer(atm, sessions, 0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        System.setOut(console); // The server routed System.out through its terminals
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    private static String readUntil(BufferedReader in, String marker) throws IOException {
+        StringBuilder seen = new StringBuilder();
+        for (String line; (line = in.readLine()) != null; ) {
+            seen.append(line).append('\n');
+            if (line.contains(marker)) return seen.toString();
+        }
+        throw new AssertionError("Connection closed before \"" + marker + "\":\n" + seen);
+    }
+
+    // [Logic - Menus Over The Wire] A scripted terminal logs in, deposits notes, withdraws and exits.
+    @Test
+    void testCustomerMenusOverSocket() throws IOException {
+        try (Socket socket = connect()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println("1\nuser7\n0000");          // Login
+            out.println("2\n30\n3\n1\n2\n1");         // Deposit €30 as 1x€20 + 1x€10
+            out.println("3\n50\ny");                 // Withdraw €50
+            out.println("1\n4\n3");                  // Balance, logout, exit
+            String transcript = readUntil(in, "Goodbye!");
+
+            assertTrue(transcript.contains("Welcome, user7!"), transcript);
+            assertTrue(transcript.contains("You will receive: 1x€50"), transcript);
+            assertTrue(transcript.contains("Balance: €80.00"), transcript);
+            assertNull(in.readLine(), "The server closes the connection on exit");
+        }
+        assertEquals(80_00, atm.checkBalanceCents("user7"));
+        assertEquals(0, atm.getActiveSessions(), "Logged out");
+    }
+
+    // [Logic - Concurrency] Hundreds of terminals are logged in at the same time, each on its own
+    // virtual thread; afterwards every balance is exact and no session is left behind.
+    @Test
+    void testManyConcurrentTerminals() throws Exception {
+        final int terminals = 200;
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        CountDownLatch loggedIn = new CountDownLatch(terminals);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < terminals; t++) {
+            String owner = "user" + (t % ACCOUNTS);
+            futures.add(clients.submit(() -> {
+                try (Socket socket = connect()) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                    out.println("1\n" + owner + "\n0000");
+                    readUntil(in, "--- USER MENU");
+                    loggedIn.countDown();
+                    go.await();
+                    out.println("2\n10\n2\n1");   // Deposit 1x€10
+                    out.println("3\n5\ny");       // Withdraw €5
+                    out.println("4\n3");
+                    readUntil(in, "Goodbye!");
+                }
+                return null;
+            }));
+        }
+        assertTrue(loggedIn.await(60, TimeUnit.SECONDS), "Every terminal logs in");
+        assertEquals(terminals, sessions.size());
+        assertEquals(terminals, atm.getActiveSessions());
+        assertEquals(terminals, sessions.getSessions().stream().filter(s -> s.getOwner() != null).count());
+
+        go.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        clients.shutdown();
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertEquals(100_00 + (terminals / ACCOUNTS) * 5_00, atm.checkBalanceCents("user" + i));
+        }
+        assertEquals(100_000_00 + terminals * 5_00, atm.getCashCents());
+        assertEquals(0, atm.getActiveSessions());
+        assertTrue(waitFor(() -> sessions.size() == 0), "Sessions end with their connections");
+    }
+
+    // [Logic - Idle Timeout] The wheel ends an idle terminal; the customer is logged out and told why.
+    @Test
+    void testIdleTerminalIsDisconnected() throws Exception {
+        server.close();
+        sessions = new SessionManager(300, 50, 16, System::currentTimeMillis);
+        server = new SessionServer(atm, sessions, 0);
+        try (Socket socket = connect()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println("1\nuser1\n0000");
+            readUntil(in, "--- USER MENU");
+            assertEquals(1, atm.getActiveSessions());
+
+            readUntil(in, "[!] Session timed out.");
+            assertNull(in.readLine());
+        }
+        assertEquals(0, atm.getActiveSessions(), "The expired customer is logged out");
+        assertEquals(1, sessions.getExpiredTotal());
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) Thread.sleep(10);
+        return condition.getAsBoolean();
+    }
+}
@@ -0,0 +1,61 @@
+package unit;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.PrinterService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the owner index used by ATMMachineV2 for account lookups.
+public class AccountIndexTest {
+
+    private ATMMachineV2 atm;
+    private List<Account> stored;
+
+    @BeforeEach
+    void setup() {
+        stored = new ArrayList<>();
+        stored.add(new Account("Alice", "1234", 40.0));
+        stored.add(new Account("Bob", "5555", 75.0));
+
+        IATMStateService mockService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 10; }
+            public int loadInkLevel() { return 10; }
+            public double loadCashLevel() { return 1000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        atm = new ATMMachineV2(mockService, new PrinterService(10, 10));
+    }
+
+    // [Logic - Lookup] Owner names match regardless of case, as the old equalsIgnoreCase scan did.
+    @Test
+    void testLookupIsCaseInsensitive() {
+        assertEquals(40.0, atm.checkBalance("alice"));
+        assertEquals(75.0, atm.checkBalance("BOB"));
+        assertEquals(0.0, atm.checkBalance("nobody"));
+
+        Account acc = atm.authenticateUser("ALICE", "1234");
+        assertNotNull(acc);
+        assertSame(stored.get(0), acc, "Login must resolve to the loaded account, not register a new one");
+    }
+
+    // [Logic - Registration] Auto-registered accounts are visible to later operations.
+    @Test
+    void testRegistrationUpdatesIndex() {
+        Account created = atm.authenticateUser("Carol", "4321");
+        assertNotNull(created);
+        assertEquals(3, stored.size());
+
+        atm.deposit("carol", 25);
+        assertEquals(25.0, atm.checkBalance("CAROL"));
+        assertSame(created, atm.authenticateUser("carol", "4321"));
+    }
+}
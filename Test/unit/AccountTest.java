@@ -80,4 +80,23 @@ public class AccountTest {
 
         System.out.println("[✅] Withdraw transaction test passed.");
     }
+
+    // ------------------- TEST DIRTY TRACKING -------------------
+    @Test
+    public void testChangesBumpVersion() {
+        System.out.println("\n[Test] Version bumps on every change");
+
+        long start = account.getVersion();
+        account.setBalanceCents(account.getBalanceCents() + 500);
+        assertEquals(start + 1, account.getVersion(), "A balance change must mark the account dirty");
+
+        account.addTransaction("Deposit", 5);
+        assertEquals(start + 2, account.getVersion(), "A new transaction must mark the account dirty");
+
+        account.getBalanceCents();
+        account.toJsonWithTransactions();
+        assertEquals(start + 2, account.getVersion(), "Reads must not mark the account dirty");
+
+        System.out.println("[✅] Version test passed.");
+    }
 }
@@ -0,0 +1,88 @@
+package unit;
+
+import core.ATMMachineV2;
+import model.Account;
+import model.HistoryRetention;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.MappedAccountStore;
+import services.PrinterService;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [OOP - Flyweight] Verifies accounts that keep owner, PIN and balance in the mapped store's records.
+public class AccountViewTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedAccountStore open(boolean views) {
+        return new MappedAccountStore(dir.resolve("atm_state.accounts").toString(), HistoryRetention.DEFAULT, views);
+    }
+
+    private void seed(int accounts) {
+        MappedAccountStore store = open(false);
+        List<Account> list = store.loadAccounts();
+        for (int i = 0; i < accounts; i++) list.add(Account.ofCents("user" + i, "000" + (i % 10), i * 100L));
+        store.saveStateCents(list, 5000_00, 50, 50, "1.0.0");
+        store.close();
+    }
+
+    // [Logic - Table] A view reads its fields from the record and writes a new balance straight into it.
+    @Test
+    void testViewReadsAndWritesTheRecord() {
+        seed(10);
+        MappedAccountStore store = open(true);
+        Account view = store.loadAccount("USER7");
+        assertTrue(view.isView());
+        assertEquals("user7", view.getOwner());
+        assertEquals("0007", view.getPin());
+        assertEquals(7_00, view.getBalanceCents());
+
+        long version = view.getVersion();
+        view.setBalanceCents(70_00);
+        assertTrue(view.getVersion() > version, "Still counts as a change for dirty tracking");
+        MappedAccountStore other = open(false); // A second mapping of the same file
+        assertEquals(70_00, other.loadAccount("user7").getBalanceCents(), "Written without a save");
+        other.close();
+
+        Account copy = view.copyOf(1_00, view.getTransactionCount());
+        assertFalse(copy.isView(), "A copy lives on the heap");
+        assertEquals("user7", copy.getOwner());
+        assertTrue(view.toJsonWithHistoryPointer().contains("\"owner\":\"user7\""));
+        store.close();
+    }
+
+    // [Logic - Engine] A lazy ATM runs on views: balances and history survive eviction and a restart.
+    @Test
+    void testAtmRunsOnViews() {
+        seed(20);
+        MappedAccountStore store = open(true);
+        ATMMachineV2 atm = new ATMMachineV2(store, new PrinterService(50, 50), 4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 20; i++) atm.deposit("user" + i, 5);
+        }
+        assertEquals(3_00 + 15_00, atm.checkBalanceCents("user3"));
+        store.close();
+
+        MappedAccountStore reopened = open(false);
+        Account user19 = reopened.loadAccount("user19");
+        assertEquals(19_00 + 15_00, user19.getBalanceCents());
+        assertEquals(3, user19.getTransactionCount(), "Every deposit reached the history log");
+        assertTrue(user19.getTransactionPage(0, 1).get(0).contains("Balance: €34.00"));
+        reopened.close();
+    }
+
+    // [Logic - Guard] A view outlives its store only until the store is closed.
+    @Test
+    void testViewOfClosedStoreFails() {
+        seed(1);
+        MappedAccountStore store = open(true);
+        Account view = store.loadAccount("user0");
+        store.close();
+        assertThrows(IllegalStateException.class, view::getBalanceCents);
+    }
+}
@@ -0,0 +1,94 @@
+package unit;
+
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import services.AsyncStateWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies group commit and the flush() barrier of the asynchronous persistence writer.
+public class AsyncStateWriterTest {
+
+    // [Test Double] A deliberately slow store that records what it was asked to write.
+    private static class SlowStore implements IATMStateService {
+        final AtomicInteger writes = new AtomicInteger();
+        volatile long lastCash = -1;
+
+        public void saveState(List<Account> a, double c, int p, int i, String f) {}
+        public void saveStateCents(List<Account> a, long cash, int p, int i, String f) {
+            try { Thread.sleep(5); } catch (InterruptedException ignored) {}
+            lastCash = cash;
+            writes.incrementAndGet();
+        }
+        public List<Account> loadAccounts() { return new ArrayList<>(); }
+        public int loadPaperLevel() { return 10; }
+        public int loadInkLevel() { return 10; }
+        public double loadCashLevel() { return 0; }
+        public String loadFirmwareVersion() { return "1.0.0"; }
+    }
+
+    // [Logic - Group Commit] A burst of saves is coalesced into far fewer writes, and the newest state wins.
+    @Test
+    void testBurstIsCoalesced() {
+        SlowStore store = new SlowStore();
+        try (AsyncStateWriter writer = new AsyncStateWriter(store, 64, 10, 1000)) {
+            for (int i = 1; i <= 200; i++) writer.saveStateCents(new ArrayList<>(), i, 10, 10, "1.0.0");
+            writer.flush();
+
+            assertEquals(200, store.lastCash, "The last requested state must be the one persisted");
+            assertTrue(store.writes.get() < 200, "Saves should be grouped, got " + store.writes.get() + " writes");
+            assertEquals(store.writes.get(), writer.getGroupCommits());
+            assertEquals(200, writer.getGroupCommits() + writer.getCoalescedSaves());
+        }
+    }
+
+    // [Logic - Barrier] flush() returns only after queued saves are written; with nothing queued it returns at once.
+    @Test
+    void testFlushIsABarrier() {
+        SlowStore store = new SlowStore();
+        try (AsyncStateWriter writer = new AsyncStateWriter(store, 8, 50, 8)) {
+            writer.flush();
+            assertEquals(0, store.writes.get());
+
+            writer.saveStateCents(new ArrayList<>(), 42, 10, 10, "1.0.0");
+            writer.flush();
+            assertEquals(42, store.lastCash);
+            assertEquals(0, writer.getQueueDepth());
+        }
+    }
+
+    // [Logic - Shutdown] Saves racing close() all reach the store: one write at a time, never on an interrupted thread.
+    @Test
+    void testCloseWritesEverySaveWithoutInterrupting() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        SlowStore store = new SlowStore() {
+            @Override
+            public void saveStateCents(List<Account> a, long cash, int p, int i, String f) {
+                if (inFlight.incrementAndGet() > 1) overlapped.set(true);
+                if (Thread.currentThread().isInterrupted()) interrupted.set(true);
+                super.saveStateCents(a, cash, p, i, f);
+                inFlight.decrementAndGet();
+            }
+        };
+        AsyncStateWriter writer = new AsyncStateWriter(store, 4, 5, 4);
+        Thread saver = new Thread(() -> {
+            for (int i = 1; i <= 100; i++) writer.saveStateCents(new ArrayList<>(), i, 10, 10, "1.0.0");
+        });
+        saver.start();
+        Thread.sleep(20); // Some saves queued, the rest arrive while closing and after
+        writer.close();
+        saver.join();
+
+        assertEquals(100, store.lastCash, "The newest save must be the one persisted");
+        assertFalse(overlapped.get(), "A late save must wait for the writer's last group");
+        assertFalse(interrupted.get(), "The writer must not be interrupted while it writes");
+    }
+}
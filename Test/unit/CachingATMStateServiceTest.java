@@ -0,0 +1,101 @@
+package unit;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.CachingATMStateService;
+import services.FileATMStateService;
+import services.MappedAccountStore;
+import services.PrinterService;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies read-through, LRU eviction and write-back of the caching store decorator.
+public class CachingATMStateServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedAccountStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+        List<Account> list = store.loadAccounts();
+        for (int i = 0; i < 10; i++) list.add(Account.ofCents("user" + i, "0000", i * 100L));
+        store.saveStateCents(list, 5000_00, 50, 50, "1.0.0");
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static void change(IATMStateService service, Account a, long cents) {
+        a.setBalanceCents(cents);
+        service.saveChanges(List.of(a), List.of(a), IATMStateService.CASH_CHANGED, 4000_00, 50, 50, "1.0.0");
+    }
+
+    // [Logic - Read Through] Hits return the cached object; the least recently used account is evicted.
+    @Test
+    void testReadThroughAndLruEviction() {
+        CachingATMStateService cache = new CachingATMStateService(store, 2, 10);
+        Account u1 = cache.loadAccount("user1");
+        cache.loadAccount("user2");
+        assertSame(u1, cache.loadAccount("USER1"), "A hit returns the same object");
+        cache.loadAccount("user3"); // Evicts user2, the least recently used
+
+        assertEquals(2, cache.getCachedAccounts());
+        assertEquals(1, cache.getEvictions());
+        assertSame(u1, cache.loadAccount("user1"));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertNull(cache.loadAccount("nobody"));
+    }
+
+    // [Logic - Write Back] Changes reach the store on commit, or when a dirty account is evicted.
+    @Test
+    void testDirtyAccountsAreWrittenBack() {
+        CachingATMStateService cache = new CachingATMStateService(store, 2, 10);
+        change(cache, cache.loadAccount("user1"), 111_00);
+        assertEquals(1_00, store.loadAccount("user1").getBalanceCents(), "Not written before a commit");
+        assertEquals(1, cache.getDirtyAccounts());
+
+        cache.loadAccount("user2");
+        cache.loadAccount("user3"); // Evicts the dirty user1
+        assertEquals(111_00, store.loadAccount("user1").getBalanceCents(), "Written back on eviction");
+        assertEquals(1, cache.getWriteBacks());
+
+        change(cache, cache.loadAccount("user3"), 333_00);
+        cache.commit();
+        assertEquals(333_00, store.loadAccount("user3").getBalanceCents());
+        assertEquals(4000_00, store.loadCashCents(), "Machine fields are committed with the accounts");
+    }
+
+    // [Logic - Engine] A lazy ATM runs on top of the cache; closing commits what is still dirty.
+    @Test
+    void testAtmRunsOnTopOfTheCache() {
+        CachingATMStateService cache = new CachingATMStateService(store, 3, 100);
+        ATMMachineV2 atm = new ATMMachineV2(cache, new PrinterService(50, 50), 2);
+        for (int i = 0; i < 10; i++) atm.deposit("user" + i, 5);
+        assertTrue(cache.getCachedAccounts() <= 3);
+
+        cache.close();
+        for (int i = 0; i < 10; i++) assertEquals(i * 100L + 5_00, store.loadAccount("user" + i).getBalanceCents());
+    }
+
+    // [Logic - Guard] A store that can only load every account at once cannot be cached per account.
+    @Test
+    void testRequiresAccountDirectory() {
+        try (FileATMStateService json = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            assertThrows(IllegalArgumentException.class, () -> new CachingATMStateService(json, 10, 10));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package unit;
+
+import core.ATMMachineV2;
+import core.CashCassettes;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.JournaledATMStateService;
+import services.MappedAccountStore;
+import services.PrinterService;
+import services.ShardedATMStateService;
+import services.StateJournal;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the note inventory, the dispense planner and the ATM's per-cassette operations.
+public class CashCassettesTest {
+
+    @TempDir
+    Path dir;
+
+    private static CashCassettes loaded(int... counts) {
+        CashCassettes cassettes = new CashCassettes(CashCassettes.STANDARD_DENOMINATIONS);
+        for (int c = 0; c < counts.length; c++) cassettes.load(c, counts[c]);
+        return cassettes;
+    }
+
+    // [Logic - Planner] Fewest notes the stock allows; amounts the stock cannot make are refused.
+    @Test
+    void testPlanUsesFewestNotesFromStock() {
+        CashCassettes cassettes = loaded(10, 10, 10, 10, 10);
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1}, cassettes.plan(185));
+        assertArrayEquals(new int[]{0, 0, 0, 0, 3}, cassettes.plan(300));
+
+        CashCassettes noHundreds = loaded(0, 1, 3, 2, 0);
+        assertArrayEquals(new int[]{0, 0, 0, 2, 0}, noHundreds.plan(100), "Two fifties when no hundred is left");
+        assertArrayEquals(new int[]{0, 0, 1, 1, 0}, noHundreds.plan(70));
+        assertArrayEquals(new int[]{0, 1, 3, 0, 0}, loaded(0, 1, 3, 0, 0).plan(70), "Without fifties: a ten and three twenties");
+        assertNull(noHundreds.plan(15), "No five and one ten cannot make 15");
+        assertNull(noHundreds.plan(7), "Not a multiple of the smallest note");
+        assertEquals(170, noHundreds.largestDispensable(1000));
+        assertFalse(noHundreds.canDispense(180));
+    }
+
+    // [Logic - Limits] A payout is limited to the notes the dispenser can stack at once.
+    @Test
+    void testPlanRespectsNoteLimit() {
+        CashCassettes fives = loaded(100, 0, 0, 0, 0);
+        assertNotNull(fives.plan(5 * CashCassettes.MAX_NOTES_PER_DISPENSE));
+        assertNull(fives.plan(5 * (CashCassettes.MAX_NOTES_PER_DISPENSE + 1)));
+    }
+
+    // [Logic - Memoization] Plans reuse the tables until the usable stock changes.
+    @Test
+    void testTablesAreRebuiltOnlyAfterStockChanges() {
+        CashCassettes cassettes = CashCassettes.standard(1000_00);
+        assertEquals(1000_00, cassettes.getTotalCents(), "The standard fill loads every euro it can");
+        for (int amount = 5; amount <= 500; amount += 5) cassettes.plan(amount);
+        assertEquals(1, cassettes.getPlannerBuilds());
+
+        int[] notes = cassettes.tryDispense(80);
+        assertEquals(920_00, cassettes.getTotalCents());
+        cassettes.plan(80);
+        assertEquals(2, cassettes.getPlannerBuilds(), "Fewer notes than one payout may use: new tables");
+        cassettes.restore(notes);
+        cassettes.plan(80);
+        assertEquals(3, cassettes.getPlannerBuilds());
+
+        CashCassettes full = CashCassettes.standard(100_000_00); // Hundreds of notes per cassette
+        for (int i = 0; i < 50; i++) full.tryDispense(185);
+        assertEquals(1, full.getPlannerBuilds(), "Above the per-payout limit the stock level does not matter");
+    }
+
+    // [Logic - Engine] Withdrawals take notes and cash together; technicians work per cassette.
+    @Test
+    void testAtmDispensesFromCassettes() {
+        List<Account> stored = new ArrayList<>(List.of(Account.ofCents("alice", "1111", 1000_00)));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 100; }
+            public int loadInkLevel() { return 100; }
+            public double loadCashLevel() { return 0.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        ATMMachineV2 atm = new ATMMachineV2(memoryService, new PrinterService(100, 100));
+        atm.refillCassette(20, 10);
+        atm.refillCassette(50, 2);
+        assertEquals(300_00, atm.getCashCents());
+
+        assertArrayEquals(new int[]{0, 0, 3, 2, 0}, atm.planDispense(160));
+        assertNull(atm.planDispense(165), "No five in the ATM");
+        assertFalse(atm.withdraw("alice", 165));
+        assertTrue(atm.withdraw("alice", 160));
+        assertEquals(140_00, atm.getCashCents());
+        assertEquals(7, atm.getCassettes().getNotes(2));
+        assertEquals(0, atm.getCassettes().getNotes(3));
+
+        atm.depositNotes("alice", new int[]{0, 0, 0, 1, 0}); // Recycled into the €50 cassette
+        assertEquals(1, atm.getCassettes().getNotes(3));
+        atm.collectCassette(20, 100);
+        assertEquals(0, atm.getCassettes().getNotes(2));
+        assertEquals(50_00, atm.getCashCents());
+        assertEquals(1000_00 - 160_00 + 50_00, atm.checkBalanceCents("alice"));
+    }
+
+    // [Logic - Arithmetic] Refills and collections move the vault by exactly the notes that moved.
+    @Test
+    void testRefillAndCollectMoveWholeNotes() {
+        List<Account> stored = new ArrayList<>(List.of(Account.ofCents("alice", "1111", 100_00)));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 100; }
+            public int loadInkLevel() { return 100; }
+            public double loadCashLevel() { return 0.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        ATMMachineV2 atm = new ATMMachineV2(memoryService, new PrinterService(100, 100));
+        atm.refillCash(7); // One €5 note; €2 makes no note
+        assertEquals(5_00, atm.getCashCents());
+        assertEquals(atm.getCassettes().getTotalCents(), atm.getCashCents());
+
+        atm.collectCassette(5, 1);
+        atm.refillCassette(20, 1);
+        atm.refillCassette(50, 1);
+        atm.collectCash(30); // Largest first: only the €20 fits
+        assertArrayEquals(new int[]{0, 0, 0, 1, 0}, atm.getCassettes().getCounts());
+        assertEquals(50_00, atm.getCashCents());
+
+        atm.deposit("alice", 40); // No notes counted: booked in the ledger, not dispensable
+        assertEquals(90_00, atm.getCashCents());
+        assertEquals(40_00, atm.getLedgerCents());
+        atm.collectCash(1_000);
+        assertEquals(40_00, atm.getCashCents(), "Only notes are collected");
+        assertTrue(atm.isOutOfService(), "Booked cash pays nothing out");
+    }
+
+    // [Logic - Persistence] Every store keeps the note count of each cassette, not just the cash total.
+    @Test
+    void testNoteCountsSurviveRestart() throws Exception {
+        Map<String, Supplier<IATMStateService>> stores = new LinkedHashMap<>();
+        stores.put("json", () -> new FileATMStateService(dir.resolve("json/atm_state.json").toString()));
+        stores.put("sharded", () -> new ShardedATMStateService(dir.resolve("sharded").toString(), 4, 2));
+        stores.put("mapped", () -> new MappedAccountStore(dir.resolve("mapped/atm_state.accounts").toString()));
+        stores.put("journaled", () -> new JournaledATMStateService(
+                new FileATMStateService(dir.resolve("journaled/atm_state.json").toString()),
+                new StateJournal(dir.resolve("journaled/atm_state.journal"), StateJournal.Durability.PER_GROUP)));
+
+        for (Map.Entry<String, Supplier<IATMStateService>> store : stores.entrySet()) {
+            IATMStateService first = store.getValue().get();
+            ATMMachineV2 atm = new ATMMachineV2(first, new PrinterService(100, 100));
+            atm.collectCash(1_000_000); // Empties every cassette
+            atm.refillCassette(20, 10);
+            atm.refillCassette(50, 3);
+            atm.collectCassette(50, 1);
+            atm.deposit(atm.authenticateUser("bob", "2222").getOwner(), 15); // Booked in the ledger
+            if (first instanceof AutoCloseable c) c.close();
+
+            IATMStateService second = store.getValue().get();
+            ATMMachineV2 restarted = new ATMMachineV2(second, new PrinterService(100, 100));
+            assertArrayEquals(new int[]{0, 0, 10, 2, 0}, restarted.getCassettes().getCounts(), store.getKey());
+            assertEquals(315_00, restarted.getCashCents(), store.getKey());
+            assertEquals(15_00, restarted.getLedgerCents(), store.getKey());
+            if (second instanceof AutoCloseable c) c.close();
+        }
+    }
+
+    // [Logic - Compatibility] A state file with the cash total only loads it as the standard mix.
+    @Test
+    void testStateWithoutNoteCountsUsesStandardMix() {
+        String path = dir.resolve("old/atm_state.json").toString();
+        try (FileATMStateService old = new FileATMStateService(path)) {
+            old.saveStateCents(new ArrayList<>(), 185_00, 100, 100, "1.0.0"); // Written without counts
+        }
+        ATMMachineV2 atm = new ATMMachineV2(new FileATMStateService(path), new PrinterService(100, 100));
+        assertArrayEquals(CashCassettes.standard(185_00).getCounts(), atm.getCassettes().getCounts());
+    }
+}
@@ -0,0 +1,127 @@
+package unit;
+
+import core.ATMMachineV2;
+import core.ConsumptionForecaster;
+import core.ConsumptionForecaster.Forecast;
+import core.ConsumptionForecaster.Resource;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import services.PrinterService;
+import services.ReceiptPrinter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the per-hour-of-day usage averages and the depletion projections built on them.
+public class ConsumptionForecasterTest {
+
+    private static final long HOUR = ConsumptionForecaster.HOUR_MILLIS;
+    private static final long MINUTE = 60_000L;
+
+    // Monday 2026-10-12 00:00 UTC
+    private final AtomicLong clock = new AtomicLong(LocalDateTime.of(2026, 10, 12, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+    private final long start = clock.get();
+
+    private ConsumptionForecaster forecaster(long leadMillis) {
+        return new ConsumptionForecaster(0.5, leadMillis, ZoneOffset.UTC, clock::get);
+    }
+
+    // 'amount' of 'resource' in each of 'hours' hours, spread over the hour
+    private void use(ConsumptionForecaster f, Resource resource, long amount, int hours) {
+        for (int h = 0; h < hours; h++) {
+            for (int i = 0; i < amount; i++) {
+                f.record(resource, 1);
+                clock.addAndGet(HOUR / amount);
+            }
+            if (amount == 0) clock.addAndGet(HOUR);
+        }
+    }
+
+    // [Logic - Projection] A steady 10 sheets an hour leaves 50 sheets for five hours; the refill is due
+    // the lead time before that.
+    @Test
+    void testSteadyUsageProjectsDepletion() {
+        ConsumptionForecaster f = forecaster(2 * HOUR);
+        assertFalse(f.forecast(Resource.PAPER, 50).isKnown(), "No usage yet");
+        use(f, Resource.PAPER, 10, 24); // Every hour of the day has been seen once
+
+        Forecast paper = f.forecast(Resource.PAPER, 50);
+        assertEquals(10.0, paper.ratePerHour(), 1e-9);
+        assertEquals(clock.get() + 5 * HOUR, paper.emptyAt(), MINUTE);
+        assertEquals(paper.emptyAt() - 2 * HOUR, paper.refillBy());
+        assertTrue(f.describe(paper).startsWith("paper: 10.0 sheets/h, empty in ~5h 0m (refill by Tue 03:00)"), f.describe(paper));
+        assertFalse(f.forecast(Resource.INK, 50).runsOut(), "Nothing used: lasts beyond the horizon");
+    }
+
+    // [Logic - Hour Of Day] Usage concentrated in one hour of the day is expected at that hour again, and
+    // the latest day weighs more than the older ones (alpha 0.5).
+    @Test
+    void testRatesFollowTheHourOfDay() {
+        ConsumptionForecaster f = forecaster(0);
+        for (int day = 0; day < 2; day++) {
+            use(f, Resource.PAPER, 0, 9);
+            use(f, Resource.PAPER, day == 0 ? 20 : 40, 1); // 09:00-10:00: 20 on Monday, 40 on Tuesday
+            use(f, Resource.PAPER, 0, 14);
+        }
+        assertEquals(start + 48 * HOUR, clock.get());
+        clock.addAndGet(8 * HOUR); // Wednesday 08:00
+
+        Forecast paper = f.forecast(Resource.PAPER, 15);
+        assertEquals(0.0, paper.ratePerHour(), 1e-9, "Nothing is used at 08:00");
+        assertEquals(start + 57 * HOUR + 30 * MINUTE, paper.emptyAt(), MINUTE, "30 an hour from 09:00: 15 last half an hour");
+        assertTrue(f.forecast(Resource.PAPER, 31).emptyAt() >= start + 81 * HOUR, "31 sheets last until Thursday 09:00");
+    }
+
+    // [Logic - Cash] Deposits count against withdrawals: a vault that takes in what it pays out never runs
+    // dry, and only the net outflow drains it.
+    @Test
+    void testCashIsNetOfDeposits() {
+        ConsumptionForecaster f = forecaster(HOUR);
+        for (int h = 0; h < 24; h++) {
+            f.record(Resource.CASH, 500_00);
+            f.record(Resource.CASH, -400_00);
+            clock.addAndGet(HOUR);
+        }
+        Forecast cash = f.forecast(Resource.CASH, 1_000_00);
+        assertEquals(100_00, cash.ratePerHour(), 1e-9);
+        assertEquals(clock.get() + 10 * HOUR, cash.emptyAt(), MINUTE);
+
+        List<Forecast> due = f.refillsDue(10, 1_000, 1_000_00, 12 * HOUR);
+        assertEquals(1, due.size(), "Paper and ink are not used");
+        assertEquals(Resource.CASH, due.get(0).resource());
+        assertTrue(f.refillsDue(10, 1_000, 1_000_00, 8 * HOUR).isEmpty(), "Due in 9 hours, not within 8");
+    }
+
+    // [Logic - Status] The ATM records receipts and withdrawals, and the status screen shows the forecast.
+    @Test
+    void testAtmRecordsUsage() {
+        PrinterService printer = new PrinterService(100, 100);
+        List<Account> stored = new ArrayList<>(List.of(Account.ofCents("user0", "0000", 10_000_00)));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String fw) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 100; }
+            public int loadInkLevel() { return 100; }
+            public double loadCashLevel() { return 10_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        ATMMachineV2 atm = new ATMMachineV2(memoryService, printer, 0, new ReceiptPrinter(printer, 16, receipt -> {}));
+        atm.setForecaster(forecaster(HOUR));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(atm.withdraw("user0", 100));
+            clock.addAndGet(3 * MINUTE); // 20 withdrawals an hour, each with a receipt
+        }
+        atm.getReceiptPrinter().close();
+        List<String> lines = atm.describeForecasts();
+        assertEquals("paper: 20.0 sheets/h, empty in ~4h 0m (refill by Mon 04:00)", lines.get(0));
+        assertTrue(lines.get(2).startsWith("cash: €2000.00/h, empty in ~4h 0m"), lines.get(2));
+        assertEquals(3, atm.getRefillsDue(4 * HOUR).size());
+    }
+}
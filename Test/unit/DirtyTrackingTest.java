@@ -0,0 +1,84 @@
+package unit;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.PrinterService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies that the engine reports only what changed and that stores re-encode only that.
+public class DirtyTrackingTest {
+
+    private List<Account> stored;
+    private final List<Collection<Account>> changedPerSave = new ArrayList<>();
+    private final List<Integer> fieldsPerSave = new ArrayList<>();
+    private ATMMachineV2 atm;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setup() {
+        stored = new ArrayList<>();
+        for (int i = 0; i < 10; i++) stored.add(new Account("user" + i, "0000", 100.0));
+
+        // [Test Double] Records what each incremental save was told
+        IATMStateService recorder = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public void saveChanges(List<Account> a, Collection<Account> changed, int fields,
+                                    long cash, int p, int i, String f) {
+                changedPerSave.add(new ArrayList<>(changed));
+                fieldsPerSave.add(fields);
+            }
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 50; }
+            public int loadInkLevel() { return 50; }
+            public double loadCashLevel() { return 500.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        atm = new ATMMachineV2(recorder, new PrinterService(50, 50));
+    }
+
+    // [Logic - Engine] A deposit reports one account and the cash; a refill reports no account.
+    @Test
+    void testEngineReportsOnlyChanges() {
+        atm.deposit("user3", 20);
+        assertEquals(List.of(stored.get(3)), changedPerSave.get(0));
+        assertEquals(IATMStateService.CASH_CHANGED, fieldsPerSave.get(0));
+
+        atm.refillPaper(5);
+        assertTrue(changedPerSave.get(1).isEmpty(), "Nothing was marked since the last save");
+        assertEquals(IATMStateService.PAPER_CHANGED, fieldsPerSave.get(1));
+
+        atm.withdraw("user7", 10); // Withdrawal + receipt: one save with the account, cash, paper and ink
+        assertEquals(List.of(stored.get(7)), changedPerSave.get(2));
+        assertEquals(IATMStateService.CASH_CHANGED | IATMStateService.PAPER_CHANGED | IATMStateService.INK_CHANGED,
+                (int) fieldsPerSave.get(2));
+    }
+
+    // [Logic - Store] The JSON store re-encodes only the account that changed since its last save.
+    @Test
+    void testJsonStoreReencodesOnlyDirtyAccounts() throws IOException {
+        FileATMStateService service = new FileATMStateService(dir.resolve("atm_state.json").toString());
+        service.saveStateCents(stored, 500_00, 50, 50, "1.0.0");
+        assertEquals(10, service.getWriteStats().getLastAccounts());
+
+        stored.get(4).setBalanceCents(1);
+        service.saveChanges(stored, List.of(stored.get(4)), IATMStateService.CASH_CHANGED, 499_99, 50, 50, "1.0.0");
+        assertEquals(1, service.getWriteStats().getLastAccounts(), "Only the dirty account may be re-encoded");
+        assertEquals(Files.size(dir.resolve("atm_state.json")), service.getWriteStats().getLastBytes());
+        assertEquals(1, service.loadAccounts().get(4).getBalanceCents());
+    }
+}
@@ -0,0 +1,136 @@
+package unit;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import model.Receipt;
+import model.ReceiptMode;
+import model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.EReceiptSpool;
+import services.PrinterService;
+import services.ReceiptPrinter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the e-receipt spool format and the ATM's paper / e-receipt / no receipt choice.
+public class EReceiptSpoolTest {
+
+    private static final ZoneId UTC = ZoneOffset.UTC;
+
+    @TempDir
+    Path dir;
+
+    private static long at(int year, int month, int day, int hour, int minute, int second) {
+        return LocalDateTime.of(year, month, day, hour, minute, second).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // [SOLID - DIP] In-memory state service, like ReceiptPrinterTest's
+    private ATMMachineV2 atm(PrinterService printer, List<String> paper, EReceiptSpool spool) {
+        List<Account> stored = new ArrayList<>();
+        for (int i = 0; i < 4; i++) stored.add(Account.ofCents("user" + i, "0000", 1_000_00));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return printer.getPaperLevel(); }
+            public int loadInkLevel() { return printer.getInkLevel(); }
+            public double loadCashLevel() { return 100_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        return new ATMMachineV2(memoryService, printer, 0, new ReceiptPrinter(printer, 16, paper::add, spool));
+    }
+
+    // [Logic - Format] One line per receipt, in the history's entry format, in the file of the receipt's day.
+    @Test
+    void testLinesGoToTheFileOfTheirDay() throws IOException {
+        EReceiptSpool spool = new EReceiptSpool(dir, UTC);
+        spool.append(new Receipt("alice", at(2026, 10, 16, 14, 3, 7), TransactionType.WITHDRAW, 70_00, 930_00, "1x€50, 1x€20"));
+        spool.append(new Receipt("bob", at(2026, 10, 16, 23, 59, 59), TransactionType.DEPOSIT, 5, 1_000_05, null));
+        spool.append(new Receipt("alice", at(2026, 10, 17, 0, 0, 0), null, 0, 0, null));
+        spool.close();
+
+        assertEquals(List.of(
+                "2026-10-16 14:03:07 | alice | Withdraw: €70.00 | Balance: €930.00 | 1x€50, 1x€20",
+                "2026-10-16 23:59:59 | bob | Deposit: €0.05 | Balance: €1000.05"),
+                Files.readAllLines(spool.fileFor(LocalDate.of(2026, 10, 16)), StandardCharsets.UTF_8));
+        assertEquals(List.of("2026-10-17 00:00:00 | alice | Receipt"),
+                Files.readAllLines(spool.fileFor(LocalDate.of(2026, 10, 17)), StandardCharsets.UTF_8));
+        assertEquals(3, spool.getSpooled());
+    }
+
+    // [Logic - Encoding] Non-ASCII owners are written as UTF-8, and the local time follows the zone
+    // across a daylight-saving change; an owner longer than a pooled buffer is still written whole.
+    @Test
+    void testUtf8OwnersAndZoneOffsets() throws IOException {
+        EReceiptSpool spool = new EReceiptSpool(dir, ZoneId.of("Europe/Brussels"));
+        long beforeSwitch = at(2026, 10, 25, 0, 30, 0); // 02:30 CEST
+        long afterSwitch = at(2026, 10, 25, 1, 30, 0);  // 02:30 CET, one hour later
+        spool.append(new Receipt("Zoë 😀", beforeSwitch, TransactionType.DEPOSIT, 10_00, 10_00, null));
+        spool.append(new Receipt("Zoë 😀", afterSwitch, TransactionType.DEPOSIT, 10_00, 20_00, null));
+        String longOwner = "ß".repeat(400);
+        spool.append(new Receipt(longOwner, afterSwitch, null, 0, 0, null));
+        spool.close();
+
+        List<String> lines = Files.readAllLines(spool.fileFor(LocalDate.of(2026, 10, 25)), StandardCharsets.UTF_8);
+        assertEquals("2026-10-25 02:30:00 | Zoë 😀 | Deposit: €10.00 | Balance: €10.00", lines.get(0));
+        assertEquals("2026-10-25 02:30:00 | Zoë 😀 | Deposit: €10.00 | Balance: €20.00", lines.get(1));
+        assertEquals("2026-10-25 02:30:00 | " + longOwner + " | Receipt", lines.get(2));
+    }
+
+    // [Logic - Out Of Service] With e-receipts an empty printer does not stop the ATM: the customer's
+    // paper receipt becomes an e-receipt, and a customer can opt out of a receipt altogether.
+    @Test
+    void testEmptyPrinterFallsBackToEReceipts() throws IOException {
+        EReceiptSpool spool = new EReceiptSpool(dir);
+        List<String> paper = new CopyOnWriteArrayList<>();
+        PrinterService printer = new PrinterService(1, 5);
+        ATMMachineV2 atm = atm(printer, paper, spool);
+        assertTrue(atm.hasEReceipts());
+
+        assertTrue(atm.withdraw("user1", 10, ReceiptMode.PAPER));
+        assertEquals(0, printer.getPaperLevel());
+        assertFalse(atm.isOutOfService(), "No paper, but e-receipts");
+        assertTrue(atm.withdraw("user2", 20, ReceiptMode.PAPER), "Printer depleted: sent as an e-receipt");
+        assertTrue(atm.withdraw("user3", 50, ReceiptMode.NONE));
+        atm.deposit("user3", 15);
+        atm.printReceipt("user3", ReceiptMode.ELECTRONIC);
+        atm.getReceiptPrinter().close();
+        spool.close();
+
+        assertEquals(1, paper.size());
+        assertEquals(4, printer.getInkLevel(), "One ink unit, for the one paper receipt");
+        assertEquals(2, atm.getReceiptPrinter().getSpooled());
+        List<String> lines = new ArrayList<>();
+        try (var files = Files.list(dir)) { // One file, or two when the test runs across midnight
+            for (Path f : files.sorted().toList()) lines.addAll(Files.readAllLines(f, StandardCharsets.UTF_8));
+        }
+        assertEquals(2, lines.size(), lines.toString());
+        assertTrue(lines.get(0).endsWith("| user2 | Withdraw: €20.00 | Balance: €980.00 | 1x€20"), lines.get(0));
+        assertTrue(lines.get(1).endsWith("| user3 | Deposit: €15.00 | Balance: €965.00"), lines.get(1));
+    }
+
+    // [Logic - Paper Only] Without a spool, the ATM is out of service without paper, as before.
+    @Test
+    void testWithoutSpoolPaperIsRequired() {
+        PrinterService printer = new PrinterService(1, 5);
+        ATMMachineV2 atm = atm(printer, new CopyOnWriteArrayList<>(), null);
+        assertFalse(atm.hasEReceipts());
+        assertTrue(atm.withdraw("user1", 10, ReceiptMode.ELECTRONIC), "Printed on paper: there is no spool");
+        assertTrue(atm.isOutOfService());
+        atm.getReceiptPrinter().close();
+        assertEquals(1, atm.getReceiptPrinter().getPrinted());
+    }
+}
@@ -1,11 +1,13 @@
 package unit;
 
 import model.Account;
+import model.StateSnapshot;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import services.FileATMStateService;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -20,7 +22,9 @@ public class FileATMStateServiceTest {
 
     @AfterEach
     void cleanup() throws IOException {
+        service.close();
         Files.deleteIfExists(Paths.get(PATH));
+        Files.deleteIfExists(Paths.get(PATH + ".history"));
     }
 
     @Test
@@ -36,4 +40,44 @@ public class FileATMStateServiceTest {
         boolean hasNgaa = loaded.stream().anyMatch(a -> a.getOwner().equals("ngaa"));
         assertTrue(hasNgaa, "PersistenceService must auto-create 'ngaa' if missing during save");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSnapshotRoundTripsAllAccounts() {
+        List<Account> accounts = new ArrayList<>();
+        Account quoted = Account.ofCents("O\"Brien \\ Co", "1234", 12_345);
+        quoted.addTransaction("Deposit", 20);
+        accounts.add(quoted);
+        accounts.add(Account.ofCents("ngaa", "2006", 150_00));
+        accounts.add(Account.ofCents("Zed", "0000", 0));
+        service.saveStateCents(accounts, 2040_00, 7, 3, "1.2.3");
+
+        StateSnapshot loaded = service.loadSnapshot();
+        assertEquals(3, loaded.accounts().size(), "Every account must be read back, not just the first");
+        assertEquals("O\"Brien \\ Co", loaded.accounts().get(0).getOwner());
+        assertEquals(12_345, loaded.accounts().get(0).getBalanceCents());
+        assertEquals(quoted.getTransactions(), loaded.accounts().get(0).getTransactions());
+        assertEquals(2040_00, loaded.cashCents());
+        assertEquals(7, loaded.paper());
+        assertEquals(3, loaded.ink());
+        assertEquals("1.2.3", loaded.firmware());
+        assertEquals(7, service.loadPaperLevel(), "Header-only read must agree with the full read");
+    }
+
+    @Test
+    void testLegacyFileShapeIsReadInOnePass() throws IOException {
+        // Layout written by earlier versions: double cash, unknown extra key, spaced account lines
+        String legacy = "{\n  \"cash\": 1.0E7,\n  \"paper\": 0,\n  \"ink\": 0,\n  \"firmware\":\"1.0.0\",\n"
+                + "  \"extra\": {\"nested\": [1, 2, {\"x\": \"]\"}]},\n  \"accounts\": [\n"
+                + "    {\"owner\":\"Charlie\", \"pin\":\"0000\", \"balance\":50.00, \"transactions\":[]},\n"
+                + "    {\"owner\":\"ngaa\", \"pin\":\"2006\", \"balance\":100.0, \"transactions\":[\"a\",\"b\"]}\n"
+                + "  ]\n}";
+        Files.createDirectories(Paths.get("data"));
+        Files.write(Paths.get(PATH), legacy.getBytes(StandardCharsets.UTF_8));
+
+        StateSnapshot loaded = service.loadSnapshot();
+        assertEquals(2, loaded.accounts().size());
+        assertEquals(5000, loaded.accounts().get(0).getBalanceCents());
+        assertEquals(List.of("a", "b"), loaded.accounts().get(1).getTransactions());
+        assertEquals(1_000_000_000L, loaded.cashCents());
+    }
+}
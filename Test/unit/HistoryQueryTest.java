@@ -0,0 +1,134 @@
+package unit;
+
+import interfaces.IHistoryArchive;
+import model.Account;
+import model.HistoryBlock;
+import model.HistoryRetention;
+import model.TransactionRecords;
+import model.TransactionSummary;
+import model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.HistoryLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies time-range and type queries, totals and the mini-statement over account history.
+public class HistoryQueryTest {
+
+    @TempDir
+    Path dir;
+
+    private static final long MINUTE = 60_000L;
+
+    // 500 entries one minute apart, alternating deposits and withdrawals
+    private static Account withHistory() {
+        Account a = Account.ofCents("zoe", "0000", 0);
+        for (int i = 0; i < 500; i++) {
+            a.restoreTransaction(i * MINUTE, i % 2 == 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAW, i, i * 10L);
+        }
+        return a;
+    }
+
+    // [Logic - Range] A window returns exactly its entries, across index blocks and with a type filter.
+    @Test
+    void testRangeAndTypeQueries() {
+        Account zoe = withHistory();
+
+        TransactionRecords window = zoe.findTransactions(100 * MINUTE, 300 * MINUTE, null);
+        assertEquals(200, window.size(), "From is inclusive, to is exclusive");
+        assertEquals(100, window.getAmountCents(0));
+        assertEquals(299, window.getAmountCents(199));
+
+        TransactionRecords deposits = zoe.findTransactions(100 * MINUTE, 300 * MINUTE, TransactionType.DEPOSIT);
+        assertEquals(100, deposits.size());
+        for (int i = 0; i < deposits.size(); i++) assertEquals(TransactionType.DEPOSIT, deposits.getType(i));
+
+        assertEquals(0, zoe.findTransactions(-10 * MINUTE, 0, null).size());
+        assertEquals(0, zoe.findTransactions(500 * MINUTE, Long.MAX_VALUE, null).size());
+
+        zoe.restoreTransaction(1000 * MINUTE, TransactionType.DEPOSIT, 7, 0); // Added after the index was built
+        assertEquals(1, zoe.findTransactions(900 * MINUTE, Long.MAX_VALUE, null).size());
+    }
+
+    // [Logic - Archive] Queries on a loaded account read the archived entries they need.
+    @Test
+    void testQueriesReadArchivedHistory() {
+        try (FileATMStateService service = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            service.saveStateCents(new ArrayList<>(List.of(withHistory())), 500_00, 4, 4, "1.0.0");
+        }
+        try (FileATMStateService reopened = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            Account loaded = reopened.loadSnapshot().accounts().get(0);
+
+            TransactionSummary summary = loaded.summarize(0, 10 * MINUTE);
+            assertEquals(5, summary.deposits());
+            assertEquals(0 + 2 + 4 + 6 + 8, summary.depositedCents());
+            assertEquals(5, summary.withdrawals());
+            assertEquals(1 + 3 + 5 + 7 + 9, summary.withdrawnCents());
+            assertEquals(-5, summary.netCents());
+
+            TransactionRecords mini = loaded.getMiniStatement(3);
+            assertEquals(3, mini.size());
+            assertEquals(497, mini.getAmountCents(0));
+            assertEquals(499, mini.getAmountCents(2));
+        }
+    }
+
+    // [Logic - Legacy] Entries stored as text in the usual layout are queryable; other text is kept as is.
+    @Test
+    void testLegacyTextEntriesAreParsed() {
+        long millis = LocalDateTime.of(2026, 3, 4, 5, 6, 7).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Account old = Account.ofCents("old", "0000", 0);
+        old.restoreTransaction("2026-03-04 05:06:07 | Deposit: €20.00 | Balance: €120.50");
+        old.restoreTransaction("Bonus applied");
+
+        TransactionRecords found = old.findTransactions(millis, millis + 1, TransactionType.DEPOSIT);
+        assertEquals(1, found.size());
+        assertEquals(20_00, found.getAmountCents(0));
+        assertEquals(120_50, found.getBalanceCents(0));
+        assertEquals(List.of("2026-03-04 05:06:07 | Deposit: €20.00 | Balance: €120.50", "Bonus applied"),
+                old.getTransactions(), "Displayed text is unchanged");
+        assertEquals(1, TransactionSummary.of(old.findTransactions(Long.MIN_VALUE, Long.MAX_VALUE, null)).other());
+    }
+
+    // [Logic - Index Cost] The index comes from segment headers: a first query on a loaded account reads only
+    // the segments around its window, not the whole archived history.
+    @Test
+    void testFirstQueryReadsOnlyMatchingSegments() throws IOException {
+        TransactionRecords entries = new TransactionRecords();
+        for (int i = 0; i < 10_000; i++) entries.add(i * MINUTE, TransactionType.DEPOSIT, i, i * 10L);
+        try (HistoryLog log = new HistoryLog(dir.resolve("h.history"), new HistoryRetention(0, 0, 256))) {
+            long head = log.appendAll(-1, 0, -1, entries);
+            int[] entriesRead = {0};
+            IHistoryArchive counting = new IHistoryArchive() {
+                @Override
+                public TransactionRecords read(long h, int skip, int max) {
+                    TransactionRecords page = log.read(h, skip, max);
+                    entriesRead[0] += page.size();
+                    return page;
+                }
+
+                @Override
+                public List<HistoryBlock> timeline(long h) { return log.timeline(h); }
+
+                @Override
+                public HistoryRetention retention() { return log.retention(); }
+            };
+            Account loaded = Account.ofCents("zoe", "0000", 0);
+            loaded.attachArchive(counting, head, 10_000);
+
+            TransactionRecords window = loaded.findTransactions(5_000 * MINUTE, 5_060 * MINUTE, null);
+            assertEquals(60, window.size());
+            assertEquals(5_000, window.getAmountCents(0));
+            assertTrue(entriesRead[0] <= 2 * 256, entriesRead[0] + " entries read for a one-hour window");
+        }
+    }
+}
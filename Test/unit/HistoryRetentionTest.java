@@ -0,0 +1,145 @@
+package unit;
+
+import model.Account;
+import model.HistoryRetention;
+import model.TransactionRecords;
+import model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.HistoryLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the history tiers: hot entries in memory, compressed segments on disk.
+public class HistoryRetentionTest {
+
+    @TempDir
+    Path dir;
+
+    private static TransactionRecords entries(int from, int count) {
+        TransactionRecords records = new TransactionRecords();
+        for (int i = from; i < from + count; i++) records.add(1_700_000_000_000L + i * 60_000L, TransactionType.DEPOSIT, i, i * 10L);
+        return records;
+    }
+
+    // [Logic - Segments] Complete blocks are compressed, and walks across them return every entry in order.
+    @Test
+    void testSegmentsKeepEveryEntryReadable() throws IOException {
+        try (HistoryLog log = new HistoryLog(dir.resolve("h.history"), new HistoryRetention(0, 0, 8))) {
+            long head = -1;
+            for (int from = 0; from < 30; from += 3) head = log.appendAll(-1, from, head, entries(from, 3)); // Saves of 3
+            assertEquals(3, log.getSegmentsWritten(), "30 entries hold three complete blocks of 8");
+
+            TransactionRecords all = log.read(head, 0, 100);
+            assertEquals(30, all.size());
+            for (int i = 0; i < 30; i++) assertEquals(29 - i, all.getAmountCents(i), "Newest first, nothing lost");
+
+            TransactionRecords deep = log.read(head, 20, 4); // Skips one segment whole and starts inside the next
+            assertEquals(List.of(9L, 8L, 7L, 6L), List.of(deep.getAmountCents(0), deep.getAmountCents(1),
+                    deep.getAmountCents(2), deep.getAmountCents(3)));
+        }
+    }
+
+    // [Logic - Hot Tier] The newest entries stay in memory after a save; older pages come from the archive.
+    @Test
+    void testNewestEntriesStayHot() throws IOException {
+        Account zoe = Account.ofCents("zoe", "0000", 0);
+        for (int i = 0; i < 20; i++) zoe.addTransactionCents(TransactionType.DEPOSIT, 100);
+        List<String> newest = zoe.getTransactionPage(0, 5);
+
+        Path file = dir.resolve("atm_state.json");
+        try (FileATMStateService service = new FileATMStateService(file.toString(), new HistoryRetention(5, 0, 0))) {
+            service.saveStateCents(new ArrayList<>(List.of(zoe)), 500_00, 4, 4, "1.0.0");
+        }
+        assertEquals(20, zoe.getArchivedCount());
+        assertEquals(5, zoe.getInMemoryCount(), "Only the hot entries stay in memory");
+
+        Files.delete(dir.resolve("atm_state.json.history")); // The archive is gone: only memory can answer
+        assertEquals(newest, zoe.getTransactionPage(0, 5));
+        assertThrows(UncheckedIOException.class, () -> zoe.getTransactionPage(1, 5));
+    }
+
+    // [Logic - Hot Days] Entries of the last D days stay hot however many there are; older ones leave.
+    @Test
+    void testRecentDaysStayHot() throws IOException {
+        long now = System.currentTimeMillis();
+        Account zoe = Account.ofCents("zoe", "0000", 0);
+        for (int i = 0; i < 6; i++) zoe.restoreTransaction(now - 60L * 86_400_000L, TransactionType.DEPOSIT, 100, 100);
+        for (int i = 0; i < 4; i++) zoe.restoreTransaction(now - 86_400_000L, TransactionType.WITHDRAW, 100, 0);
+
+        try (FileATMStateService service = new FileATMStateService(dir.resolve("atm_state.json").toString(),
+                new HistoryRetention(1, 30, 0))) {
+            service.saveStateCents(new ArrayList<>(List.of(zoe)), 500_00, 4, 4, "1.0.0");
+        }
+        assertEquals(4, zoe.getInMemoryCount(), "The 4 entries of the last 30 days stay, the 6 older ones leave");
+        assertEquals(10, zoe.getTransactions().size());
+    }
+
+    // One deposit per account per save, as a running ATM writes them; returns the history log's size
+    private long saveOneByOne(FileATMStateService service, List<Account> list, int saves) {
+        for (int t = 0; t < saves; t++) {
+            for (Account a : list) a.addTransactionCents(TransactionType.DEPOSIT, t);
+            service.saveStateCents(list, 500_00, 4, 4, "1.0.0");
+        }
+        return service.getHistorySizeBytes();
+    }
+
+    // [Logic - Compaction] Single entries that segments replaced are dropped: the log ends up smaller than
+    // the uncompressed one, only the newest generation is left on disk, and every entry survives a restart.
+    @Test
+    void testCompactionDropsReplacedEntries() throws IOException {
+        List<Account> plain = new ArrayList<>(List.of(Account.ofCents("ann", "0000", 0), Account.ofCents("bob", "1111", 0)));
+        long uncompressed;
+        try (FileATMStateService service = new FileATMStateService(dir.resolve("plain.json").toString(),
+                new HistoryRetention(0, 0, 0))) {
+            uncompressed = saveOneByOne(service, plain, 100);
+        }
+
+        Path file = dir.resolve("atm_state.json");
+        List<Account> list = new ArrayList<>(List.of(Account.ofCents("ann", "0000", 0), Account.ofCents("bob", "1111", 0)));
+        long segmented;
+        try (FileATMStateService service = new FileATMStateService(file.toString(), new HistoryRetention(0, 0, 8))) {
+            segmented = saveOneByOne(service, list, 100);
+            assertTrue(service.getHistoryCompactions() > 0, "Compacted at least once");
+        }
+        assertTrue(segmented < uncompressed, segmented + " bytes with segments vs " + uncompressed + " without");
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.filter(p -> p.getFileName().toString().startsWith("atm_state.json.history")).count(),
+                    "Older generations are deleted");
+        }
+
+        try (FileATMStateService reopened = new FileATMStateService(file.toString(), new HistoryRetention(0, 0, 8))) {
+            Account bob = reopened.loadAccounts().stream().filter(a -> a.getOwner().equals("bob")).findFirst().orElseThrow();
+            TransactionRecords all = bob.getTransactionRecords(0, bob.getTransactionCount());
+            assertEquals(100, all.size());
+            for (int i = 0; i < 100; i++) assertEquals(i, all.getAmountCents(i), "Oldest first, nothing lost");
+        }
+    }
+
+    // [Logic - Generations] A head from before a compaction still reads, and appending after it carries its
+    // chain into the new generation, so the old file can go.
+    @Test
+    void testOldHeadsSurviveCompaction() throws IOException {
+        Path file = dir.resolve("h.history");
+        try (HistoryLog log = new HistoryLog(file, new HistoryRetention(0, 0, 8))) {
+            long head = log.appendAll(-1, 0, -1, entries(0, 20));
+            log.startCompaction();
+            assertEquals(20, log.read(head, 0, 100).size(), "Old generation still readable");
+
+            long moved = log.appendAll(-1, 20, head, entries(20, 4));
+            log.finishCompaction();
+            assertFalse(Files.exists(file), "Generation 0 deleted");
+            TransactionRecords all = log.read(moved, 0, 100);
+            assertEquals(24, all.size());
+            for (int i = 0; i < 24; i++) assertEquals(23 - i, all.getAmountCents(i));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package unit;
+
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.JournaledATMStateService;
+import services.StateJournal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies that journaled changes survive a restart without rewriting the snapshot.
+public class JournaledATMStateServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private JournaledATMStateService open(StateJournal.Durability durability) {
+        return new JournaledATMStateService(
+                new FileATMStateService(dir.resolve("atm_state.json").toString()),
+                new StateJournal(dir.resolve("atm_state.journal"), durability));
+    }
+
+    // [Logic - Recovery] Balances, transactions and machine levels come back from snapshot + journal.
+    @Test
+    void testReplayRestoresChanges() throws IOException {
+        JournaledATMStateService service = open(StateJournal.Durability.PER_RECORD);
+        List<Account> accounts = service.loadAccounts(); // Seeds the snapshot with the preset account
+        long snapshotSize = Files.size(dir.resolve("atm_state.json"));
+
+        Account ngaa = accounts.get(0);
+        ngaa.setBalanceCents(ngaa.getBalanceCents() + 2500);
+        ngaa.addTransaction("Deposit", 25);
+        Account zoe = Account.ofCents("Zoe", "9999", 1234);
+        accounts.add(zoe);
+        service.saveStateCents(accounts, 777_00, 7, 6, "2.0.0");
+        service.close();
+
+        assertEquals(snapshotSize, Files.size(dir.resolve("atm_state.json")), "Saves must not rewrite the snapshot");
+
+        JournaledATMStateService reopened = open(StateJournal.Durability.PER_RECORD);
+        List<Account> loaded = reopened.loadAccounts();
+        assertEquals(2, loaded.size());
+        assertEquals(ngaa.getBalanceCents(), loaded.get(0).getBalanceCents());
+        assertEquals(ngaa.getTransactions(), loaded.get(0).getTransactions());
+        assertEquals(1234, loaded.get(1).getBalanceCents());
+        assertEquals(777_00, reopened.loadCashCents());
+        assertEquals(7, reopened.loadPaperLevel());
+        assertEquals(6, reopened.loadInkLevel());
+        assertEquals("2.0.0", reopened.loadFirmwareVersion());
+        reopened.close();
+    }
+
+    // [Logic - Incremental] An unchanged save appends nothing; one change appends one record.
+    @Test
+    void testOnlyChangesAreAppended() throws IOException {
+        JournaledATMStateService service = open(StateJournal.Durability.PER_GROUP);
+        List<Account> accounts = service.loadAccounts();
+        service.saveStateCents(accounts, service.loadCashCents(), service.loadPaperLevel(),
+                service.loadInkLevel(), service.loadFirmwareVersion());
+        assertEquals(0, service.getJournalRecordCount());
+
+        accounts.get(0).setBalanceCents(1);
+        service.saveStateCents(accounts, service.loadCashCents(), service.loadPaperLevel(),
+                service.loadInkLevel(), service.loadFirmwareVersion());
+        assertEquals(1, service.getJournalRecordCount());
+        service.close();
+    }
+
+    // [Logic - Dirty Tracking] saveChanges looks only at the reported accounts; unreported ones wait.
+    @Test
+    void testSaveChangesAppendsOnlyReportedAccounts() throws IOException {
+        JournaledATMStateService service = open(StateJournal.Durability.PER_GROUP);
+        List<Account> accounts = service.loadAccounts();
+        Account zoe = Account.ofCents("Zoe", "9999", 1000);
+        accounts.add(zoe);
+        service.saveChanges(accounts, List.of(zoe), 0, 0, 0, 0, null);
+        assertEquals(1, service.getJournalRecordCount(), "New account only; machine fields were not reported");
+
+        Account ngaa = accounts.get(0);
+        ngaa.setBalanceCents(ngaa.getBalanceCents() + 1);
+        zoe.setBalanceCents(2000);
+        service.saveChanges(accounts, List.of(zoe), 0, 0, 0, 0, null);
+        assertEquals(2, service.getJournalRecordCount());
+        assertEquals(1, service.getWriteStats().getLastAccounts());
+        assertTrue(service.getWriteStats().getLastBytes() > 0);
+        service.close();
+    }
+
+    // [Logic - Compaction] A snapshot absorbs the journal; later changes still replay on top of it.
+    @Test
+    void testCompactionTruncatesJournal() throws IOException {
+        JournaledATMStateService service = open(StateJournal.Durability.PER_GROUP);
+        List<Account> accounts = service.loadAccounts();
+        Account ngaa = accounts.get(0);
+        for (int i = 1; i <= 5; i++) {
+            ngaa.setBalanceCents(ngaa.getBalanceCents() + 100);
+            ngaa.addTransaction("Deposit", 1);
+            service.saveStateCents(accounts, 50_00 + i, 9, 9, "1.2.3");
+        }
+        assertTrue(service.getJournalRecordCount() > 0);
+
+        assertTrue(service.compact());
+        assertEquals(0, service.getJournalRecordCount(), "Compaction must leave an empty journal");
+        assertTrue(service.getSnapshotAgeMillis() < 60_000);
+
+        ngaa.setBalanceCents(ngaa.getBalanceCents() + 100); // Change after the snapshot goes to the new journal
+        ngaa.addTransaction("Deposit", 1);
+        service.saveStateCents(accounts, 99_00, 9, 9, "1.2.3");
+        service.close();
+
+        JournaledATMStateService reopened = open(StateJournal.Durability.PER_GROUP);
+        Account loaded = reopened.loadAccounts().get(0);
+        assertEquals(ngaa.getBalanceCents(), loaded.getBalanceCents());
+        assertEquals(6, loaded.getTransactions().size(), "No entry may be lost or duplicated");
+        assertEquals(99_00, reopened.loadCashCents());
+        assertEquals(3, reopened.getJournalRecordCount(), "A + T + M records since the snapshot");
+        reopened.close();
+    }
+
+    // [Logic - Crash Safety] A torn last record (no newline) is ignored on replay.
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        JournaledATMStateService service = open(StateJournal.Durability.PER_RECORD);
+        List<Account> accounts = service.loadAccounts();
+        accounts.get(0).setBalanceCents(4200);
+        service.saveStateCents(accounts, 100_00, 5, 5, "1.0.0");
+        service.close();
+
+        Files.write(dir.resolve("atm_state.journal"), "A\tngaa\t2006\t99".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        JournaledATMStateService reopened = open(StateJournal.Durability.PER_RECORD);
+        assertEquals(4200, reopened.loadAccounts().get(0).getBalanceCents());
+        reopened.close();
+    }
+
+    // [Logic - Crash Safety] The torn tail is cut off on reopen, so the next acknowledged record is not
+    // appended onto it and survives the following restart.
+    @Test
+    void testRecordAfterTornTailSurvivesRestart() throws IOException {
+        Path file = dir.resolve("journal");
+        StateJournal journal = new StateJournal(file, StateJournal.Durability.PER_RECORD);
+        journal.append(List.<String[]>of(new String[]{"A", "alice", "1234", "100"}));
+        journal.close();
+        Files.write(file, "A\tbob\t12".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // Crash
+
+        List<String> replayed = new ArrayList<>();
+        StateJournal reopened = new StateJournal(file, StateJournal.Durability.PER_RECORD);
+        assertEquals(1, reopened.replay(r -> replayed.add(String.join("|", r))));
+        reopened.append(List.<String[]>of(new String[]{"A", "carol", "5678", "200"})); // Acknowledged
+        reopened.close();
+
+        replayed.clear();
+        StateJournal restarted = new StateJournal(file, StateJournal.Durability.PER_RECORD);
+        assertEquals(2, restarted.replay(r -> replayed.add(String.join("|", r))));
+        assertEquals(List.of("A|alice|1234|100", "A|carol|5678|200"), replayed);
+        restarted.close();
+    }
+
+    // [Logic - Crash Safety] A tail torn inside a multi-byte character ("€") is dropped, not a failed start.
+    @Test
+    void testTailTornInsideCharacterIsDropped() throws IOException {
+        Path file = dir.resolve("journal");
+        StateJournal journal = new StateJournal(file, StateJournal.Durability.PER_RECORD);
+        journal.append(List.<String[]>of(new String[]{"T", "alice", "Deposit: €5.00"}));
+        journal.close();
+        byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+        Files.write(file, new byte[]{'T', '\t', 'b', '\t', euro[0], euro[1]}, StandardOpenOption.APPEND);
+        long complete = Files.size(file) - 6;
+
+        List<String> replayed = new ArrayList<>();
+        StateJournal reopened = new StateJournal(file, StateJournal.Durability.PER_RECORD);
+        assertEquals(1, reopened.replay(r -> replayed.add(String.join("|", r))));
+        assertEquals(List.of("T|alice|Deposit: €5.00"), replayed);
+        assertEquals(complete, Files.size(file), "Truncated to the last complete record");
+        reopened.close();
+    }
+
+    // [Logic - Failure] A save whose append fails is retried with the next save, even though the engine
+    // has already cleared its dirty marks and reports other accounts next time.
+    @Test
+    void testFailedAppendIsRetriedWithNextSave() throws IOException {
+        boolean[] failNext = {false};
+        StateJournal flaky = new StateJournal(dir.resolve("atm_state.journal"), StateJournal.Durability.PER_GROUP) {
+            @Override
+            public synchronized long append(List<String[]> records) throws IOException {
+                if (failNext[0]) {
+                    failNext[0] = false;
+                    throw new IOException("Disk full");
+                }
+                return super.append(records);
+            }
+        };
+        JournaledATMStateService service = new JournaledATMStateService(
+                new FileATMStateService(dir.resolve("atm_state.json").toString()), flaky);
+        List<Account> accounts = service.loadAccounts();
+        Account zoe = Account.ofCents("Zoe", "9999", 1000);
+        Account max = Account.ofCents("Max", "1111", 500);
+        accounts.add(zoe);
+        accounts.add(max);
+
+        failNext[0] = true;
+        service.saveChanges(accounts, List.of(zoe), IATMStateService.CASH_CHANGED, 321_00, 4, 4, "1.0.0");
+        assertEquals(0, service.getJournalRecordCount(), "Nothing appended");
+        service.saveChanges(accounts, List.of(max), 0, 321_00, 4, 4, "1.0.0"); // Zoe is no longer reported
+        service.close();
+
+        JournaledATMStateService reopened = open(StateJournal.Durability.PER_GROUP);
+        List<Account> loaded = reopened.loadAccounts();
+        assertTrue(loaded.stream().anyMatch(a -> a.getOwner().equals("Zoe") && a.getBalanceCents() == 1000), "Retried");
+        assertTrue(loaded.stream().anyMatch(a -> a.getOwner().equals("Max")));
+        assertEquals(321_00, reopened.loadCashCents(), "The failed save's machine change too");
+        reopened.close();
+    }
+
+    // [Logic - Failure] A write that fails partway through leaves no fragment: the file is cut back to where
+    // the append started, so the next append starts on a line of its own and nothing is written twice.
+    @Test
+    void testAppendFailingPartwayLeavesNoFragment() throws IOException {
+        Path file = dir.resolve("journal");
+        PartialWriteJournal journal = new PartialWriteJournal(file, StateJournal.Durability.PER_RECORD);
+        journal.append(List.<String[]>of(new String[]{"A", "alice", "1234", "100"}));
+        long before = Files.size(file);
+        journal.failAfter(1);
+
+        List<String[]> batch = List.of(new String[]{"A", "bob", "5678", "200"}, new String[]{"A", "carol", "9012", "300"});
+        assertThrows(IOException.class, () -> journal.append(batch)); // bob is forced, carol is torn
+        assertEquals(before, Files.size(file), "Cut back to before the batch");
+        assertEquals(1, journal.getRecordCount());
+        journal.append(batch); // The retry
+        journal.close();
+
+        List<String> replayed = new ArrayList<>();
+        StateJournal reopened = new StateJournal(file, StateJournal.Durability.PER_RECORD);
+        assertEquals(3, reopened.replay(r -> replayed.add(String.join("|", r))));
+        assertEquals(List.of("A|alice|1234|100", "A|bob|5678|200", "A|carol|9012|300"), replayed);
+        reopened.close();
+    }
+
+    // Once armed with failAfter(n), lets n more writes through, then writes half of the next buffer and fails
+    private static class PartialWriteJournal extends StateJournal {
+        private int writesLeft = -1; // -1: never fails
+
+        PartialWriteJournal(Path path, Durability durability) {
+            super(path, durability);
+        }
+
+        void failAfter(int writes) { writesLeft = writes; }
+
+        @Override
+        protected int writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+            if (writesLeft < 0 || writesLeft-- > 0) return super.writeFully(ch, buf);
+            buf.limit(buf.position() + buf.remaining() / 2);
+            ch.write(buf);
+            throw new IOException("Disk full");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package unit;
+
+import core.ATMMachineV2;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.MappedAccountStore;
+import services.PrinterService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies per-owner loading from the mapped store and the ATM's bounded account cache.
+public class LazyAccountsTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedAccountStore open() {
+        return new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+    }
+
+    private void seed(int accounts) {
+        MappedAccountStore store = open();
+        List<Account> list = store.loadAccounts();
+        for (int i = 0; i < accounts; i++) list.add(Account.ofCents("user" + i, "0000", i * 100L));
+        store.saveStateCents(list, 5000_00, 50, 50, "1.0.0");
+        store.close();
+    }
+
+    // [Logic - Directory] One account is found by owner, in any case; the index is rebuilt if it is lost.
+    @Test
+    void testLoadAccountByOwner() throws IOException {
+        seed(3000); // More records than the index's initial table holds at half load
+        MappedAccountStore store = open();
+        assertEquals(2999_00, store.loadAccount("USER2999").getBalanceCents());
+        assertNull(store.loadAccount("nobody"));
+        store.close();
+
+        Files.delete(dir.resolve("atm_state.accounts.index"));
+        MappedAccountStore rebuilt = open();
+        assertEquals(1234_00, rebuilt.loadAccount("user1234").getBalanceCents());
+        assertEquals(3001, rebuilt.getAccountCount(), "3000 accounts plus the seeded preset");
+        rebuilt.close();
+    }
+
+    // [Logic - Lazy Startup] No account is loaded until it is used, and the cache stays bounded.
+    @Test
+    void testAccountsMaterializeOnFirstUse() {
+        seed(50);
+        MappedAccountStore store = open();
+        ATMMachineV2 atm = new ATMMachineV2(store, new PrinterService(50, 50), 4);
+        assertTrue(atm.isLazy());
+        assertEquals(0, atm.getLoadedAccountCount(), "Startup reads the machine state only");
+        assertEquals(5000_00, atm.getCashCents());
+
+        for (int i = 0; i < 20; i++) atm.deposit("user" + i, 5);
+        assertTrue(atm.getLoadedAccountCount() <= 5, "At most one account above the capacity until the next trim");
+        assertEquals(3_00 + 5_00, atm.checkBalanceCents("user3"), "An evicted account is read back with its deposit");
+        store.close();
+
+        MappedAccountStore reopened = open();
+        assertEquals(19_00 + 5_00, reopened.loadAccount("user19").getBalanceCents());
+        reopened.close();
+    }
+
+    // [Logic - Identity] An account evicted while a session holds it comes back as the same object.
+    @Test
+    void testEvictedAccountInUseKeepsItsIdentity() {
+        seed(10);
+        MappedAccountStore store = open();
+        ATMMachineV2 atm = new ATMMachineV2(store, new PrinterService(50, 50), 2);
+        Account held = atm.authenticateUser("user1", "0000");
+        for (int i = 2; i < 10; i++) atm.checkBalanceCents("user" + i); // Pushes user1 out of the cache
+
+        atm.deposit("user1", 10);
+        assertEquals(1_00 + 10_00, held.getBalanceCents(), "The session's object sees its own deposit");
+        atm.logout();
+        store.close();
+    }
+}
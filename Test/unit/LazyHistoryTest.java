@@ -0,0 +1,126 @@
+package unit;
+
+import model.Account;
+import model.StateSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.JournaledATMStateService;
+import services.MappedAccountStore;
+import services.StateJournal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies that history stays on disk after a load and is read one page at a time.
+public class LazyHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    private static Account withHistory(String owner, int entries) {
+        Account a = Account.ofCents(owner, "0000", 0);
+        for (int i = 1; i <= entries; i++) a.addTransactionCents("Deposit", i * 100L);
+        return a;
+    }
+
+    // [Logic - Paging] A loaded account holds no entries in memory; pages come back newest first.
+    @Test
+    void testJsonStoreLoadsHistoryOnDemand() throws IOException {
+        Account zoe = withHistory("zoe", 25);
+        List<String> expected = zoe.getTransactions();
+        try (FileATMStateService service = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            service.saveStateCents(new ArrayList<>(List.of(zoe)), 500_00, 4, 4, "1.0.0");
+            assertEquals(25, zoe.getArchivedCount(), "Saved entries leave memory");
+        }
+        assertFalse(Files.readString(dir.resolve("atm_state.json")).contains("Deposit"), "History is not in the JSON");
+
+        try (FileATMStateService reopened = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            Account loaded = reopened.loadSnapshot().accounts().get(0);
+            assertEquals(25, loaded.getTransactionCount());
+            assertEquals(25, loaded.getArchivedCount(), "Nothing is read at load time");
+
+            List<String> newest = loaded.getTransactionPage(0, 10);
+            assertEquals(10, newest.size());
+            assertEquals(expected.get(24), newest.get(0));
+            assertEquals(expected.get(15), newest.get(9));
+            assertEquals(expected.subList(0, 5), reversed(loaded.getTransactionPage(2, 10)), "Last page is partial");
+            assertTrue(loaded.getTransactionPage(3, 10).isEmpty());
+
+            loaded.addTransactionCents("Withdraw", 100); // A new entry pages together with the archived ones
+            assertEquals(List.of(loaded.getTransactionRange(25, 26).get(0), expected.get(24)),
+                    loaded.getTransactionPage(0, 2));
+        }
+    }
+
+    // [Logic - Migration] Inline history from older files is moved to the history log by the next save.
+    @Test
+    void testInlineHistoryMigratesOnSave() throws IOException {
+        Path file = dir.resolve("atm_state.json");
+        Files.writeString(file, "{\"cash\": 100.00, \"paper\": 4, \"ink\": 4, \"firmware\":\"1.0.0\", \"accounts\": ["
+                + "{\"owner\":\"ngaa\", \"pin\":\"2006\", \"balance\":100.00, \"transactions\":[\"a\",\"b\"]}]}",
+                StandardCharsets.UTF_8);
+        try (FileATMStateService service = new FileATMStateService(file.toString())) {
+            StateSnapshot state = service.loadSnapshot();
+            service.saveStateCents(state.accounts(), state.cashCents(), state.paper(), state.ink(), state.firmware());
+        }
+        assertFalse(Files.readString(file).contains("transactions"));
+        try (FileATMStateService reopened = new FileATMStateService(file.toString())) {
+            assertEquals(List.of("a", "b"), reopened.loadAccounts().get(0).getTransactions());
+        }
+    }
+
+    // [Logic - Compaction] The snapshot archives the journaled history, so the live accounts drop it too.
+    @Test
+    void testCompactionMovesJournaledHistoryToTheArchive() {
+        JournaledATMStateService service = new JournaledATMStateService(
+                new FileATMStateService(dir.resolve("atm_state.json").toString()),
+                new StateJournal(dir.resolve("atm_state.journal"), StateJournal.Durability.PER_GROUP));
+        List<Account> accounts = service.loadAccounts();
+        Account ngaa = accounts.get(0);
+        for (int i = 0; i < 12; i++) ngaa.addTransactionCents("Deposit", 100);
+        List<String> expected = ngaa.getTransactions();
+        service.saveStateCents(accounts, 500_00, 4, 4, "1.0.0");
+
+        assertTrue(service.compact());
+        assertEquals(12, ngaa.getArchivedCount(), "Compacted entries leave memory");
+        assertEquals(expected, ngaa.getTransactions());
+        service.close();
+
+        JournaledATMStateService reopened = new JournaledATMStateService(
+                new FileATMStateService(dir.resolve("atm_state.json").toString()),
+                new StateJournal(dir.resolve("atm_state.journal"), StateJournal.Durability.PER_GROUP));
+        assertEquals(expected, reopened.loadAccounts().get(0).getTransactions());
+        reopened.close();
+    }
+
+    // [Logic - Mapped Store] Records are read at load time, history only when a page is asked for.
+    @Test
+    void testMappedStorePagesHistory() {
+        Account zoe = withHistory("zoe", 7);
+        List<String> expected = zoe.getTransactions();
+        MappedAccountStore store = new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+        store.saveStateCents(List.of(zoe), 500_00, 4, 4, "1.0.0");
+        store.close();
+
+        MappedAccountStore reopened = new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+        Account loaded = reopened.loadAccounts().get(0);
+        assertEquals(7, loaded.getArchivedCount());
+        assertEquals(expected.subList(3, 7), reversed(loaded.getTransactionPage(0, 4)));
+        assertEquals(expected, loaded.getTransactions());
+        reopened.close();
+    }
+
+    private static List<String> reversed(List<String> page) {
+        List<String> copy = new ArrayList<>(page);
+        Collections.reverse(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,166 @@
+package unit;
+
+import interfaces.IATMStateService;
+import model.Account;
+import model.HistoryRetention;
+import model.StateSnapshot;
+import model.TransactionRecords;
+import model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+import services.MappedAccountStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies in-place record updates and the JSON import/export of the memory-mapped store.
+public class MappedAccountStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedAccountStore open() {
+        return new MappedAccountStore(dir.resolve("atm_state.accounts").toString());
+    }
+
+    // [Logic - Persistence] Balances, history and machine levels survive a reopen.
+    @Test
+    void testStateSurvivesReopen() {
+        MappedAccountStore store = open();
+        List<Account> accounts = store.loadAccounts(); // Seeds the preset account
+        assertEquals("ngaa", accounts.get(0).getOwner());
+
+        Account zoe = Account.ofCents("Zoe", "9999", 1234);
+        zoe.addTransaction("Deposit", 12.34);
+        accounts.add(zoe);
+        store.saveStateCents(accounts, 777_00, 7, 6, "2.0.0");
+        store.close();
+
+        MappedAccountStore reopened = open();
+        StateSnapshot state = reopened.loadSnapshot();
+        assertEquals(2, state.accounts().size());
+        assertEquals(1234, state.accounts().get(1).getBalanceCents());
+        assertEquals(zoe.getTransactions(), state.accounts().get(1).getTransactions());
+        assertEquals(777_00, state.cashCents());
+        assertEquals(7, state.paper());
+        assertEquals(6, state.ink());
+        assertEquals("2.0.0", state.firmware());
+        reopened.close();
+    }
+
+    // [Logic - In Place] A save touches only the changed record and appends only new history.
+    @Test
+    void testSaveUpdatesOnlyChangedRecord() throws IOException {
+        MappedAccountStore store = open();
+        List<Account> accounts = store.loadAccounts();
+        for (int i = 0; i < 100; i++) accounts.add(Account.ofCents("user" + i, "0000", i));
+        store.saveStateCents(accounts, 5000_00, 4, 4, "1.0.0");
+        long fileSize = Files.size(dir.resolve("atm_state.accounts"));
+        long records = store.getRecordsWritten();
+
+        Account target = accounts.get(50);
+        target.setBalanceCents(target.getBalanceCents() + 2000);
+        target.addTransaction("Deposit", 20);
+        store.saveStateCents(accounts, 4980_00, 4, 4, "1.0.0");
+
+        assertEquals(records + 1, store.getRecordsWritten(), "Only the changed account's record may be written");
+        assertEquals(1, store.getHistoryEntriesWritten());
+        assertEquals(fileSize, Files.size(dir.resolve("atm_state.accounts")), "Records are updated in place");
+        store.close();
+
+        MappedAccountStore reopened = open();
+        assertEquals(target.getBalanceCents(), reopened.loadAccounts().get(50).getBalanceCents());
+        reopened.close();
+    }
+
+    // [Logic - Round Trip] JSON -> mapped store -> JSON reproduces the original state exactly.
+    @Test
+    void testJsonImportExportRoundTrip() throws IOException {
+        List<Account> accounts = new ArrayList<>();
+        Account alice = Account.ofCents("Alice \"A\"", "1111", 10_05);
+        alice.addTransaction("Deposit", 10.05);
+        accounts.add(alice);
+        accounts.add(Account.ofCents("Bob", "2222", 0));
+        String original = dir.resolve("original.json").toString();
+        new FileATMStateService(original).saveStateCents(accounts, 1234_56, 9, 8, "3.1.4");
+
+        MappedAccountStore store = open();
+        assertEquals(2, store.importJson(original), "Import must not seed the preset account");
+        String exported = dir.resolve("exported.json").toString();
+        assertTrue(store.exportJson(exported));
+        store.close();
+
+        assertEquals(Files.readString(Path.of(original)), Files.readString(Path.of(exported)));
+    }
+
+    // [Logic - Compaction] Records are repointed into the new history generation in place: the old one is
+    // deleted, and every entry is still there after a reopen.
+    @Test
+    void testHistoryCompactionRepointsRecords() throws IOException {
+        Path path = dir.resolve("atm_state.accounts");
+        MappedAccountStore store = new MappedAccountStore(path.toString(), new HistoryRetention(0, 0, 8));
+        List<Account> accounts = store.loadAccounts();
+        Account zoe = Account.ofCents("Zoe", "9999", 0);
+        accounts.add(zoe);
+        for (int t = 0; t < 100; t++) {
+            zoe.addTransactionCents(TransactionType.DEPOSIT, t);
+            store.saveChanges(accounts, List.of(zoe), 0, 5000_00, 4, 4, "1.0.0");
+        }
+        store.close();
+        try (var files = Files.list(dir)) {
+            List<String> logs = files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("atm_state.accounts.history")).toList();
+            assertEquals(1, logs.size(), "Only the newest generation is left: " + logs);
+            assertNotEquals("atm_state.accounts.history", logs.get(0), "Compacted at least once");
+        }
+
+        MappedAccountStore reopened = new MappedAccountStore(path.toString(), new HistoryRetention(0, 0, 8));
+        Account loaded = reopened.loadAccount("zoe");
+        TransactionRecords all = loaded.getTransactionRecords(0, loaded.getTransactionCount());
+        assertEquals(100, all.size());
+        for (int i = 0; i < 100; i++) assertEquals(i, all.getAmountCents(i));
+        reopened.close();
+    }
+
+    // [Logic - Upgrade] A store written before the header held note counts opens with its records intact.
+    @Test
+    void testVersion1FileIsUpgraded() throws IOException {
+        MappedAccountStore store = open();
+        List<Account> accounts = store.loadAccounts();
+        accounts.add(Account.ofCents("Zoe", "9999", 1234));
+        store.saveStateCents(accounts, 777_00, 7, 6, "2.0.0");
+        store.close();
+
+        // Rewrite the file in the version 1 layout: a 64-byte header directly followed by the records
+        Path file = dir.resolve("atm_state.accounts");
+        byte[] current = Files.readAllBytes(file);
+        byte[] v1 = new byte[current.length - 64];
+        System.arraycopy(current, 0, v1, 0, 64);
+        System.arraycopy(current, 128, v1, 64, current.length - 128);
+        v1[7] = 1; // Version (big-endian int at offset 4)
+        Files.write(file, v1);
+
+        MappedAccountStore reopened = open();
+        StateSnapshot state = reopened.loadSnapshot();
+        assertEquals(2, state.accounts().size());
+        assertEquals("Zoe", state.accounts().get(1).getOwner());
+        assertEquals(1234, state.accounts().get(1).getBalanceCents());
+        assertEquals(777_00, state.cashCents());
+        assertEquals("2.0.0", state.firmware());
+        assertNull(state.notes(), "Version 1 kept the cash total only");
+        assertNotNull(reopened.loadAccount("zoe"), "The owner index still points at the moved records");
+
+        reopened.saveChanges(state.accounts(), List.of(), IATMStateService.CASH_CHANGED, 777_00,
+                new int[]{1, 2, 3, 4, 5}, 7, 6, "2.0.0");
+        reopened.close();
+        MappedAccountStore again = open();
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, again.loadMachineState().notes());
+        again.close();
+    }
+}
@@ -0,0 +1,122 @@
+package unit;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.LatencyHistogram;
+import services.MeteredATMStateService;
+import services.MetricsRegistry;
+import services.PrinterService;
+import services.ReceiptPrinter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the latency histograms, the registry's report and the ATM's instrumentation.
+public class MetricsRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    // [Logic - Accuracy] Percentiles of a known distribution are within a bucket (1/16) of the true value,
+    // and never above the largest value recorded.
+    @Test
+    void testPercentilesWithinBucketError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 1; v <= 100_000; v++) h.record(v);
+        LatencyHistogram.Snapshot s = h.snapshot();
+
+        assertEquals(100_000, s.count());
+        assertEquals(50_000, s.p(0.50), 50_000 / 16.0);
+        assertEquals(99_000, s.p(0.99), 99_000 / 16.0);
+        assertEquals(99_900, s.p(0.999), 99_900 / 16.0);
+        assertEquals(100_000, s.maxNanos());
+        assertTrue(s.p(1.0) <= 100_000);
+        assertEquals(50_000, s.meanNanos());
+        assertEquals(0, new LatencyHistogram().snapshot().p(0.99), "Empty");
+        h.record(-5); // A clock step back counts as zero
+        h.record(Long.MAX_VALUE); // Beyond the last bucket: counted, not lost
+        assertEquals(100_002, h.snapshot().count());
+    }
+
+    // [Logic - Concurrency] Sessions record at the same time without losing a count.
+    @Test
+    void testConcurrentRecordingKeepsEveryCount() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                LatencyHistogram h = metrics.histogram("op");
+                for (int i = 0; i < 50_000; i++) {
+                    h.record(i);
+                    metrics.counter("calls").increment();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(400_000, metrics.histogram("op").snapshot().count());
+        assertEquals(400_000, metrics.counter("calls").sum());
+    }
+
+    // [Logic - Wiring] Customer operations and store writes are timed, failures are counted, and the
+    // report is written to the metrics file.
+    @Test
+    void testAtmOperationsAreMeasured() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        PrinterService printer = new PrinterService(50, 50);
+        List<Account> stored = new ArrayList<>(List.of(Account.ofCents("user0", "1234", 500_00)));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {}
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return 50; }
+            public int loadInkLevel() { return 50; }
+            public double loadCashLevel() { return 10_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        ATMMachineV2 atm = new ATMMachineV2(new MeteredATMStateService(memoryService, metrics), printer, 0,
+                new ReceiptPrinter(printer, 16, receipt -> {}));
+        atm.setMetrics(metrics);
+
+        assertNotNull(atm.authenticateUser("user0", "1234"));
+        assertNull(atm.authenticateUser("user0", "9999"));
+        assertTrue(atm.withdraw("user0", 100));
+        assertFalse(atm.withdraw("user0", 1_000), "More than the balance");
+        atm.deposit("user0", 50);
+        atm.printReceipt("user0");
+        atm.getReceiptPrinter().close();
+
+        assertEquals(2, metrics.histogram("atm.authenticateUser").getCount());
+        assertEquals(2, metrics.histogram("atm.withdraw").getCount());
+        assertEquals(1, metrics.histogram("atm.deposit").getCount());
+        assertEquals(1, metrics.histogram("atm.printReceipt").getCount(), "A withdrawal's receipt is part of atm.withdraw");
+        assertEquals(1, metrics.counter("atm.login.failed").sum());
+        assertEquals(1, metrics.counter("atm.withdraw.declined").sum());
+        long saves = metrics.histogram("atm.saveState").getCount();
+        assertTrue(saves >= 3, "Withdrawal, deposit, receipt: " + saves);
+        assertEquals(saves, metrics.histogram("store.save").getCount(), "Every save with changes reached the store");
+        assertEquals(1, metrics.histogram("store.load").getCount(), "One snapshot at startup");
+
+        Path file = dir.resolve("metrics").resolve("metrics.txt");
+        metrics.dump(file);
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).startsWith("# ATM metrics "), lines.get(0));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("atm.withdraw ") && l.contains("count 2 ") && l.contains(" p999 ")),
+                lines.toString());
+        assertTrue(lines.contains(String.format("%-22s %d", "atm.login.failed", 1)), lines.toString());
+        assertFalse(Files.exists(dir.resolve("metrics").resolve("metrics.txt.tmp")), "Replaced in one step");
+    }
+}
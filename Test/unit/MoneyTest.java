@@ -0,0 +1,43 @@
+package unit;
+
+import model.Account;
+import model.Money;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the fixed-point money helpers used by the model, engine and persistence.
+public class MoneyTest {
+
+    // [Logic - Formatting] Output matches what String.format("%.2f") produced for the same amounts.
+    @Test
+    void testFormatMatchesLegacyText() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("20.50", Money.format(2050));
+        assertEquals("2040.00", Money.format(Money.ofEuros(2040)));
+        assertEquals("-3.07", Money.format(-307));
+        assertEquals(String.format("%.2f", 1234.56), Money.format(123456));
+    }
+
+    // [Logic - Parsing] Accepts every number shape the old atm_state.json files contain.
+    @Test
+    void testParseLegacyStateValues() {
+        assertEquals(204000, Money.parse("2040.0"));
+        assertEquals(5000, Money.parse(" 50.00 "));
+        assertEquals(10000, Money.parse("100"));
+        assertEquals(-350, Money.parse("-3.5"));
+        assertEquals(1_000_000_000L, Money.parse("1.0E7"), "Double.toString exponent form from old saves");
+        assertEquals(1235, Money.parse("12.345"), "Extra digits round half-up");
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+    }
+
+    // [Logic - Precision] Repeated small amounts do not drift the way doubles do.
+    @Test
+    void testNoDriftOnRepeatedAddition() {
+        Account acc = Account.ofCents("Eve", "1111", 0);
+        for (int i = 0; i < 1000; i++) acc.setBalanceCents(acc.getBalanceCents() + 10); // 1000 x €0.10
+        assertEquals(10000, acc.getBalanceCents());
+        assertEquals(100.0, acc.getBalance());
+    }
+}
@@ -2,6 +2,18 @@ package unit;
 
 import org.junit.jupiter.api.Test;
 import services.PrinterService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 // [SOLID - SRP] This test class is dedicated solely to verifying the PrinterService logic.
@@ -45,4 +57,94 @@ public class PrinterServiceTest {
 
         System.out.println("PrinterService test completed ✅");
     }
-}
\ No newline at end of file
+
+    // [Logic - Reserve/Commit/Release] A reservation takes a sheet and an ink unit together; commit uses
+    // them up, release gives them back, and nothing is reserved once either runs out.
+    @Test
+    void testReserveCommitRelease() {
+        PrinterService printer = new PrinterService(2, 1);
+        assertTrue(printer.tryReserve());
+        assertEquals(1, printer.getPaperLevel());
+        assertEquals(0, printer.getInkLevel());
+        assertFalse(printer.tryReserve(), "No ink left: the sheet is not taken either");
+        assertEquals(1, printer.getPaperLevel());
+        assertEquals(1, printer.getReserved());
+
+        printer.release();
+        assertEquals(2, printer.getPaperLevel());
+        assertEquals(1, printer.getInkLevel());
+        assertTrue(printer.tryReserve());
+        printer.commit();
+        assertEquals(0, printer.getReserved());
+        assertEquals(1, printer.getPrinted());
+
+        printer.addInk(3);
+        printer.addPaper(-5); // Never below zero
+        assertEquals(0, printer.getPaperLevel());
+        assertEquals(3, printer.getInkLevel());
+    }
+
+    // [Logic - Stress] Threads race to reserve, commit and release while refills arrive: no receipt is ever
+    // committed beyond the stock, no level is ever seen below zero, and every unit is accounted for.
+    @Test
+    void testNoReceiptBeyondStockUnderContention() throws Exception {
+        final int threads = 8;
+        final int paper = 20_000;
+        final int ink = 15_000; // Ink runs out first
+        final int refills = 500;
+        PrinterService printer = new PrinterService(paper, ink);
+        AtomicLong committed = new AtomicLong();
+        AtomicBoolean negativeSeen = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch refilled = new CountDownLatch(1);
+
+        Thread watcher = new Thread(() -> { // Reads the levels while they change
+            while (running.get()) {
+                if (printer.getPaperLevel() < 0 || printer.getInkLevel() < 0) negativeSeen.set(true);
+            }
+        });
+        watcher.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (true) {
+                    boolean allRefilled = refilled.getCount() == 0;
+                    if (!printer.tryReserve()) {
+                        if (allRefilled) break; // Empty after the last refill: empty for good
+                        continue;
+                    }
+                    if (rnd.nextInt(4) == 0) {
+                        printer.release(); // E.g. a paper jam: the receipt was not printed
+                    } else {
+                        printer.commit();
+                        committed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        futures.add(pool.submit(() -> { // A technician refilling ink one unit at a time meanwhile
+            start.await();
+            for (int i = 0; i < refills; i++) printer.addInk(1);
+            refilled.countDown();
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        running.set(false);
+        watcher.join();
+
+        assertFalse(negativeSeen.get(), "A level went below zero");
+        assertEquals(0, printer.getReserved(), "Every reservation was committed or released");
+        assertEquals(committed.get(), printer.getPrinted());
+        assertEquals(ink + refills, committed.get() + printer.getInkLevel(), "Ink: printed + left = stock + refills");
+        assertEquals(paper, committed.get() + printer.getPaperLevel(), "Paper: printed + left = stock");
+        assertEquals(0, printer.getInkLevel(), "Every ink unit was used");
+    }
+}
@@ -0,0 +1,189 @@
+package unit;
+
+import core.ATMMachineV2;
+import interfaces.IATMStateService;
+import model.Account;
+import model.Receipt;
+import model.TransactionType;
+import org.junit.jupiter.api.Test;
+import services.PrinterService;
+import services.ReceiptPrinter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the background receipt pipeline and the paper/ink reservations behind it.
+public class ReceiptPrinterTest {
+
+    private final List<Account> stored = new ArrayList<>();
+    private final AtomicInteger saves = new AtomicInteger();
+    private volatile int savedPaper = -1;
+    private volatile int savedInk = -1;
+
+    // [SOLID - DIP] In-memory state service that counts saves and keeps the last printer levels
+    private ATMMachineV2 atm(PrinterService printer, Consumer<String> paper) {
+        for (int i = 0; i < 8; i++) stored.add(Account.ofCents("user" + i, "0000", 1_000_00));
+        IATMStateService memoryService = new IATMStateService() {
+            public void saveState(List<Account> a, double c, int p, int i, String f) {
+                savedPaper = p;
+                savedInk = i;
+                saves.incrementAndGet();
+            }
+            public List<Account> loadAccounts() { return stored; }
+            public int loadPaperLevel() { return printer.getPaperLevel(); }
+            public int loadInkLevel() { return printer.getInkLevel(); }
+            public double loadCashLevel() { return 100_000.0; }
+            public String loadFirmwareVersion() { return "1.0.0"; }
+        };
+        return new ATMMachineV2(memoryService, printer, 0, new ReceiptPrinter(printer, 16, paper));
+    }
+
+    // [Logic - Async] The withdrawal returns once the ledger is saved, while the printer is still busy;
+    // the sheet and ink are already taken, and the receipt shows the transaction when it comes out.
+    @Test
+    void testWithdrawDoesNotWaitForThePrinter() throws InterruptedException {
+        CountDownLatch printerBusy = new CountDownLatch(1);
+        List<String> printed = new CopyOnWriteArrayList<>();
+        PrinterService printer = new PrinterService(10, 10);
+        ATMMachineV2 atm = atm(printer, receipt -> {
+            try {
+                printerBusy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            printed.add(receipt);
+        });
+
+        assertTrue(atm.withdraw("user1", 70));
+        assertEquals(1, saves.get(), "One save for the withdrawal and the printer levels");
+        assertEquals(9, printer.getPaperLevel(), "Reserved when queued");
+        assertEquals(9, printer.getInkLevel());
+        assertTrue(printed.isEmpty(), "Not printed yet");
+
+        printerBusy.countDown();
+        atm.getReceiptPrinter().flush();
+        assertEquals(1, printed.size());
+        assertTrue(printed.get(0).contains("Account: user1"), printed.get(0));
+        assertTrue(printed.get(0).contains("Withdraw: €70.00 | Balance: €930.00"), printed.get(0));
+        assertTrue(printed.get(0).contains("Notes: 1x€50, 1x€20"), printed.get(0));
+
+        atm.deposit("user2", 15);
+        atm.printReceipt("user2"); // The latest transaction of the account
+        atm.getReceiptPrinter().close();
+        assertTrue(printed.get(1).contains("Deposit: €15.00 | Balance: €1015.00"), printed.get(1));
+        assertEquals(2, atm.getReceiptPrinter().getPrinted());
+    }
+
+    // [Logic - Out Of Service] Queued receipts count against the printer: the last sheet makes the ATM
+    // unavailable at once, and a receipt that fails to print gives its sheet back.
+    @Test
+    void testReservationKeepsOutOfServiceCorrect() {
+        CountDownLatch jam = new CountDownLatch(1);
+        PrinterService printer = new PrinterService(1, 5);
+        ATMMachineV2 atm = atm(printer, receipt -> {
+            try {
+                jam.await(); // Still printing while the next customer comes
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Paper jam");
+        });
+
+        assertTrue(atm.withdraw("user1", 10));
+        assertTrue(atm.isOutOfService(), "The only sheet is reserved");
+        assertTrue(atm.withdraw("user2", 10), "The ledger commits; there is just no receipt");
+        assertEquals(0, printer.getPaperLevel(), "Never negative");
+
+        jam.countDown();
+        atm.getReceiptPrinter().flush();
+        assertEquals(1, atm.getReceiptPrinter().getFailed());
+        assertEquals(1, printer.getPaperLevel(), "The jammed receipt's sheet is back");
+        assertEquals(5, printer.getInkLevel(), "And its ink");
+        assertFalse(atm.isOutOfService());
+    }
+
+    // [Logic - Persistence] The sheet and ink a jammed receipt gives back are saved, so a restart does not
+    // come back with the printer levels of before the failure.
+    @Test
+    void testReleasedReservationIsSaved() {
+        PrinterService printer = new PrinterService(3, 5);
+        ATMMachineV2 atm = atm(printer, receipt -> { throw new IllegalStateException("Paper jam"); });
+
+        assertTrue(atm.withdraw("user1", 10));
+        atm.getReceiptPrinter().flush();
+        assertEquals(1, atm.getReceiptPrinter().getFailed());
+        assertEquals(2, saves.get(), "The withdrawal, then the release");
+        assertEquals(3, savedPaper, "The store has the sheet back");
+        assertEquals(5, savedInk, "And the ink");
+        atm.getReceiptPrinter().close();
+    }
+
+    // [Logic - Concurrency] Many sessions race for fewer sheets than withdrawals: exactly one receipt per
+    // sheet, and paper and ink never go below zero.
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        AtomicInteger printed = new AtomicInteger();
+        PrinterService printer = new PrinterService(100, 1_000);
+        ATMMachineV2 atm = atm(printer, receipt -> printed.incrementAndGet());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String owner = "user" + t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 40; i++) atm.withdraw(owner, 5);
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        atm.getReceiptPrinter().close();
+
+        assertEquals(100, printed.get(), "One receipt per sheet");
+        assertEquals(0, printer.getPaperLevel());
+        assertEquals(900, printer.getInkLevel());
+    }
+
+    // [Logic - Shutdown] Receipts submitted while close() runs are all printed, by the worker, by close
+    // or on the submitting thread; none stays in the queue with its sheet reserved, and no submitter is
+    // left blocked on a full queue nobody takes from any more.
+    @Test
+    void testReceiptsSubmittedDuringCloseArePrinted() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            AtomicInteger printed = new AtomicInteger();
+            PrinterService printer = new PrinterService(1_000, 1_000);
+            ReceiptPrinter receipts = new ReceiptPrinter(printer, 2, receipt -> printed.incrementAndGet());
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 50; i++) {
+                        assertTrue(printer.tryReserve());
+                        receipts.submit(Receipt.of("user", TransactionType.WITHDRAW, 5_00, 0, null));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            receipts.close();
+            for (Future<?> f : futures) f.get(10, TimeUnit.SECONDS);
+            pool.shutdown();
+
+            assertEquals(200, printed.get(), "Round " + round);
+            assertEquals(0, receipts.getQueued());
+            assertEquals(800, printer.getPaperLevel());
+            assertEquals(0, printer.getReserved(), "Every reservation was used");
+        }
+    }
+}
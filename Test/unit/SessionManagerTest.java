@@ -0,0 +1,97 @@
+package unit;
+
+import core.SessionManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the timing-wheel idle timeouts of terminal sessions, on a manual clock.
+public class SessionManagerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    // 10 s timeout, 1 s ticks, 16 slots
+    private SessionManager manager() {
+        return new SessionManager(10_000, 1_000, 16, now::get);
+    }
+
+    // [Logic - Expiry] An idle session expires once its timeout has passed, and its connection is closed.
+    @Test
+    void testIdleSessionExpires() {
+        SessionManager sessions = manager();
+        AtomicInteger closed = new AtomicInteger();
+        SessionManager.Session s = sessions.open(closed::incrementAndGet);
+
+        now.addAndGet(9_000);
+        assertEquals(0, sessions.advance());
+        assertEquals(1, sessions.size());
+
+        now.addAndGet(1_000);
+        assertEquals(1, sessions.advance());
+        assertTrue(s.isExpired());
+        assertEquals(1, closed.get());
+        assertEquals(0, sessions.size());
+        assertEquals(1, sessions.getExpiredTotal());
+    }
+
+    // [Logic - Activity] Touching a session pushes its deadline back; it is filed again when its slot comes up.
+    @Test
+    void testTouchKeepsSessionAlive() {
+        SessionManager sessions = manager();
+        SessionManager.Session busy = sessions.open(null);
+        SessionManager.Session idle = sessions.open(null);
+
+        for (int i = 0; i < 30; i++) { // 30 s: three timeouts, the busy one is used every 5 s
+            now.addAndGet(1_000);
+            if (i % 5 == 0) sessions.touch(busy);
+            sessions.advance();
+        }
+        assertFalse(busy.isExpired());
+        assertTrue(idle.isExpired());
+        assertEquals(1, sessions.size());
+
+        now.addAndGet(10_000); // A long pause: every slot is visited once
+        assertEquals(1, sessions.advance());
+        assertTrue(busy.isExpired());
+    }
+
+    // [Logic - Longer Than The Wheel] A timeout spanning several turns of the wheel waits for its round.
+    @Test
+    void testTimeoutLongerThanWheel() {
+        SessionManager sessions = new SessionManager(40_000, 1_000, 16, now::get);
+        SessionManager.Session s = sessions.open(null);
+        for (int i = 0; i < 39; i++) {
+            now.addAndGet(1_000);
+            assertEquals(0, sessions.advance(), "Expired too early at " + (i + 1) + " s");
+        }
+        now.addAndGet(1_000);
+        assertEquals(1, sessions.advance());
+        assertTrue(s.isExpired());
+    }
+
+    // [Logic - Monitoring] Closed sessions leave at once; the technician sees owners and ages.
+    @Test
+    void testCloseBindAndDescribe() {
+        SessionManager sessions = manager();
+        SessionManager.Session a = sessions.open(null);
+        now.addAndGet(5_000);
+        SessionManager.Session b = sessions.open(null);
+        sessions.bind(a, "alice");
+        sessions.close(b);
+        sessions.close(b); // Idempotent
+        assertEquals(1, sessions.size());
+
+        assertEquals("1 open (1 logged in), oldest 5s, idle timeout 10s, 0 expired", sessions.describe());
+        assertEquals("#1 alice | open 5s | idle 5s", sessions.describeSessions().get(0));
+        sessions.unbind(a);
+        assertNull(a.getOwner());
+
+        now.addAndGet(10_000);
+        sessions.advance();
+        assertEquals(0, sessions.size(), "Only the open session expired");
+        assertFalse(b.isExpired());
+    }
+}
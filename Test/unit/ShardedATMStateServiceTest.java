@@ -0,0 +1,174 @@
+package unit;
+
+import interfaces.IATMStateService;
+import model.Account;
+import model.StateSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.ShardedATMStateService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies shard routing, parallel round trips and resharding of the sharded store.
+public class ShardedATMStateServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ShardedATMStateService open(int shards) {
+        return new ShardedATMStateService(dir.toString(), shards, 4);
+    }
+
+    private List<Account> accounts(int n) {
+        List<Account> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Account a = Account.ofCents("user" + i, "0000", i * 100L);
+            a.addTransaction("Deposit", i);
+            list.add(a);
+        }
+        return list;
+    }
+
+    private long shardFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("accounts-") && name.endsWith(".json")).count(); // Not the .history logs
+        }
+    }
+
+    // [Logic - Round Trip] Every account and the machine levels come back after a parallel load.
+    @Test
+    void testRoundTripAcrossShards() throws IOException {
+        ShardedATMStateService store = open(8);
+        List<Account> list = accounts(200);
+        store.saveStateCents(list, 1234_56, 9, 8, "2.1.0");
+        store.close();
+        assertEquals(8, shardFiles());
+
+        ShardedATMStateService reopened = open(8);
+        StateSnapshot state = reopened.loadSnapshot();
+        assertEquals(201, state.accounts().size(), "200 accounts plus the seeded preset");
+        Account u42 = state.accounts().stream().filter(a -> a.getOwner().equals("user42")).findFirst().orElseThrow();
+        assertEquals(4200, u42.getBalanceCents());
+        assertEquals(1, u42.getTransactions().size());
+        assertEquals(1234_56, state.cashCents());
+        assertEquals(9, state.paper());
+        assertEquals(8, state.ink());
+        assertEquals("2.1.0", state.firmware());
+        reopened.close();
+    }
+
+    // [Logic - Dirty Shards] A change rewrites only the shard holding the changed account.
+    @Test
+    void testSaveTouchesOnlyChangedShard() throws IOException {
+        ShardedATMStateService store = open(8);
+        List<Account> list = store.loadAccounts();
+        list.addAll(accounts(200));
+        store.saveStateCents(list, 5000_00, 4, 4, "1.0.0");
+
+        Account target = list.get(100);
+        target.setBalanceCents(target.getBalanceCents() + 1);
+        store.saveChanges(list, List.of(target), 0, 5000_00, 4, 4, "1.0.0");
+
+        int shard = ShardedATMStateService.shardOf(target.getOwner(), 8);
+        Path shardFile = dir.resolve("accounts-" + shard + "-of-8.json");
+        assertEquals(Files.size(shardFile), store.getWriteStats().getLastBytes(), "Only one shard file may be written");
+        assertEquals(1, store.getWriteStats().getLastAccounts(), "Only the changed account is re-encoded");
+        store.close();
+    }
+
+    // [Logic - Resharding] Opening with another shard count redistributes the accounts once.
+    @Test
+    void testReshardKeepsEveryAccount() throws IOException {
+        ShardedATMStateService store = open(4);
+        store.saveStateCents(accounts(50), 100_00, 5, 5, "1.0.0");
+        store.close();
+
+        ShardedATMStateService resharded = open(3);
+        assertEquals(51, resharded.loadAccounts().size());
+        assertEquals(3, shardFiles(), "Old shard files must be removed after resharding");
+        assertEquals(100_00, resharded.loadCashCents());
+        resharded.close();
+
+        ShardedATMStateService again = open(3);
+        assertEquals(51, again.loadAccounts().size());
+        again.close();
+    }
+
+    // [Logic - Routing] Shard choice ignores case, matching the engine's owner lookup.
+    @Test
+    void testShardOfIsCaseInsensitive() {
+        assertEquals(ShardedATMStateService.shardOf("Alice", 16), ShardedATMStateService.shardOf("ALICE", 16));
+    }
+
+    // [Logic - Corruption] One unreadable shard fails the load, and no shard is rewritten from the partial
+    // state: the accounts of the other shards stay on disk untouched.
+    @Test
+    void testUnreadableShardFailsLoadWithoutWriting() throws IOException {
+        ShardedATMStateService store = open(4);
+        store.saveStateCents(accounts(100), 100_00, 5, 5, "1.0.0");
+        store.close();
+        Path corrupt = dir.resolve("accounts-2-of-4.json");
+        byte[] content = Files.readAllBytes(corrupt);
+        Files.write(corrupt, Arrays.copyOf(content, content.length / 2)); // Torn by a disk fault
+        Map<Path, byte[]> before = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            Path p = dir.resolve("accounts-" + i + "-of-4.json");
+            before.put(p, Files.readAllBytes(p));
+        }
+
+        ShardedATMStateService reopened = open(4);
+        assertThrows(IllegalStateException.class, reopened::loadSnapshot);
+        assertThrows(IllegalStateException.class,
+                () -> reopened.saveStateCents(new ArrayList<>(accounts(1)), 100_00, 5, 5, "1.0.0"), "Saves refused");
+        for (Map.Entry<Path, byte[]> e : before.entrySet()) {
+            assertArrayEquals(e.getValue(), Files.readAllBytes(e.getKey()), e.getKey() + " must not be rewritten");
+        }
+        reopened.close();
+    }
+
+    // [Logic - Failure] A shard or machine write that fails stays pending: the next save writes it again,
+    // even though the engine has cleared its dirty marks and reports other accounts next time.
+    @Test
+    void testFailedShardWriteIsRetriedWithNextSave() throws IOException {
+        ShardedATMStateService store = open(4);
+        List<Account> list = store.loadAccounts();
+        list.addAll(accounts(40));
+        store.saveStateCents(list, 100_00, 5, 5, "1.0.0");
+
+        Account target = list.get(1);
+        int shard = ShardedATMStateService.shardOf(target.getOwner(), 4);
+        Account other = list.stream().filter(a -> ShardedATMStateService.shardOf(a.getOwner(), 4) != shard)
+                .findFirst().orElseThrow();
+        Path shardTmp = dir.resolve("accounts-" + shard + "-of-4.json.tmp");
+        Path machineTmp = dir.resolve("machine.json.tmp");
+        Files.createDirectory(shardTmp); // The temp files cannot be opened for writing
+        Files.createDirectory(machineTmp);
+        target.setBalanceCents(999_00);
+        store.saveChanges(list, List.of(target), IATMStateService.CASH_CHANGED, 321_00, 5, 5, "1.0.0");
+        Files.delete(shardTmp);
+        Files.delete(machineTmp);
+
+        other.setBalanceCents(other.getBalanceCents() + 1);
+        store.saveChanges(list, List.of(other), 0, 321_00, 5, 5, "1.0.0"); // target is no longer reported
+        store.close();
+
+        ShardedATMStateService reopened = open(4);
+        StateSnapshot state = reopened.loadSnapshot();
+        Account loaded = state.accounts().stream().filter(a -> a.getOwner().equals(target.getOwner())).findFirst().orElseThrow();
+        assertEquals(999_00, loaded.getBalanceCents(), "Retried");
+        assertEquals(list.size(), state.accounts().size(), "No account written twice");
+        assertEquals(321_00, state.cashCents(), "The failed save's machine change too");
+        reopened.close();
+    }
+}
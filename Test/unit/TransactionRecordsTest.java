@@ -0,0 +1,71 @@
+package unit;
+
+import model.Account;
+import model.TransactionRecords;
+import model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import services.FileATMStateService;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// [SOLID - SRP] Verifies the columnar history buffer: storage, text formatting and persistence.
+public class TransactionRecordsTest {
+
+    @TempDir
+    Path dir;
+
+    // [Logic - Formatting] Text is produced on demand and matches the entry format shown to customers.
+    @Test
+    void testFormatsLikeTheHistoryScreen() {
+        long millis = LocalDateTime.of(2026, 3, 4, 5, 6, 7).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        TransactionRecords records = new TransactionRecords();
+        records.add(millis, TransactionType.WITHDRAW, 20_00, 1234_05);
+        records.addText("legacy entry");
+
+        assertEquals("2026-03-04 05:06:07 | Withdraw: €20.00 | Balance: €1234.05", records.format(0));
+        assertEquals("legacy entry", records.format(1));
+        assertEquals(List.of("legacy entry", records.format(0)), records.formatRange(0, 2, true));
+    }
+
+    // [Logic - Buffer] Columns grow past their initial capacity and drop archived entries in order.
+    @Test
+    void testGrowsAndDropsOldestEntries() {
+        TransactionRecords records = new TransactionRecords();
+        for (int i = 0; i < 100; i++) records.add(i, TransactionType.DEPOSIT, i, i * 2L);
+        records.removeFirst(60);
+
+        assertEquals(40, records.size());
+        assertEquals(60, records.getAmountCents(0));
+        assertEquals(198, records.getBalanceCents(39));
+        assertThrows(IndexOutOfBoundsException.class, () -> records.getAmountCents(40));
+    }
+
+    // [Logic - Persistence] Entries go to disk as columns and come back as columns, not as text.
+    @Test
+    void testHistoryStaysStructuredThroughTheStore() {
+        Account zoe = Account.ofCents("zoe", "0000", 50_00);
+        zoe.addTransactionCents(TransactionType.DEPOSIT, 50_00);
+        zoe.addTransaction("Refund", 1); // No TransactionType: kept as text
+        List<String> expected = zoe.getTransactions();
+
+        try (FileATMStateService service = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            service.saveStateCents(new ArrayList<>(List.of(zoe)), 500_00, 4, 4, "1.0.0");
+        }
+        try (FileATMStateService reopened = new FileATMStateService(dir.resolve("atm_state.json").toString())) {
+            Account loaded = reopened.loadAccounts().get(0);
+            TransactionRecords records = loaded.getTransactionRecords(0, 2);
+            assertFalse(records.isText(0));
+            assertEquals(TransactionType.DEPOSIT, records.getType(0));
+            assertEquals(50_00, records.getAmountCents(0));
+            assertTrue(records.isText(1));
+            assertEquals(expected, loaded.getTransactions());
+        }
+    }
+}
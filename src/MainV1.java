@@ -1,8 +1,26 @@
 import core.ATMMachineV2;
+import core.ConsumptionForecaster;
+import core.SessionManager;
+import interfaces.IATMStateService;
+import services.AsyncStateWriter;
+import services.CachingATMStateService;
 import services.FileATMStateService;
+import services.JournalCompactor;
+import services.JournaledATMStateService;
+import services.MeteredATMStateService;
+import services.MetricsRegistry;
+import services.MappedAccountStore;
+import services.ShardedATMStateService;
+import services.StateJournal;
 import services.PrinterService;
-import users.TechnicianV2Panel;
-import model.Account;
+import services.EReceiptSpool;
+import services.ReceiptPrinter;
+import users.HomeScreen;
+import users.SessionServer;
+import model.HistoryRetention;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 // MainV1 is the entry point for the ATM V2 console application
@@ -14,245 +32,161 @@ public class MainV1 {
         Scanner sc = new Scanner(System.in);
 
         // 1. Create the persistence service first
-        FileATMStateService stateService = new FileATMStateService();
+        // -Datm.store=mapped keeps accounts in a memory-mapped binary file (see MappedAccountStore);
+        // -Datm.store=sharded spreads them over -Datm.shards JSON files (see ShardedATMStateService);
+        // the default "json" store is the JSON snapshot plus journal below
+        String store = System.getProperty("atm.store", "json");
+        // Saved history kept in memory (-Datm.history.hot entries, -Datm.history.hotDays days) and the
+        // number of entries rolled into one compressed archive segment (-Datm.history.segment)
+        HistoryRetention retention = new HistoryRetention(
+                Integer.getInteger("atm.history.hot", HistoryRetention.DEFAULT.hotEntries()),
+                Integer.getInteger("atm.history.hotDays", HistoryRetention.DEFAULT.hotDays()),
+                Integer.getInteger("atm.history.segment", HistoryRetention.DEFAULT.segmentEntries()));
+        IATMStateService stateService;
+        JournaledATMStateService journaled = null;
+        JournalCompactor compactor = null;
+        MappedAccountStore mapped = null;
+        CachingATMStateService cached = null;
+        ShardedATMStateService sharded = null;
+        if ("mapped".equalsIgnoreCase(store)) {
+            mapped = openMappedStore(retention);
+            stateService = mapped;
+            // -Datm.store.cache=N keeps the N most recently used accounts in a write-back cache in front of
+            // the store; dirty accounts are written in groups of -Datm.store.cache.maxDirty (default 32)
+            int cacheAccounts = Integer.getInteger("atm.store.cache", 0);
+            if (cacheAccounts > 0) {
+                cached = new CachingATMStateService(mapped, cacheAccounts, Integer.getInteger("atm.store.cache.maxDirty", 32));
+                stateService = cached;
+            }
+        } else if ("sharded".equalsIgnoreCase(store)) {
+            sharded = openShardedStore(retention);
+            stateService = sharded;
+        } else {
+            // The JSON file is the base snapshot; every change is appended to the journal next to it.
+            // Durability is chosen with -Datm.journal.durability=PER_RECORD|PER_GROUP (default PER_RECORD)
+            StateJournal.Durability durability = StateJournal.Durability.valueOf(
+                    System.getProperty("atm.journal.durability", StateJournal.Durability.PER_RECORD.name()));
+            journaled = new JournaledATMStateService(
+                    new FileATMStateService("data/atm_state.json", retention),
+                    new StateJournal(Paths.get("data/atm_state.journal"), durability));
+
+            // Background compaction keeps startup replay short: every interval (-Datm.compaction.seconds,
+            // default 300) the journal is folded into a new snapshot once it holds -Datm.compaction.minRecords
+            compactor = new JournalCompactor(journaled,
+                    Long.getLong("atm.compaction.seconds", 300), Long.getLong("atm.compaction.minRecords", 1000));
+            compactor.start();
+            stateService = journaled;
+        }
 
-        // 2. Load the ACTUAL saved levels from the JSON file
+        // Latencies of the customer operations and of the store's writes (technician panel option 10).
+        // They are also written to -Datm.metrics.file (default data/metrics.txt) every
+        // -Datm.metrics.dumpSeconds (default 60; 0 = only on the panel)
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.startDumping(Paths.get(System.getProperty("atm.metrics.file", "data/metrics.txt")),
+                Long.getLong("atm.metrics.dumpSeconds", 60));
+
+        // Saves are handed to a background writer and group-committed, so customers never wait on disk.
+        // Tunables: -Datm.save.queue (capacity), -Datm.save.flushMillis, -Datm.save.maxBatch
+        AsyncStateWriter writer = new AsyncStateWriter(new MeteredATMStateService(stateService, metrics),
+                Integer.getInteger("atm.save.queue", 1024),
+                Long.getLong("atm.save.flushMillis", 20),
+                Integer.getInteger("atm.save.maxBatch", 256));
+
+        // 2. Load the ACTUAL saved levels from the store
         int savedPaper = stateService.loadPaperLevel();
         int savedInk = stateService.loadInkLevel();
 
         // 3. Inject the SAVED levels into the printer
         PrinterService printer = new PrinterService(savedPaper, savedInk);
 
-        // 4. Finally, inject the service and the printer into the ATM
-        ATMMachineV2 atm = new ATMMachineV2(stateService, printer);
-
-        while (true) {
-            // ------------------- HOME SCREEN -------------------
-            System.out.println("\n--- ATM HOME SCREEN ---");
-            System.out.println("1. Customer Login");
-            System.out.println("2. Technician Login");
-            System.out.println("3. Exit");
-            System.out.print("Select: ");
-
-            int choice;
+        // -Datm.ereceipts=true lets customers take e-receipts (one spool file per day in data/receipts);
+        // the ATM then stays in service when the printer runs out
+        EReceiptSpool spool = null;
+        if (Boolean.getBoolean("atm.ereceipts")) {
             try {
-                choice = Integer.parseInt(sc.nextLine());
-            } catch (Exception e) {
-                System.out.println("Invalid input.");
-                continue;
-            }
-
-            switch(choice) {
-                // ---------------- CUSTOMER LOGIN ----------------
-                case 1 -> {
-                    if (atm.isOutOfService()) {
-                        System.out.println("ATM out of service. Please try again later.");
-                        break;
-                    }
-
-                    System.out.print("Name: ");
-                    String name = sc.nextLine();
-                    System.out.print("PIN: ");
-                    String pin = sc.nextLine();
-
-                    var user = atm.authenticateUser(name, pin); // Authentication + potential auto-registration
-                    if (user != null) userMenu(atm, sc, user); // Launch user menu
-                }
-
-                // ---------------- TECHNICIAN LOGIN ----------------
-                case 2 -> {
-                    System.out.print("ID: ");
-                    String id = sc.nextLine();
-                    System.out.print("Pass: ");
-                    String pass = sc.nextLine();
-
-                    if (atm.authenticateTech(id, pass))
-                        new TechnicianV2Panel(atm).run(); // Opens technician panel
-                    else
-                        System.out.println("Access Denied.");
-                }
-
-                // ---------------- EXIT ----------------
-                case 3 -> {
-                    System.out.println("Goodbye!");
-                    sc.close();
-                    return;
-                }
-
-                default -> System.out.println("Invalid option.");
+                spool = new EReceiptSpool(Paths.get("data/receipts"));
+            } catch (IOException e) {
+                System.out.println("[!] E-Receipt Error: " + e.getMessage());
             }
         }
-    }
-
-    // ------------------- USER MENU -------------------
-    private static void userMenu(ATMMachineV2 atm, Scanner sc, Account user) {
-        boolean loggedIn = true;
-
-        while(loggedIn) {
-            System.out.println("\n--- USER MENU (" + user.getOwner() + ") ---");
-            System.out.println("1. Check Balance");
-            System.out.println("2. Deposit");
-            System.out.println("3. Withdraw");
-            System.out.println("4. Logout");
-            System.out.println("5. Transaction History");
-            System.out.print("Action: ");
 
-            int act;
+        // 4. Finally, inject the service and the printer into the ATM
+        // Stores with an owner index (the mapped store) load accounts on first login and keep at most
+        // -Datm.accounts.cache of them in memory (default 10000; 0 loads every account at startup)
+        ATMMachineV2 atm = new ATMMachineV2(writer, printer, Integer.getInteger("atm.accounts.cache", 10_000),
+                new ReceiptPrinter(printer, Integer.getInteger("atm.receipts.queue", 256), System.out::println, spool));
+        // Refills are scheduled -Datm.refill.leadMinutes (default 120) before paper, ink or cash is projected to run out
+        atm.setMetrics(metrics);
+        atm.setForecaster(new ConsumptionForecaster(Long.getLong("atm.refill.leadMinutes", 120) * 60_000));
+
+        // -Datm.server.port=N also serves remote terminals on localhost:N (0 picks a free port), each on its
+        // own virtual thread; sessions idle for -Datm.session.idleSeconds (default 120) are ended
+        SessionServer server = null;
+        int port = Integer.getInteger("atm.server.port", -1);
+        if (port >= 0) {
             try {
-                act = Integer.parseInt(sc.nextLine());
-            } catch(Exception e) {
-                System.out.println("Invalid input.");
-                continue;
+                server = new SessionServer(atm, new SessionManager(Long.getLong("atm.session.idleSeconds", 120) * 1_000), port);
+                System.out.println("[+] Terminal sessions on localhost:" + server.getPort());
+            } catch (IOException e) {
+                System.out.println("[!] Session Server Error: " + e.getMessage());
             }
-
-            switch(act) {
-                case 1 -> System.out.println("Balance: €" + String.format("%.2f", atm.checkBalance(user.getOwner())));
-
-                case 2 -> {
-                    if (!depositMenu(atm, sc, user)) {
-                        System.out.println("[!] ATM out of service. Returning to home.");
-                        loggedIn = false;
-                    }
-                }
-
-                case 3 -> {
-                    if (!withdrawMenu(atm, sc, user)) {
-                        System.out.println("[!] ATM out of service. Returning to home.");
-                        loggedIn = false;
-                    }
-                }
-
-                case 4 -> {
-                    atm.logout();
-                    loggedIn = false;
-                }
-
-                case 5 -> {
-                    if (user.getTransactions().isEmpty()) {
-                        System.out.println("No transactions yet.");
-                    } else {
-                        System.out.println("\n--- Transaction History ---");
-                        user.getTransactions().forEach(System.out::println);
-                    }
-                }
-
-                default -> System.out.println("Invalid option.");
-            } // switch
-        } // while
-    } // userMenu
-
-    // ------------------- DEPOSIT MENU -------------------
-    private static boolean depositMenu(ATMMachineV2 atm, Scanner sc, Account user) {
-        if(!atm.checkPaperInkWarning(sc)) return true;
-
-        System.out.print("Desired total deposit (€): ");
-        int desired;
-        try { desired = Integer.parseInt(sc.nextLine()); }
-        catch (Exception e) { System.out.println("Invalid amount."); return true; }
-
-        if (desired <= 0 || desired % 5 != 0) {
-            System.out.println("Amount must be positive and in multiples of €5.");
-            return true;
         }
 
-        int[] denoms = {5,10,20,50,100};
-        int sum = 0;
-
-        while (sum < desired) {
-            int remaining = desired - sum;
-            System.out.println("Choose a denomination to add (remaining: €" + remaining + "):");
-            for (int i = 0; i < denoms.length; i++) System.out.println((i+1) + ". €" + denoms[i]);
-            System.out.println("0. Cancel deposit");
-            System.out.print("Select: ");
-
-            int sel;
-            try { sel = Integer.parseInt(sc.nextLine()); } catch(Exception e){ System.out.println("Invalid."); continue; }
-            if (sel == 0) { System.out.println("Deposit cancelled."); return true; }
-            if (sel < 1 || sel > denoms.length) { System.out.println("Invalid selection."); continue; }
+        new HomeScreen(atm, sc).run(); // Returns on Exit
 
-            int chosen = denoms[sel-1];
-            int maxQty = remaining / chosen;
-            if (maxQty == 0) { System.out.println("[!] Cannot add €" + chosen + " note, exceeds remaining."); continue; }
-
-            System.out.print("How many €" + chosen + " notes? (max " + maxQty + "): ");
-            int qty;
-            try { qty = Integer.parseInt(sc.nextLine()); } catch(Exception e){ System.out.println("Invalid number."); continue; }
-            if (qty < 1 || qty > maxQty) { System.out.println("Enter a number between 1 and " + maxQty); continue; }
-
-            int add = chosen * qty;
-            sum += add;
-            System.out.println("Added €" + add + " (" + qty + "x€" + chosen + ") (total: €" + sum + ")");
+        try {
+            if (server != null) server.close(); // Remote customers are logged out before the stores close
+        } catch (IOException e) {
+            System.out.println("[!] Session Server Error: " + e.getMessage());
         }
-
-        atm.deposit(user.getOwner(), sum);
-        user.addTransaction("Deposit", sum);
-        atm.printReceipt();
-
-        if (atm.isOutOfService()) {
-            System.out.println("[!] ATM out of service. Logging out...");
-            atm.logout();
-            return false;
+        atm.getReceiptPrinter().close(); // Prints the receipts still queued
+        try {
+            if (spool != null) spool.close();
+        } catch (IOException e) {
+            System.out.println("[!] E-Receipt Error: " + e.getMessage());
         }
-        return true;
-    }
-
-    // ------------------- WITHDRAW MENU -------------------
-    private static boolean withdrawMenu(ATMMachineV2 atm, Scanner sc, Account user) {
-        if(!atm.checkPaperInkWarning(sc)) return true;
-
-        System.out.print("Desired total withdrawal (€): ");
-        int desired;
-        try { desired = Integer.parseInt(sc.nextLine()); } catch (Exception e) { System.out.println("Invalid amount."); return true; }
-
-        if (desired <= 0 || desired % 5 != 0) {
-            System.out.println("Amount must be positive and in multiples of €5.");
-            return true;
+        writer.close(); // flush() barrier: every queued save reaches the store
+        metrics.close(); // Last dump, with the final saves
+        if (journaled != null) {
+            compactor.close();
+            journaled.compact(); // Leave a fresh snapshot so the next start replays nothing
+            journaled.close();
         }
+        if (cached != null) cached.close(); // Commits what is still dirty
+        if (mapped != null) mapped.close();
+        if (sharded != null) sharded.close();
+        sc.close();
+    }
 
-        double balance = atm.checkBalance(user.getOwner());
-        if (desired > balance) { System.out.println("[!] Insufficient account balance."); return true; }
-        if (desired > atm.getCashAvailable()) { System.out.println("[!] ATM does not have enough cash."); return true; }
-
-        int[] denoms = {5,10,20,50,100};
-        int sum = 0;
-
-        while (sum < desired) {
-            int remaining = desired - sum;
-            System.out.println("Choose a denomination to withdraw (remaining: €" + remaining + "):");
-            for (int i = 0; i < denoms.length; i++) System.out.println((i+1) + ". €" + denoms[i]);
-            System.out.println("0. Cancel withdrawal");
-            System.out.print("Select: ");
-
-            int sel;
-            try { sel = Integer.parseInt(sc.nextLine()); } catch(Exception e){ System.out.println("Invalid."); continue; }
-            if (sel == 0) { System.out.println("Withdrawal cancelled."); return true; }
-            if (sel < 1 || sel > denoms.length) { System.out.println("Invalid selection."); continue; }
-
-            int chosen = denoms[sel-1];
-            int maxByRemaining = remaining / chosen;
-            int maxByATM = (int)((atm.getCashAvailable() - sum) / chosen);
-            int maxQty = Math.min(maxByRemaining, Math.max(0, maxByATM));
-
-            if (maxQty == 0) { System.out.println("[!] Cannot add €" + chosen + " note; exceeds remaining or ATM lacks cash."); continue; }
-
-            System.out.print("How many €" + chosen + " notes? (max " + maxQty + "): ");
-            int qty;
-            try { qty = Integer.parseInt(sc.nextLine()); } catch(Exception e){ System.out.println("Invalid number."); continue; }
-            if (qty < 1 || qty > maxQty) { System.out.println("Enter a number between 1 and " + maxQty); continue; }
-
-            int add = chosen * qty;
-            sum += add;
-            System.out.println("Added €" + add + " (" + qty + "x€" + chosen + ") (total: €" + sum + ")");
+    // The first start with the mapped store imports the existing JSON state, so no account is lost.
+    // -Datm.accounts.offheap=true keeps owner, PIN and balance of loaded accounts in the mapped records
+    // (flyweight views) instead of heap copies; a balance is then written to the file when it changes,
+    // so a write-back cache (-Datm.store.cache) only holds back history and machine fields.
+    private static MappedAccountStore openMappedStore(HistoryRetention retention) {
+        MappedAccountStore store = new MappedAccountStore("data/atm_state.accounts", retention,
+                Boolean.getBoolean("atm.accounts.offheap"));
+        if (!Files.exists(Paths.get("data/atm_state.accounts")) && Files.exists(Paths.get("data/atm_state.json"))) {
+            try {
+                System.out.println("[+] Imported " + store.importJson("data/atm_state.json") + " accounts into the mapped store.");
+            } catch (IOException e) {
+                System.out.println("[!] Import Error: " + e.getMessage());
+            }
         }
+        return store;
+    }
 
-        if(!atm.withdraw(user.getOwner(), sum)) return true;
-        user.addTransaction("Withdraw", sum);
-
-        if (atm.isOutOfService()) {
-            System.out.println("[!] ATM out of service. Logging out...");
-            atm.logout();
-            return false;
+    // Shard count (-Datm.shards, default 16) and load/save threads (-Datm.shards.threads, default one per core).
+    // The first start imports the existing JSON state, like the mapped store
+    private static ShardedATMStateService openShardedStore(HistoryRetention retention) {
+        ShardedATMStateService store = new ShardedATMStateService("data/shards", Integer.getInteger("atm.shards", 16),
+                Integer.getInteger("atm.shards.threads", Runtime.getRuntime().availableProcessors()), retention);
+        if (store.isEmpty() && Files.exists(Paths.get("data/atm_state.json"))) {
+            try (FileATMStateService json = new FileATMStateService()) {
+                var state = json.loadSnapshot(); // Histories are copied from the JSON store's log into the shards
+                store.saveStateCents(state.accounts(), state.cashCents(), state.paper(), state.ink(), state.firmware());
+                System.out.println("[+] Imported " + state.accounts().size() + " accounts into " + store.getShardCount() + " shards.");
+            }
         }
-        return true;
+        return store;
     }
 }
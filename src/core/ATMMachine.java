@@ -2,6 +2,9 @@ package core;
 
 import interfaces.*;          // Using interfaces supports abstraction (OOP) and Dependency Inversion (SOLID)
 import model.Account;         // Account model represents a real-world entity (OOP: Encapsulation)
+import model.BatchItem;
+import model.BatchResult;
+import model.Money;
 import services.*;            // Service layer separates responsibilities (SOLID: Single Responsibility)
 import java.util.List;
 import java.util.Optional;
@@ -141,6 +144,26 @@ public class ATMMachine implements ICustomerActions, ITechActions {
         return false;
     }
 
+    public BatchResult applyBatch(List<BatchItem> items) {
+        // Same all-or-nothing rules as ATMMachineV2 (see BatchPlan); one session at a time, so no locks
+        Account[] targets = new Account[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            if (!BatchPlan.isWellFormed(item)) continue;
+            targets[i] = accounts.stream().filter(a -> a.getOwner().equalsIgnoreCase(item.owner())).findFirst().orElse(null);
+        }
+        BatchPlan plan = BatchPlan.check(items, targets);
+        if (!plan.isValid()) return plan.rejected();
+        if (Money.fromDouble(internalCash) < plan.peakCashCents()) return plan.rejectedForCash();
+
+        for (int i = 0; i < items.size(); i++) {
+            targets[i].setBalanceCents(targets[i].getBalanceCents() + items.get(i).deltaCents());
+        }
+        internalCash += Money.toDouble(plan.netCashCents());
+        persistence.saveState(accounts, internalCash, printer.getPaperLevel(), printer.getInkLevel()); // Once per batch
+        return plan.applied();
+    }
+
     public void printReceipt() {
         // Delegation: PrinterService handles resource tracking (SRP)
         if (!printer.hasPaper()) {
@@ -152,8 +175,12 @@ public class ATMMachine implements ICustomerActions, ITechActions {
             return;
         }
 
-        printer.usePaper(); // Encapsulation: printer manages its own state
-        printer.useInk();
+        // Encapsulation: printer manages its own state; sheet and ink are taken together, atomically
+        if (!printer.tryReserve()) {
+            System.out.println("[!] Printer depleted. Cannot print receipt.");
+            return;
+        }
+        printer.commit(); // Printed right here, on the caller's thread
         System.out.println("[*] Receipt printed.");
 
         // Warning system for low resources
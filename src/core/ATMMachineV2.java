@@ -3,43 +3,142 @@ package core;
 import interfaces.ICustomerActions;     // Interface Segregation: customer-specific behavior
 import interfaces.ITechActions;         // Interface Segregation: technician-specific behavior
 import interfaces.IATMStateService;     // Dependency Inversion: ATM depends on abstraction, not concrete persistence
+import interfaces.IAccountDirectory;    // Per-owner loading for stores that support it (lazy accounts)
 import model.Account;                   // Domain model (OOP: Encapsulation)
+import model.BatchItem;                 // One deposit or withdrawal of a batch
+import model.BatchResult;               // Per-item outcome of a batch
+import model.Money;                     // Fixed-point euro amounts (whole cents in a long)
+import model.Receipt;                   // What the printer worker prints for a transaction
+import model.ReceiptMode;               // Paper, e-receipt or none, as the customer chose
+import model.StateSnapshot;             // Whole persisted state, loaded in one call
+import model.TransactionType;           // Type code of a history entry (no text per transaction)
+import services.LatencyHistogram;       // Fixed-bucket latency counts of one operation
+import services.MetricsRegistry;        // Named counters and latency histograms (technician panel, metrics file)
 import services.PrinterService;         // Service responsible only for printing resources (SRP)
+import services.ReceiptPrinter;         // Background receipt worker fed through a bounded queue
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ATMMachineV2 implements ICustomerActions, ITechActions {
     // Polymorphism: One class implementing multiple behavior contracts
     // Interface Segregation Principle (SOLID) in action
 
-    private List<Account> accounts;     // Composition: ATM "has" many accounts
-    private double internalCash;        // Encapsulated machine cash state
+    // Thread safety: many customer sessions may run against one ATMMachineV2 at the same time.
+    // Each account is mutated only while holding its stripe lock, the cash vault is updated with CAS,
+    // and persistence calls are serialized so the store always sees a complete state.
+
+    private List<Account> accounts;     // Composition: ATM "has" many accounts (synchronized list)
+    private Map<String, Account> accountIndex; // Case-folded owner -> account, O(1) lookups (eager mode)
+
+    // Lazy mode: accounts are read from the store's directory on first use and kept in a bounded cache;
+    // 'accounts' then lists only the materialized ones. Both null when every account is loaded at startup.
+    private final IAccountDirectory directory;
+    private final AccountCache cache;
+    private final StripedLock accountLocks = new StripedLock(); // Per-account striped locking
+    private final CashVault vault;      // Cash in the cassettes, updated atomically; always their note total
+    private final CashCassettes cassettes; // Notes that can be paid out, per denomination
+    // Booked cash that is not in the cassettes: batch settlements and deposits without counted notes.
+    // Negative when batches paid out more than they took in; then it also lowers what can be paid out.
+    // The ATM's cash total (what the store saves) is vault + ledger.
+    private final AtomicLong ledger;
     private PrinterService printer;     // Composition: ATM "has a" printer
+    private final ReceiptPrinter receipts; // Prints queued receipts off the customer's thread
     private IATMStateService persistence; // Dependency Inversion: abstraction instead of concrete class
-    private boolean isSessionActive;    // Session state tracking
-    private String firmwareVersion;     // Firmware stored as part of ATM system state
+    private final AtomicInteger activeSessions = new AtomicInteger(); // Session state tracking
+    private volatile SessionManager terminals; // Remote terminal sessions, when a session server runs
+    // Paper, ink and cash used per hour of day, to project when each runs out (see viewATMStatus)
+    private volatile ConsumptionForecaster usage = new ConsumptionForecaster(DEFAULT_REFILL_LEAD_MILLIS);
+    private volatile Timers timers = new Timers(new MetricsRegistry()); // Latencies of the customer operations
+    private volatile String firmwareVersion; // Firmware stored as part of ATM system state
+    private final Object saveLock = new Object(); // One persistence write at a time
+    private static final int RECEIPT_QUEUE = 256; // Receipts waiting for the printer before customers wait
+    private static final long DEFAULT_REFILL_LEAD_MILLIS = 2 * ConsumptionForecaster.HOUR_MILLIS; // Refill this long before empty
+
+    // Dirty tracking: what changed since the last save, so the store only writes that
+    private final Set<Account> dirtyAccounts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger dirtyMachineFields = new AtomicInteger(); // IATMStateService *_CHANGED bits
+
+    // The registry's metrics, looked up once so an operation only records (no map lookup per call)
+    private record Timers(MetricsRegistry registry, LatencyHistogram login, LatencyHistogram deposit,
+                          LatencyHistogram withdraw, LatencyHistogram receipt, LatencyHistogram save,
+                          LongAdder failedLogins, LongAdder declinedWithdrawals) {
+        Timers(MetricsRegistry m) {
+            this(m, m.histogram("atm.authenticateUser"), m.histogram("atm.deposit"), m.histogram("atm.withdraw"),
+                    m.histogram("atm.printReceipt"), m.histogram("atm.saveState"),
+                    m.counter("atm.login.failed"), m.counter("atm.withdraw.declined"));
+        }
+    }
 
     public ATMMachineV2(IATMStateService persistence, PrinterService printer) {
+        this(persistence, printer, 0);
+    }
+
+    // accountCacheSize > 0: if the store has an account directory, no account is loaded at startup; each one
+    // is read on first use and at most that many stay cached. Otherwise (or with 0) everything is loaded.
+    public ATMMachineV2(IATMStateService persistence, PrinterService printer, int accountCacheSize) {
+        this(persistence, printer, accountCacheSize, new ReceiptPrinter(printer, RECEIPT_QUEUE));
+    }
+
+    // 'receipts' must print on 'printer': its reservations are given back there when a receipt fails
+    public ATMMachineV2(IATMStateService persistence, PrinterService printer, int accountCacheSize,
+                        ReceiptPrinter receipts) {
         // Constructor Injection → SOLID (Dependency Inversion Principle)
         // ATM does NOT create its dependencies — they are provided from outside
 
         this.persistence = persistence;
         this.printer = printer;
+        this.receipts = receipts;
 
         // Abstraction: ATM does not know HOW data is stored, only that it can be loaded
-        this.accounts = persistence.loadAccounts();
-        this.internalCash = persistence.loadCashLevel();
-        this.printer.setPaperLevel(persistence.loadPaperLevel());
-        this.printer.setInkLevel(persistence.loadInkLevel());
-        this.firmwareVersion = persistence.loadFirmwareVersion();
+        // One snapshot call lets the store read everything in a single pass; a lazy ATM reads the machine
+        // state only, so startup does not depend on the number of accounts
+        IAccountDirectory dir = accountCacheSize > 0 ? persistence.accountDirectory() : null;
+        this.directory = dir;
+        this.cache = dir != null ? new AccountCache(accountCacheSize) : null;
+        StateSnapshot state = dir != null ? dir.loadMachineState() : persistence.loadSnapshot();
+        this.accounts = Collections.synchronizedList(state.accounts());
+        this.accountIndex = dir != null ? null : buildIndex(accounts);
+        this.cassettes = CashCassettes.restore(state.notes(), state.cashCents()); // Saved notes, or the total as standard mix
+        this.vault = new CashVault(cassettes.getTotalCents());
+        this.ledger = new AtomicLong(state.cashCents() - vault.getCents()); // The saved total minus the notes
+        this.printer.setPaperLevel(state.paper());
+        this.printer.setInkLevel(state.ink());
+        this.firmwareVersion = state.firmware();
+        receipts.setReleaseListener(this::receiptReleased); // Last: the machine is complete when a release comes
+    }
 
-        this.isSessionActive = false; // Initial state
+    // A receipt that failed to print gave its sheet and ink back: the higher levels must reach the store too
+    private void receiptReleased() {
+        markDirty(null, IATMStateService.PAPER_CHANGED | IATMStateService.INK_CHANGED);
+        saveState();
     }
 
     // ------------------- CUSTOMER ACTIONS -------------------
 
     public Account authenticateUser(String name, String pin) {
+        Timers t = timers;
+        long start = System.nanoTime();
+        Account a = null;
+        try {
+            return a = authenticate(name, pin);
+        } finally {
+            t.login().record(System.nanoTime() - start);
+            if (a == null) t.failedLogins().increment();
+        }
+    }
+
+    private Account authenticate(String name, String pin) {
         // Abstraction: Hides authentication process
         // Encapsulation: Account data accessed only through ATM logic
 
@@ -52,40 +151,59 @@ public class ATMMachineV2 implements ICustomerActions, ITechActions {
             return null;
         }
 
-        // Searching account list (Encapsulation of data)
-        for (Account a : accounts) {
-            if (a.getOwner().equalsIgnoreCase(name)) {
-                if (a.getPin().equals(pin)) {
-                    isSessionActive = true; // State change
-                    System.out.println("Welcome, " + name + "!");
-                    System.out.println("Current balance: €" + String.format("%.2f", a.getBalance()));
-                    return a;
-                } else {
-                    System.out.println("[!] Incorrect PIN.");
-                    return null;
-                }
-            }
-        }
+        // Index lookup instead of scanning the account list (Encapsulation of data)
+        Account a = findAccount(name);
+        if (a != null) return login(a, name, pin);
 
         // New user registration
         // Could be separated into a RegistrationService for stronger SRP
-        Account newUser = new Account(name, pin, 0.0);
-        accounts.add(newUser);
+        // The stripe lock makes check-then-register atomic, so two sessions cannot create the same owner twice
+        String key = indexKey(name);
+        Account newUser;
+        ReentrantLock lock = accountLocks.lockFor(key);
+        lock.lock();
+        try {
+            Account existing = findAccount(name); // Reentrant: a lazy load takes the same stripe lock
+            if (existing != null) return login(existing, name, pin);
+            newUser = new Account(name, pin, 0.0);
+            accounts.add(newUser);
+            if (cache != null) cache.put(key, newUser);
+            else accountIndex.put(key, newUser); // Keep the index in step with the list
+            dirtyAccounts.add(newUser);
+        } finally {
+            lock.unlock();
+        }
         saveState(); // Centralized persistence
         System.out.println("[+] Registered new account: " + name);
-        isSessionActive = true;
+        activeSessions.incrementAndGet();
         return newUser;
     }
 
+    private Account login(Account a, String name, String pin) {
+        if (a.getPin().equals(pin)) {
+            activeSessions.incrementAndGet(); // State change
+            System.out.println("Welcome, " + name + "!");
+            System.out.println("Current balance: €" + Money.format(a.getBalanceCents()));
+            return a;
+        }
+        System.out.println("[!] Incorrect PIN.");
+        return null;
+    }
+
     public boolean isOutOfService() {
         // Business rule abstraction
-        // ATM cannot function without cash or printing capability
-        return internalCash <= 0 || printer.getPaperLevel() <= 0 || printer.getInkLevel() <= 0;
+        // ATM cannot function without cash or printing capability; with e-receipts it can do without paper
+        if (dispensableCents() <= 0) return true;
+        return !hasEReceipts() && (printer.getPaperLevel() <= 0 || printer.getInkLevel() <= 0);
     }
 
+    // Receipts can be sent to the e-receipt spool instead of being printed
+    public boolean hasEReceipts() { return receipts.hasSpool(); }
+
     public boolean checkPaperInkWarning(java.util.Scanner sc) {
         // UI interaction mixed with logic (minor SRP violation, but acceptable for console apps)
-        if (printer.getPaperLevel() <= 3 || printer.getInkLevel() <= 3) {
+        // No question when e-receipts are on: an empty printer does not stop the transaction
+        if (!hasEReceipts() && (printer.getPaperLevel() <= 3 || printer.getInkLevel() <= 3)) {
             System.out.println("[!] Low paper/ink. Continue transaction? (y/n)");
             String resp = sc.nextLine();
             return resp.equalsIgnoreCase("y");
@@ -94,42 +212,122 @@ public class ATMMachineV2 implements ICustomerActions, ITechActions {
     }
 
     public double checkBalance(String name) {
-        // Functional programming style improves readability & null safety
-        Optional<Account> acc = accounts.stream()
-                .filter(a -> a.getOwner().equalsIgnoreCase(name))
-                .findFirst();
-        return acc.map(Account::getBalance).orElse(0.0);
+        Account a = findAccount(name);
+        return a != null ? a.getBalance() : 0.0;
+    }
+
+    @Override
+    public long checkBalanceCents(String name) {
+        Account a = findAccount(name);
+        return a != null ? a.getBalanceCents() : 0L;
     }
 
     public void deposit(String name, int amount) {
-        // Encapsulation of transaction logic
-        Optional<Account> acc = accounts.stream()
-                .filter(a -> a.getOwner().equalsIgnoreCase(name))
-                .findFirst();
+        deposit(name, amount, null);
+    }
 
-        acc.ifPresent(a -> {
-            a.setBalance(a.getBalance() + amount);
-            internalCash += amount; // ATM state updated
+    // Deposit of counted notes (notes[c] of cassette c): they are recycled into the cassettes
+    public void depositNotes(String name, int[] notes) {
+        int[] denominations = cassettes.getDenominations();
+        if (notes.length != denominations.length) throw new IllegalArgumentException("One count per cassette expected");
+        int amount = 0;
+        for (int c = 0; c < notes.length; c++) {
+            if (notes[c] < 0) throw new IllegalArgumentException("Negative note count");
+            amount += notes[c] * denominations[c];
+        }
+        deposit(name, amount, notes);
+    }
+
+    private void deposit(String name, int amount, int[] notes) {
+        Timers t = timers;
+        long start = System.nanoTime();
+        try {
+            applyDeposit(name, amount, notes);
+        } finally {
+            t.deposit().record(System.nanoTime() - start);
+        }
+    }
+
+    private void applyDeposit(String name, int amount, int[] notes) {
+        // Encapsulation of transaction logic
+        Account a = findAccount(name);
+
+        if (a != null) {
+            long cents = Money.ofEuros(amount); // Fixed-point: no rounding drift across many operations
+            ReentrantLock lock = accountLocks.lockFor(indexKey(a.getOwner()));
+            lock.lock();
+            try {
+                a.setBalanceCents(a.getBalanceCents() + cents);
+                a.addTransactionCents(TransactionType.DEPOSIT, cents); // Recorded under the same lock as the balance change
+                if (notes != null) {
+                    synchronized (cassettes) { cassettes.restore(notes); vault.add(cents); } // ATM state updated
+                } else {
+                    ledger.addAndGet(cents); // No notes to recycle: booked only
+                }
+                usage.record(ConsumptionForecaster.Resource.CASH, -cents); // Deposits slow the cash down
+                markDirty(a, IATMStateService.CASH_CHANGED);
+            } finally {
+                lock.unlock();
+            }
             saveState(); // Persistence abstraction
             System.out.println("Successfully deposited €" + amount);
-        });
+        }
     }
 
     public boolean withdraw(String name, int amount) {
+        return withdraw(name, amount, ReceiptMode.PAPER);
+    }
+
+    // Withdrawal with the receipt the customer chose (e-receipts need hasEReceipts())
+    public boolean withdraw(String name, int amount, ReceiptMode receiptMode) {
+        Timers t = timers;
+        long start = System.nanoTime();
+        boolean paid = false;
+        try {
+            return paid = applyWithdraw(name, amount, receiptMode);
+        } finally {
+            t.withdraw().record(System.nanoTime() - start);
+            if (!paid) t.declinedWithdrawals().increment();
+        }
+    }
+
+    private boolean applyWithdraw(String name, int amount, ReceiptMode receiptMode) {
         // Business logic encapsulated within ATM
-        Optional<Account> acc = accounts.stream()
-                .filter(a -> a.getOwner().equalsIgnoreCase(name))
-                .findFirst();
+        Account a = findAccount(name);
 
-        if (acc.isPresent()) {
-            Account a = acc.get();
+        if (a != null) {
             // Business rule validation
-            if (a.getBalance() >= amount && internalCash >= amount) {
-                a.setBalance(a.getBalance() - amount);
-                internalCash -= amount;
-                System.out.println("Desired amount reached. Please collect your cash: €" + amount);
-                printReceipt(); // Behavior reuse (modularity)
+            // Balance check and debit happen under the account's lock; the notes come out of the cassettes
+            // and the vault is debited in one step (dispense), so neither the account nor the ATM can go
+            // negative under concurrent withdrawals.
+            int[] notes = null;
+            long cents = Money.ofEuros(amount);
+            long balanceAfter = 0;
+            ReentrantLock lock = accountLocks.lockFor(indexKey(a.getOwner()));
+            lock.lock();
+            try {
+                if (a.getBalanceCents() >= cents && (notes = dispense(amount, cents)) != null) {
+                    balanceAfter = a.getBalanceCents() - cents;
+                    a.setBalanceCents(balanceAfter);
+                    a.addTransactionCents(TransactionType.WITHDRAW, cents);
+                    markDirty(a, IATMStateService.CASH_CHANGED);
+                    usage.record(ConsumptionForecaster.Resource.CASH, cents);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (notes != null) {
+                String mix = cassettes.describe(notes);
+                System.out.println("Desired amount reached. Please collect your cash: €" + amount
+                        + (mix.isEmpty() ? "" : " (" + mix + ")"));
+                // The receipt's paper and ink are reserved before the save, so one save persists the
+                // withdrawal and the printer levels; printing happens on the receipt worker afterwards
+                ReceiptMode mode = reserveReceipt(receiptMode);
                 saveState();
+                if (mode != ReceiptMode.NONE) {
+                    sendReceipt(Receipt.of(a.getOwner(), TransactionType.WITHDRAW, cents, balanceAfter, mix), mode);
+                }
                 return true;
             } else {
                 System.out.println("[!] Insufficient funds or ATM cash.");
@@ -138,39 +336,156 @@ public class ATMMachineV2 implements ICustomerActions, ITechActions {
         return false;
     }
 
+    // Batch: accounts are looked up first, then the stripe locks of all of them are taken in stripe order
+    // (StripedLock.locksFor) so no other session can change them between validation and the changes.
+    // Batches are settlements, not notes: their net cash is booked in the ledger and the cassettes stay
+    // as they are. The cash check and the booking happen under the cassettes' lock, so a concurrent
+    // withdrawal cannot pay out what the batch needs. One save persists every change; no receipt is printed.
+    @Override
+    public BatchResult applyBatch(List<BatchItem> items) {
+        Account[] targets = new Account[items.size()];
+        List<String> keys = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            if (!BatchPlan.isWellFormed(item)) continue;
+            targets[i] = findAccount(item.owner());
+            if (targets[i] != null) keys.add(indexKey(targets[i].getOwner()));
+        }
+
+        BatchPlan plan;
+        ReentrantLock[] locks = accountLocks.locksFor(keys);
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            plan = BatchPlan.check(items, targets);
+            if (!plan.isValid()) return plan.rejected();
+            synchronized (cassettes) {
+                if (vault.getCents() + ledger.get() < plan.peakCashCents()) return plan.rejectedForCash();
+                for (int i = 0; i < items.size(); i++) {
+                    BatchItem item = items.get(i);
+                    Account a = targets[i];
+                    a.setBalanceCents(a.getBalanceCents() + item.deltaCents());
+                    a.addTransactionCents(item.type(), item.amountCents());
+                    dirtyAccounts.add(a);
+                }
+                ledger.addAndGet(plan.netCashCents()); // What the batch leaves in the ATM's books
+            }
+            markDirty(null, IATMStateService.CASH_CHANGED);
+            usage.record(ConsumptionForecaster.Resource.CASH, -plan.netCashCents());
+        } finally {
+            for (int i = locks.length - 1; i >= 0; i--) locks[i].unlock();
+        }
+        saveState(); // One persist for the whole batch
+        System.out.println("[+] Batch applied: " + items.size() + " transactions");
+        return plan.applied();
+    }
+
+    // Takes the notes for 'amount' and the same cents from the vault, or nothing (null)
+    private int[] dispense(int amount, long cents) {
+        synchronized (cassettes) {
+            if (cents > dispensableCents()) return null; // Batches have booked the notes' cash out
+            int[] notes = cassettes.tryDispense(amount);
+            if (notes != null && !vault.tryTake(cents)) {
+                cassettes.restore(notes);
+                return null;
+            }
+            return notes;
+        }
+    }
+
+    // Cash that can leave the ATM: the notes, less what batches have paid out beyond their takings
+    private long dispensableCents() {
+        return Math.min(vault.getCents(), vault.getCents() + ledger.get());
+    }
+
+    // The notes a withdrawal of 'amount' would pay out right now (null = cannot be paid out); a lookup
+    public int[] planDispense(int amount) {
+        return amount <= 0 || Money.ofEuros(amount) > dispensableCents() ? null : cassettes.plan(amount);
+    }
+
+    // The largest amount up to 'amount' that can be paid out right now, to offer instead
+    public int largestDispensable(int amount) {
+        long dispensable = Math.max(0, dispensableCents()) / Money.CENTS_PER_EURO;
+        return cassettes.largestDispensable((int) Math.min(amount, dispensable));
+    }
+
+    // A receipt without a transaction
     public void printReceipt() {
-        // Check if printer can print at all
-        if (!printer.hasPaper() || !printer.hasInk()) {
-            System.out.println("[!] Printer depleted. ATM out of service. Logging out user...");
-            logout();
-            saveState();
-            return;
+        printReceipt(Receipt.of(null, null, 0, 0, null), ReceiptMode.PAPER);
+    }
+
+    // A receipt of the account's latest transaction (e.g. right after a deposit)
+    public void printReceipt(String name) {
+        printReceipt(name, ReceiptMode.PAPER);
+    }
+
+    public void printReceipt(String name, ReceiptMode receiptMode) {
+        if (receiptMode == ReceiptMode.NONE) return;
+        Account a = findAccount(name);
+        printReceipt(a == null ? Receipt.of(null, null, 0, 0, null) : Receipt.ofLatest(a.getOwner(), a.getMiniStatement(1)),
+                receiptMode);
+    }
+
+    private void printReceipt(Receipt receipt, ReceiptMode receiptMode) {
+        Timers t = timers;
+        long start = System.nanoTime();
+        try {
+            ReceiptMode mode = reserveReceipt(receiptMode);
+            saveState(); // Persists the new printer levels (or what is dirty when the printer is depleted)
+            sendReceipt(receipt, mode);
+        } finally {
+            t.receipt().record(System.nanoTime() - start); // Until queued: the worker prints afterwards
+        }
+    }
+
+    private void sendReceipt(Receipt receipt, ReceiptMode mode) {
+        if (mode == ReceiptMode.PAPER) {
+            receipts.submit(receipt);
+        } else if (mode == ReceiptMode.ELECTRONIC) {
+            receipts.submitElectronic(receipt);
+            System.out.println("[*] E-receipt sent.");
         }
+    }
 
-        // Use resources
-        printer.usePaper();
-        printer.useInk();
+    // Decides how the receipt goes out: a paper receipt takes its sheet and ink unit now, so isOutOfService
+    // already counts receipts still in the queue. A depleted printer falls back to an e-receipt when the ATM
+    // has a spool, otherwise there is no receipt (NONE, nothing taken).
+    private ReceiptMode reserveReceipt(ReceiptMode requested) {
+        if (requested == ReceiptMode.NONE) return ReceiptMode.NONE;
+        if (requested == ReceiptMode.ELECTRONIC && hasEReceipts()) return ReceiptMode.ELECTRONIC;
+        if (!printer.tryReserve()) {
+            if (hasEReceipts()) {
+                System.out.println("[!] Printer depleted. Sending an e-receipt instead.");
+                return ReceiptMode.ELECTRONIC;
+            }
+            // The session itself is ended by the caller's logout(), so it is counted exactly once
+            System.out.println("[!] Printer depleted. ATM out of service. Logging out user...");
+            return ReceiptMode.NONE;
+        }
+        markDirty(null, IATMStateService.PAPER_CHANGED | IATMStateService.INK_CHANGED);
+        usage.record(ConsumptionForecaster.Resource.PAPER, 1);
+        usage.record(ConsumptionForecaster.Resource.INK, 1);
+        int paperLeft = printer.getPaperLevel();
+        int inkLeft = printer.getInkLevel();
 
-        // Print receipt
-        System.out.println("[*] Receipt printed.");
+        System.out.println("[*] Printing receipt...");
 
         // Warnings if low but not depleted
-        if (printer.hasPaper() && printer.getPaperLevel() <= 3) System.out.println("[!] Warning: Low paper.");
-        if (printer.hasInk() && printer.getInkLevel() <= 3) System.out.println("[!] Warning: Low ink.");
+        if (paperLeft > 0 && paperLeft <= 3) System.out.println("[!] Warning: Low paper.");
+        if (inkLeft > 0 && inkLeft <= 3) System.out.println("[!] Warning: Low ink.");
 
-        // If resources depleted after printing
-        if (!printer.hasPaper() || !printer.hasInk()) {
+        // If resources depleted by this receipt
+        if ((paperLeft <= 0 || inkLeft <= 0) && !hasEReceipts()) {
             System.out.println("[!] Printer depleted after printing. ATM out of service. Logging out user...");
-            logout();
+        } else if (paperLeft <= 0 || inkLeft <= 0) {
+            System.out.println("[!] Printer depleted after printing. E-receipts only from now on.");
         }
-
-        // Save state
-        saveState();
+        return ReceiptMode.PAPER;
     }
 
 
     public void logout() {
-        isSessionActive = false; // Encapsulated session state control
+        // Encapsulated session state control; never drops below zero on a repeated logout
+        activeSessions.getAndUpdate(n -> Math.max(0, n - 1));
     }
 
     // ------------------- TECHNICIAN ACTIONS -------------------
@@ -184,36 +499,117 @@ public class ATMMachineV2 implements ICustomerActions, ITechActions {
         // Separation of concerns: Monitoring vs transaction handling
         System.out.println("\n--- ATM STATUS ---");
         System.out.println("System: ONLINE");
-        System.out.println("Usage: " + (isSessionActive ? "IN USE" : "IDLE"));
-        System.out.println("Cash: €" + internalCash);
+        int sessions = activeSessions.get();
+        System.out.println("Usage: " + (sessions > 0 ? "IN USE (" + sessions + " session" + (sessions == 1 ? "" : "s") + ")" : "IDLE"));
+        System.out.println("Cash: €" + Money.format(vault.getCents()) + " in cassettes");
+        System.out.println("Ledger: €" + Money.format(ledger.get()) + " (batches and uncounted deposits, not in cassettes)");
         System.out.println("Paper: " + printer.getPaperLevel() + " sheets");
         System.out.println("Ink: " + printer.getInkLevel() + " units");
+        System.out.println("Receipts: " + receipts.getQueued() + " queued, " + receipts.getPrinted() + " printed"
+                + (receipts.getFailed() > 0 ? ", " + receipts.getFailed() + " failed" : ""));
+        if (hasEReceipts()) {
+            System.out.println("E-receipts: " + receipts.getSpooled() + " spooled (" + receipts.getSpool().getDirectory() + ")");
+        }
         System.out.println("Firmware: " + firmwareVersion);
+        System.out.println("Cassettes: " + cassettes);
+        for (String line : describeForecasts()) System.out.println("Forecast " + line);
+        SessionManager remote = terminals;
+        if (remote != null) System.out.println("Terminals: " + remote.describe());
+        if (cache != null) {
+            System.out.println("Accounts: " + cache.size() + " in memory of " + directory.getAccountCount()
+                    + " (cache " + cache.getCapacity() + ")");
+        }
+        String storage = persistence.getStorageStatus();
+        if (!storage.isEmpty()) System.out.println("Storage: " + storage);
     }
 
     // ------------------- TECHNICIAN METHODS -------------------
 
+    // An amount without a note count is loaded as the standard mix (CashCassettes.fill); the vault grows
+    // by the notes actually loaded, and a rest no note can make is left out and reported
     public void refillCash(int amount) {
-        internalCash += amount; // Encapsulated resource control
+        long loaded;
+        synchronized (cassettes) {
+            loaded = cassettes.fill(Money.ofEuros(amount));
+            vault.add(loaded); // Encapsulated resource control
+        }
+        if (loaded == 0) {
+            System.out.println("[!] No notes make €" + amount + ". Nothing refilled.");
+            return;
+        }
+        markDirty(null, IATMStateService.CASH_CHANGED);
         saveState();
-        System.out.println("[+] Cash refilled: €" + amount);
+        long rest = Money.ofEuros(amount) - loaded;
+        System.out.println("[+] Cash refilled: €" + Money.format(loaded)
+                + (rest > 0 ? " (€" + Money.format(rest) + " makes no note, not loaded)" : ""));
     }
 
     public void collectCash(int amount) {
-        if (amount > internalCash) amount = (int) internalCash; // Business rule safeguard
-        internalCash -= amount;
+        // Business rule safeguard: never collect more than can be paid out; notes go largest first,
+        // and the vault gives up exactly what the notes taken are worth
+        long collected = 0;
+        synchronized (cassettes) {
+            int[] notes = cassettes.removeUpTo(Math.min(Money.ofEuros(amount), dispensableCents()));
+            long removed = cassettes.valueOf(notes);
+            if (vault.tryTake(removed)) collected = removed;
+            else cassettes.restore(notes);
+        }
+        if (collected == 0) {
+            System.out.println("[!] No notes to collect for €" + amount + ".");
+            return;
+        }
+        markDirty(null, IATMStateService.CASH_CHANGED);
         saveState();
-        System.out.println("[+] Cash collected: €" + amount);
+        System.out.println("[+] Cash collected: €" + Money.format(collected)
+                + (collected < Money.ofEuros(amount) ? " of €" + amount + " requested" : ""));
+    }
+
+    // Per cassette: 'notes' notes of the given denomination
+    public void refillCassette(int denomination, int notes) {
+        int cassette = cassettes.cassetteOf(denomination);
+        if (cassette < 0 || notes <= 0) {
+            System.out.println("[!] No cassette for €" + denomination + " notes, or no notes given.");
+            return;
+        }
+        synchronized (cassettes) {
+            cassettes.load(cassette, notes);
+            vault.add(Money.ofEuros((long) denomination * notes));
+        }
+        markDirty(null, IATMStateService.CASH_CHANGED);
+        saveState();
+        System.out.println("[+] Cassette €" + denomination + " refilled: " + notes + " notes");
+    }
+
+    public void collectCassette(int denomination, int notes) {
+        int cassette = cassettes.cassetteOf(denomination);
+        if (cassette < 0) {
+            System.out.println("[!] No cassette for €" + denomination + " notes.");
+            return;
+        }
+        int taken;
+        synchronized (cassettes) {
+            long limit = Math.max(0, dispensableCents()) / Money.ofEuros(denomination); // Notes batches left free
+            taken = cassettes.collect(cassette, (int) Math.min(notes, limit));
+            if (!vault.tryTake(Money.ofEuros((long) denomination * taken))) {
+                cassettes.load(cassette, taken);
+                taken = 0;
+            }
+        }
+        markDirty(null, IATMStateService.CASH_CHANGED);
+        saveState();
+        System.out.println("[+] Cassette €" + denomination + " collected: " + taken + " notes");
     }
 
     public void refillPaper(int sheets) {
-        printer.setPaperLevel(printer.getPaperLevel() + sheets); // Delegation to PrinterService
+        printer.addPaper(sheets); // Delegation to PrinterService; one CAS, receipts may be reserving meanwhile
+        markDirty(null, IATMStateService.PAPER_CHANGED);
         saveState();
         System.out.println("[+] Paper refilled: " + sheets + " sheets");
     }
 
     public void refillInk(int units) {
-        printer.setInkLevel(printer.getInkLevel() + units); // Delegation to PrinterService
+        printer.addInk(units); // Delegation to PrinterService
+        markDirty(null, IATMStateService.INK_CHANGED);
         saveState();
         System.out.println("[+] Ink refilled: " + units + " units");
     }
@@ -225,23 +621,132 @@ public class ATMMachineV2 implements ICustomerActions, ITechActions {
             return;
         }
         this.firmwareVersion = version; // Encapsulation of firmware state
+        markDirty(null, IATMStateService.FIRMWARE_CHANGED);
         saveState();
         System.out.println("[+] Firmware updated to " + version);
     }
 
+    // ------------------- ACCOUNT INDEX -------------------
+    // Owner names are case-insensitive, so the index is keyed by the case-folded name.
+    // Lookups are O(1) instead of a linear equalsIgnoreCase scan over every account.
+
+    private static Map<String, Account> buildIndex(List<Account> accounts) {
+        Map<String, Account> index = new ConcurrentHashMap<>(Math.max(16, accounts.size() * 4 / 3 + 1));
+        for (Account a : accounts) index.putIfAbsent(indexKey(a.getOwner()), a); // First match wins, as the old scan did
+        return index;
+    }
+
+    private static String indexKey(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private Account findAccount(String name) {
+        String key = indexKey(name);
+        if (cache == null) return accountIndex.get(key);
+        Account a = cache.get(key);
+        return a != null ? a : materialize(key, name);
+    }
+
+    // ------------------- LAZY ACCOUNTS -------------------
+    // Cache miss: an evicted account still in use somewhere comes back as the same object; otherwise the
+    // store reads it. Under the owner's stripe lock, so one owner is never materialized twice.
+    private Account materialize(String key, String name) {
+        Account a;
+        ReentrantLock lock = accountLocks.lockFor(key);
+        lock.lock();
+        try {
+            a = cache.get(key);
+            if (a != null) return a;
+            a = cache.revive(key);
+            if (a == null) {
+                a = directory.loadAccount(name);
+                if (a == null) return null; // Unknown owner: authenticateUser registers it
+                cache.put(key, a);
+            }
+            accounts.add(a);
+        } finally {
+            lock.unlock();
+        }
+        if (cache.isFull()) cache.trim(accounts::remove); // Evicted accounts leave the list handed to saves
+        return a;
+    }
+
     // ------------------- SAVE STATE -------------------
 
+    // Called after the change itself, so a save that drains the mark always sees the new values
+    private void markDirty(Account changed, int machineFields) {
+        if (changed != null) dirtyAccounts.add(changed);
+        if (machineFields != 0) dirtyMachineFields.getAndUpdate(f -> f | machineFields);
+    }
+
+    // Timed including the wait for saveLock: that wait is part of what a customer waits for
     private void saveState() {
+        Timers t = timers;
+        long start = System.nanoTime();
+        try {
+            persistChanges();
+        } finally {
+            t.save().record(System.nanoTime() - start);
+        }
+    }
+
+    private void persistChanges() {
         // Abstraction + Dependency Inversion
         // ATM does not know how or where data is stored
-        persistence.saveState(accounts, internalCash, printer.getPaperLevel(), printer.getInkLevel(), firmwareVersion);
+        // Only what changed since the last save is handed over; marks drained here but changed again
+        // before the store reads the values are simply set again and written by the next save
+        synchronized (saveLock) {
+            List<Account> changed = new ArrayList<>(dirtyAccounts.size());
+            for (Iterator<Account> it = dirtyAccounts.iterator(); it.hasNext(); ) {
+                changed.add(it.next());
+                it.remove();
+            }
+            int machineFields = dirtyMachineFields.getAndSet(0);
+            if (changed.isEmpty() && machineFields == 0) return; // Nothing to persist
+            // The note counts go with the cash: every cassette change also marks CASH_CHANGED
+            persistence.saveChanges(accounts, changed, machineFields, getCashCents(), cassettes.getCounts(),
+                    printer.getPaperLevel(), printer.getInkLevel(), firmwareVersion);
+        }
     }
 
     // ------------------- GETTERS -------------------
     // Controlled exposure of internal state (Encapsulation)
 
-    public double getCashAvailable() { return internalCash; }
+    // The ATM's cash total: the notes in the cassettes plus the ledger
+    public double getCashAvailable() { return Money.toDouble(getCashCents()); }
+    public long getCashCents() { return vault.getCents() + ledger.get(); }
+    public long getLedgerCents() { return ledger.get(); }
+    public CashCassettes getCassettes() { return cassettes; }
+    public int getActiveSessions() { return activeSessions.get(); }
+    public ReceiptPrinter getReceiptPrinter() { return receipts; }
+    public MetricsRegistry getMetrics() { return timers.registry(); }
+    public void setMetrics(MetricsRegistry metrics) { this.timers = new Timers(metrics); }
+
+    // ------------------- FORECASTS -------------------
+    // One line per resource: rate at this hour of day, projected depletion and when to refill
+    public List<String> describeForecasts() {
+        ConsumptionForecaster f = usage;
+        return List.of(
+                f.describe(f.forecast(ConsumptionForecaster.Resource.PAPER, printer.getPaperLevel())),
+                f.describe(f.forecast(ConsumptionForecaster.Resource.INK, printer.getInkLevel())),
+                f.describe(f.forecast(ConsumptionForecaster.Resource.CASH, dispensableCents())));
+    }
+
+    // Resources whose refill is due within 'withinMillis', soonest first; the technician is told at login
+    public List<ConsumptionForecaster.Forecast> getRefillsDue(long withinMillis) {
+        return usage.refillsDue(printer.getPaperLevel(), printer.getInkLevel(), dispensableCents(), withinMillis);
+    }
+
+    public ConsumptionForecaster getForecaster() { return usage; }
+    public void setForecaster(ConsumptionForecaster usage) { this.usage = usage; }
+
+    public SessionManager getSessionManager() { return terminals; }
+    public void setSessionManager(SessionManager terminals) { this.terminals = terminals; }
     public int getPaperAvailable() { return printer.getPaperLevel(); }
     public int getInkAvailable() { return printer.getInkLevel(); }
     public String getFirmwareVersion() { return firmwareVersion; }
+
+    // Accounts held in memory: all of them in eager mode, the materialized ones in lazy mode
+    public int getLoadedAccountCount() { return cache != null ? cache.size() : accounts.size(); }
+    public boolean isLazy() { return cache != null; }
 }
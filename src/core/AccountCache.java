@@ -0,0 +1,107 @@
+package core;
+
+import model.Account;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// AccountCache holds the accounts an ATM has materialized from its store, up to a fixed number
+// OOP: Encapsulation of the eviction policy and of the evicted-but-still-referenced accounts
+// SOLID - SRP: Decides which accounts stay in memory; loading them and locking them is ATMMachineV2's job
+// Eviction is second-chance (CLOCK): accounts are queued in load order and every hit sets a flag, so an
+// account used since its last turn goes round once more instead of leaving. Hits never take a lock.
+// An evicted account is only forgotten once nothing references it anymore (weakly held): while a session
+// or a queued save still holds it, a lookup returns that same object, so two copies of one account can
+// never be changed side by side. Once it is unreachable every change to it has been handed to the store.
+final class AccountCache {
+
+    private static final class Entry {
+        final Account account;
+        volatile boolean referenced = true; // A new entry gets its second chance right away
+
+        Entry(Account account) { this.account = account; }
+    }
+
+    private static final class Retired extends WeakReference<Account> {
+        final String key;
+
+        Retired(String key, Account account, ReferenceQueue<Account> queue) {
+            super(account, queue);
+            this.key = key;
+        }
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final ConcurrentLinkedQueue<String> clock = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Retired> retired = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Account> collected = new ReferenceQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    AccountCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new ConcurrentHashMap<>(Math.min(this.capacity, 1 << 16) * 4 / 3 + 1);
+    }
+
+    // Cached account for a case-folded owner, or null
+    Account get(String key) {
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        if (!e.referenced) e.referenced = true; // Read first: no write (and cache-line traffic) on a hot entry
+        return e.account;
+    }
+
+    // An evicted account that is still referenced somewhere, moved back into the cache; or null.
+    // Callers hold the key's stripe lock, so a key is never revived and loaded at the same time.
+    Account revive(String key) {
+        Retired ref = retired.get(key);
+        Account a = ref == null ? null : ref.get();
+        if (a == null) return null;
+        put(key, a);
+        retired.remove(key, ref); // Only this reference: a newer eviction of the key must stay recorded
+        return a;
+    }
+
+    // Under the key's stripe lock, after get and revive found nothing
+    void put(String key, Account account) {
+        if (entries.put(key, new Entry(account)) == null) {
+            size.incrementAndGet();
+            clock.add(key);
+        }
+    }
+
+    boolean isFull() { return size.get() > capacity; }
+
+    // Evicts until the cache is back at its capacity; 'evicted' is told about every account that left.
+    // One thread at a time; at most two rounds of the clock, after which every flag has been cleared once.
+    synchronized void trim(Consumer<Account> evicted) {
+        purgeCollected();
+        for (int steps = 2 * size.get(); isFull() && steps > 0; steps--) {
+            String key = clock.poll();
+            if (key == null) return;
+            Entry e = entries.get(key);
+            if (e == null) continue;
+            if (e.referenced) {
+                e.referenced = false; // Second chance
+                clock.add(key);
+                continue;
+            }
+            retired.put(key, new Retired(key, e.account, collected)); // Before it leaves: a lookup finds one or the other
+            entries.remove(key, e);
+            size.decrementAndGet();
+            evicted.accept(e.account);
+        }
+    }
+
+    private void purgeCollected() {
+        for (Retired ref; (ref = (Retired) collected.poll()) != null; ) retired.remove(ref.key, ref);
+    }
+
+    int size() { return size.get(); }
+
+    int getCapacity() { return capacity; }
+}
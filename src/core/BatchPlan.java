@@ -0,0 +1,93 @@
+package core;
+
+import model.Account;
+import model.BatchItem;
+import model.BatchResult;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// BatchPlan checks a batch of deposits and withdrawals before anything is changed
+// OOP: Encapsulation of the all-or-nothing validation shared by ATMMachine and ATMMachineV2
+// SOLID - SRP: Only decides whether a batch can be applied; the ATM applies and persists it
+// Items are checked in order against running balances, so a withdrawal may spend a deposit made earlier
+// in the same batch. The ATM's cash is checked by the caller against peakCashCents().
+final class BatchPlan {
+
+    private final BatchResult.Status[] statuses; // null = no problem found with the item
+    private boolean valid = true;
+    private long peakCashCents; // Most cash the batch has paid out (withdrawals minus deposits) at any point
+    private int peakItem = -1;
+    private long netCashCents;  // Deposits minus withdrawals of the whole batch
+
+    private BatchPlan(int size) {
+        this.statuses = new BatchResult.Status[size];
+    }
+
+    // accounts[i] is the account of item i, or null if the owner is unknown.
+    // Must run while the accounts cannot change (the caller holds their locks).
+    static BatchPlan check(List<BatchItem> items, Account[] accounts) {
+        BatchPlan plan = new BatchPlan(items.size());
+        Map<Account, Long> balances = new IdentityHashMap<>();
+        long paidOut = 0;
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            if (!isWellFormed(item)) {
+                plan.fail(i, BatchResult.Status.INVALID_ITEM);
+                continue;
+            }
+            Account a = accounts[i];
+            if (a == null) {
+                plan.fail(i, BatchResult.Status.UNKNOWN_ACCOUNT);
+                continue;
+            }
+            long balance = balances.getOrDefault(a, a.getBalanceCents()) + item.deltaCents();
+            if (balance < 0) {
+                plan.fail(i, BatchResult.Status.INSUFFICIENT_FUNDS);
+                continue;
+            }
+            balances.put(a, balance);
+            paidOut -= item.deltaCents();
+            plan.netCashCents += item.deltaCents();
+            if (paidOut > plan.peakCashCents) {
+                plan.peakCashCents = paidOut;
+                plan.peakItem = i;
+            }
+        }
+        return plan;
+    }
+
+    static boolean isWellFormed(BatchItem item) {
+        return item != null && item.owner() != null && item.type() != null && item.amountCents() > 0;
+    }
+
+    private void fail(int item, BatchResult.Status reason) {
+        statuses[item] = reason;
+        valid = false;
+    }
+
+    boolean isValid() { return valid; }
+    long peakCashCents() { return peakCashCents; }
+    long netCashCents() { return netCashCents; }
+
+    BatchResult applied() {
+        BatchResult.Status[] all = new BatchResult.Status[statuses.length];
+        Arrays.fill(all, BatchResult.Status.APPLIED);
+        return new BatchResult(true, Arrays.asList(all));
+    }
+
+    // Nothing was applied: failing items keep their reason, the others are reported NOT_APPLIED
+    BatchResult rejected() {
+        BatchResult.Status[] all = statuses.clone();
+        for (int i = 0; i < all.length; i++) if (all[i] == null) all[i] = BatchResult.Status.NOT_APPLIED;
+        return new BatchResult(false, Arrays.asList(all));
+    }
+
+    // The ATM cannot pay out peakCashCents(): blamed on the item at which the batch needs that much
+    BatchResult rejectedForCash() {
+        if (peakItem >= 0) fail(peakItem, BatchResult.Status.INSUFFICIENT_CASH);
+        return rejected();
+    }
+}
@@ -0,0 +1,181 @@
+package core;
+
+import model.Money;
+
+// CashCassettes counts the notes the ATM can pay out, one cassette per denomination
+// OOP: Encapsulation - note counts only change through dispense, load and collect
+// SOLID - SRP: Tracks notes and plans payouts (through DispensePlanner); the ATM's cash total stays in CashVault
+// The planner's tables belong to one stock: the next plan after a change checks whether they still fit
+// (DispensePlanner.matches) and rebuilds them only if not, so almost every plan is a table lookup.
+public class CashCassettes {
+
+    public static final int[] STANDARD_DENOMINATIONS = {5, 10, 20, 50, 100}; // Euros, ascending
+    public static final int MAX_NOTES_PER_DISPENSE = 40; // What the dispenser can stack in one payout
+
+    private final int[] denominations;
+    private final int[] counts;
+    private DispensePlanner planner; // Tables of the last stock a plan was made for
+    private long plannerBuilds;
+
+    public CashCassettes(int[] denominations) {
+        if (denominations.length == 0) throw new IllegalArgumentException("At least one cassette is required");
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] <= 0 || (i > 0 && denominations[i] <= denominations[i - 1])) {
+                throw new IllegalArgumentException("Denominations must be positive and ascending");
+            }
+        }
+        this.denominations = denominations.clone();
+        this.counts = new int[denominations.length];
+    }
+
+    // The standard cassettes loaded with 'cents' as the standard mix (see fill)
+    public static CashCassettes standard(long cents) {
+        CashCassettes cassettes = new CashCassettes(STANDARD_DENOMINATIONS);
+        cassettes.fill(cents);
+        return cassettes;
+    }
+
+    // The standard cassettes with the note counts a store saved; a store that kept only the total
+    // (an old state file) gives no counts, and then 'cents' is loaded as the standard mix
+    public static CashCassettes restore(int[] notes, long cents) {
+        if (notes == null || notes.length != STANDARD_DENOMINATIONS.length) return standard(cents);
+        CashCassettes cassettes = new CashCassettes(STANDARD_DENOMINATIONS);
+        for (int c = 0; c < notes.length; c++) cassettes.load(c, notes[c]);
+        return cassettes;
+    }
+
+    // ---------------------- DISPENSE ----------------------
+    // Notes per cassette for 'euros', fewest notes first, or null if the stock cannot pay it out
+    public synchronized int[] plan(int euros) {
+        return planner().plan(euros);
+    }
+
+    public synchronized boolean canDispense(int euros) {
+        return planner().isFeasible(euros);
+    }
+
+    // The largest amount up to 'euros' the stock can pay out, for suggesting another amount
+    public synchronized int largestDispensable(int euros) {
+        return planner().largestFeasible(euros);
+    }
+
+    // Plans and takes the notes in one step; null (nothing taken) if the amount cannot be paid out
+    public synchronized int[] tryDispense(int euros) {
+        int[] notes = planner().plan(euros);
+        if (notes == null) return null;
+        for (int c = 0; c < counts.length; c++) counts[c] -= notes[c];
+        return notes;
+    }
+
+    // Puts notes taken by tryDispense back, e.g. when the payout is not completed
+    public synchronized void restore(int[] notes) {
+        for (int c = 0; c < counts.length; c++) counts[c] += notes[c];
+    }
+
+    private DispensePlanner planner() {
+        if (planner == null || !planner.matches(counts)) {
+            planner = new DispensePlanner(denominations, counts, MAX_NOTES_PER_DISPENSE);
+            plannerBuilds++;
+        }
+        return planner;
+    }
+
+    // ---------------------- LOAD / COLLECT ----------------------
+    public synchronized void load(int cassette, int notes) {
+        if (notes <= 0) return;
+        counts[cassette] += notes;
+    }
+
+    // Takes up to 'notes' notes out of one cassette and returns how many were taken
+    public synchronized int collect(int cassette, int notes) {
+        int taken = Math.min(counts[cassette], Math.max(0, notes));
+        counts[cassette] -= taken;
+        return taken;
+    }
+
+    // Loads an amount given only as a total (legacy refills, the saved cash at startup) as a mix that
+    // keeps every denomination available: rounds of one note per cassette, smallest first, while a note
+    // still fits. Returns the cents loaded; a rest below the smallest note stays outside the cassettes.
+    public synchronized long fill(long cents) {
+        long euros = Math.max(0, cents) / Money.CENTS_PER_EURO;
+        long loaded = 0;
+        long round = 0;
+        for (int d : denominations) round += d;
+        long rounds = euros / round; // Whole rounds at once, then the rest note by note
+        for (int c = 0; c < counts.length; c++) counts[c] += (int) rounds;
+        loaded += rounds * round;
+        for (boolean added = true; added; ) {
+            added = false;
+            for (int c = 0; c < counts.length; c++) {
+                if (euros - loaded >= denominations[c]) {
+                    counts[c]++;
+                    loaded += denominations[c];
+                    added = true;
+                }
+            }
+        }
+        return Money.ofEuros(loaded);
+    }
+
+    // Takes notes worth at most 'cents', largest first, and returns the notes taken (legacy collect)
+    public synchronized int[] removeUpTo(long cents) {
+        long euros = Math.max(0, cents) / Money.CENTS_PER_EURO;
+        long removed = 0;
+        int[] taken = new int[counts.length];
+        for (int c = counts.length - 1; c >= 0; c--) {
+            int n = (int) Math.min(counts[c], (euros - removed) / denominations[c]);
+            counts[c] -= n;
+            taken[c] = n;
+            removed += (long) n * denominations[c];
+        }
+        return taken;
+    }
+
+    // ---------------------- GETTERS ----------------------
+    public int[] getDenominations() { return denominations.clone(); }
+    public int getCassetteCount() { return denominations.length; }
+
+    // Cassette holding 'euros' notes, or -1
+    public int cassetteOf(int euros) {
+        for (int c = 0; c < denominations.length; c++) if (denominations[c] == euros) return c;
+        return -1;
+    }
+
+    public synchronized int getNotes(int cassette) { return counts[cassette]; }
+
+    // Cents the given notes (one count per cassette) are worth
+    public long valueOf(int[] notes) {
+        long euros = 0;
+        for (int c = 0; c < notes.length; c++) euros += (long) notes[c] * denominations[c];
+        return Money.ofEuros(euros);
+    }
+    public synchronized int[] getCounts() { return counts.clone(); }
+    public synchronized long getPlannerBuilds() { return plannerBuilds; }
+
+    public synchronized long getTotalCents() {
+        long euros = 0;
+        for (int c = 0; c < counts.length; c++) euros += (long) counts[c] * denominations[c];
+        return Money.ofEuros(euros);
+    }
+
+    // "2x€50, 1x€20" for the notes of a plan
+    public String describe(int[] notes) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = notes.length - 1; c >= 0; c--) {
+            if (notes[c] == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(notes[c]).append("x€").append(denominations[c]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < counts.length; c++) {
+            if (c > 0) sb.append(" | ");
+            sb.append('€').append(denominations[c]).append(" x").append(counts[c]);
+        }
+        return sb.toString();
+    }
+}
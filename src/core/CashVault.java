@@ -0,0 +1,41 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// CashVault holds the ATM's shared cash, updated atomically across concurrent sessions
+// OOP: Encapsulation - the amount can only change through the operations below
+// SOLID - SRP: Only tracks cash; account balances live in Account
+// The amount is kept in whole cents (see model.Money) inside an AtomicLong so every update
+// is a single CAS, and a withdrawal can never drive the vault below zero.
+public class CashVault {
+
+    private final AtomicLong cents;
+
+    public CashVault(long initialCents) {
+        this.cents = new AtomicLong(initialCents);
+    }
+
+    public void add(long amountCents) {
+        cents.addAndGet(amountCents);
+    }
+
+    // Takes the amount only if the vault holds enough; check and decrement happen as one step
+    public boolean tryTake(long amountCents) {
+        while (true) {
+            long current = cents.get();
+            if (current < amountCents) return false;
+            if (cents.compareAndSet(current, current - amountCents)) return true;
+        }
+    }
+
+    // Takes as much of the amount as is available and returns what was actually taken
+    public long takeUpTo(long amountCents) {
+        while (true) {
+            long current = cents.get();
+            long taken = Math.min(current, Math.max(0, amountCents));
+            if (cents.compareAndSet(current, current - taken)) return taken;
+        }
+    }
+
+    public long getCents() { return cents.get(); }
+}
@@ -0,0 +1,220 @@
+package core;
+
+import model.Money;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// ConsumptionForecaster learns how fast paper, ink and cash are used at each hour of the day and projects
+// when each will run out, so refills can be scheduled before the ATM goes out of service
+// OOP: Encapsulation - callers record what was used and ask for forecasts; the averages stay in here
+// SOLID - SRP: Only rates and projections; the levels come from the caller (PrinterService, CashVault)
+// Usage is summed per clock hour (LongAdder: recording is one add on the customer's thread). When an hour
+// ends, its total is folded into an exponentially weighted average for that hour of the day, so the
+// forecast follows the ATM's daily rhythm and recent days weigh most. Hours without usage fold in as zero.
+// A projection walks the coming hours with those rates (what was already used this hour counts) until the
+// level reaches zero or the horizon ends. Rates are not persisted: they are learned again after a restart.
+public class ConsumptionForecaster {
+
+    // What is forecast; cash is counted in cents, net of deposits
+    public enum Resource {
+        PAPER("paper", "sheets"),
+        INK("ink", "units"),
+        CASH("cash", "cents");
+
+        private final String label;
+        private final String unit;
+
+        Resource(String label, String unit) {
+            this.label = label;
+            this.unit = unit;
+        }
+
+        public String label() { return label; }
+        public String unit() { return unit; }
+    }
+
+    // emptyAt / refillBy are epoch millis, Long.MAX_VALUE when the level lasts beyond the horizon;
+    // ratePerHour is NaN until a rate is known
+    public record Forecast(Resource resource, long level, double ratePerHour, long emptyAt, long refillBy) {
+        public boolean isKnown() { return !Double.isNaN(ratePerHour); }
+        public boolean runsOut() { return emptyAt != Long.MAX_VALUE; }
+    }
+
+    public static final double DEFAULT_ALPHA = 0.3;   // Weight of the latest day's hour
+    public static final long HOUR_MILLIS = 3_600_000L;
+    private static final int HORIZON_HOURS = 7 * 24;  // Projections stop after a week
+    private static final long MIN_SAMPLE_MILLIS = 5 * 60_000L; // Before any full hour, extrapolate after 5 minutes
+    private static final DateTimeFormatter REFILL_BY = DateTimeFormatter.ofPattern("EEE HH:mm", Locale.ENGLISH);
+
+    private final double alpha;
+    private final long leadMillis; // A refill is due this long before the projected depletion
+    private final ZoneId zone;
+    private final LongSupplier clock;
+
+    private final LongAdder[] current = new LongAdder[Resource.values().length]; // Usage in the running hour
+    private final double[][] hourly = new double[Resource.values().length][24]; // Guarded by this
+    private final boolean[][] seen = new boolean[Resource.values().length][24];  // Guarded by this
+    private long hourStart;             // Start of the running hour, guarded by this
+    private volatile long nextHour;     // hourStart + one hour: record() rolls over once it is reached
+    private final long startedAt;
+
+    // Refills due 'leadMillis' before the projected depletion, on the system clock and zone
+    public ConsumptionForecaster(long leadMillis) {
+        this(DEFAULT_ALPHA, leadMillis, ZoneId.systemDefault(), System::currentTimeMillis);
+    }
+
+    public ConsumptionForecaster(double alpha, long leadMillis, ZoneId zone, LongSupplier clock) {
+        if (alpha <= 0 || alpha > 1) throw new IllegalArgumentException("Alpha must be in (0, 1]");
+        this.alpha = alpha;
+        this.leadMillis = Math.max(0, leadMillis);
+        this.zone = zone;
+        this.clock = clock;
+        for (int r = 0; r < current.length; r++) current[r] = new LongAdder();
+        this.startedAt = clock.getAsLong();
+        this.hourStart = localHourStart(startedAt);
+        this.nextHour = hourStart + HOUR_MILLIS;
+    }
+
+    // ---------------------- RECORDING ----------------------
+    // 'amount' used now; negative gives back (a cash deposit)
+    public void record(Resource resource, long amount) {
+        if (clock.getAsLong() >= nextHour) rollOver();
+        current[resource.ordinal()].add(amount);
+    }
+
+    // Folds every hour that has ended into the averages. Usage recorded while an hour is folded may be
+    // counted in the next hour instead; the averages are estimates, not a ledger.
+    private synchronized void rollOver() {
+        long now = clock.getAsLong();
+        int folded = 0;
+        while (now >= hourStart + HOUR_MILLIS) {
+            int hour = hourOfDay(hourStart);
+            long covered = hourStart + HOUR_MILLIS - Math.max(startedAt, hourStart); // Less in the first hour
+            for (int r = 0; r < current.length; r++) {
+                long used = folded == 0 ? current[r].sumThenReset() : 0; // Later hours were idle
+                if (covered >= MIN_SAMPLE_MILLIS) fold(r, hour, used * (double) HOUR_MILLIS / covered);
+            }
+            hourStart = localHourStart(hourStart + HOUR_MILLIS);
+            if (++folded == HORIZON_HOURS * 2) hourStart = localHourStart(now); // Long idle: two weeks is enough
+        }
+        nextHour = hourStart + HOUR_MILLIS;
+    }
+
+    private void fold(int r, int hour, double used) {
+        if (!seen[r][hour]) {
+            hourly[r][hour] = used;
+            seen[r][hour] = true;
+        } else {
+            hourly[r][hour] = alpha * used + (1 - alpha) * hourly[r][hour];
+        }
+    }
+
+    // ---------------------- FORECASTS ----------------------
+    public synchronized Forecast forecast(Resource resource, long level) {
+        if (clock.getAsLong() >= nextHour) rollOver();
+        long now = clock.getAsLong();
+        int r = resource.ordinal();
+        if (level <= 0) return new Forecast(resource, level, Double.NaN, now, now);
+        double fallback = fallbackRate(r, now);
+        int hour = hourOfDay(hourStart);
+        double rateNow = rate(r, hour, fallback);
+        if (Double.isNaN(rateNow)) return new Forecast(resource, level, Double.NaN, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        // The rest of the running hour: what its average still expects beyond what was used so far
+        double left = level;
+        long t = now;
+        long end = hourStart + HOUR_MILLIS;
+        double use = Math.max(0, rateNow - current[r].sum());
+        for (int h = 0; h <= HORIZON_HOURS; h++) {
+            if (use > 0 && use >= left) {
+                long emptyAt = t + (long) ((end - t) * (left / use)); // Linear within the hour
+                return new Forecast(resource, level, rateNow, emptyAt, Math.max(now, emptyAt - leadMillis));
+            }
+            left -= use;
+            t = end;
+            end = localHourStart(t + HOUR_MILLIS);
+            use = rate(r, hourOfDay(t), fallback);
+        }
+        return new Forecast(resource, level, rateNow, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    // The resources a refill is due for by 'withinMillis' from now, soonest first
+    public List<Forecast> refillsDue(long paper, long ink, long cashCents, long withinMillis) {
+        long limit = clock.getAsLong() + withinMillis;
+        List<Forecast> due = new ArrayList<>();
+        for (Forecast f : List.of(forecast(Resource.PAPER, paper), forecast(Resource.INK, ink), forecast(Resource.CASH, cashCents))) {
+            if (f.runsOut() && f.refillBy() <= limit) due.add(f);
+        }
+        due.sort(Comparator.comparingLong(Forecast::refillBy));
+        return due;
+    }
+
+    // Average for the hour of day; hours not seen yet take the mean of the seen ones
+    private double rate(int r, int hour, double fallback) {
+        return seen[r][hour] ? hourly[r][hour] : fallback;
+    }
+
+    // Mean of the seen hours, or (before the first full hour) the running hour extrapolated; NaN if neither
+    private double fallbackRate(int r, long now) {
+        double sum = 0;
+        int n = 0;
+        for (int h = 0; h < 24; h++) {
+            if (seen[r][h]) {
+                sum += hourly[r][h];
+                n++;
+            }
+        }
+        if (n > 0) return sum / n;
+        long elapsed = now - Math.max(startedAt, hourStart);
+        return elapsed < MIN_SAMPLE_MILLIS ? Double.NaN : current[r].sum() * (double) HOUR_MILLIS / elapsed;
+    }
+
+    // ---------------------- DISPLAY ----------------------
+    // "paper: 4.2 sheets/h, empty in ~5h 20m (refill by Fri 16:40)" for the status screen
+    public String describe(Forecast f) {
+        StringBuilder sb = new StringBuilder(f.resource().label()).append(": ");
+        if (f.level() <= 0) return sb.append("empty").toString();
+        if (!f.isKnown()) return sb.append("no usage data yet").toString();
+        if (f.resource() == Resource.CASH) {
+            sb.append('€').append(Money.format(Math.round(f.ratePerHour()))).append("/h");
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.1f %s/h", f.ratePerHour(), f.resource().unit()));
+        }
+        if (!f.runsOut()) return sb.append(", lasts beyond ").append(HORIZON_HOURS / 24).append(" days").toString();
+        long now = clock.getAsLong();
+        sb.append(", empty in ~").append(formatDuration(f.emptyAt() - now));
+        if (f.refillBy() <= now) return sb.append(" (refill now)").toString();
+        return sb.append(" (refill by ").append(REFILL_BY.format(Instant.ofEpochMilli(f.refillBy()).atZone(zone))).append(')').toString();
+    }
+
+    static String formatDuration(long millis) {
+        long minutes = Math.max(0, millis) / 60_000;
+        if (minutes < 60) return minutes + "m";
+        if (minutes < 24 * 60) return minutes / 60 + "h " + minutes % 60 + "m";
+        return minutes / (24 * 60) + "d " + minutes / 60 % 24 + "h";
+    }
+
+    // ---------------------- TIME ----------------------
+    // Hours follow the local clock, also in zones with a half-hour offset and across daylight saving
+    private long localHourStart(long millis) {
+        long offset = zone.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1_000L;
+        return Math.floorDiv(millis + offset, HOUR_MILLIS) * HOUR_MILLIS - offset;
+    }
+
+    private int hourOfDay(long millis) {
+        long offset = zone.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1_000L;
+        return (int) Math.floorMod(Math.floorDiv(millis + offset, HOUR_MILLIS), 24L);
+    }
+
+    public long getLeadMillis() { return leadMillis; }
+    public ZoneId getZone() { return zone; }
+    public long now() { return clock.getAsLong(); }
+}
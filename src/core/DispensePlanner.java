@@ -0,0 +1,114 @@
+package core;
+
+import java.util.Arrays;
+
+// DispensePlanner answers "which notes pay out this amount?" for one cassette stock, by table lookup
+// OOP: Encapsulation of the lookup tables; CashCassettes builds a new planner when its stock no longer matches
+// SOLID - SRP: Only plans; taking the notes out of the cassettes is CashCassettes' business
+// The tables are filled once by dynamic programming over every amount up to what the stock (and the
+// per-dispense note limit) allows: cassette by cassette, the fewest notes for each amount using that
+// cassette and the ones before it, plus how many notes of the cassette that answer uses. A plan then
+// costs one lookup per cassette, whatever the amount. Amounts are counted in units of the greatest
+// common divisor of the denominations (€5 for the standard set).
+// Only min(count, maxNotes) of each cassette can matter to a payout, so the tables stay valid (matches)
+// while every cassette holds at least maxNotes notes: a well-stocked ATM rarely rebuilds them.
+final class DispensePlanner {
+
+    private static final short NONE = Short.MAX_VALUE; // Amount not reachable
+
+    private final int[] denominations; // Euros, one per cassette
+    private final int unit;            // Euros per table step
+    private final int maxNotes;
+    private final int maxUnits;        // Largest amount in the tables, in units
+    private final int[] usable;        // min(count, maxNotes) per cassette: what the tables were built from
+    private final short[] fewest;      // Fewest notes for each amount, over every cassette
+    private final short[][] take;      // take[c][a]: notes of cassette c in the answer for amount a (cassettes 0..c)
+
+    DispensePlanner(int[] denominations, int[] counts, int maxNotes) {
+        this.denominations = denominations;
+        this.maxNotes = maxNotes;
+        int g = 0;
+        long stockUnits = 0;
+        int largest = 0;
+        for (int d : denominations) {
+            g = gcd(g, d);
+            largest = Math.max(largest, d);
+        }
+        this.unit = g;
+        this.usable = usable(counts, maxNotes);
+        for (int c = 0; c < denominations.length; c++) stockUnits += (long) usable[c] * (denominations[c] / g);
+        this.maxUnits = (int) Math.min(stockUnits, (long) maxNotes * largest / g);
+
+        int cassettes = denominations.length;
+        this.take = new short[cassettes][maxUnits + 1];
+        short[] best = new short[maxUnits + 1];
+        short[] next = new short[maxUnits + 1];
+        Arrays.fill(best, NONE);
+        best[0] = 0;
+        for (int c = 0; c < cassettes; c++) {
+            int step = denominations[c] / g;
+            int available = usable[c];
+            short[] used = take[c];
+            for (int a = 0; a <= maxUnits; a++) {
+                short min = NONE;
+                short k = 0;
+                for (int n = 0, rest = a; n <= available && rest >= 0; n++, rest -= step) {
+                    if (best[rest] != NONE && best[rest] + n < min) {
+                        min = (short) (best[rest] + n);
+                        k = (short) n;
+                    }
+                }
+                next[a] = min;
+                used[a] = k;
+            }
+            short[] swap = best;
+            best = next;
+            next = swap;
+        }
+        this.fewest = best;
+    }
+
+    // True if a planner built from 'counts' would have the same tables
+    boolean matches(int[] counts) {
+        for (int c = 0; c < counts.length; c++) {
+            if (Math.min(counts[c], maxNotes) != usable[c]) return false;
+        }
+        return true;
+    }
+
+    private static int[] usable(int[] counts, int maxNotes) {
+        int[] usable = new int[counts.length];
+        for (int c = 0; c < counts.length; c++) usable[c] = Math.max(0, Math.min(counts[c], maxNotes));
+        return usable;
+    }
+
+    // Notes per cassette for 'euros', or null when the stock cannot pay it out within maxNotes notes
+    int[] plan(int euros) {
+        if (!isFeasible(euros)) return null;
+        int[] notes = new int[denominations.length];
+        int a = euros / unit;
+        for (int c = denominations.length - 1; c >= 0; c--) {
+            notes[c] = take[c][a];
+            a -= notes[c] * (denominations[c] / unit);
+        }
+        return notes;
+    }
+
+    boolean isFeasible(int euros) {
+        if (euros < 0 || euros % unit != 0 || euros / unit > maxUnits) return false;
+        short n = fewest[euros / unit];
+        return n != NONE && n <= maxNotes;
+    }
+
+    // The largest amount up to 'euros' that can be paid out (0 if none): what to offer instead
+    int largestFeasible(int euros) {
+        for (int a = Math.min(Math.max(euros, 0) / unit, maxUnits); a > 0; a--) {
+            if (fewest[a] != NONE && fewest[a] <= maxNotes) return a * unit;
+        }
+        return 0;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
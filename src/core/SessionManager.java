@@ -0,0 +1,229 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// SessionManager keeps the open terminal sessions and ends the ones left idle for too long
+// OOP: Encapsulation - a Session is a handle; its place in the wheel is only changed in here
+// SOLID - SRP: Tracks activity and deadlines; closing the connection is the Closeable's business
+// Deadlines live in a hashed timing wheel: one slot per tick (default one second), a session is filed in
+// the slot of the tick its idle timeout ends, and every tick only looks at that one slot. Activity does
+// not move a session (touch is a single volatile write); when its slot comes round a session that was
+// used since is filed again at its new deadline, so each one is looked at about once per timeout.
+// Opening, closing, touching and expiring a session are all O(1), whatever the number of sessions.
+public class SessionManager implements AutoCloseable {
+
+    // One terminal connection, optionally bound to the account logged in on it
+    public static final class Session {
+        private final long id;
+        private final long openedAt;
+        private final Closeable connection; // Closed when the session expires
+        private volatile long lastActive;
+        private volatile String owner;
+        private volatile boolean expired;
+
+        // Wheel links, guarded by the manager
+        private Session prev, next;
+        private int slot = -1;
+
+        private Session(long id, long now, Closeable connection) {
+            this.id = id;
+            this.openedAt = now;
+            this.lastActive = now;
+            this.connection = connection;
+        }
+
+        public long getId() { return id; }
+        public String getOwner() { return owner; }
+        public long getOpenedAt() { return openedAt; }
+        public long getLastActive() { return lastActive; }
+        public boolean isExpired() { return expired; }
+    }
+
+    private final long idleTimeoutMillis;
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final Session[] wheel; // Head of each slot's list
+    private long tick;             // Last tick processed
+    private long nextId;
+    private int size;
+    private long expiredTotal;
+    private ScheduledExecutorService ticker;
+
+    // One-second ticks and enough slots for a whole timeout, on the system clock
+    public SessionManager(long idleTimeoutMillis) {
+        this(idleTimeoutMillis, 1_000, (int) Math.min(4_096, idleTimeoutMillis / 1_000 + 1), System::currentTimeMillis);
+    }
+
+    // A session filed more than 'slots' ticks ahead waits for its slot to come round again
+    public SessionManager(long idleTimeoutMillis, long tickMillis, int slots, LongSupplier clock) {
+        if (idleTimeoutMillis <= 0 || tickMillis <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Timeout, tick and slots must be positive");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.wheel = new Session[slots];
+        this.tick = clock.getAsLong() / tickMillis;
+    }
+
+    // Expires idle sessions every tick on a background thread (tests call advance() instead)
+    public synchronized void start() {
+        if (ticker != null) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-wheel");
+            t.setDaemon(true); // Never keeps the ATM process alive on exit
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // ---------------------- SESSIONS ----------------------
+    public Session open(Closeable connection) {
+        long now = clock.getAsLong();
+        synchronized (this) {
+            Session s = new Session(++nextId, now, connection);
+            link(s, deadlineTick(now));
+            size++;
+            return s;
+        }
+    }
+
+    // Marks activity; the session's place in the wheel is corrected when its slot comes round
+    public void touch(Session s) {
+        s.lastActive = clock.getAsLong();
+    }
+
+    public void bind(Session s, String owner) { s.owner = owner; }
+    public void unbind(Session s) { s.owner = null; }
+
+    // Ends a session without expiring it (the terminal left); idempotent
+    public synchronized void close(Session s) {
+        if (s.slot < 0) return;
+        unlink(s);
+        size--;
+    }
+
+    // ---------------------- TIMING WHEEL ----------------------
+    // Processes every tick up to now and closes the connections of the sessions that expired.
+    // Returns how many expired.
+    public int advance() {
+        List<Session> expired = new ArrayList<>();
+        long now = clock.getAsLong();
+        long nowTick = now / tickMillis;
+        synchronized (this) {
+            // After a long pause every slot is visited once, not once per missed tick
+            long from = Math.max(tick + 1, nowTick - wheel.length + 1);
+            for (long t = from; t <= nowTick; t++) expireSlot((int) (t % wheel.length), nowTick, expired);
+            tick = Math.max(tick, nowTick);
+            size -= expired.size();
+            expiredTotal += expired.size();
+        }
+        for (Session s : expired) { // Outside the lock: closing may block on the network
+            try {
+                if (s.connection != null) s.connection.close();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[!] Session Close Error: " + e.getMessage());
+            }
+        }
+        return expired.size();
+    }
+
+    private void expireSlot(int slot, long nowTick, List<Session> expired) {
+        Session s = wheel[slot];
+        while (s != null) {
+            Session next = s.next;
+            long deadline = deadlineTick(s.lastActive);
+            if (deadline <= nowTick) {
+                unlink(s);
+                s.expired = true;
+                expired.add(s);
+            } else if (deadline % wheel.length != slot) {
+                unlink(s); // Used since it was filed: move it to its new deadline
+                link(s, deadline);
+            }
+            s = next;
+        }
+    }
+
+    // First tick at which a session last active at 'millis' has been idle for the whole timeout
+    private long deadlineTick(long millis) {
+        return Math.floorDiv(millis + idleTimeoutMillis + tickMillis - 1, tickMillis);
+    }
+
+    private void link(Session s, long deadlineTick) {
+        int slot = (int) (deadlineTick % wheel.length);
+        s.slot = slot;
+        s.prev = null;
+        s.next = wheel[slot];
+        if (s.next != null) s.next.prev = s;
+        wheel[slot] = s;
+    }
+
+    private void unlink(Session s) {
+        if (s.prev != null) s.prev.next = s.next;
+        else wheel[s.slot] = s.next;
+        if (s.next != null) s.next.prev = s.prev;
+        s.prev = s.next = null;
+        s.slot = -1;
+    }
+
+    // ---------------------- MONITORING ----------------------
+    public synchronized int size() { return size; }
+    public synchronized long getExpiredTotal() { return expiredTotal; }
+    public long getIdleTimeoutMillis() { return idleTimeoutMillis; }
+
+    // Every open session, oldest first (walks the whole wheel: for the technician, not the hot path)
+    public List<Session> getSessions() {
+        List<Session> all = new ArrayList<>();
+        synchronized (this) {
+            for (Session head : wheel) {
+                for (Session s = head; s != null; s = s.next) all.add(s);
+            }
+        }
+        all.sort(Comparator.comparingLong(Session::getOpenedAt));
+        return all;
+    }
+
+    // "3 open (2 logged in), oldest 4m 05s, idle timeout 120s, 7 expired"
+    public String describe() {
+        List<Session> all = getSessions();
+        long now = clock.getAsLong();
+        long loggedIn = all.stream().filter(s -> s.getOwner() != null).count();
+        StringBuilder sb = new StringBuilder().append(all.size()).append(" open (").append(loggedIn).append(" logged in)");
+        if (!all.isEmpty()) sb.append(", oldest ").append(formatAge(now - all.get(0).getOpenedAt()));
+        return sb.append(", idle timeout ").append(idleTimeoutMillis / 1_000).append("s, ")
+                .append(getExpiredTotal()).append(" expired").toString();
+    }
+
+    // One line per session for the technician panel
+    public List<String> describeSessions() {
+        long now = clock.getAsLong();
+        List<String> lines = new ArrayList<>();
+        for (Session s : getSessions()) {
+            lines.add("#" + s.getId() + " " + (s.getOwner() != null ? s.getOwner() : "(not logged in)")
+                    + " | open " + formatAge(now - s.getOpenedAt()) + " | idle " + formatAge(now - s.getLastActive()));
+        }
+        return lines;
+    }
+
+    static String formatAge(long millis) {
+        long seconds = Math.max(0, millis) / 1_000;
+        if (seconds < 60) return seconds + "s";
+        if (seconds < 3_600) return String.format("%dm %02ds", seconds / 60, seconds % 60);
+        return String.format("%dh %02dm", seconds / 3_600, seconds / 60 % 60);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) ticker.shutdownNow();
+        ticker = null;
+    }
+}
@@ -0,0 +1,50 @@
+package core;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+// StripedLock guards account mutations with a fixed pool of locks
+// OOP: Encapsulation of the lock array and the key -> stripe mapping
+// SOLID - SRP: Only decides which lock protects which account; ATMMachineV2 decides what to do under it
+// Two accounts may share a stripe, but one account always maps to the same stripe,
+// so memory stays bounded while sessions on different accounts rarely contend.
+public class StripedLock {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedLock(int minStripes) {
+        int size = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1; // Round up to a power of two
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) stripes[i] = new ReentrantLock();
+        this.mask = size - 1;
+    }
+
+    // Default sizing: a few stripes per core keeps collisions low without wasting memory
+    public StripedLock() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public ReentrantLock lockFor(String key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    // The locks of several keys, each stripe once and in stripe order. Every caller that needs more than
+    // one stripe takes them in this order, so two such callers can never wait for each other in a cycle.
+    public ReentrantLock[] locksFor(Collection<String> keys) {
+        BitSet used = new BitSet(stripes.length);
+        for (String key : keys) used.set(stripeIndex(key));
+        ReentrantLock[] locks = new ReentrantLock[used.cardinality()];
+        for (int i = used.nextSetBit(0), n = 0; i >= 0; i = used.nextSetBit(i + 1)) locks[n++] = stripes[i];
+        return locks;
+    }
+
+    public int stripeIndex(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // Spread high bits so similar names do not cluster on one stripe
+        return h & mask;
+    }
+
+    public int size() { return stripes.length; }
+}
@@ -1,6 +1,10 @@
 package interfaces;
 
 import model.Account;
+import model.Money;
+import model.StateSnapshot;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 // Abstraction (OOP): Defines WHAT the ATM needs for persistence, not HOW it is done
@@ -28,6 +32,72 @@ public interface IATMStateService {
     // Encapsulation of ATM internal cash state
     double loadCashLevel();
 
+    // Fixed-point variants: cash travels as whole cents (see Money) so no precision is lost.
+    // Defaults bridge to the double methods; stores that keep cents natively override them.
+    default void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        saveState(accounts, Money.toDouble(cashCents), paper, ink, firmware);
+    }
+
+    // Machine fields for saveChanges: bits telling which of cash/paper/ink/firmware changed
+    int CASH_CHANGED = 1;
+    int PAPER_CHANGED = 2;
+    int INK_CHANGED = 4;
+    int FIRMWARE_CHANGED = 8;
+    int ALL_MACHINE_FIELDS = CASH_CHANGED | PAPER_CHANGED | INK_CHANGED | FIRMWARE_CHANGED;
+
+    // Incremental save: 'changed' holds the accounts modified since the previous save and 'machineFields'
+    // the machine fields that changed (bits above). 'accounts' is the caller's complete, live list
+    // (a synchronized list, so copy it under its lock before iterating).
+    // The default writes the full state; stores that can write only the changes override it.
+    default void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                             long cashCents, int paper, int ink, String firmware) {
+        List<Account> copy;
+        synchronized (accounts) { copy = new ArrayList<>(accounts); }
+        saveStateCents(copy, cashCents, paper, ink, firmware);
+    }
+
+    // The same save plus the note count of every cassette ('notes', null = only the total is known).
+    // The counts belong to the cash field: they are written whenever the cash is, and a store remembers
+    // the last ones it loaded or saved for saves that come without them (full saves, seeding).
+    // The default drops them; the ATM then starts from the standard mix of the saved total.
+    default void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                             long cashCents, int[] notes, int paper, int ink, String firmware) {
+        saveChanges(accounts, changed, machineFields, cashCents, paper, ink, firmware);
+    }
+
+    default long loadCashCents() {
+        return Money.fromDouble(loadCashLevel());
+    }
+
+    // Loads the whole state in one call. The default composes the single-value loaders above;
+    // stores that can read everything in one pass (e.g. one scan of a file) should override it.
+    default StateSnapshot loadSnapshot() {
+        return new StateSnapshot(loadAccounts(), loadCashCents(), loadPaperLevel(), loadInkLevel(), loadFirmwareVersion());
+    }
+
+    // Writes a complete, self-contained copy of the state and reports whether it is durable.
+    // Used by compaction, which may only discard journal records once this returned true.
+    default boolean writeSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        saveStateCents(accounts, cashCents, paper, ink, firmware);
+        return true;
+    }
+
+    // writeSnapshot with the cassettes' note counts (see saveChanges above); the default drops them
+    default boolean writeSnapshot(List<Account> accounts, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        return writeSnapshot(accounts, cashCents, paper, ink, firmware);
+    }
+
+    // The store's per-owner lookup, or null when it can only load every account at once.
+    // Decorators (e.g. AsyncStateWriter) pass on the directory of the store they wrap.
+    default IAccountDirectory accountDirectory() {
+        return null;
+    }
+
+    // Short human-readable storage diagnostics for the technician status screen ("" when none)
+    default String getStorageStatus() {
+        return "";
+    }
+
     // Abstraction of firmware version storage
     String loadFirmwareVersion();
 }
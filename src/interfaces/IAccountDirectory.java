@@ -0,0 +1,22 @@
+package interfaces;
+
+import model.Account;
+import model.StateSnapshot;
+
+// Abstraction (OOP): A store that can hand out one account by owner without loading all the others
+// SOLID - Interface Segregation Principle (ISP):
+// Kept apart from IATMStateService; only stores with a per-owner index on disk implement it
+// SOLID - Dependency Inversion Principle (DIP): ATMMachineV2 materializes accounts on first use through
+// this interface, whatever the store is. Such an ATM hands saveChanges only the accounts it has
+// materialized, so an implementation must write the 'changed' accounts and never treat the list as complete.
+public interface IAccountDirectory {
+
+    // The account stored for 'owner' (case-insensitive), or null when there is none.
+    // Every call reads the store and returns a new object: caching it is the caller's business.
+    Account loadAccount(String owner);
+
+    // Cash, paper, ink and firmware with an empty account list; seeds the preset account like loadSnapshot
+    StateSnapshot loadMachineState();
+
+    int getAccountCount();
+}
@@ -0,0 +1,19 @@
+package interfaces;
+
+// Abstraction (OOP): Fixed-width account rows kept outside the Java heap (e.g. a memory-mapped file)
+// SOLID - Dependency Inversion Principle (DIP):
+// A flyweight Account (Account.view) reads and writes its owner, PIN and balance through this interface
+// and never knows how the row is laid out
+// SOLID - Interface Segregation Principle (ISP): Only what a view needs; history stays with IHistoryArchive
+public interface IAccountTable {
+
+    String getOwner(int row);
+
+    String getPin(int row);
+
+    // Read and written by sessions without the table's lock: implementations use volatile access,
+    // like the balance field of a heap Account
+    long getBalanceCents(int row);
+
+    void setBalanceCents(int row, long balanceCents);
+}
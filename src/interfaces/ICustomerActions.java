@@ -1,5 +1,11 @@
 package interfaces;
 
+import model.BatchItem;
+import model.BatchResult;
+import model.Money;
+
+import java.util.List;
+
 // Abstraction (OOP):
 // Defines the set of actions available to ATM customers without specifying how they are implemented
 // SOLID - Interface Segregation Principle (ISP):
@@ -11,6 +17,11 @@ public interface ICustomerActions {
     // Abstraction: The caller does not need to know how the balance is retrieved
     double checkBalance(String name);
 
+    // Fixed-point balance in whole cents; implementations holding cents should override this
+    default long checkBalanceCents(String name) {
+        return Money.fromDouble(checkBalance(name));
+    }
+
     // Abstraction of deposit behavior
     // SOLID - Single Responsibility Principle (SRP):
     // The ATM class implementing this interface handles transaction logic, while storage is delegated elsewhere
@@ -21,6 +32,11 @@ public interface ICustomerActions {
     // Any class implementing this interface must support withdrawals in a way that respects expected ATM rules
     boolean withdraw(String name, int amount);
 
+    // Batch of deposits and withdrawals across many accounts (settlements, bulk replays)
+    // All or nothing: the whole batch is validated first, in order, and is either applied completely and
+    // persisted once, or not applied at all; the result tells per item what happened or why it failed
+    BatchResult applyBatch(List<BatchItem> items);
+
     // Abstraction of receipt printing
     // Interface Segregation Principle (ISP):
     // Only customer-related printing is included here, not maintenance printing
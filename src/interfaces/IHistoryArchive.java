@@ -0,0 +1,25 @@
+package interfaces;
+
+import model.HistoryBlock;
+import model.HistoryRetention;
+import model.TransactionRecords;
+
+import java.util.List;
+
+// Abstraction (OOP): Where the older part of an account's transaction history lives
+// SOLID - Dependency Inversion Principle (DIP):
+// Account pages through its history via this interface and never knows which file holds it
+// SOLID - Interface Segregation Principle (ISP): Reading only; appending is the owning store's business
+public interface IHistoryArchive {
+
+    // Walks one account's history from its newest archived entry ('head') towards the oldest:
+    // skips 'skip' entries, then returns at most 'max' entries, newest first.
+    TransactionRecords read(long head, int skip, int max);
+
+    // The time layout of the whole history ending at 'head', oldest first, read from entry and segment
+    // headers: a time index is built from it without reading the archived entries themselves
+    List<HistoryBlock> timeline(long head);
+
+    // How many archived entries an account keeps in memory as well (the hot tier)
+    HistoryRetention retention();
+}
@@ -1,45 +1,306 @@
 package model;
 
-import java.util.ArrayList;
+import interfaces.IAccountTable;
+import interfaces.IHistoryArchive;
+
+import java.util.Collections;
 import java.util.List;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 // OOP - Encapsulation: Account stores all customer-related data and controls access via getters/setters
 // OOP - Single Responsibility: Manages only account data and transaction history
 public class Account {
     private String owner;                // Encapsulated account owner name
     private String pin;                  // Encapsulated PIN for authentication
-    private double balance;              // Encapsulated account balance
-    private List<String> transactions;   // Encapsulated transaction history
+    private volatile long balanceCents;  // Encapsulated account balance in whole cents (see Money)
+    private final TransactionRecords history = new TransactionRecords(); // Newest entries, oldest first
+    private volatile long version;       // Bumped by every change made through this class (dirty tracking)
+
+    // Flyweight: a view keeps owner, PIN and balance in row 'row' of an off-heap table instead of the
+    // three fields above, which stay unused. Only the history not archived yet is held on the heap.
+    private final IAccountTable table;   // null = a plain heap account
+    private final int row;
+
+    // Tiered history: entries 0..archivedCount-1 live in an archive on disk and are read a page at a time;
+    // the buffer above holds entries firstInMemory.. - the ones not archived yet plus the newest archived
+    // ones the archive's HistoryRetention keeps hot. Everything history-related is guarded by its lock.
+    private IHistoryArchive archive;     // null = the whole history is in memory
+    private long archiveHead = -1;       // Archive position of the newest archived entry
+    private int archivedCount;
+    private int firstInMemory;           // Index of the buffer's first entry (<= archivedCount)
+    private HistoryIndex timeIndex;      // Built by the first history query, then kept up to date
 
     // Constructor: Initializes account data and empty transaction list
     public Account(String owner, String pin, double balance) {
+        this(owner, pin, Money.fromDouble(balance));
+    }
+
+    private Account(String owner, String pin, long balanceCents) {
         this.owner = owner;
         this.pin = pin;
-        this.balance = balance;
-        this.transactions = new ArrayList<>();
+        this.balanceCents = balanceCents;
+        this.table = null;
+        this.row = -1;
+    }
+
+    private Account(IAccountTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
+    // Factory for fixed-point balances; the cents constructor stays private so an int literal
+    // passed by outside code can never be mistaken for cents
+    public static Account ofCents(String owner, String pin, long balanceCents) {
+        return new Account(owner, pin, balanceCents);
+    }
+
+    // Factory for a flyweight over row 'row' of 'table': a balance change is a write into the table.
+    // The view must stay the only Account for its row while it has history that is not archived yet.
+    public static Account view(IAccountTable table, int row) {
+        return new Account(table, row);
     }
 
     // -------------------- GETTERS / SETTERS --------------------
     // Encapsulation: Direct access to private fields is not allowed
-    public String getOwner() { return owner; }
-    public String getPin() { return pin; }
-    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public String getOwner() { return table == null ? owner : table.getOwner(row); }
+    public String getPin() { return table == null ? pin : table.getPin(row); }
+    public long getBalanceCents() { return table == null ? balanceCents : table.getBalanceCents(row); }
+
+    public void setBalanceCents(long balanceCents) {
+        if (table == null) this.balanceCents = balanceCents;
+        else table.setBalanceCents(row, balanceCents);
+        version++;
+    }
+
+    public boolean isView() { return table != null; }
+
+    // Legacy double view of the balance, kept for display code and existing callers
+    public double getBalance() { return Money.toDouble(getBalanceCents()); }
+    public void setBalance(double balance) { setBalanceCents(Money.fromDouble(balance)); }
 
-    public List<String> getTransactions() { return transactions; }
+    // Whole history, oldest first, as read-only text. Reads every archived entry from disk and formats
+    // every entry: display code should page with getTransactionPage instead.
+    public List<String> getTransactions() {
+        synchronized (history) {
+            return Collections.unmodifiableList(getTransactionRange(0, getTransactionCount()));
+        }
+    }
+
+    // Dirty tracking: a store remembers the version it last wrote and re-encodes the account only
+    // when the version moved. Changes are made under the account's lock in ATMMachineV2, so the
+    // increment is not contended; entries restored by loaders and archiving do not count.
+    public long getVersion() { return version; }
 
     // -------------------- TRANSACTION LOGGING --------------------
     // Encapsulation & SRP: Account keeps track of its own transaction history
     public void addTransaction(String type, double amount) {
-        LocalDateTime now = LocalDateTime.now();
-        String time = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        addTransactionCents(type, Money.fromDouble(amount));
+    }
+
+    // Labels without a TransactionType are kept as formatted text, as every entry used to be
+    public void addTransactionCents(String type, long amountCents) {
+        TransactionType known = TransactionType.ofLabel(type);
+        if (known != null) {
+            addTransactionCents(known, amountCents);
+            return;
+        }
+        String entry = TransactionRecords.formatEntry(new StringBuilder(64), System.currentTimeMillis(), type,
+                amountCents, getBalanceCents()).toString();
+        synchronized (history) {
+            history.addText(entry);
+            indexTime(HistoryIndex.NO_TIME);
+        }
+        version++;
+    }
+
+    // Records time, type, amount and the current balance as primitives; no text is built here
+    public void addTransactionCents(TransactionType type, long amountCents) {
+        long now = System.currentTimeMillis();
+        synchronized (history) {
+            history.add(now, type, amountCents, getBalanceCents());
+            indexTime(now);
+        }
+        version++;
+    }
+
+    // -------------------- LAZY HISTORY --------------------
+    // Abstraction: callers see one numbered history; which part is on disk and which in memory stays hidden
+
+    public int getTransactionCount() {
+        synchronized (history) {
+            return firstInMemory + history.size();
+        }
+    }
+
+    // Entries from..to-1 (0 = oldest), oldest first, as primitive columns: what stores and journals copy
+    public TransactionRecords getTransactionRecords(int from, int to) {
+        synchronized (history) {
+            from = Math.max(0, from);
+            to = Math.min(to, getTransactionCount());
+            TransactionRecords range = new TransactionRecords();
+            if (from >= to) return range;
+            int diskTo = Math.min(to, firstInMemory); // Hot entries are served from memory
+            if (from < diskTo) {
+                TransactionRecords older = archive.read(archiveHead, archivedCount - diskTo, diskTo - from);
+                for (int i = older.size() - 1; i >= 0; i--) range.addFrom(older, i); // Archive walks newest first
+            }
+            for (int i = Math.max(from, firstInMemory); i < to; i++) range.addFrom(history, i - firstInMemory);
+            return range;
+        }
+    }
+
+    // The same range as text, oldest first
+    public List<String> getTransactionRange(int from, int to) {
+        TransactionRecords range = getTransactionRecords(from, to);
+        return range.formatRange(0, range.size(), false);
+    }
+
+    // One page of the history as text, newest first: page 0 holds the latest 'pageSize' entries
+    public List<String> getTransactionPage(int page, int pageSize) {
+        TransactionRecords range;
+        synchronized (history) {
+            int newest = getTransactionCount() - page * pageSize; // Exclusive end of the page, counted from the oldest
+            range = getTransactionRecords(newest - pageSize, newest);
+        }
+        return range.formatRange(0, range.size(), true); // Formatted outside the lock
+    }
+
+    // For loaders: an entry read from storage is not a change, so the version stays as it is.
+    // Text in the usual entry layout is stored as columns again, so queries can see its time and type.
+    public void restoreTransaction(String entry) {
+        synchronized (history) {
+            history.addFormatted(entry);
+            int last = history.size() - 1;
+            indexTime(history.isText(last) ? HistoryIndex.NO_TIME : history.getEpochMillis(last));
+        }
+    }
+
+    public void restoreTransaction(long epochMillis, TransactionType type, long amountCents, long balanceCents) {
+        synchronized (history) {
+            history.add(epochMillis, type, amountCents, balanceCents);
+            indexTime(epochMillis);
+        }
+    }
+
+    // For loaders, before any entry is restored: the first 'count' entries are in 'archive', the newest at 'head'
+    public void attachArchive(IHistoryArchive archive, long head, int count) {
+        synchronized (history) {
+            this.archive = archive;
+            this.archiveHead = head;
+            this.archivedCount = count;
+            this.firstInMemory = count;
+        }
+    }
+
+    // For stores: entries 0..count-1 are now archived in 'archive' (newest at 'head'). Archived entries
+    // leave memory unless the archive's retention keeps them hot. Not a change to the account, so the
+    // version stays; an older report than the current one is ignored.
+    public void markPersisted(IHistoryArchive archive, long head, int count) {
+        synchronized (history) {
+            if (count < archivedCount || count > getTransactionCount()) return;
+            this.archive = archive;
+            this.archiveHead = head;
+            this.archivedCount = count;
+            evictCold(archive.retention());
+        }
+    }
+
+    // Drops archived entries from the front of the buffer until one is within the hot window.
+    // Entries are in time order; text entries carry no time and only count as hot by position.
+    private void evictCold(HistoryRetention retention) {
+        int total = getTransactionCount();
+        long hotSince = retention.hotSinceMillis(System.currentTimeMillis());
+        int drop = 0;
+        while (drop < archivedCount - firstInMemory) {
+            boolean hot = firstInMemory + drop >= total - retention.hotEntries()
+                    || (!history.isText(drop) && history.getEpochMillis(drop) >= hotSince);
+            if (hot) break;
+            drop++;
+        }
+        history.removeFirst(drop);
+        firstInMemory += drop;
+    }
+
+    public IHistoryArchive getArchive() { synchronized (history) { return archive; } }
+    public long getArchiveHead() { synchronized (history) { return archiveHead; } }
+    public int getArchivedCount() { synchronized (history) { return archivedCount; } }
+    public int getInMemoryCount() { synchronized (history) { return history.size(); } }
 
-        // Log format: timestamp | transaction type | amount | current balance
-        String entry = time + " | " + type + ": €" + String.format("%.2f", amount)
-                + " | Balance: €" + String.format("%.2f", this.balance);
-        transactions.add(entry);
+    // A detached copy with another balance and the first 'transactionCount' entries (e.g. for a snapshot).
+    // The archived part is shared, not read: it is append-only, so the copy's prefix never changes.
+    public Account copyOf(long balanceCents, int transactionCount) {
+        Account copy = new Account(getOwner(), getPin(), balanceCents);
+        synchronized (history) {
+            if (transactionCount < archivedCount) { // The archive's head is past the copy's end: read the prefix
+                TransactionRecords prefix = getTransactionRecords(0, transactionCount);
+                for (int i = 0; i < prefix.size(); i++) copy.history.addFrom(prefix, i);
+            } else {
+                copy.attachArchive(archive, archiveHead, archivedCount);
+                copy.firstInMemory = firstInMemory;
+                int to = Math.min(transactionCount, getTransactionCount());
+                for (int i = firstInMemory; i < to; i++) copy.history.addFrom(history, i - firstInMemory);
+            }
+        }
+        return copy;
+    }
+
+    // -------------------- HISTORY QUERIES --------------------
+    // Abstraction: time windows are looked up in a sparse time index (HistoryIndex), so only the blocks
+    // around the window and the matching entries are read, never the whole history
+
+    // Entries recorded in [fromMillis, toMillis), oldest first; 'type' null = every type.
+    // Entries kept as free text have no time and only match the unbounded window.
+    public TransactionRecords findTransactions(long fromMillis, long toMillis, TransactionType type) {
+        TransactionRecords candidates;
+        synchronized (history) {
+            HistoryIndex index = timeIndex();
+            candidates = getTransactionRecords(index.lowerBound(fromMillis), index.upperBound(toMillis));
+        }
+        boolean unbounded = fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+        TransactionRecords found = new TransactionRecords();
+        for (int i = 0; i < candidates.size(); i++) { // Filtered outside the lock
+            boolean matches = candidates.isText(i)
+                    ? unbounded && type == null
+                    : (type == null || candidates.getType(i) == type)
+                      && candidates.getEpochMillis(i) >= fromMillis && candidates.getEpochMillis(i) < toMillis;
+            if (matches) found.addFrom(candidates, i);
+        }
+        return found;
+    }
+
+    // Totals of the entries recorded in [fromMillis, toMillis)
+    public TransactionSummary summarize(long fromMillis, long toMillis) {
+        return TransactionSummary.of(findTransactions(fromMillis, toMillis, null));
+    }
+
+    // The latest 'n' entries, oldest first, as printed on a mini-statement
+    public TransactionRecords getMiniStatement(int n) {
+        synchronized (history) {
+            int count = getTransactionCount();
+            return getTransactionRecords(count - n, count);
+        }
+    }
+
+    // The index is built once per account, on the first query: archived entries from the archive's
+    // timeline (segment headers, no entry is read), the entries not archived yet from memory
+    private HistoryIndex timeIndex() {
+        if (timeIndex == null) {
+            HistoryIndex index = new HistoryIndex();
+            int from = 0;
+            if (archive != null && archivedCount > 0) {
+                for (HistoryBlock block : archive.timeline(archiveHead)) index.add(block);
+                from = archivedCount;
+            }
+            for (int i = from - firstInMemory; i < history.size(); i++) {
+                index.add(history.isText(i) ? HistoryIndex.NO_TIME : history.getEpochMillis(i));
+            }
+            timeIndex = index;
+        }
+        return timeIndex;
+    }
+
+    // Called under the history lock for every entry appended after the index exists
+    private void indexTime(long epochMillis) {
+        if (timeIndex != null) timeIndex.add(epochMillis);
     }
 
     // -------------------- SERIALIZATION --------------------
@@ -48,16 +309,51 @@ public class Account {
     public String toJsonWithTransactions() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
-        sb.append("\"owner\":\"").append(owner).append("\", ");
-        sb.append("\"pin\":\"").append(pin).append("\", ");
-        sb.append("\"balance\":").append(String.format("%.2f", balance)).append(", ");
+        sb.append("\"owner\":\"");
+        appendEscaped(sb, getOwner()).append("\", ");
+        sb.append("\"pin\":\"");
+        appendEscaped(sb, getPin()).append("\", ");
+        sb.append("\"balance\":");
+        Money.appendTo(sb, getBalanceCents()).append(", ");
         sb.append("\"transactions\":[");
-        for (int i = 0; i < transactions.size(); i++) {
-            sb.append("\"").append(transactions.get(i)).append("\"");
-            if (i < transactions.size() - 1) sb.append(",");
+        List<String> history = getTransactions(); // Consistent view while another session may be appending
+        for (int i = 0; i < history.size(); i++) {
+            sb.append("\"");
+            appendEscaped(sb, history.get(i)).append("\"");
+            if (i < history.size() - 1) sb.append(",");
         }
         sb.append("]}");
         return sb.toString();
     }
-}
 
+    // Header only: the history stays in the archive and is referenced by its newest entry and its length.
+    // Entries not archived yet are not included, so a store archives them before encoding.
+    public String toJsonWithHistoryPointer() {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("{\"owner\":\"");
+        appendEscaped(sb, getOwner()).append("\", ");
+        sb.append("\"pin\":\"");
+        appendEscaped(sb, getPin()).append("\", ");
+        sb.append("\"balance\":");
+        Money.appendTo(sb, getBalanceCents()).append(", ");
+        synchronized (history) {
+            sb.append("\"historyHead\":").append(archiveHead).append(", ");
+            sb.append("\"historyCount\":").append(archivedCount).append('}');
+        }
+        return sb.toString();
+    }
+
+    // Escapes quotes, backslashes and control characters so any name or entry round-trips through JSON
+    private static StringBuilder appendEscaped(StringBuilder sb, String value) {
+        if (value == null) return sb;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else if (c == '\r') sb.append("\\r");
+            else if (c == '\t') sb.append("\\t");
+            else sb.append(c);
+        }
+        return sb;
+    }
+}
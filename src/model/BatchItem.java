@@ -0,0 +1,20 @@
+package model;
+
+// BatchItem is one deposit or withdrawal of a batch (see ICustomerActions.applyBatch)
+// OOP: Encapsulation - an immutable carrier; whether it can be applied is decided by the ATM
+public record BatchItem(String owner, TransactionType type, long amountCents) {
+
+    // Whole euros, like the single-call deposit and withdraw
+    public static BatchItem deposit(String owner, int euros) {
+        return new BatchItem(owner, TransactionType.DEPOSIT, Money.ofEuros(euros));
+    }
+
+    public static BatchItem withdrawal(String owner, int euros) {
+        return new BatchItem(owner, TransactionType.WITHDRAW, Money.ofEuros(euros));
+    }
+
+    // Signed effect on the account's balance (and on the ATM's cash)
+    public long deltaCents() {
+        return type == TransactionType.WITHDRAW ? -amountCents : amountCents;
+    }
+}
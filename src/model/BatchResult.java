@@ -0,0 +1,34 @@
+package model;
+
+import java.util.List;
+
+// BatchResult reports what a batch did, item by item
+// OOP: Encapsulation - an immutable carrier returned by ICustomerActions.applyBatch
+// A batch is all or nothing: either every item is APPLIED, or none is and each failing item carries
+// its reason while the others are NOT_APPLIED.
+public record BatchResult(boolean applied, List<Status> statuses) {
+
+    public enum Status {
+        APPLIED,
+        NOT_APPLIED,        // Valid on its own, but another item failed
+        UNKNOWN_ACCOUNT,
+        INVALID_ITEM,       // No owner or type, or an amount that is not positive
+        INSUFFICIENT_FUNDS, // The account's balance at this point of the batch is too low
+        INSUFFICIENT_CASH   // The ATM's cash at this point of the batch is too low
+    }
+
+    public BatchResult {
+        statuses = List.copyOf(statuses);
+    }
+
+    public Status status(int item) { return statuses.get(item); }
+
+    public int size() { return statuses.size(); }
+
+    // Items that made the batch fail
+    public int failures() {
+        int failed = 0;
+        for (Status s : statuses) if (s != Status.APPLIED && s != Status.NOT_APPLIED) failed++;
+        return failed;
+    }
+}
@@ -0,0 +1,21 @@
+package model;
+
+// HistoryBlock is the time layout of consecutive history entries without the entries themselves
+// OOP: Encapsulation - a segment header or a single entry as seen by the time index (HistoryIndex)
+// oldestMillis / newestMillis span the block's timed entries; NO_TIME when all of them are free text
+public record HistoryBlock(int entries, long oldestMillis, long newestMillis) {
+
+    public static final long NO_TIME = Long.MIN_VALUE; // Time of an entry kept as free text without a timestamp
+
+    // The block spanned by every entry of 'records'
+    public static HistoryBlock of(TransactionRecords records) {
+        long oldest = Long.MAX_VALUE;
+        long newest = NO_TIME;
+        for (int i = 0; i < records.size(); i++) {
+            if (records.isText(i)) continue;
+            oldest = Math.min(oldest, records.getEpochMillis(i));
+            newest = Math.max(newest, records.getEpochMillis(i));
+        }
+        return new HistoryBlock(records.size(), newest == NO_TIME ? NO_TIME : oldest, newest);
+    }
+}
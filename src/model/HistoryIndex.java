@@ -0,0 +1,79 @@
+package model;
+
+import java.util.Arrays;
+
+// HistoryIndex is a sparse, time-ordered index over one account's history numbering (0 = oldest)
+// OOP: Encapsulation - Account feeds it every entry's time, or a whole archived segment's times at once,
+// and asks it which index range can hold a time window; the entries stay where they are
+// One key per block: a segment of the archive is one block, and entries added one by one are grouped into
+// blocks of STRIDE. A range query binary-searches the keys and then reads at most one partial block on
+// each side plus the matching entries, i.e. O(log n + k) instead of a full scan.
+// A key is the newest time seen up to its block's end, so the keys never decrease even if the clock was
+// set back or an entry carries no time (free text). Not thread-safe: Account guards it.
+final class HistoryIndex {
+
+    static final int STRIDE = 64;
+    static final long NO_TIME = HistoryBlock.NO_TIME;
+
+    private int[] starts = new int[4]; // First entry of each block
+    private long[] keys = new long[4];
+    private int blocks;
+    private int indexed;                // Entries fed so far
+    private boolean lastBlockOpen;      // The last block takes single entries until it holds STRIDE
+    private long newest = Long.MIN_VALUE;
+
+    void add(long epochMillis) {
+        newest = Math.max(newest, epochMillis);
+        if (!lastBlockOpen || indexed - starts[blocks - 1] == STRIDE) startBlock();
+        keys[blocks - 1] = newest; // The key covers the block's newest entry so far
+        indexed++;
+        lastBlockOpen = true;
+    }
+
+    // A whole archived block, e.g. one segment
+    void add(HistoryBlock block) {
+        if (block.entries() == 1) { // A single entry joins the open block
+            add(block.newestMillis());
+            return;
+        }
+        newest = Math.max(newest, block.newestMillis());
+        startBlock();
+        keys[blocks - 1] = newest;
+        indexed += block.entries();
+        lastBlockOpen = false;
+    }
+
+    private void startBlock() {
+        if (blocks == keys.length) {
+            keys = Arrays.copyOf(keys, blocks * 2);
+            starts = Arrays.copyOf(starts, blocks * 2);
+        }
+        starts[blocks++] = indexed;
+    }
+
+    int size() { return indexed; }
+
+    // First entry that may be at or after 'fromMillis': the start of the first block whose key reaches it
+    int lowerBound(long fromMillis) {
+        int block = firstBlockReaching(fromMillis);
+        return block == blocks ? indexed : starts[block];
+    }
+
+    // End (exclusive) of the entries that may be before 'toMillis': entries after the first block whose
+    // key reaches it were recorded later, so the range stops there (entries recorded after the clock
+    // was set back behind 'toMillis' are not found)
+    int upperBound(long toMillis) {
+        int block = firstBlockReaching(toMillis);
+        return block >= blocks - 1 ? indexed : starts[block + 1];
+    }
+
+    private int firstBlockReaching(long millis) {
+        int lo = 0, hi = blocks;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < millis) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
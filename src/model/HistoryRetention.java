@@ -0,0 +1,23 @@
+package model;
+
+// HistoryRetention decides where an account's history lives once it is saved
+// OOP: Encapsulation - one value object instead of loose tuning numbers passed through every store
+// hot:      the newest 'hotEntries' entries, plus all entries of the last 'hotDays' days, stay in memory
+//           after a save, so the first history pages need no disk read (0 days = count only)
+// archive:  everything else is read from the store's history log on demand; every 'segmentEntries'
+//           entries of an account are rolled into one compressed segment (0 = never compress)
+public record HistoryRetention(int hotEntries, int hotDays, int segmentEntries) {
+
+    public static final HistoryRetention DEFAULT = new HistoryRetention(10, 0, 256);
+
+    public HistoryRetention {
+        if (hotEntries < 0 || hotDays < 0 || segmentEntries < 0) {
+            throw new IllegalArgumentException("History retention values must not be negative");
+        }
+    }
+
+    // Entries recorded at or after this time stay hot; Long.MAX_VALUE when the day rule is off
+    public long hotSinceMillis(long nowMillis) {
+        return hotDays == 0 ? Long.MAX_VALUE : nowMillis - hotDays * 86_400_000L;
+    }
+}
@@ -0,0 +1,88 @@
+package model;
+
+// Money is the fixed-point representation of euro amounts used across the ATM
+// OOP: Abstraction - callers work with whole cents held in a primitive long
+// SOLID - SRP: Only converts, parses and formats amounts; no business rules here
+// Amounts stay primitive (no wrapper objects), so arithmetic is plain long math and
+// appendTo(...) formats into an existing StringBuilder without creating temporary Strings.
+public final class Money {
+
+    public static final long CENTS_PER_EURO = 100;
+
+    private Money() {} // Static helpers only
+
+    // ---------------- CONVERSION ----------------
+    public static long ofEuros(long euros) { return euros * CENTS_PER_EURO; }
+
+    // Bridges legacy double values (old interfaces, old state files) into cents
+    public static long fromDouble(double amount) { return Math.round(amount * CENTS_PER_EURO); }
+
+    public static double toDouble(long cents) { return cents / (double) CENTS_PER_EURO; }
+
+    // ---------------- FORMATTING ----------------
+    // Appends cents as "1234.56" (always two decimals), the same text "%.2f" used to produce
+    public static StringBuilder appendTo(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+            if (cents == Long.MIN_VALUE) return sb.append("92233720368547758.08");
+            cents = -cents;
+        }
+        long fraction = cents % CENTS_PER_EURO;
+        sb.append(cents / CENTS_PER_EURO).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    // Convenience for display code that needs a String anyway
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    // ---------------- PARSING ----------------
+    // Parses a decimal amount such as "2040.0", "50.00", "-3.5" or "100" into cents.
+    // Digits beyond the second decimal are rounded half-up. Exponent forms written by
+    // Double.toString in old state files (e.g. "1.0E7") fall back to the double parser.
+    public static long parse(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        if (start >= end) throw new NumberFormatException("Empty amount");
+
+        boolean negative = false;
+        int i = start;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') { negative = first == '-'; i++; }
+
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (!seenDot) whole = Math.addExact(Math.multiplyExact(whole, 10), c - '0');
+                else if (fractionDigits < 2) { fraction = fraction * 10 + (c - '0'); fractionDigits++; }
+                else if (fractionDigits == 2) { roundUp = c >= '5'; fractionDigits++; }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else if (c == 'e' || c == 'E') {
+                return fromDouble(Double.parseDouble(text.subSequence(start, end).toString()));
+            } else {
+                throw new NumberFormatException("Invalid amount: " + text.subSequence(start, end));
+            }
+        }
+        if (!seenDigit) throw new NumberFormatException("Invalid amount: " + text.subSequence(start, end));
+
+        if (fractionDigits == 1) fraction *= 10;
+        long cents = Math.addExact(Math.multiplyExact(whole, CENTS_PER_EURO), fraction);
+        if (roundUp) cents++;
+        return negative ? -cents : cents;
+    }
+
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+}
@@ -0,0 +1,32 @@
+package model;
+
+// Receipt is what the printer prints for one transaction, captured when the ledger commits
+// OOP: Encapsulation - an immutable carrier; the printer worker renders it later, on its own thread
+// 'type' is null for a receipt without a transaction (ICustomerActions.printReceipt()); 'notes' is the
+// note mix paid out ("2x€50, 1x€20") or null
+public record Receipt(String owner, long epochMillis, TransactionType type, long amountCents, long balanceCents,
+                      String notes) {
+
+    public static Receipt of(String owner, TransactionType type, long amountCents, long balanceCents, String notes) {
+        return new Receipt(owner, System.currentTimeMillis(), type, amountCents, balanceCents, notes);
+    }
+
+    // The latest entry of 'records' (a mini-statement of one), or a receipt without a transaction
+    public static Receipt ofLatest(String owner, TransactionRecords records) {
+        int last = records.size() - 1;
+        if (last < 0 || records.isText(last)) return new Receipt(owner, System.currentTimeMillis(), null, 0, 0, null);
+        return new Receipt(owner, records.getEpochMillis(last), records.getType(last), records.getAmountCents(last),
+                records.getBalanceCents(last), null);
+    }
+
+    // The printed lines, in the history's entry format
+    public String render() {
+        StringBuilder sb = new StringBuilder(160).append("------- RECEIPT -------\n");
+        if (owner != null) sb.append("Account: ").append(owner).append('\n');
+        if (type != null) {
+            TransactionRecords.formatEntry(sb, epochMillis, type.label(), amountCents, balanceCents).append('\n');
+        }
+        if (notes != null && !notes.isEmpty()) sb.append("Notes: ").append(notes).append('\n');
+        return sb.append("-----------------------").toString();
+    }
+}
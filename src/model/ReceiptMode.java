@@ -0,0 +1,9 @@
+package model;
+
+// ReceiptMode is how a customer wants the receipt of a transaction
+// PAPER needs a sheet and an ink unit; ELECTRONIC goes to the e-receipt spool (when the ATM has one)
+public enum ReceiptMode {
+    PAPER,
+    ELECTRONIC,
+    NONE
+}
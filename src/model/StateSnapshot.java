@@ -0,0 +1,20 @@
+package model;
+
+import java.util.List;
+
+// StateSnapshot is the complete persisted ATM state returned by one load call
+// OOP: Encapsulation - an immutable carrier; the account list itself is handed over to the ATM
+// SOLID - SRP: Holds data only; reading and writing belong to the IATMStateService implementations
+// notes: the note count of every cassette, or null when the store only knows the cash total
+// (old state files, stores that do not keep the counts)
+public record StateSnapshot(List<Account> accounts, long cashCents, int[] notes, int paper, int ink, String firmware) {
+
+    public StateSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        this(accounts, cashCents, null, paper, ink, firmware);
+    }
+
+    // Same state with a different account list (used when a store seeds or replays accounts)
+    public StateSnapshot withAccounts(List<Account> newAccounts) {
+        return new StateSnapshot(newAccounts, cashCents, notes, paper, ink, firmware);
+    }
+}
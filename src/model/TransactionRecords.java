@@ -0,0 +1,163 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// TransactionRecords is a growable, columnar buffer of history entries
+// OOP: Encapsulation - entries are stored as primitive columns (time, type code, amount, resulting
+// balance) and turned into text only by format(...), i.e. when history is displayed or exported
+// SOLID - SRP: Holds and formats entries; which entries an account keeps is Account's business
+// Adding an entry writes four array slots and allocates nothing until a column has to grow.
+// Entries that only exist as text (older files, labels without a TransactionType) keep their
+// text in a side column that is created the first time such an entry arrives.
+// Not thread-safe: Account guards its buffer with its own lock.
+public final class TransactionRecords {
+
+    static final byte TEXT = 0; // Type code of a free-text entry
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Shared by every empty buffer: most accounts have no unsaved entries, and four arrays each would
+    // cost 64 bytes per account. grow() replaces them before anything is written.
+    private static final long[] NO_LONGS = new long[0];
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private long[] epochMillis = NO_LONGS;
+    private byte[] types = NO_BYTES;
+    private long[] amounts = NO_LONGS;
+    private long[] balances = NO_LONGS;
+    private String[] texts; // null while every entry is structured
+    private int size;
+
+    // ---------------------- APPEND ----------------------
+    public void add(long epochMillis, TransactionType type, long amountCents, long balanceCents) {
+        grow();
+        this.epochMillis[size] = epochMillis;
+        this.types[size] = type.code();
+        this.amounts[size] = amountCents;
+        this.balances[size] = balanceCents;
+        size++;
+    }
+
+    public void addText(String entry) {
+        grow();
+        if (texts == null) texts = new String[epochMillis.length];
+        types[size] = TEXT;
+        texts[size] = entry;
+        size++;
+    }
+
+    // Text in the layout format(...) produces (older state files) goes back into columns; the entry is
+    // only parsed if formatting the columns again gives the same text. Anything else stays text.
+    public void addFormatted(String entry) {
+        int typeEnd, amountEnd;
+        TransactionType type;
+        try {
+            int typeStart = entry.indexOf(" | ") + 3;
+            typeEnd = entry.indexOf(": €", typeStart);
+            amountEnd = entry.indexOf(" | Balance: €", typeEnd);
+            if (typeStart != 22 || typeEnd < 0 || amountEnd < 0
+                    || (type = TransactionType.ofLabel(entry.substring(typeStart, typeEnd))) == null) {
+                addText(entry);
+                return;
+            }
+            long millis = LocalDateTime.parse(entry.substring(0, 19), TIME_FORMAT)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long amount = Money.parse(entry, typeEnd + 3, amountEnd);
+            long balance = Money.parse(entry, amountEnd + 13, entry.length());
+            if (!formatEntry(new StringBuilder(64), millis, type.label(), amount, balance).toString().equals(entry)) {
+                addText(entry);
+                return;
+            }
+            add(millis, type, amount, balance);
+        } catch (RuntimeException e) { // DateTimeParseException, NumberFormatException, ...
+            addText(entry);
+        }
+    }
+
+    // Copies entry i of another buffer, structured or text
+    public void addFrom(TransactionRecords other, int i) {
+        if (other.isText(i)) addText(other.getText(i));
+        else add(other.epochMillis[i], other.getType(i), other.amounts[i], other.balances[i]);
+    }
+
+    private void grow() {
+        if (size < epochMillis.length) return;
+        int capacity = Math.max(INITIAL_CAPACITY, epochMillis.length * 2);
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        types = Arrays.copyOf(types, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        if (texts != null) texts = Arrays.copyOf(texts, capacity);
+    }
+
+    // Drops the oldest n entries (they were archived)
+    public void removeFirst(int n) {
+        n = Math.min(n, size);
+        if (n <= 0) return;
+        int rest = size - n;
+        System.arraycopy(epochMillis, n, epochMillis, 0, rest);
+        System.arraycopy(types, n, types, 0, rest);
+        System.arraycopy(amounts, n, amounts, 0, rest);
+        System.arraycopy(balances, n, balances, 0, rest);
+        if (texts != null) {
+            System.arraycopy(texts, n, texts, 0, rest);
+            Arrays.fill(texts, rest, size, null);
+        }
+        size = rest;
+    }
+
+    // ---------------------- COLUMNS ----------------------
+    public int size() { return size; }
+    public boolean isText(int i) { return types[check(i)] == TEXT; }
+    public long getEpochMillis(int i) { return epochMillis[check(i)]; }
+    public TransactionType getType(int i) { return TransactionType.ofCode(types[check(i)]); }
+    public long getAmountCents(int i) { return amounts[check(i)]; }
+    public long getBalanceCents(int i) { return balances[check(i)]; }
+    public String getText(int i) { return texts == null ? null : texts[check(i)]; }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Entry " + i + " of " + size);
+        return i;
+    }
+
+    // ---------------------- FORMATTING ----------------------
+    // Log format: timestamp | transaction type | amount | balance after the transaction
+    public StringBuilder format(int i, StringBuilder sb) {
+        if (isText(i)) return sb.append(texts[i]);
+        return formatEntry(sb, epochMillis[i], getType(i).label(), amounts[i], balances[i]);
+    }
+
+    static StringBuilder formatEntry(StringBuilder sb, long epochMillis, String label, long amountCents, long balanceCents) {
+        TIME_FORMAT.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()), sb);
+        sb.append(" | ").append(label).append(": €");
+        Money.appendTo(sb, amountCents).append(" | Balance: €");
+        return Money.appendTo(sb, balanceCents);
+    }
+
+    public String format(int i) {
+        return isText(i) ? texts[i] : format(i, new StringBuilder(64)).toString();
+    }
+
+    // Entries from..to-1 as text; newestFirst reverses the order (history screens)
+    public List<String> formatRange(int from, int to, boolean newestFirst) {
+        List<String> out = new ArrayList<>(Math.max(0, to - from));
+        StringBuilder sb = new StringBuilder(64);
+        for (int k = from; k < to; k++) {
+            int i = newestFirst ? to - 1 - (k - from) : k;
+            if (isText(i)) {
+                out.add(texts[i]);
+            } else {
+                sb.setLength(0);
+                out.add(format(i, sb).toString());
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,30 @@
+package model;
+
+// TransactionSummary holds the running totals of a set of history entries
+// OOP: Encapsulation - an immutable carrier built from the columns, so no entry is formatted to add it up
+// 'other' counts entries kept as free text: they have no type or amount to add up
+public record TransactionSummary(int deposits, long depositedCents, int withdrawals, long withdrawnCents, int other) {
+
+    public static TransactionSummary of(TransactionRecords records) {
+        int deposits = 0, withdrawals = 0, other = 0;
+        long deposited = 0, withdrawn = 0;
+        for (int i = 0; i < records.size(); i++) {
+            TransactionType type = records.isText(i) ? null : records.getType(i);
+            if (type == TransactionType.DEPOSIT) {
+                deposits++;
+                deposited += records.getAmountCents(i);
+            } else if (type == TransactionType.WITHDRAW) {
+                withdrawals++;
+                withdrawn += records.getAmountCents(i);
+            } else {
+                other++;
+            }
+        }
+        return new TransactionSummary(deposits, deposited, withdrawals, withdrawn, other);
+    }
+
+    public int count() { return deposits + withdrawals + other; }
+
+    // Deposits minus withdrawals: how much the balance moved over the summarised entries
+    public long netCents() { return depositedCents - withdrawnCents; }
+}
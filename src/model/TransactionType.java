@@ -0,0 +1,34 @@
+package model;
+
+// TransactionType is the kind of a history entry, stored as a one-byte code instead of text
+// OOP: Abstraction - the label is only needed when an entry is displayed or exported
+// The codes are written to history files: append new types at the end, never reorder
+public enum TransactionType {
+    DEPOSIT("Deposit"),
+    WITHDRAW("Withdraw");
+
+    private static final TransactionType[] BY_CODE = values();
+
+    private final String label;
+
+    TransactionType(String label) {
+        this.label = label;
+    }
+
+    public String label() { return label; }
+
+    // Stored code: 0 is reserved for entries kept as free text (see TransactionRecords)
+    public byte code() { return (byte) (ordinal() + 1); }
+
+    public static TransactionType ofCode(byte code) {
+        int i = code - 1;
+        if (i < 0 || i >= BY_CODE.length) throw new IllegalArgumentException("Unknown transaction type code " + code);
+        return BY_CODE[i];
+    }
+
+    // Type for a label as written in history text ("Deposit"), or null for any other label
+    public static TransactionType ofLabel(String label) {
+        for (TransactionType t : BY_CODE) if (t.label.equals(label)) return t;
+        return null;
+    }
+}
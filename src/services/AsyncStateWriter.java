@@ -0,0 +1,286 @@
+package services;
+
+import interfaces.IATMStateService;
+import interfaces.IAccountDirectory;
+import model.Account;
+import model.Money;
+import model.StateSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// AsyncStateWriter moves state persistence off the customer's thread
+// OOP: Composition - decorates any IATMStateService
+// SOLID - Open/Closed: ATMMachineV2 and the wrapped store are unchanged; only the wiring differs
+// SOLID - Liskov Substitution: Behaves as an IATMStateService whose saves complete later
+// saveState only enqueues a request. A single writer thread waits up to flushIntervalMillis
+// (or until maxBatch requests are queued) and then writes once for the whole group: every save
+// carries the complete state, so the newest request in a group supersedes the older ones.
+// Incremental saves (saveChanges) are merged instead: the group writes the union of their changed
+// accounts and machine fields together with the newest values.
+// The queue is bounded; when it is full, saveState blocks until the writer catches up.
+// close() queues SHUTDOWN behind the last save and waits for the writer to end; the writer is never
+// interrupted, so a store write cannot be cut off. Saves after close() go to the store directly.
+public class AsyncStateWriter implements IATMStateService, AutoCloseable {
+
+    // One queued save: the state as the engine saw it; 'changed' is null for a full save, 'notes' null
+    // when the save brought no cassette note counts
+    private record SaveRequest(List<Account> accounts, Collection<Account> changed, int machineFields,
+                               long cashCents, int[] notes, int paper, int ink, String firmware, long seq) {}
+
+    // Queued by close(): the writer writes what it collected before it and ends
+    private static final SaveRequest SHUTDOWN = new SaveRequest(List.of(), null, 0, 0, null, 0, 0, null, -1);
+
+    private final IATMStateService delegate;
+    private final BlockingQueue<SaveRequest> queue;
+    private final long flushIntervalMillis;
+    private final int maxBatch;
+    private final Thread writer;
+
+    // Sequence numbers: flush() waits until everything enqueued before it has been written
+    private long enqueuedSeq;
+    private long persistedSeq;
+    private final Object progress = new Object();
+    private volatile boolean running = true;
+
+    // Statistics for the technician status screen
+    private long groupCommits;
+    private long coalescedSaves;
+
+    public AsyncStateWriter(IATMStateService delegate, int queueCapacity, long flushIntervalMillis, int maxBatch) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.writer = new Thread(this::runWriter, "state-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // ---------------------- SAVE STATE ----------------------
+    @Override
+    public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
+        saveStateCents(accounts, Money.fromDouble(cash), paper, ink, firmware);
+    }
+
+    @Override
+    public void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        enqueue(accounts, null, ALL_MACHINE_FIELDS, cashCents, null, paper, ink, firmware);
+    }
+
+    @Override
+    public void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                            long cashCents, int paper, int ink, String firmware) {
+        enqueue(accounts, changed, machineFields, cashCents, null, paper, ink, firmware);
+    }
+
+    @Override
+    public void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                            long cashCents, int[] notes, int paper, int ink, String firmware) {
+        enqueue(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    private void enqueue(List<Account> accounts, Collection<Account> changed, int machineFields,
+                         long cashCents, int[] notes, int paper, int ink, String firmware) {
+        // The sequence number is taken and the request queued under one lock, so queue order = seq order;
+        // close() sets 'running' under the same lock, so no save is queued behind SHUTDOWN
+        synchronized (queue) {
+            if (running) {
+                long seq;
+                synchronized (progress) { seq = ++enqueuedSeq; }
+                put(new SaveRequest(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware, seq));
+                return;
+            }
+        }
+        // After close(): a direct write rather than dropping the change, once the writer's last group is written
+        awaitWriter();
+        write(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    // Blocks until the queue has room; an interrupt is kept for the caller, the save is never dropped
+    private void put(SaveRequest request) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(request);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Waits without a timeout for the writer thread to end, keeping an interrupt for the caller
+    private void awaitWriter() {
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // A full save that carries note counts is handed over as a save in which every account changed,
+    // since saveStateCents has no place for them
+    private void write(List<Account> accounts, Collection<Account> changed, int machineFields,
+                       long cashCents, int[] notes, int paper, int ink, String firmware) {
+        if (changed == null && notes == null) {
+            delegate.saveStateCents(accounts, cashCents, paper, ink, firmware);
+            return;
+        }
+        if (changed == null) {
+            synchronized (accounts) { changed = new ArrayList<>(accounts); }
+            machineFields = ALL_MACHINE_FIELDS;
+        }
+        delegate.saveChanges(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    // Blocks until every save requested before this call has been written by the delegate
+    public void flush() {
+        synchronized (progress) {
+            long target = enqueuedSeq;
+            while (persistedSeq < target && writer.isAlive()) {
+                try {
+                    progress.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (queue) {
+            if (running) {
+                running = false;
+                put(SHUTDOWN); // Behind every queued save: they are all written first
+            }
+        }
+        awaitWriter(); // The caller may close the wrapped store next
+    }
+
+    // ---------------------- WRITER THREAD ----------------------
+    private void runWriter() {
+        List<SaveRequest> batch = new ArrayList<>(maxBatch);
+        boolean open = true;
+        while (open) {
+            try {
+                SaveRequest first = queue.take();
+                if (first == SHUTDOWN) break;
+                batch.add(first);
+
+                // Group commit: collect whatever else arrives within the flush interval
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    SaveRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    if (next == SHUTDOWN) { open = false; break; }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not how the writer is stopped (see close()): write what was collected and keep serving
+            }
+            if (!batch.isEmpty()) writeGroup(batch);
+        }
+    }
+
+    private void writeGroup(List<SaveRequest> batch) {
+        SaveRequest latest = batch.get(batch.size() - 1); // Carries the newest complete state
+        // Union of the group's changes; one full save in the group makes the whole group a full save
+        Set<Account> changed = new LinkedHashSet<>();
+        int machineFields = 0;
+        boolean full = false;
+        int[] notes = null; // Newest note counts of the group; a later save without any does not drop them
+        for (SaveRequest r : batch) {
+            if (r.changed() == null) full = true;
+            else changed.addAll(r.changed());
+            machineFields |= r.machineFields();
+            if (r.notes() != null) notes = r.notes();
+        }
+        try {
+            write(latest.accounts(), full ? null : changed, machineFields,
+                    latest.cashCents(), notes, latest.paper(), latest.ink(), latest.firmware());
+        } catch (RuntimeException e) {
+            System.out.println("[!] Save Error: " + e.getMessage()); // Keep the writer alive for later saves
+        }
+        synchronized (progress) {
+            groupCommits++;
+            coalescedSaves += batch.size() - 1;
+            persistedSeq = latest.seq();
+            progress.notifyAll();
+        }
+        batch.clear();
+    }
+
+    // ---------------------- LOAD STATE ----------------------
+    // Loads happen at startup before any save, so they go straight to the delegate
+    @Override
+    public StateSnapshot loadSnapshot() { return delegate.loadSnapshot(); }
+
+    @Override
+    public List<Account> loadAccounts() { return delegate.loadAccounts(); }
+
+    @Override
+    public int loadPaperLevel() { return delegate.loadPaperLevel(); }
+
+    @Override
+    public int loadInkLevel() { return delegate.loadInkLevel(); }
+
+    @Override
+    public double loadCashLevel() { return delegate.loadCashLevel(); }
+
+    @Override
+    public long loadCashCents() { return delegate.loadCashCents(); }
+
+    @Override
+    public String loadFirmwareVersion() { return delegate.loadFirmwareVersion(); }
+
+    // Lazy loads run while sessions save: an account evicted by the engine is only read back from the store
+    // once nothing references it anymore, i.e. once no queued save holds it (see ATMMachineV2)
+    @Override
+    public IAccountDirectory accountDirectory() { return delegate.accountDirectory(); }
+
+    @Override
+    public boolean writeSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        flush(); // A snapshot must not be overtaken by an older queued save
+        return delegate.writeSnapshot(accounts, cashCents, paper, ink, firmware);
+    }
+
+    @Override
+    public boolean writeSnapshot(List<Account> accounts, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        flush();
+        return delegate.writeSnapshot(accounts, cashCents, notes, paper, ink, firmware);
+    }
+
+    // ---------------------- GETTERS ----------------------
+    public int getQueueDepth() { return queue.size(); }
+
+    public long getGroupCommits() {
+        synchronized (progress) { return groupCommits; }
+    }
+
+    public long getCoalescedSaves() {
+        synchronized (progress) { return coalescedSaves; }
+    }
+
+    @Override
+    public String getStorageStatus() {
+        String inner = delegate.getStorageStatus();
+        return "async queue " + getQueueDepth() + ", " + getGroupCommits() + " group commits ("
+                + getCoalescedSaves() + " saves coalesced)" + (inner.isEmpty() ? "" : "; " + inner);
+    }
+}
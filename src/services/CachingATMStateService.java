@@ -0,0 +1,243 @@
+package services;
+
+import interfaces.IATMStateService;
+import interfaces.IAccountDirectory;
+import model.Account;
+import model.Money;
+import model.StateSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// CachingATMStateService keeps the most recently used accounts of a large store in memory
+// OOP: Composition - decorates any IATMStateService that has an account directory (IAccountDirectory)
+// SOLID - Open/Closed: The wrapped store is unchanged; the cache only decides when it is read and written
+// SOLID - Liskov Substitution: An IATMStateService and IAccountDirectory like the store it wraps
+// Read-through: loadAccount serves the cached object or reads the store and caches the result. The cache
+// holds at most maxAccounts accounts and evicts the least recently used one (LRU, access order).
+// Write-back: saveChanges only marks accounts (and machine fields) dirty. Dirty entries are written to the
+// store together on commit() - explicitly, when maxDirty accounts are pending, on a full save, snapshot
+// or close - and a dirty account that is evicted is written first. maxDirty = 1 writes through.
+// Changes not committed yet are lost in a crash: maxDirty bounds how many accounts that can be.
+public class CachingATMStateService implements IATMStateService, IAccountDirectory, AutoCloseable {
+
+    private final IATMStateService delegate;
+    private final IAccountDirectory directory;
+    private final int maxAccounts;
+    private final int maxDirty;
+
+    // Case-folded owner -> account, least recently used first
+    private final LinkedHashMap<String, Account> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Account> dirty = new LinkedHashMap<>();
+
+    // Newest machine state handed over by saveChanges, and which of its fields are not committed yet
+    private int pendingMachineFields;
+    private long cashCents;
+    private int[] notes; // Cassette note counts, null until a save brought some
+    private int paper, ink;
+    private String firmware;
+    private boolean machineKnown;
+
+    // Statistics for the technician status screen
+    private long hits, misses, evictions, writeBacks, commits;
+
+    public CachingATMStateService(IATMStateService delegate, int maxAccounts, int maxDirty) {
+        IAccountDirectory dir = delegate.accountDirectory();
+        if (dir == null) {
+            throw new IllegalArgumentException("The wrapped store cannot read single accounts (no account directory)");
+        }
+        if (maxAccounts < 1 || maxDirty < 1) throw new IllegalArgumentException("Cache sizes must be at least 1");
+        this.delegate = delegate;
+        this.directory = dir;
+        this.maxAccounts = maxAccounts;
+        this.maxDirty = maxDirty;
+    }
+
+    // ---------------------- READ THROUGH ----------------------
+    @Override
+    public synchronized Account loadAccount(String owner) {
+        if (owner == null) return null;
+        String key = key(owner);
+        Account a = cache.get(key); // Also moves it to the most recently used end
+        if (a != null) {
+            hits++;
+            return a;
+        }
+        misses++;
+        a = directory.loadAccount(owner);
+        if (a != null) admit(key, a);
+        return a;
+    }
+
+    @Override
+    public synchronized StateSnapshot loadMachineState() {
+        if (machineKnown) return new StateSnapshot(new ArrayList<>(), cashCents, notes, paper, ink, firmware);
+        return directory.loadMachineState();
+    }
+
+    @Override
+    public int getAccountCount() { return directory.getAccountCount(); }
+
+    @Override
+    public IAccountDirectory accountDirectory() { return this; }
+
+    private void admit(String key, Account a) {
+        cache.put(key, a);
+        if (cache.size() <= maxAccounts) return;
+
+        List<Account> writeBack = new ArrayList<>();
+        for (Iterator<Map.Entry<String, Account>> it = cache.entrySet().iterator(); cache.size() > maxAccounts; ) {
+            Map.Entry<String, Account> eldest = it.next();
+            Account evicted = dirty.remove(eldest.getKey());
+            if (evicted != null) writeBack.add(evicted);
+            it.remove();
+            evictions++;
+        }
+        if (!writeBack.isEmpty()) { // Written before anyone can read the account from the store again
+            writeBacks += writeBack.size();
+            write(writeBack, 0);
+        }
+    }
+
+    // ---------------------- WRITE BACK ----------------------
+    @Override
+    public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
+        saveStateCents(accounts, Money.fromDouble(cash), paper, ink, firmware);
+    }
+
+    // A full save is passed on at once, after the pending changes
+    @Override
+    public synchronized void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        remember(ALL_MACHINE_FIELDS, cashCents, null, paper, ink, firmware);
+        pendingMachineFields = 0;
+        dirty.clear();
+        delegate.saveStateCents(accounts, cashCents, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int paper, int ink, String firmware) {
+        saveChanges(accounts, changed, machineFields, cashCents, null, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int[] notes, int paper, int ink, String firmware) {
+        remember(machineFields, cashCents, notes, paper, ink, firmware);
+        for (Account a : changed) {
+            String key = key(a.getOwner());
+            dirty.put(key, a);
+            if (cache.get(key) != a) admit(key, a); // New or reloaded elsewhere: the changed object is the one to keep
+        }
+        if (dirty.size() >= maxDirty) commit();
+    }
+
+    // Writes every dirty account and the pending machine fields to the store
+    public synchronized void commit() {
+        if (dirty.isEmpty() && pendingMachineFields == 0) return;
+        List<Account> pending = new ArrayList<>(dirty.values());
+        dirty.clear();
+        int fields = pendingMachineFields;
+        pendingMachineFields = 0;
+        commits++;
+        write(pending, fields);
+    }
+
+    // 'notes' null keeps the counts of an earlier save
+    private void remember(int machineFields, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        pendingMachineFields |= machineFields;
+        this.cashCents = cashCents;
+        if (notes != null) this.notes = notes.clone();
+        this.paper = paper;
+        this.ink = ink;
+        this.firmware = firmware;
+        machineKnown = true;
+    }
+
+    // The changed accounts double as the account list: a store with a directory writes only 'changed'
+    private void write(List<Account> changed, int machineFields) {
+        delegate.saveChanges(changed, changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized boolean writeSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        commit();
+        return delegate.writeSnapshot(accounts, cashCents, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized boolean writeSnapshot(List<Account> accounts, long cashCents, int[] notes,
+                                              int paper, int ink, String firmware) {
+        commit();
+        return delegate.writeSnapshot(accounts, cashCents, notes, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void close() {
+        commit();
+    }
+
+    // ---------------------- LOAD STATE ----------------------
+    // Whole-state loads bypass the cache, after the pending changes reached the store
+    @Override
+    public synchronized StateSnapshot loadSnapshot() {
+        commit();
+        return delegate.loadSnapshot();
+    }
+
+    @Override
+    public synchronized List<Account> loadAccounts() {
+        commit();
+        return delegate.loadAccounts();
+    }
+
+    @Override
+    public synchronized int loadPaperLevel() { return machineKnown ? paper : delegate.loadPaperLevel(); }
+
+    @Override
+    public synchronized int loadInkLevel() { return machineKnown ? ink : delegate.loadInkLevel(); }
+
+    @Override
+    public double loadCashLevel() { return Money.toDouble(loadCashCents()); }
+
+    @Override
+    public synchronized long loadCashCents() { return machineKnown ? cashCents : delegate.loadCashCents(); }
+
+    @Override
+    public synchronized String loadFirmwareVersion() { return machineKnown ? firmware : delegate.loadFirmwareVersion(); }
+
+    private static String key(String owner) {
+        return owner.toLowerCase(Locale.ROOT);
+    }
+
+    // ---------------------- GETTERS ----------------------
+    public synchronized int getCachedAccounts() { return cache.size(); }
+    public synchronized int getDirtyAccounts() { return dirty.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getWriteBacks() { return writeBacks; }
+    public synchronized long getCommits() { return commits; }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String getStorageStatus() {
+        String inner = delegate.getStorageStatus();
+        String own;
+        synchronized (this) {
+            own = String.format("cache %d/%d accounts, hit rate %.1f%% (%d hits, %d misses), %d evictions "
+                            + "(%d written back), %d dirty, %d commits",
+                    cache.size(), maxAccounts, getHitRate() * 100, hits, misses, evictions, writeBacks, dirty.size(), commits);
+        }
+        return own + (inner.isEmpty() ? "" : "; " + inner);
+    }
+}
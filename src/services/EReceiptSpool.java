@@ -0,0 +1,207 @@
+package services;
+
+import model.Receipt;
+import model.TransactionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// EReceiptSpool appends electronic receipts to one spool file per day (receipts-YYYY-MM-DD.log)
+// OOP: Encapsulation of the line format, the buffer pool and the file channel
+// SOLID - SRP: Only writes e-receipts; deciding paper vs electronic is ATMMachineV2's job
+// Line format, like a history entry: "2026-10-16 14:03:07 | owner | Withdraw: €70.00 | Balance: €930.00 | 1x€50, 1x€20"
+// A receipt is encoded straight into a pooled direct ByteBuffer: the fixed parts are byte templates made
+// once, the date is encoded once per day, the time and amounts are written digit by digit and text
+// fields are UTF-8 encoded char by char. No String is built per receipt; the buffer is written with one
+// FileChannel.write and goes back to the pool.
+public class EReceiptSpool implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 512;   // Fits any ordinary receipt; longer ones get their own buffer
+    private static final int POOLED_BUFFERS = 8;  // Callers encoding at the same time before one allocates
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private static final byte[] SEPARATOR = bytes(" | ");
+    private static final byte[] BALANCE = bytes(" | Balance: €");
+    private static final byte[] NO_TRANSACTION = bytes("Receipt");
+    private static final byte[][] TYPE_LABELS = new byte[TransactionType.values().length][]; // "Deposit: €"
+
+    static {
+        for (TransactionType t : TransactionType.values()) TYPE_LABELS[t.ordinal()] = bytes(t.label() + ": €");
+    }
+
+    // Offset and date that hold from 'from' until 'until' (midnight or the zone's next offset change)
+    private record Clock(long from, long until, long offsetMillis, long epochDay, byte[] date) {}
+
+    private final Path dir;
+    private final ZoneId zone;
+    private final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+    private final ReentrantLock fileLock = new ReentrantLock(); // Not synchronized: callers may be virtual threads
+    private volatile Clock clock;
+    private FileChannel channel;  // Guarded by fileLock
+    private long channelDay = Long.MIN_VALUE;
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public EReceiptSpool(Path dir) throws IOException {
+        this(dir, ZoneId.systemDefault());
+    }
+
+    public EReceiptSpool(Path dir, ZoneId zone) throws IOException {
+        this.dir = dir;
+        this.zone = zone;
+        Files.createDirectories(dir);
+        for (int i = 0; i < POOLED_BUFFERS; i++) pool.offer(ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+
+    // ---------------------- APPEND ----------------------
+    public void append(Receipt receipt) throws IOException {
+        Clock c = clockFor(receipt.epochMillis());
+        int needed = 128 + 3 * (length(receipt.owner()) + length(receipt.notes())); // UTF-8: at most 3 bytes per char
+        boolean pooled = needed <= BUFFER_SIZE;
+        ByteBuffer buf = pooled ? pool.poll() : null;
+        if (buf == null) buf = ByteBuffer.allocate(Math.max(needed, BUFFER_SIZE)); // Pool empty or receipt too long
+        try {
+            buf.clear();
+            encode(buf, receipt, c);
+            buf.flip();
+            int bytes = buf.remaining();
+            fileLock.lock();
+            try {
+                FileChannel ch = channel(c.epochDay());
+                while (buf.hasRemaining()) ch.write(buf);
+            } finally {
+                fileLock.unlock();
+            }
+            spooled.incrementAndGet();
+            bytesWritten.addAndGet(bytes);
+        } finally {
+            if (pooled && buf.isDirect()) pool.offer(buf);
+        }
+    }
+
+    private static void encode(ByteBuffer buf, Receipt r, Clock c) {
+        long local = r.epochMillis() + c.offsetMillis();
+        int secondOfDay = (int) (Math.floorMod(local, DAY_MILLIS) / 1_000);
+        buf.put(c.date()).put((byte) ' ');
+        putTwoDigits(buf, secondOfDay / 3_600).put((byte) ':');
+        putTwoDigits(buf, secondOfDay / 60 % 60).put((byte) ':');
+        putTwoDigits(buf, secondOfDay % 60);
+        if (r.owner() != null) putUtf8(buf.put(SEPARATOR), r.owner());
+        buf.put(SEPARATOR);
+        if (r.type() == null) {
+            buf.put(NO_TRANSACTION);
+        } else {
+            putCents(buf.put(TYPE_LABELS[r.type().ordinal()]), r.amountCents());
+            putCents(buf.put(BALANCE), r.balanceCents());
+        }
+        if (r.notes() != null && !r.notes().isEmpty()) putUtf8(buf.put(SEPARATOR), r.notes());
+        buf.put((byte) '\n');
+    }
+
+    // ---------------------- ENCODING ----------------------
+    private static ByteBuffer putTwoDigits(ByteBuffer buf, int n) {
+        return buf.put((byte) ('0' + n / 10)).put((byte) ('0' + n % 10));
+    }
+
+    // "930.00", like Money.appendTo
+    private static void putCents(ByteBuffer buf, long cents) {
+        if (cents < 0) {
+            buf.put((byte) '-');
+            cents = -cents; // Long.MIN_VALUE cents is not a receipt amount
+        }
+        putDigits(buf, cents / 100);
+        putTwoDigits(buf.put((byte) '.'), (int) (cents % 100));
+    }
+
+    private static void putDigits(ByteBuffer buf, long n) {
+        long div = 1;
+        while (n / div >= 10) div *= 10;
+        for (; div > 0; div /= 10) buf.put((byte) ('0' + n / div % 10));
+    }
+
+    // UTF-8 without a CharsetEncoder or a byte[] per call
+    private static void putUtf8(ByteBuffer buf, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                buf.put((byte) ch);
+            } else if (ch < 0x800) {
+                buf.put((byte) (0xC0 | ch >> 6)).put((byte) (0x80 | ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, s.charAt(++i));
+                buf.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                buf.put((byte) '?'); // Unpaired surrogate
+            } else {
+                buf.put((byte) (0xE0 | ch >> 12)).put((byte) (0x80 | ch >> 6 & 0x3F)).put((byte) (0x80 | ch & 0x3F));
+            }
+        }
+    }
+
+    private static int length(String s) { return s == null ? 0 : s.length(); }
+
+    private static byte[] bytes(String s) { return s.getBytes(StandardCharsets.UTF_8); }
+
+    // ---------------------- DAYS ----------------------
+    // The cached clock covers the current day up to the next offset change, so only a new day (or a
+    // daylight-saving switch) costs date arithmetic and an allocation
+    private Clock clockFor(long millis) {
+        Clock c = clock;
+        if (c != null && millis >= c.from() && millis < c.until()) return c;
+        Instant instant = Instant.ofEpochMilli(millis);
+        long offsetMillis = zone.getRules().getOffset(instant).getTotalSeconds() * 1_000L;
+        long epochDay = Math.floorDiv(millis + offsetMillis, DAY_MILLIS);
+        long from = epochDay * DAY_MILLIS - offsetMillis;
+        long until = from + DAY_MILLIS;
+        ZoneOffsetTransition next = zone.getRules().nextTransition(instant);
+        if (next != null) until = Math.min(until, next.toEpochSecond() * 1_000);
+        ZoneOffsetTransition previous = zone.getRules().previousTransition(instant);
+        if (previous != null) from = Math.max(from, previous.toEpochSecond() * 1_000);
+        c = new Clock(from, until, offsetMillis, epochDay, bytes(LocalDate.ofEpochDay(epochDay).toString()));
+        clock = c;
+        return c;
+    }
+
+    private FileChannel channel(long epochDay) throws IOException {
+        if (channel != null && channelDay == epochDay) return channel;
+        if (channel != null) channel.close(); // Midnight: yesterday's file is complete
+        channel = FileChannel.open(fileFor(LocalDate.ofEpochDay(epochDay)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channelDay = epochDay;
+        return channel;
+    }
+
+    public Path fileFor(LocalDate day) { return dir.resolve("receipts-" + day + ".log"); }
+
+    // ---------------------- GETTERS ----------------------
+    public Path getDirectory() { return dir; }
+    public long getSpooled() { return spooled.get(); }
+    public long getBytesWritten() { return bytesWritten.get(); }
+
+    @Override
+    public void close() throws IOException {
+        fileLock.lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            fileLock.unlock();
+        }
+    }
+}
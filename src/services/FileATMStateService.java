@@ -2,193 +2,307 @@ package services;
 
 import interfaces.IATMStateService;
 import model.Account;
+import model.HistoryRetention;
+import model.Money;
+import model.StateSnapshot;
+import model.TransactionRecords;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 // Concrete implementation of IATMStateService using a JSON file
 // OOP: Encapsulation of all file-based persistence logic
 // SOLID - Single Responsibility Principle (SRP): This class handles only persistence
 // SOLID - Dependency Inversion Principle (DIP): ATMMachineV2 depends on the IATMStateService abstraction, not this concrete class
 // Liskov Substitution Principle (LSP): Any other implementation of IATMStateService can be substituted without breaking ATM behavior
-public class FileATMStateService implements IATMStateService {
+// Transaction history is not part of the JSON: it is appended to <path>.history (see HistoryLog) and every
+// account only stores a pointer to its newest entry, so loading costs the same however long the histories are.
+// Every save lists every account, so a save is also where the history log is compacted (see write).
+public class FileATMStateService implements IATMStateService, AutoCloseable {
 
-    private final String PATH = "data/atm_state.json"; // File path encapsulated
+    private final String PATH; // File path encapsulated
+    private static final long PRESET_MIN_CENTS = Money.ofEuros(100); // Preset account minimum balance
+    // Values used when the file or a field is missing: €5000 cash, 4 sheets, 4 ink units, firmware 1.0.0
+    static final StateSnapshot DEFAULTS = new StateSnapshot(List.of(), Money.ofEuros(5000), 4, 4, "1.0.0");
+    private static final byte[] INDENT = "    ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FOOTER = "  ]\n}".getBytes(StandardCharsets.UTF_8);
+
+    // One account's JSON and the Account version it was encoded at
+    private record Encoded(long version, byte[] json) {}
+    private Map<Account, Encoded> encoded = new IdentityHashMap<>();
+    private final WriteStats writeStats = new WriteStats();
+    private final HistoryLog history;
+    private int[] notes; // Cassette note counts last loaded or saved; written again by saves that bring none
+
+    public FileATMStateService() {
+        this("data/atm_state.json");
+    }
+
+    // Alternate location, e.g. a snapshot file next to a journal or an isolated test directory
+    public FileATMStateService(String path) {
+        this(path, HistoryRetention.DEFAULT);
+    }
+
+    // How much saved history stays in memory and how it is compressed on disk (see HistoryRetention)
+    public FileATMStateService(String path, HistoryRetention retention) {
+        this.PATH = path;
+        this.history = new HistoryLog(Paths.get(path + ".history"), retention);
+    }
 
     // ---------------------- SAVE STATE ----------------------
     @Override
     public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
-        // Encapsulation: Builds JSON string from account data, ATM cash, printer levels, firmware
+        saveStateCents(accounts, Money.fromDouble(cash), paper, ink, firmware); // Legacy double entry point
+    }
+
+    @Override
+    public void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        write(accounts, true, cashCents, null, paper, ink, firmware);
+    }
+
+    // The file is rewritten whole either way; the note counts just replace the remembered ones
+    @Override
+    public void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                            long cashCents, int[] notes, int paper, int ink, String firmware) {
+        List<Account> copy;
+        synchronized (accounts) { copy = new ArrayList<>(accounts); }
+        write(copy, true, cashCents, notes, paper, ink, firmware);
+    }
+
+    // saveStateCents that reports whether the file was written, for stores that must retry a failed write
+    boolean trySave(List<Account> accounts, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        return write(accounts, true, cashCents, notes, paper, ink, firmware);
+    }
+
+    // A snapshot for compaction or export is made of throw-away copies: encode them without caching
+    @Override
+    public boolean writeSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        return write(accounts, false, cashCents, null, paper, ink, firmware);
+    }
+
+    @Override
+    public boolean writeSnapshot(List<Account> accounts, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        return write(accounts, false, cashCents, notes, paper, ink, firmware);
+    }
+
+    // Dirty tracking: every account's JSON from the previous save is kept together with the
+    // Account version it was encoded at, and only accounts whose version moved are encoded again.
+    // The file itself is still rewritten whole, because JSON has no fixed positions to update in place.
+    // New history entries go to the history log first; the log is flushed before the rename, so the
+    // file on disk never points at an entry that is not there.
+    // When segments have replaced half of the history log, this save compacts it: every account is
+    // encoded again, which moves its chain into a new log generation, and the old generation is deleted
+    // once the renamed file points at the new one.
+    // 'notes' null keeps the note counts last loaded or saved (a file without them stays without them).
+    private synchronized boolean write(List<Account> accounts, boolean reuse,
+                                       long cashCents, int[] notes, int paper, int ink, String firmware) {
+        if (notes != null) this.notes = notes.clone();
+        notes = this.notes;
+        // Encapsulation: Builds JSON from account data, ATM cash, printer levels, firmware
+        // Cash is written as a plain decimal ("2040.00"), which older readers parse as before;
+        // the cassettes' note counts follow it and are ignored by them
         StringBuilder sb = new StringBuilder();
         sb.append("{\n");
-        sb.append("  \"cash\": ").append(cash).append(",\n");
+        sb.append("  \"cash\": ");
+        Money.appendTo(sb, cashCents).append(",\n");
+        if (notes != null) {
+            sb.append("  \"notes\": [");
+            for (int c = 0; c < notes.length; c++) sb.append(c > 0 ? ", " : "").append(notes[c]);
+            sb.append("],\n");
+        }
         sb.append("  \"paper\": ").append(paper).append(",\n");
         sb.append("  \"ink\": ").append(ink).append(",\n");
         sb.append("  \"firmware\":\"").append(firmware).append("\",\n");
         sb.append("  \"accounts\": [\n");
 
-        for (int i = 0; i < accounts.size(); i++) {
-            sb.append("    ").append(accounts.get(i).toJsonWithTransactions());
-            if (i < accounts.size() - 1) sb.append(",");
-            sb.append("\n");
-        }
-        sb.append("  ]\n}");
-
+        Map<Account, Encoded> next = reuse ? new IdentityHashMap<>(accounts.size() * 4 / 3 + 1) : null;
+        long bytes = 0;
+        int reencoded = 0;
         try {
-            Files.createDirectories(Paths.get("data")); // Ensure folder exists
-            Files.write(Paths.get(PATH), sb.toString().getBytes()); // Save JSON to file
+            if (history.needsCompaction()) {
+                history.startCompaction();
+                encoded = new IdentityHashMap<>(); // Every head moves
+            }
+            Path target = Paths.get(PATH);
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent); // Ensure folder exists
+            // Write a temp file and rename it over the old one, so a crash never leaves half a state file
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                byte[] header = sb.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(header);
+                bytes += header.length;
+                for (int i = 0; i < accounts.size(); i++) {
+                    Account a = accounts.get(i);
+                    byte[] json;
+                    if (reuse) {
+                        long version = a.getVersion(); // Read before encoding: a concurrent change re-encodes next time
+                        Encoded e = encoded.get(a);
+                        if (e == null || e.version() != version) {
+                            bytes += archive(a);
+                            e = new Encoded(version, a.toJsonWithHistoryPointer().getBytes(StandardCharsets.UTF_8));
+                            reencoded++;
+                        }
+                        next.put(a, e);
+                        json = e.json();
+                    } else {
+                        bytes += archive(a);
+                        json = a.toJsonWithHistoryPointer().getBytes(StandardCharsets.UTF_8);
+                        reencoded++;
+                    }
+                    out.write(INDENT);
+                    out.write(json);
+                    if (i < accounts.size() - 1) out.write(',');
+                    out.write('\n');
+                    bytes += INDENT.length + json.length + (i < accounts.size() - 1 ? 2 : 1);
+                }
+                out.write(FOOTER);
+                bytes += FOOTER.length;
+            }
+            if (reuse) history.flush();
+            else history.force(); // A snapshot replaces a journal, so its history must be durable too
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            history.finishCompaction(); // No-op unless a compaction waits for this file
         } catch (IOException e) {
             System.out.println("[!] Save Error: " + e.getMessage());
+            return false;
         }
+        if (reuse) encoded = next; // Accounts no longer in the list drop out of the cache
+        writeStats.record(bytes, reencoded);
+        return true;
     }
 
-    // ---------------------- LOAD ACCOUNTS ----------------------
+    // Appends the entries the history log does not hold yet and drops them from memory; returns the bytes.
+    // An account whose history lives in another archive (another store, an older file) is copied whole.
+    private long archive(Account a) throws IOException {
+        long before = history.getBytesAppended();
+        boolean own = a.getArchive() == history;
+        int from = own ? a.getArchivedCount() : 0;
+        long head = own ? a.getArchiveHead() : -1;
+        TransactionRecords entries = a.getTransactionRecords(from, a.getTransactionCount());
+        head = history.appendAll(-1, from, head, entries);
+        a.markPersisted(history, head, from + entries.size());
+        return history.getBytesAppended() - before;
+    }
+
+    // ---------------------- LOAD SNAPSHOT ----------------------
+    // One streaming pass over the file fills the complete state (see StateJsonReader).
+    // Histories stay in the history log until a page of one is asked for.
+    // A missing or unreadable file yields the defaults plus the preset account, as before.
     @Override
-    public List<Account> loadAccounts() {
-        List<Account> list = new ArrayList<>();
+    public StateSnapshot loadSnapshot() {
+        StateSnapshot state;
         try {
-            String data = Files.readString(Paths.get(PATH));
-
-            int start = data.indexOf("[");
-            int end = data.lastIndexOf("]");
-            if (start >= 0 && end >= 0) {
-                String accountsData = data.substring(start + 1, end).trim();
-                if (!accountsData.isEmpty()) {
-                    // Split JSON objects safely
-                    String[] accs = accountsData.split("\\},\\{");
-                    for (String accStr : accs) {
-                        String a = accStr;
-                        if (!a.startsWith("{")) a = "{" + a;
-                        if (!a.endsWith("}")) a = a + "}";
-
-                        // Extract basic fields using helper methods
-                        String owner = extractStringField(a, "owner");
-                        String pin = extractStringField(a, "pin");
-                        double balance = extractDoubleField(a, "balance");
-
-                        Account account = new Account(owner, pin, balance);
-
-                        // Extract transactions if present
-                        int tStart = a.indexOf("\"transactions\"");
-                        if (tStart >= 0) {
-                            int arrStart = a.indexOf("[", tStart);
-                            int arrEnd = a.indexOf("]", arrStart);
-                            if (arrStart >= 0 && arrEnd >= 0) {
-                                String txBlock = a.substring(arrStart + 1, arrEnd).trim();
-                                if (!txBlock.isEmpty()) {
-                                    String[] txs = txBlock.split("\",\"");
-                                    for (String tx : txs) {
-                                        tx = tx.trim();
-                                        tx = tx.replaceFirst("^\"", "").replaceFirst("\"$", "");
-                                        if (!tx.isEmpty()) account.getTransactions().add(tx);
-                                    }
-                                }
-                            }
-                        }
-
-                        list.add(account);
-                    }
-                }
-            }
+            state = read();
         } catch (Exception e) {
             // No state file or parse problem: create default preset account
-            list.add(new Account("ngaa", "2006", 100.0));
-            saveState(list, loadCashLevel(), 4, 4, loadFirmwareVersion());
-            return list;
+            List<Account> list = new ArrayList<>();
+            list.add(Account.ofCents("ngaa", "2006", PRESET_MIN_CENTS));
+            state = DEFAULTS.withAccounts(list);
+            saveStateCents(list, state.cashCents(), state.paper(), state.ink(), state.firmware());
+            return state;
         }
 
-        // Ensure preset account exists with correct minimum balance
-        boolean hasPreset = list.stream().anyMatch(a -> a.getOwner().equalsIgnoreCase("ngaa") && a.getPin().equals("2006"));
-        if (!hasPreset) {
-            list.add(new Account("ngaa", "2006", 100.0));
-            saveState(list, loadCashLevel(), loadPaperLevel(), loadInkLevel(), loadFirmwareVersion());
-        } else {
-            for (Account a : list) {
-                if (a.getOwner().equalsIgnoreCase("ngaa") && a.getPin().equals("2006")) {
-                    if (a.getBalance() < 100.0) {
-                        a.setBalance(100.0);
-                        saveState(list, loadCashLevel(), loadPaperLevel(), loadInkLevel(), loadFirmwareVersion());
-                    }
-                }
-            }
+        // Seeding reuses the values just read instead of re-reading the file for each of them
+        remember(state.notes());
+        List<Account> list = state.accounts();
+        if (ensurePreset(list)) saveStateCents(list, state.cashCents(), state.paper(), state.ink(), state.firmware());
+        return state;
+    }
+
+    // The file as it is, without seeding; for stores that import or combine JSON state files
+    StateSnapshot read() throws IOException {
+        try (Reader in = Files.newBufferedReader(Paths.get(PATH), StandardCharsets.UTF_8)) {
+            return new StateJsonReader(in, history).read(DEFAULTS, false);
         }
+    }
 
-        return list;
+    // Loaded note counts, kept for the saves that come without any
+    private synchronized void remember(int[] loaded) {
+        if (loaded != null) notes = loaded.clone();
     }
 
-    // ---------------------- LOAD PAPER ----------------------
-    @Override
-    public int loadPaperLevel() {
-        try {
-            String data = Files.readString(Paths.get(PATH));
-            for (String line : data.split("\n")) {
-                if (line.contains("\"paper\"")) return Integer.parseInt(line.split(":")[1].replace(",", "").trim());
+    // Ensure preset account exists with correct minimum balance; returns true when the list was changed.
+    // Shared with the other file-backed stores so every store seeds the same account.
+    static boolean ensurePreset(List<Account> list) {
+        boolean changed = false;
+        boolean hasPreset = false;
+        for (Account a : list) {
+            if (a.getOwner().equalsIgnoreCase("ngaa") && a.getPin().equals("2006")) {
+                hasPreset = true;
+                if (a.getBalanceCents() < PRESET_MIN_CENTS) {
+                    a.setBalanceCents(PRESET_MIN_CENTS);
+                    changed = true;
+                }
             }
-        } catch (Exception e) {}
-        return 4; // Default
+        }
+        if (!hasPreset) {
+            list.add(Account.ofCents("ngaa", "2006", PRESET_MIN_CENTS));
+            changed = true;
+        }
+        return changed;
     }
 
-    // ---------------------- LOAD INK ----------------------
+    // ---------------------- LOAD ACCOUNTS ----------------------
     @Override
-    public int loadInkLevel() {
-        try {
-            String data = Files.readString(Paths.get(PATH));
-            for (String line : data.split("\n")) {
-                if (line.contains("\"ink\"")) return Integer.parseInt(line.split(":")[1].replace(",", "").trim());
-            }
-        } catch (Exception e) {}
-        return 4; // Default
+    public List<Account> loadAccounts() {
+        return loadSnapshot().accounts();
     }
 
-    // ---------------------- LOAD CASH ----------------------
+    // ---------------------- LOAD MACHINE LEVELS ----------------------
+    // Single values only need the header at the top of the file; the accounts array is not parsed
     @Override
-    public double loadCashLevel() {
-        try {
-            String data = Files.readString(Paths.get(PATH));
-            for (String line : data.split("\n")) {
-                if (line.contains("\"cash\"")) return Double.parseDouble(line.split(":")[1].replace(",", "").trim());
-            }
-        } catch (Exception e) {}
-        return 5000.0; // Default
-    }
+    public int loadPaperLevel() { return loadHeader().paper(); }
 
-    // ---------------------- LOAD FIRMWARE ----------------------
     @Override
-    public String loadFirmwareVersion() {
-        try {
-            String data = Files.readString(Paths.get(PATH));
-            for (String line : data.split("\n")) {
-                if (line.contains("\"firmware\""))
-                    return line.split(":")[1].replace("\"", "").replace(",", "").trim();
-            }
-        } catch (Exception e) {}
-        return "1.0.0"; // Default
+    public int loadInkLevel() { return loadHeader().ink(); }
+
+    @Override
+    public double loadCashLevel() { return Money.toDouble(loadCashCents()); }
+
+    @Override
+    public long loadCashCents() { return loadHeader().cashCents(); }
+
+    @Override
+    public String loadFirmwareVersion() { return loadHeader().firmware(); }
+
+    private StateSnapshot loadHeader() {
+        try (Reader in = Files.newBufferedReader(Paths.get(PATH), StandardCharsets.UTF_8)) {
+            return new StateJsonReader(in).read(DEFAULTS, true);
+        } catch (Exception e) {
+            return DEFAULTS;
+        }
     }
 
-    // ---------------------- HELPER METHODS ----------------------
-    // Parse string fields from JSON-like string
-    private String extractStringField(String src, String field) {
-        try {
-            int idx = src.indexOf("\"" + field + "\"");
-            if (idx < 0) return "";
-            int colon = src.indexOf(":", idx);
-            int firstQuote = src.indexOf('"', colon);
-            int secondQuote = src.indexOf('"', firstQuote + 1);
-            return src.substring(firstQuote + 1, secondQuote);
-        } catch (Exception e) { return ""; }
+    // ---------------------- GETTERS ----------------------
+    public WriteStats getWriteStats() { return writeStats; }
+
+    public long getHistorySizeBytes() { return history.getSizeBytes(); }
+
+    public long getHistoryCompactions() { return history.getCompactions(); }
+
+    @Override
+    public String getStorageStatus() {
+        return "JSON file, history " + (getHistorySizeBytes() >> 10) + " KB (" + history.getSegmentsWritten()
+                + " segments compressed, " + history.getCompactions() + " compactions), writes " + writeStats;
     }
 
-    // Parse double fields from JSON-like string
-    private double extractDoubleField(String src, String field) {
+    // Releases the history log's file; it is opened again if a history page is read later
+    @Override
+    public void close() {
         try {
-            int idx = src.indexOf("\"" + field + "\"");
-            int colon = src.indexOf(":", idx);
-            int end = src.indexOf(",", colon);
-            if (end < 0) end = src.indexOf("}", colon);
-            String num = src.substring(colon + 1, end).trim();
-            return Double.parseDouble(num);
-        } catch (Exception e) { return 0.0; }
+            history.close();
+        } catch (IOException e) {
+            System.out.println("[!] Close Error: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,507 @@
+package services;
+
+import interfaces.IHistoryArchive;
+import model.HistoryBlock;
+import model.HistoryRetention;
+import model.TransactionRecords;
+import model.TransactionType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// HistoryLog is an append-only file of transaction history entries, kept apart from account headers
+// OOP: Encapsulation of the entry format, the compression, the file channel and the append buffer
+// SOLID - SRP: Stores and reads entries; which account points where is decided by the stores
+// Entry: [slot int][index int][previous entry offset long][length int][payload]. The payload is either
+// the primitive columns [epoch millis long][type code byte][amount long][balance long] (length = STRUCTURED),
+// UTF-8 text of that length (entries that only exist as text, and logs written by earlier builds),
+// or a compressed segment (length = TIMED_SEGMENT): [entry count int][deflated size int][oldest epoch millis
+// long][newest epoch millis long][deflated columns]. Segments of earlier builds (length = SEGMENT) lack the
+// two times and are still read.
+// Every entry points at the previous entry of the same account, so an account only needs the offset
+// of its newest entry (its "head") to page backwards through its history without reading anything else.
+// New entries are appended one by one; whenever an account's history reaches a multiple of
+// segmentEntries, those last entries are appended again as one segment (index = its first entry) that
+// points past the single entries it replaces. A walk skips a whole segment by its count without
+// inflating it, so deep pages cost one read per segment instead of one per entry, and the time layout of
+// a history (timeline) comes from the segment headers without inflating anything.
+// Replaced entries and a crash's unreferenced tail stay in the file, unreachable, until a compaction:
+// once they make up half of the file, the store copies every account's chain into a new generation
+// (<path>.<n>, segments copied as they are) and deletes the older files after its records point there.
+// A position is (generation << GEN_SHIFT) | offset, so heads from before a compaction stay readable.
+public class HistoryLog implements IHistoryArchive, AutoCloseable {
+
+    static final int ENTRY_HEADER = 20; // slot + index + previous offset + length
+    private static final int OFF_PREVIOUS = 8, OFF_LENGTH = 16;
+    private static final int STRUCTURED = -1, STRUCTURED_SIZE = 25; // millis + type + amount + balance
+    private static final int SEGMENT = -2, SEGMENT_HEADER = 8;      // entry count + deflated size
+    private static final int TIMED_SEGMENT = -3, TIMED_SEGMENT_HEADER = 24; // ... + oldest and newest time
+    private static final long STOPPED_AT_SEGMENT = Long.MIN_VALUE;
+    private static final int GEN_SHIFT = 40; // 1 TB per generation file, 2^23 generations
+    private static final long OFFSET_MASK = (1L << GEN_SHIFT) - 1;
+
+    private final Path path;
+    private final HistoryRetention retention;
+    private final int segmentEntries; // 0 = never roll entries into segments
+    private FileChannel channel;      // The current generation: appends go here
+    private int generation;
+    private long end; // Offset of the next entry in the current generation, buffered bytes included
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16); // Staged appends
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private long bytesAppended;
+    private long segmentsWritten;
+
+    // Compaction: earlier generations stay readable until close, for heads that were not moved yet
+    private final Map<Integer, FileChannel> older = new HashMap<>();
+    private final Map<Long, Long> relocated = new HashMap<>(); // Head in an earlier generation -> its copy
+    private long replacedBytes;  // Single entries in the current generation that segments replaced
+    private boolean compacting;  // Earlier generation files wait for finishCompaction
+    private long compactions;
+
+    public HistoryLog(Path path) {
+        this(path, HistoryRetention.DEFAULT);
+    }
+
+    public HistoryLog(Path path, HistoryRetention retention) {
+        this.path = path;
+        this.retention = retention;
+        this.segmentEntries = retention.segmentEntries();
+    }
+
+    @Override
+    public HistoryRetention retention() { return retention; }
+
+    // ---------------------- APPEND ----------------------
+    // Appends entry i of 'entries' and returns its offset: the account's new head.
+    // 'slot' is free for the store (-1 when unused).
+    public synchronized long append(int slot, int index, long previous, TransactionRecords entries, int i) throws IOException {
+        previous = relocate(previous);
+        byte[] text = entries.isText(i) ? entries.getText(i).getBytes(StandardCharsets.UTF_8) : null;
+        int size = ENTRY_HEADER + (text == null ? STRUCTURED_SIZE : text.length);
+        ByteBuffer entry = reserve(size);
+        entry.putInt(slot).putInt(index).putLong(previous);
+        if (text == null) {
+            entry.putInt(STRUCTURED).putLong(entries.getEpochMillis(i)).put(entries.getType(i).code())
+                    .putLong(entries.getAmountCents(i)).putLong(entries.getBalanceCents(i));
+        } else {
+            entry.putInt(text.length).put(text);
+        }
+        return commit(entry, size);
+    }
+
+    // Appends 'entries' as the account's entries from, from+1, ... after 'head' and returns the new head.
+    // Each block of segmentEntries that becomes complete is rolled into a segment; entries of the block
+    // that were appended by earlier saves are read back for it (never more than one block).
+    // A head in an earlier generation is moved first, even when there is nothing to append.
+    public synchronized long appendAll(int slot, int from, long head, TransactionRecords entries) throws IOException {
+        head = relocate(head);
+        for (int i = 0; i < entries.size(); i++) {
+            int index = from + i;
+            head = append(slot, index, head, entries, i);
+            if (segmentEntries > 0 && (index + 1) % segmentEntries == 0) head = rollSegment(slot, index + 1 - segmentEntries, head);
+        }
+        return head;
+    }
+
+    // Writes the single entries firstIndex..firstIndex+segmentEntries-1 (ending at 'head') as one segment.
+    // Keeps 'head' when the block is not made of single entries (e.g. segments of another size).
+    private long rollSegment(int slot, int firstIndex, long head) throws IOException {
+        flush();
+        TransactionRecords newestFirst = new TransactionRecords();
+        long before = walk(head, 0, segmentEntries, newestFirst, false);
+        if (before == STOPPED_AT_SEGMENT || newestFirst.size() < segmentEntries) return head;
+
+        TransactionRecords block = new TransactionRecords();
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            block.addFrom(newestFirst, i);
+            replacedBytes += ENTRY_HEADER + (newestFirst.isText(i)
+                    ? newestFirst.getText(i).getBytes(StandardCharsets.UTF_8).length : STRUCTURED_SIZE);
+        }
+        HistoryBlock times = HistoryBlock.of(block);
+        byte[] compressed = compress(block);
+        int size = ENTRY_HEADER + TIMED_SEGMENT_HEADER + compressed.length;
+        ByteBuffer entry = reserve(size);
+        entry.putInt(slot).putInt(firstIndex).putLong(before).putInt(TIMED_SEGMENT)
+                .putInt(block.size()).putInt(compressed.length).putLong(times.oldestMillis()).putLong(times.newestMillis())
+                .put(compressed);
+        segmentsWritten++;
+        return commit(entry, size);
+    }
+
+    // Room for one entry: the shared append buffer, or a buffer of its own for an entry larger than it
+    private ByteBuffer reserve(int size) throws IOException {
+        open();
+        if (buffer.remaining() < size) flush();
+        return buffer.remaining() >= size ? buffer : ByteBuffer.allocate(size);
+    }
+
+    private long commit(ByteBuffer entry, int size) throws IOException {
+        long offset = end;
+        if (entry != buffer) { // The shared buffer is empty here (reserve flushed it), so order is kept
+            entry.flip();
+            while (entry.hasRemaining()) channel.write(entry, offset + entry.position());
+        }
+        end += size;
+        bytesAppended += size;
+        return position(generation, offset);
+    }
+
+    // Hands buffered entries to the OS; a header may only point at an entry after this
+    public synchronized void flush() throws IOException {
+        if (channel == null || buffer.position() == 0) return;
+        buffer.flip();
+        long at = end - buffer.remaining();
+        while (buffer.hasRemaining()) at += channel.write(buffer, at);
+        buffer.clear();
+    }
+
+    // flush() plus fsync, for snapshots that must survive power loss
+    public synchronized void force() throws IOException {
+        flush();
+        if (channel != null) channel.force(false);
+    }
+
+    // ---------------------- COMPACTION ----------------------
+    // True once the single entries replaced by segments make up half of the current generation.
+    // Counted since the log was opened: replaced entries of an earlier run wait for the next compaction.
+    public synchronized boolean needsCompaction() {
+        return replacedBytes > 0 && replacedBytes * 2 >= end;
+    }
+
+    // Starts a new generation for appends. The store then moves every account's head (appendAll or
+    // relocate) and calls finishCompaction once its own records, on disk, point at the new heads.
+    public synchronized void startCompaction() throws IOException {
+        open();
+        flush();
+        older.put(generation, channel);
+        relocated.clear();
+        generation++;
+        channel = FileChannel.open(fileOf(generation), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = 0;
+        replacedBytes = 0;
+        compacting = true;
+        compactions++;
+    }
+
+    // Returns 'head' when it is in the current generation; otherwise copies its chain into the current
+    // generation (segments as they are, nothing inflated) and returns the copy's head
+    public synchronized long relocate(long head) throws IOException {
+        if (head < 0) return head;
+        open();
+        if (generation(head) == generation) return head;
+        Long known = relocated.get(head);
+        if (known != null) return known;
+
+        List<Long> chain = new ArrayList<>(); // Newest first, up to an entry that is already here
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER + STRUCTURED_SIZE);
+        long at = head;
+        long base = -1;
+        while (at >= 0) {
+            if (generation(at) == generation) { base = at; break; }
+            Long copy = relocated.get(at);
+            if (copy != null) { base = copy; break; }
+            chain.add(at);
+            readEntry(entry, at);
+            at = entry.getLong(OFF_PREVIOUS);
+        }
+        long previous = base;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            long from = chain.get(i);
+            readEntry(entry, from);
+            int length = entry.getInt(OFF_LENGTH);
+            int size = ENTRY_HEADER + (length == STRUCTURED ? STRUCTURED_SIZE
+                    : isSegment(length) ? segmentHeader(length) + entry.getInt(ENTRY_HEADER + 4) : length);
+            ByteBuffer whole = ByteBuffer.allocate(size);
+            readFully(whole, from);
+            whole.putLong(OFF_PREVIOUS, previous).flip();
+            ByteBuffer target = reserve(size);
+            target.put(whole);
+            previous = commit(target, size);
+        }
+        relocated.put(head, previous);
+        return previous;
+    }
+
+    // Deletes the earlier generation files; their open channels stay readable until close.
+    // A file that cannot be deleted now (e.g. still open elsewhere) goes with the next compaction.
+    public synchronized void finishCompaction() {
+        if (!compacting) return;
+        compacting = false;
+        try {
+            for (int gen : generations()) {
+                if (gen < generation) Files.deleteIfExists(fileOf(gen));
+            }
+        } catch (IOException e) {
+            System.out.println("[!] History Error: old generation kept (" + e.getMessage() + ")");
+        }
+    }
+
+    // ---------------------- READ ----------------------
+    @Override
+    public synchronized TransactionRecords read(long head, int skip, int max) {
+        TransactionRecords page = new TransactionRecords();
+        try {
+            open();
+            flush(); // Entries still in the buffer must be readable too
+            walk(head, skip, max, page, true);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new UncheckedIOException("History unavailable: " + e.getMessage(),
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+        return page;
+    }
+
+    // One block per segment, with the times from its header, and one per single entry, oldest first.
+    // Nothing is inflated except segments of earlier builds, which carry no times in their header.
+    @Override
+    public synchronized List<HistoryBlock> timeline(long head) {
+        List<HistoryBlock> blocks = new ArrayList<>();
+        try {
+            open();
+            flush();
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER + STRUCTURED_SIZE);
+            for (long at = head; at >= 0; at = entry.getLong(OFF_PREVIOUS)) {
+                readEntry(entry, at);
+                int length = entry.getInt(OFF_LENGTH);
+                int count = entry.getInt(ENTRY_HEADER);
+                if (length == TIMED_SEGMENT) {
+                    blocks.add(new HistoryBlock(count, entry.getLong(ENTRY_HEADER + 8), entry.getLong(ENTRY_HEADER + 16)));
+                } else if (length == SEGMENT) {
+                    ByteBuffer compressed = ByteBuffer.allocate(entry.getInt(ENTRY_HEADER + 4));
+                    readFully(compressed, at + ENTRY_HEADER + SEGMENT_HEADER);
+                    blocks.add(HistoryBlock.of(decompress(compressed.array(), count)));
+                } else if (length == STRUCTURED) {
+                    long millis = entry.getLong(ENTRY_HEADER);
+                    blocks.add(new HistoryBlock(1, millis, millis));
+                } else {
+                    blocks.add(new HistoryBlock(1, HistoryBlock.NO_TIME, HistoryBlock.NO_TIME));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new UncheckedIOException("History unavailable: " + e.getMessage(),
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+        Collections.reverse(blocks);
+        return blocks;
+    }
+
+    private static boolean isSegment(int length) { return length == TIMED_SEGMENT || length == SEGMENT; }
+
+    private static int segmentHeader(int length) { return length == TIMED_SEGMENT ? TIMED_SEGMENT_HEADER : SEGMENT_HEADER; }
+
+    // Collects up to 'max' entries newest first after skipping 'skip' and returns the offset of the entry
+    // before the last one collected (-1: start of the history). With expandSegments off, the walk stops at
+    // the first segment and returns STOPPED_AT_SEGMENT.
+    private long walk(long at, int skip, int max, TransactionRecords into, boolean expandSegments) throws IOException {
+        // Header and a structured payload are read together: one read per entry on the common path
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER + STRUCTURED_SIZE);
+        while (at >= 0 && into.size() < max) {
+            readEntry(entry, at);
+            long previous = entry.getLong(OFF_PREVIOUS);
+            int length = entry.getInt(OFF_LENGTH);
+            if (isSegment(length)) {
+                if (!expandSegments) return STOPPED_AT_SEGMENT;
+                int count = entry.getInt(ENTRY_HEADER);
+                if (skip >= count) { // Skipped whole: not even read
+                    skip -= count;
+                } else {
+                    ByteBuffer compressed = ByteBuffer.allocate(entry.getInt(ENTRY_HEADER + 4));
+                    readFully(compressed, at + ENTRY_HEADER + segmentHeader(length));
+                    TransactionRecords block = decompress(compressed.array(), count);
+                    for (int i = count - 1 - skip; i >= 0 && into.size() < max; i--) into.addFrom(block, i);
+                    skip = 0;
+                }
+            } else if (skip > 0) {
+                skip--;
+            } else if (length == STRUCTURED) {
+                into.add(entry.getLong(ENTRY_HEADER), TransactionType.ofCode(entry.get(ENTRY_HEADER + 8)),
+                        entry.getLong(ENTRY_HEADER + 9), entry.getLong(ENTRY_HEADER + 17));
+            } else {
+                ByteBuffer text = ByteBuffer.allocate(length);
+                readFully(text, at + ENTRY_HEADER);
+                into.addText(new String(text.array(), StandardCharsets.UTF_8));
+            }
+            at = previous;
+        }
+        return at;
+    }
+
+    // Reads as much of [header][structured payload] as the file holds from 'at'; the header must be complete
+    private void readEntry(ByteBuffer entry, long at) throws IOException {
+        FileChannel in = channelOf(at);
+        long offset = offset(at);
+        entry.clear();
+        while (entry.hasRemaining()) {
+            if (in.read(entry, offset + entry.position()) < 0) break; // A short text entry at the end of the file
+        }
+        if (entry.position() < ENTRY_HEADER) throw new IOException("History entry beyond end of " + fileOf(generation(at)).getFileName());
+    }
+
+    private void readFully(ByteBuffer target, long at) throws IOException {
+        FileChannel in = channelOf(at);
+        long offset = offset(at);
+        while (target.hasRemaining()) {
+            int n = in.read(target, offset + target.position());
+            if (n < 0) throw new IOException("History entry beyond end of " + fileOf(generation(at)).getFileName());
+        }
+    }
+
+    // The channel of the generation 'at' is in; an earlier generation is opened read-only on first use
+    private FileChannel channelOf(long at) throws IOException {
+        int gen = generation(at);
+        if (gen == generation) return channel;
+        FileChannel in = older.get(gen);
+        if (in == null) {
+            in = FileChannel.open(fileOf(gen), StandardOpenOption.READ);
+            older.put(gen, in);
+        }
+        return in;
+    }
+
+    // ---------------------- SEGMENT CODEC ----------------------
+    // Column by column, so similar values sit together: times as deltas, then type codes, amounts,
+    // balances, and last the text of text entries (type code 0)
+    private byte[] compress(TransactionRecords block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.size() * 8);
+        deflater.reset();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 4096))) {
+            long last = 0;
+            for (int i = 0; i < block.size(); i++) {
+                long millis = block.isText(i) ? last : block.getEpochMillis(i);
+                out.writeLong(millis - last);
+                last = millis;
+            }
+            for (int i = 0; i < block.size(); i++) out.writeByte(block.isText(i) ? 0 : block.getType(i).code());
+            for (int i = 0; i < block.size(); i++) out.writeLong(block.isText(i) ? 0 : block.getAmountCents(i));
+            for (int i = 0; i < block.size(); i++) out.writeLong(block.isText(i) ? 0 : block.getBalanceCents(i));
+            for (int i = 0; i < block.size(); i++) if (block.isText(i)) out.writeUTF(block.getText(i));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TransactionRecords decompress(byte[] compressed, int count) throws IOException {
+        long[] millis = new long[count];
+        byte[] types = new byte[count];
+        long[] amounts = new long[count];
+        long[] balances = new long[count];
+        TransactionRecords block = new TransactionRecords();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            long last = 0;
+            for (int i = 0; i < count; i++) millis[i] = last += in.readLong();
+            in.readFully(types);
+            for (int i = 0; i < count; i++) amounts[i] = in.readLong();
+            for (int i = 0; i < count; i++) balances[i] = in.readLong();
+            for (int i = 0; i < count; i++) {
+                if (types[i] == 0) block.addText(in.readUTF());
+                else block.add(millis[i], TransactionType.ofCode(types[i]), amounts[i], balances[i]);
+            }
+        }
+        return block;
+    }
+
+    // ---------------------- FILE ----------------------
+    // Appends go to the newest generation on disk; earlier ones are opened when a head points there
+    private void open() throws IOException {
+        if (channel != null) return;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        List<Integer> existing = generations();
+        generation = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+        channel = FileChannel.open(fileOf(generation), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = channel.size();
+    }
+
+    // Generation 0 is <path> itself, so logs written before compaction existed are generation 0
+    private Path fileOf(int gen) {
+        return fileOf(path, gen);
+    }
+
+    private static Path fileOf(Path path, int gen) {
+        return gen == 0 ? path : path.resolveSibling(path.getFileName() + "." + gen);
+    }
+
+    // The generations that have a file, ascending
+    private List<Integer> generations() throws IOException {
+        return generations(path);
+    }
+
+    private static List<Integer> generations(Path path) throws IOException {
+        List<Integer> found = new ArrayList<>();
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) return found;
+        Pattern name = Pattern.compile(Pattern.quote(path.getFileName().toString()) + "(?:\\.(\\d+))?");
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Matcher m = name.matcher(p.getFileName().toString());
+                if (m.matches()) found.add(m.group(1) == null ? 0 : Integer.parseInt(m.group(1)));
+            }
+        }
+        found.sort(null);
+        return found;
+    }
+
+    private static long position(int gen, long offset) { return ((long) gen << GEN_SHIFT) | offset; }
+
+    private static int generation(long position) { return (int) (position >>> GEN_SHIFT); }
+
+    private static long offset(long position) { return position & OFFSET_MASK; }
+
+    // Deletes the log at 'path' with all its generations; the log must be closed
+    public static void delete(Path path) throws IOException {
+        for (int gen : generations(path)) Files.deleteIfExists(fileOf(path, gen));
+    }
+
+    public Path getPath() { return path; }
+
+    // Every generation still on disk, buffered bytes included
+    public synchronized long getSizeBytes() {
+        long size = channel == null ? 0 : end;
+        try {
+            for (int gen : generations()) {
+                if (channel == null || gen != generation) size += Files.size(fileOf(gen));
+            }
+        } catch (IOException e) {
+            // Deleted meanwhile: not on disk any more
+        }
+        return size;
+    }
+
+    public synchronized long getBytesAppended() { return bytesAppended; }
+
+    public synchronized long getSegmentsWritten() { return segmentsWritten; }
+
+    public synchronized long getCompactions() { return compactions; }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel in : older.values()) in.close();
+        older.clear();
+        relocated.clear();
+        if (channel == null) return;
+        flush();
+        channel.close();
+        channel = null;
+    }
+}
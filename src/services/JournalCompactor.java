@@ -0,0 +1,50 @@
+package services;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// JournalCompactor periodically folds the state journal into a fresh snapshot
+// OOP: Composition - drives a JournaledATMStateService on a background thread
+// SOLID - SRP: Only decides WHEN to compact; JournaledATMStateService.compact() decides HOW
+// Compaction is skipped while the journal is shorter than minRecords, so an idle ATM does
+// not rewrite its snapshot every interval.
+public class JournalCompactor implements AutoCloseable {
+
+    private final JournaledATMStateService service;
+    private final long intervalSeconds;
+    private final long minRecords;
+    private final ScheduledExecutorService scheduler;
+
+    public JournalCompactor(JournaledATMStateService service, long intervalSeconds, long minRecords) {
+        this.service = service;
+        this.intervalSeconds = intervalSeconds;
+        this.minRecords = minRecords;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-compactor");
+            t.setDaemon(true); // Never keeps the ATM process alive on exit
+            return t;
+        });
+    }
+
+    // Begins compacting every intervalSeconds; kept out of the constructor so the task never sees a half-built object
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::runOnce, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // Compacts now if the journal is long enough; also used directly by tests and shutdown code
+    public boolean runOnce() {
+        try {
+            if (service.getJournalRecordCount() < minRecords) return false;
+            return service.compact();
+        } catch (RuntimeException e) {
+            System.out.println("[!] Compaction Error: " + e.getMessage()); // Keep the schedule alive
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,371 @@
+package services;
+
+import interfaces.IATMStateService;
+import model.Account;
+import model.Money;
+import model.StateSnapshot;
+import model.TransactionRecords;
+import model.TransactionType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// JournaledATMStateService persists ATM state as a base snapshot plus a write-ahead journal
+// OOP: Composition - wraps any IATMStateService (the snapshot) and a StateJournal (the changes)
+// SOLID - Open/Closed: Adds journaling without modifying FileATMStateService
+// SOLID - Liskov Substitution: ATMMachineV2 uses it exactly like any other IATMStateService
+// A save appends only what changed since the previous save (account balances, new transactions,
+// machine levels), so write cost follows the size of the change instead of the size of the state.
+// With saveChanges only the accounts the engine reports as changed are even looked at.
+// On startup the snapshot is loaded once and the journal is replayed on top of it.
+// compact() folds the journal back into a fresh snapshot (see JournalCompactor for scheduling).
+public class JournaledATMStateService implements IATMStateService {
+
+    // Record types written to the journal
+    static final String ACCOUNT = "A";     // A owner pin balanceCents
+    static final String TRANSACTION = "T"; // T owner index epochMillis type amountCents balanceCents (or: T owner index text)
+    static final String MACHINE = "M";     // M cashCents paper ink firmware [note count per cassette...]
+
+    private final IATMStateService snapshot; // Base state the journal applies to
+    private final StateJournal journal;
+
+    // Recovered state (filled once by load())
+    private List<Account> accounts;
+    private long cashCents;
+    private int[] notes; // Cassette note counts, null while neither the snapshot nor the journal had any
+    private int paper;
+    private int ink;
+    private String firmware;
+
+    // What the journal already holds, so the next save only appends the difference
+    private final Map<Account, long[]> journaled = new IdentityHashMap<>(); // {balanceCents, transactionCount}
+    private final List<Account> order = new ArrayList<>(); // Journaled accounts in snapshot order
+    private boolean machineJournaled; // False until the machine levels are known (loaded or saved)
+    // Changes of a save whose append failed: the engine has already cleared its dirty marks, so they are
+    // kept here and merged into the next saveChanges
+    private final Set<Account> pendingAccounts = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean pendingMachine;
+    private final WriteStats writeStats = new WriteStats();
+    private long lastReplayMillis;
+    private volatile long lastSnapshotAt = System.currentTimeMillis(); // Recovery counts as a fresh snapshot
+    private volatile long lastSnapshotWriteMillis;
+    private final Object compactionLock = new Object(); // One compaction at a time
+
+    public JournaledATMStateService(IATMStateService snapshot, StateJournal journal) {
+        this.snapshot = snapshot;
+        this.journal = journal;
+    }
+
+    // ---------------------- SAVE STATE ----------------------
+    @Override
+    public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
+        saveStateCents(accounts, Money.fromDouble(cash), paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        appendChanges(accounts, true, cashCents, notes, paper, ink, firmware);
+    }
+
+    // Only the reported accounts are compared with what the journal holds; the rest are not touched
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int paper, int ink, String firmware) {
+        saveChanges(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int[] notes, int paper, int ink, String firmware) {
+        Collection<Account> candidates = changed;
+        if (!pendingAccounts.isEmpty()) {
+            Set<Account> merged = new LinkedHashSet<>(pendingAccounts); // Retried first, in the order they failed
+            merged.addAll(changed);
+            candidates = merged;
+        }
+        appendChanges(candidates, machineFields != 0 || pendingMachine, cashCents, notes, paper, ink, firmware);
+    }
+
+    private void appendChanges(Collection<Account> candidates, boolean checkMachine,
+                               long cashCents, int[] notes, int paper, int ink, String firmware) {
+        List<String[]> records = new ArrayList<>();
+        List<Runnable> commits = new ArrayList<>(); // Applied only after the append succeeded
+
+        for (Account a : candidates) {
+            long[] known = journaled.get(a);
+            long balance = a.getBalanceCents();
+            if (known == null || known[0] != balance) {
+                records.add(new String[]{ACCOUNT, a.getOwner(), a.getPin(), Long.toString(balance)});
+            }
+
+            int from = known == null ? 0 : (int) known[1];
+            TransactionRecords txs = a.getTransactionRecords(from, Integer.MAX_VALUE); // New entries only, never the archive
+            int to = from + txs.size();
+            for (int i = 0; i < txs.size(); i++) records.add(transactionRecord(a.getOwner(), from + i, txs, i));
+            if (known == null || known[0] != balance || from != to) {
+                commits.add(() -> {
+                    if (journaled.put(a, new long[]{balance, to}) == null) order.add(a);
+                });
+            }
+        }
+
+        boolean machineChanged = !machineJournaled || (checkMachine && (cashCents != this.cashCents
+                || !Arrays.equals(notes, this.notes) || paper != this.paper || ink != this.ink
+                || !String.valueOf(firmware).equals(String.valueOf(this.firmware))));
+        if (machineChanged) records.add(machineRecord(cashCents, notes, paper, ink, firmware));
+
+        long bytes;
+        try {
+            bytes = journal.append(records);
+        } catch (IOException e) {
+            System.out.println("[!] Journal Error: " + e.getMessage());
+            // Nothing recorded as journaled; the candidates wait in the pending set for the next save
+            pendingAccounts.addAll(candidates);
+            pendingMachine |= checkMachine;
+            return;
+        }
+
+        pendingAccounts.clear(); // Every pending account was a candidate of this save
+        pendingMachine = false;
+        writeStats.record(bytes, commits.size());
+        commits.forEach(Runnable::run);
+        machineJournaled = true;
+        this.cashCents = cashCents;
+        this.notes = notes == null ? null : notes.clone();
+        this.paper = paper;
+        this.ink = ink;
+        this.firmware = firmware;
+    }
+
+    // The note counts follow the fields earlier builds read, so their replay still takes the record
+    private static String[] machineRecord(long cashCents, int[] notes, int paper, int ink, String firmware) {
+        int cassettes = notes == null ? 0 : notes.length;
+        String[] record = new String[5 + cassettes];
+        record[0] = MACHINE;
+        record[1] = Long.toString(cashCents);
+        record[2] = Integer.toString(paper);
+        record[3] = Integer.toString(ink);
+        record[4] = firmware;
+        for (int c = 0; c < cassettes; c++) record[5 + c] = Integer.toString(notes[c]);
+        return record;
+    }
+
+    // Structured entries are journaled as their columns; text-only entries as their text
+    private static String[] transactionRecord(String owner, int index, TransactionRecords txs, int i) {
+        if (txs.isText(i)) return new String[]{TRANSACTION, owner, Integer.toString(index), txs.getText(i)};
+        return new String[]{TRANSACTION, owner, Integer.toString(index), Long.toString(txs.getEpochMillis(i)),
+                txs.getType(i).label(), Long.toString(txs.getAmountCents(i)), Long.toString(txs.getBalanceCents(i))};
+    }
+
+    // ---------------------- LOAD STATE ----------------------
+    // All load methods read from one recovery pass: snapshot first, then journal replay
+
+    @Override
+    public synchronized StateSnapshot loadSnapshot() {
+        load();
+        return new StateSnapshot(accounts, cashCents, notes, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized List<Account> loadAccounts() {
+        load();
+        return accounts;
+    }
+
+    @Override
+    public synchronized int loadPaperLevel() { load(); return paper; }
+
+    @Override
+    public synchronized int loadInkLevel() { load(); return ink; }
+
+    @Override
+    public double loadCashLevel() { return Money.toDouble(loadCashCents()); }
+
+    @Override
+    public synchronized long loadCashCents() { load(); return cashCents; }
+
+    @Override
+    public synchronized String loadFirmwareVersion() { load(); return firmware; }
+
+    private void load() {
+        if (accounts != null) return;
+
+        StateSnapshot base = snapshot.loadSnapshot(); // One read of the base state
+        List<Account> list = new ArrayList<>(base.accounts());
+        cashCents = base.cashCents();
+        notes = base.notes();
+        paper = base.paper();
+        ink = base.ink();
+        firmware = base.firmware();
+
+        Map<String, Account> byOwner = new HashMap<>(Math.max(16, list.size() * 4 / 3 + 1));
+        for (Account a : list) byOwner.putIfAbsent(a.getOwner(), a);
+
+        long start = System.nanoTime();
+        try {
+            journal.replay(record -> apply(record, list, byOwner));
+        } catch (IOException e) {
+            System.out.println("[!] Journal Replay Error: " + e.getMessage());
+        }
+        lastReplayMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Everything recovered is already durable: future saves only append new changes
+        journaled.clear();
+        order.clear();
+        for (Account a : list) {
+            journaled.put(a, new long[]{a.getBalanceCents(), a.getTransactionCount()});
+            order.add(a);
+        }
+        machineJournaled = true;
+        accounts = list;
+    }
+
+    private void apply(String[] r, List<Account> list, Map<String, Account> byOwner) {
+        try {
+            switch (r[0]) {
+                case ACCOUNT -> {
+                    Account a = byOwner.get(r[1]);
+                    long balance = Long.parseLong(r[3]);
+                    if (a == null) {
+                        a = Account.ofCents(r[1], r[2], balance);
+                        byOwner.put(r[1], a);
+                        list.add(a);
+                    } else {
+                        a.setBalanceCents(balance);
+                    }
+                }
+                case TRANSACTION -> {
+                    Account a = byOwner.get(r[1]);
+                    int index = Integer.parseInt(r[2]);
+                    // Index makes the record idempotent: an entry already in the snapshot is not added twice
+                    if (a == null || index != a.getTransactionCount()) break;
+                    if (r.length == 4) { // Text entry, or a journal written by an earlier build
+                        a.restoreTransaction(r[3]);
+                    } else {
+                        TransactionType type = TransactionType.ofLabel(r[4]);
+                        if (type == null) throw new IllegalArgumentException("unknown transaction type " + r[4]);
+                        a.restoreTransaction(Long.parseLong(r[3]), type, Long.parseLong(r[5]), Long.parseLong(r[6]));
+                    }
+                }
+                case MACHINE -> {
+                    cashCents = Long.parseLong(r[1]);
+                    paper = Integer.parseInt(r[2]);
+                    ink = Integer.parseInt(r[3]);
+                    firmware = r[4];
+                    if (r.length > 5) { // Without counts (an earlier build) the previous ones still hold
+                        int[] counts = new int[r.length - 5];
+                        for (int c = 0; c < counts.length; c++) counts[c] = Integer.parseInt(r[5 + c]);
+                        notes = counts;
+                    }
+                }
+                default -> System.out.println("[!] Journal: unknown record type " + r[0]);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[!] Journal: skipped malformed record (" + e.getMessage() + ")");
+        }
+    }
+
+    // ---------------------- COMPACTION ----------------------
+    // Writes a snapshot of everything journaled so far, then deletes the journal it replaces.
+    // Only sealing the journal and copying the journaled balances happen under the service lock;
+    // the snapshot file is written while saves keep appending to the new live journal.
+    // The snapshot uses the journaled values (not the live Account fields), so it is exactly the
+    // state the sealed records describe even while sessions keep changing accounts.
+    public boolean compact() {
+        synchronized (compactionLock) {
+            List<Account> owners = new ArrayList<>();
+            List<long[]> states = new ArrayList<>();
+            long cash;
+            int[] cassetteNotes;
+            int paperLevel, inkLevel;
+            String fw;
+            long sealed;
+
+            synchronized (this) {
+                load();
+                try {
+                    sealed = journal.seal();
+                } catch (IOException e) {
+                    System.out.println("[!] Compaction Error: " + e.getMessage());
+                    return false;
+                }
+                // 'order' is private to this service, unlike the loaded list the engine keeps adding to
+                for (Account a : order) {
+                    long[] known = journaled.get(a);
+                    owners.add(a);
+                    states.add(known.clone());
+                }
+                cash = cashCents;
+                cassetteNotes = notes;
+                paperLevel = paper;
+                inkLevel = ink;
+                fw = firmware;
+            }
+
+            long start = System.nanoTime();
+            List<Account> copies = new ArrayList<>(owners.size());
+            for (int i = 0; i < owners.size(); i++) {
+                // History is append-only, so the journaled prefix never changes; the archived part is shared
+                copies.add(owners.get(i).copyOf(states.get(i)[0], (int) states.get(i)[1]));
+            }
+
+            if (!snapshot.writeSnapshot(copies, cash, cassetteNotes, paperLevel, inkLevel, fw)) {
+                return false; // Sealed segments stay on disk and are replayed, so nothing is lost
+            }
+            // The snapshot archived the copies' history: the live accounts can let go of those entries too
+            for (int i = 0; i < owners.size(); i++) {
+                Account copy = copies.get(i);
+                if (copy.getArchive() != null) {
+                    owners.get(i).markPersisted(copy.getArchive(), copy.getArchiveHead(), copy.getArchivedCount());
+                }
+            }
+            try {
+                journal.dropSealed(sealed);
+            } catch (IOException e) {
+                System.out.println("[!] Compaction Error: " + e.getMessage()); // Harmless: replay is idempotent
+            }
+            lastSnapshotWriteMillis = (System.nanoTime() - start) / 1_000_000;
+            lastSnapshotAt = System.currentTimeMillis();
+            return true;
+        }
+    }
+
+    // ---------------------- GETTERS ----------------------
+    public long getJournalRecordCount() { return journal.getRecordCount(); }
+    public long getLastReplayMillis() { return lastReplayMillis; }
+    public long getSnapshotAgeMillis() { return System.currentTimeMillis() - lastSnapshotAt; }
+    public long getLastSnapshotWriteMillis() { return lastSnapshotWriteMillis; }
+    public WriteStats getWriteStats() { return writeStats; }
+
+    public long getJournalSizeBytes() {
+        try {
+            return journal.getSizeBytes();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String getStorageStatus() {
+        return "journal " + getJournalRecordCount() + " records / " + getJournalSizeBytes() + " bytes, snapshot age "
+                + getSnapshotAgeMillis() / 1000 + "s (last write " + lastSnapshotWriteMillis + " ms), replay "
+                + lastReplayMillis + " ms; writes " + writeStats;
+    }
+
+    public void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("[!] Journal Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package services;
+
+import interfaces.IATMStateService;
+import interfaces.IAccountDirectory;
+import interfaces.IAccountTable;
+import model.Account;
+import model.HistoryRetention;
+import model.Money;
+import model.StateSnapshot;
+import model.TransactionRecords;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// MappedAccountStore keeps accounts in a memory-mapped file of fixed-width binary records
+// OOP: Encapsulation of the binary layout, the mapping and the slot bookkeeping
+// SOLID - SRP: Only stores and loads state; the JSON format stays with FileATMStateService
+// SOLID - Liskov Substitution: A drop-in IATMStateService for large account bases
+// Because every record has the same size, account N lives at a known offset: a deposit or withdrawal
+// rewrites 8 bytes of one record in place instead of reserializing every account.
+// Transaction history is append-only in a second file (<path>.history, a HistoryLog); each record points
+// at the newest entry of its account and every entry points at the previous one. Loading reads the records
+// only: an account pages through its history when it is shown.
+// A third file (<path>.index, a MappedOwnerIndex) maps owner names to records, so one account can be read
+// without the others (IAccountDirectory) and opening the store reads no record at all.
+// With account views on, the records double as an off-heap account table (IAccountTable): loadAccount returns
+// a flyweight Account whose owner, PIN and balance are read from and written to its mapped record, so a
+// materialized account costs the heap one small object and a balance change reaches the page cache at once
+// (its history entry still follows with the next save).
+//
+// <path>:          header (128 bytes) followed by one 128-byte record per account
+//   header:        magic, version, account count, paper, cash cents, ink, firmware (length + 31 bytes),
+//                  cassette note counts (count + up to 15 ints; count 0 = only the cash total is known)
+//   record:        owner (length + 63 bytes UTF-8), pin (length + 15 bytes), balance cents,
+//                  position of the newest history entry (generation + offset, -1 = none), number of entries
+// <path>.history:  entries of [slot, index within the account, position of previous entry, length, payload]
+//                  (see HistoryLog); the payload is one entry as structured columns (time, type, amount,
+//                  balance) or as UTF-8 text, or a deflated segment of an account's entries
+//                  (TIMED_SEGMENT, with the oldest and newest time in its header; SEGMENT from earlier
+//                  builds has no times)
+// <path>.history.<n>: later generations of the history log, written when a compaction drops the single
+//                  entries segments replaced; records are repointed there and older generations deleted
+// <path>.index:    hash table of case-folded owner name -> record
+public class MappedAccountStore implements IATMStateService, IAccountDirectory, IAccountTable, AutoCloseable {
+
+    private static final int MAGIC = 0x41544D4D; // "ATMM"
+    private static final int VERSION = 2;
+
+    // Header layout; version 1 ended after the firmware and is upgraded when opened (see upgradeVersion1)
+    static final int HEADER_SIZE = 128;
+    private static final int V1_HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0, H_VERSION = 4, H_COUNT = 8, H_PAPER = 12, H_CASH = 16, H_INK = 24;
+    private static final int H_FIRMWARE = 28, FIRMWARE_BYTES = 31;
+    private static final int H_NOTES = 64, MAX_CASSETTES = 15;
+
+    // Record layout
+    static final int RECORD_SIZE = 128;
+    private static final int R_OWNER = 0, OWNER_BYTES = 63;
+    private static final int R_PIN = 64, PIN_BYTES = 15;
+    private static final int R_BALANCE = 80, R_HISTORY_HEAD = 88, R_HISTORY_COUNT = 96;
+
+    // Volatile access to a balance; records and the mapping are page aligned, so every balance is 8-byte aligned
+    private static final VarHandle BALANCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final int MIN_CAPACITY = 1024;
+    // One mapping is limited to 2 GB, which bounds the store at roughly 16 million accounts
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final Path path;
+    private final Path historyPath;
+    private final Path indexPath;
+    private FileChannel channel;
+    private final HistoryLog history;
+    private final MappedOwnerIndex owners;
+    private volatile MappedByteBuffer map; // Read without the lock by account views
+    private int capacity;
+    private final boolean accountViews;
+
+    // Which record belongs to which Account object; the owner index catches objects from another load.
+    // Weak (Account keeps identity equality): accounts an engine evicted from its cache can be collected.
+    private final Map<Account, Integer> slots = new WeakHashMap<>();
+
+    // Statistics: how much a save really touched
+    private long recordsWritten;
+    private long historyEntriesWritten;
+    private long pendingBytes; // Bytes put into records and history during the current save
+    private final WriteStats writeStats = new WriteStats();
+
+    public MappedAccountStore() {
+        this("data/atm_state.accounts");
+    }
+
+    public MappedAccountStore(String path) {
+        this(path, HistoryRetention.DEFAULT);
+    }
+
+    public MappedAccountStore(String path, HistoryRetention retention) {
+        this(path, retention, false);
+    }
+
+    // accountViews: loadAccount hands out flyweights over the mapped records instead of heap copies
+    public MappedAccountStore(String path, HistoryRetention retention, boolean accountViews) {
+        this.accountViews = accountViews;
+        this.path = Paths.get(path);
+        this.historyPath = Paths.get(path + ".history");
+        this.indexPath = Paths.get(path + ".index");
+        this.history = new HistoryLog(historyPath, retention);
+        this.owners = new MappedOwnerIndex(indexPath, this::ownerKey);
+    }
+
+    // ---------------------- SAVE STATE ----------------------
+    @Override
+    public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
+        saveStateCents(accounts, Money.fromDouble(cash), paper, ink, firmware); // Legacy double entry point
+    }
+
+    // Writes only what differs from the mapped records: changed balances, new history entries, new accounts
+    @Override
+    public synchronized void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        List<Account> copy;
+        synchronized (accounts) { copy = new ArrayList<>(accounts); } // Sessions may register meanwhile
+        write(copy, ALL_MACHINE_FIELDS, cashCents, null, paper, ink, firmware);
+    }
+
+    // Dirty tracking: only the reported accounts and header fields are compared and written
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int paper, int ink, String firmware) {
+        write(changed, machineFields, cashCents, null, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int[] notes, int paper, int ink, String firmware) {
+        write(changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    // 'notes' null leaves the note counts in the header as they are
+    private void write(Collection<Account> candidates, int machineFields, long cashCents, int[] notes,
+                       int paper, int ink, String firmware) {
+        pendingBytes = 0;
+        long recordsBefore = recordsWritten;
+        long historyBefore = history.getBytesAppended();
+        try {
+            open();
+            writeHeader(machineFields, cashCents, notes, paper, ink, firmware);
+            for (Account a : candidates) {
+                try {
+                    writeAccount(a);
+                } catch (IllegalArgumentException e) { // Does not fit a fixed-width record; the others are still saved
+                    System.out.println("[!] Save Error: " + e.getMessage());
+                }
+            }
+            history.flush();
+            if (history.needsCompaction()) compactHistory();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("[!] Save Error: " + e.getMessage());
+        }
+        pendingBytes += history.getBytesAppended() - historyBefore;
+        writeStats.record(pendingBytes, recordsWritten - recordsBefore);
+    }
+
+    // Moves every record's history into a new log generation, leaving the entries segments replaced behind.
+    // Records are repointed in place; the old generation is deleted only after they are forced to disk,
+    // so after a crash a record points into whichever generation it was last forced with.
+    private void compactHistory() throws IOException {
+        history.startCompaction();
+        int count = map.getInt(H_COUNT);
+        for (int slot = 0; slot < count; slot++) {
+            int base = HEADER_SIZE + slot * RECORD_SIZE;
+            long head = map.getLong(base + R_HISTORY_HEAD);
+            if (head >= 0) map.putLong(base + R_HISTORY_HEAD, history.relocate(head));
+        }
+        for (Map.Entry<Account, Integer> e : slots.entrySet()) { // Loaded accounts read the new generation too
+            Account a = e.getKey();
+            int base = HEADER_SIZE + e.getValue() * RECORD_SIZE;
+            int stored = map.getInt(base + R_HISTORY_COUNT);
+            if (stored > 0 && a.getArchive() == history && a.getArchivedCount() == stored) {
+                a.markPersisted(history, map.getLong(base + R_HISTORY_HEAD), stored);
+            }
+        }
+        force();
+        history.finishCompaction();
+    }
+
+    // Same as a save, then forced to the device so the copy is durable
+    @Override
+    public synchronized boolean writeSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        return writeSnapshot(accounts, cashCents, null, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized boolean writeSnapshot(List<Account> accounts, long cashCents, int[] notes,
+                                              int paper, int ink, String firmware) {
+        List<Account> copy;
+        synchronized (accounts) { copy = new ArrayList<>(accounts); }
+        write(copy, ALL_MACHINE_FIELDS, cashCents, notes, paper, ink, firmware);
+        try {
+            force();
+            return true;
+        } catch (IOException e) {
+            System.out.println("[!] Save Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeHeader(int machineFields, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        if ((machineFields & CASH_CHANGED) != 0 && map.getLong(H_CASH) != cashCents) {
+            map.putLong(H_CASH, cashCents);
+            pendingBytes += Long.BYTES;
+        }
+        if ((machineFields & CASH_CHANGED) != 0 && notes != null && !Arrays.equals(notes, readNotes())) {
+            if (notes.length == 0 || notes.length > MAX_CASSETTES) {
+                throw new IllegalArgumentException("Cannot store note counts of " + notes.length + " cassettes");
+            }
+            for (int c = 0; c < notes.length; c++) map.putInt(H_NOTES + (c + 1) * Integer.BYTES, notes[c]);
+            map.putInt(H_NOTES, notes.length); // Count last, like the records
+            pendingBytes += (notes.length + 1) * Integer.BYTES;
+        }
+        if ((machineFields & PAPER_CHANGED) != 0 && map.getInt(H_PAPER) != paper) {
+            map.putInt(H_PAPER, paper);
+            pendingBytes += Integer.BYTES;
+        }
+        if ((machineFields & INK_CHANGED) != 0 && map.getInt(H_INK) != ink) {
+            map.putInt(H_INK, ink);
+            pendingBytes += Integer.BYTES;
+        }
+        if ((machineFields & FIRMWARE_CHANGED) != 0 && !firmware.equals(readString(H_FIRMWARE))) {
+            putString(H_FIRMWARE, FIRMWARE_BYTES, firmware, "firmware");
+            pendingBytes += 1 + FIRMWARE_BYTES;
+        }
+    }
+
+    // The note counts in the header, or null when none were saved (e.g. a store upgraded from version 1)
+    private int[] readNotes() {
+        int count = map.getInt(H_NOTES);
+        if (count <= 0 || count > MAX_CASSETTES) return null;
+        int[] notes = new int[count];
+        for (int c = 0; c < count; c++) notes[c] = map.getInt(H_NOTES + (c + 1) * Integer.BYTES);
+        return notes;
+    }
+
+    private void writeAccount(Account a) throws IOException {
+        Integer known = slots.get(a);
+        int slot = known != null ? known : slotFor(a);
+        int base = HEADER_SIZE + slot * RECORD_SIZE;
+
+        long balance = a.getBalanceCents();
+        boolean changed = false;
+        if (map.getLong(base + R_BALANCE) != balance) {
+            map.putLong(base + R_BALANCE, balance);
+            pendingBytes += Long.BYTES;
+            changed = true;
+        }
+
+        int stored = map.getInt(base + R_HISTORY_COUNT);
+        int size = a.getTransactionCount();
+        if (size == stored && (size == 0 || a.getArchive() == history)) { // Common case: no new history
+            if (changed) recordsWritten++;
+            return;
+        }
+        // Normally only new entries are appended; a history that shrank is rewritten from the start
+        int from = size >= stored ? stored : 0;
+        long head = from == 0 ? -1 : map.getLong(base + R_HISTORY_HEAD);
+        if (from < size || size != stored) {
+            TransactionRecords entries = a.getTransactionRecords(from, size);
+            head = history.appendAll(slot, from, head, entries);
+            historyEntriesWritten += entries.size();
+            map.putLong(base + R_HISTORY_HEAD, head);
+            map.putInt(base + R_HISTORY_COUNT, size);
+            pendingBytes += Long.BYTES + Integer.BYTES;
+            changed = true;
+        }
+        // The stored entries can leave memory; an account still reading another archive switches to this one
+        if (size > 0 && (a.getArchive() != history || a.getArchivedCount() != size)) a.markPersisted(history, head, size);
+        if (changed) recordsWritten++;
+    }
+
+    // Finds the record of an account not seen in this process yet, or appends a new record for it
+    private int slotFor(Account a) throws IOException {
+        String key = a.getOwner().toLowerCase(Locale.ROOT);
+        int slot = owners.find(key);
+        if (slot < 0) {
+            slot = map.getInt(H_COUNT);
+            ensureCapacity(slot + 1);
+            int base = HEADER_SIZE + slot * RECORD_SIZE;
+            putString(base + R_OWNER, OWNER_BYTES, a.getOwner(), "owner name");
+            putString(base + R_PIN, PIN_BYTES, a.getPin(), "PIN");
+            map.putLong(base + R_BALANCE, 0);
+            map.putLong(base + R_HISTORY_HEAD, -1);
+            map.putInt(base + R_HISTORY_COUNT, 0);
+            owners.add(key, slot, slot + 1);
+            map.putInt(H_COUNT, slot + 1); // Count last: a crash before this leaves the record invisible
+            pendingBytes += RECORD_SIZE;
+        }
+        slots.put(a, slot);
+        return slot;
+    }
+
+    // ---------------------- LOAD SNAPSHOT ----------------------
+    // Reads every record, none of the history; seeds the preset account like the JSON store
+    @Override
+    public synchronized StateSnapshot loadSnapshot() {
+        StateSnapshot state;
+        try {
+            state = readAll();
+        } catch (IOException e) {
+            System.out.println("[!] Load Error: " + e.getMessage());
+            state = FileATMStateService.DEFAULTS.withAccounts(new ArrayList<>());
+        }
+        if (FileATMStateService.ensurePreset(state.accounts())) {
+            saveStateCents(state.accounts(), state.cashCents(), state.paper(), state.ink(), state.firmware());
+        }
+        return state;
+    }
+
+    private StateSnapshot readAll() throws IOException {
+        open();
+        int count = map.getInt(H_COUNT);
+        List<Account> accounts = new ArrayList<>(count + 1);
+        slots.clear();
+        for (int slot = 0; slot < count; slot++) {
+            Account a = readAccount(slot);
+            accounts.add(a);
+            slots.put(a, slot);
+        }
+        return new StateSnapshot(accounts, map.getLong(H_CASH), readNotes(), map.getInt(H_PAPER), map.getInt(H_INK),
+                readString(H_FIRMWARE));
+    }
+
+    private Account readAccount(int slot) {
+        int base = HEADER_SIZE + slot * RECORD_SIZE;
+        Account a = Account.ofCents(readString(base + R_OWNER), readString(base + R_PIN), map.getLong(base + R_BALANCE));
+        int entries = map.getInt(base + R_HISTORY_COUNT);
+        if (entries > 0) a.attachArchive(history, map.getLong(base + R_HISTORY_HEAD), entries);
+        return a;
+    }
+
+    // ---------------------- ACCOUNT DIRECTORY ----------------------
+    // One index probe and one record: the cost does not depend on how many accounts the store holds
+    @Override
+    public synchronized Account loadAccount(String owner) {
+        if (owner == null || !openOrDefaults()) return null;
+        int slot = owners.find(owner.toLowerCase(Locale.ROOT));
+        if (slot < 0) return null;
+        Account a = accountViews ? viewAccount(slot) : readAccount(slot);
+        slots.put(a, slot);
+        return a;
+    }
+
+    private Account viewAccount(int slot) {
+        Account a = Account.view(this, slot);
+        int base = HEADER_SIZE + slot * RECORD_SIZE;
+        int entries = map.getInt(base + R_HISTORY_COUNT);
+        if (entries > 0) a.attachArchive(history, map.getLong(base + R_HISTORY_HEAD), entries);
+        return a;
+    }
+
+    // ---------------------- ACCOUNT TABLE ----------------------
+    // Called by account views, mostly without the store's lock. The fields read are never moved: a record
+    // keeps its slot, and an older mapping that a view still reads after a remap shows the same file pages.
+    @Override
+    public String getOwner(int row) {
+        return readString(mapped(), HEADER_SIZE + row * RECORD_SIZE + R_OWNER);
+    }
+
+    @Override
+    public String getPin(int row) {
+        return readString(mapped(), HEADER_SIZE + row * RECORD_SIZE + R_PIN);
+    }
+
+    @Override
+    public long getBalanceCents(int row) {
+        return (long) BALANCE.getVolatile(mapped(), HEADER_SIZE + row * RECORD_SIZE + R_BALANCE);
+    }
+
+    @Override
+    public void setBalanceCents(int row, long balanceCents) {
+        BALANCE.setVolatile(mapped(), HEADER_SIZE + row * RECORD_SIZE + R_BALANCE, balanceCents);
+    }
+
+    private MappedByteBuffer mapped() {
+        MappedByteBuffer m = map;
+        if (m == null) throw new IllegalStateException("Mapped account store is closed: " + path);
+        return m;
+    }
+
+    // The header only; the preset account is looked up, and written if it is missing, through the index
+    @Override
+    public synchronized StateSnapshot loadMachineState() {
+        if (!openOrDefaults()) return FileATMStateService.DEFAULTS.withAccounts(new ArrayList<>());
+        List<Account> preset = new ArrayList<>(1);
+        Account existing = loadAccount("ngaa");
+        if (existing != null) preset.add(existing);
+        if (FileATMStateService.ensurePreset(preset)) {
+            write(preset, 0, 0, null, 0, 0, null);
+        }
+        return new StateSnapshot(new ArrayList<>(), map.getLong(H_CASH), readNotes(), map.getInt(H_PAPER),
+                map.getInt(H_INK), readString(H_FIRMWARE));
+    }
+
+    @Override
+    public IAccountDirectory accountDirectory() { return this; }
+
+    // ---------------------- LOAD ACCOUNTS / MACHINE LEVELS ----------------------
+    @Override
+    public List<Account> loadAccounts() {
+        return loadSnapshot().accounts();
+    }
+
+    // Machine levels are fixed header fields: no record is read
+    @Override
+    public synchronized int loadPaperLevel() {
+        return openOrDefaults() ? map.getInt(H_PAPER) : FileATMStateService.DEFAULTS.paper();
+    }
+
+    @Override
+    public synchronized int loadInkLevel() {
+        return openOrDefaults() ? map.getInt(H_INK) : FileATMStateService.DEFAULTS.ink();
+    }
+
+    @Override
+    public double loadCashLevel() { return Money.toDouble(loadCashCents()); }
+
+    @Override
+    public synchronized long loadCashCents() {
+        return openOrDefaults() ? map.getLong(H_CASH) : FileATMStateService.DEFAULTS.cashCents();
+    }
+
+    @Override
+    public synchronized String loadFirmwareVersion() {
+        return openOrDefaults() ? readString(H_FIRMWARE) : FileATMStateService.DEFAULTS.firmware();
+    }
+
+    // ---------------------- IMPORT / EXPORT ----------------------
+    // Replaces the store's content with the state in a JSON file written by FileATMStateService.
+    // The file is read as is: no preset seeding, so export(import(x)) reproduces x. Returns the account count.
+    public synchronized int importJson(String jsonPath) throws IOException {
+        try (FileATMStateService source = new FileATMStateService(jsonPath)) {
+            StateSnapshot state = source.read(); // Histories are copied from the source's log during the save
+            close();
+            Files.deleteIfExists(path);
+            HistoryLog.delete(historyPath);
+            Files.deleteIfExists(indexPath);
+            slots.clear();
+            open();
+            ensureCapacity(state.accounts().size());
+            write(state.accounts(), ALL_MACHINE_FIELDS, state.cashCents(), state.notes(), state.paper(), state.ink(),
+                    state.firmware());
+            force();
+            return map.getInt(H_COUNT);
+        }
+    }
+
+    // Writes the store's content as a JSON state file that FileATMStateService (and older builds) can load
+    public synchronized boolean exportJson(String jsonPath) throws IOException {
+        StateSnapshot state = readAll();
+        try (FileATMStateService target = new FileATMStateService(jsonPath)) {
+            return target.writeSnapshot(state.accounts(), state.cashCents(), state.notes(), state.paper(), state.ink(),
+                    state.firmware());
+        }
+    }
+
+    // ---------------------- FILES ----------------------
+    private void open() throws IOException {
+        if (map != null) return;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent); // Ensure folder exists
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        upgradeVersion1();
+
+        boolean fresh = channel.size() < HEADER_SIZE;
+        int records = fresh ? MIN_CAPACITY : (int) Math.min(MAX_CAPACITY, (channel.size() - HEADER_SIZE) / RECORD_SIZE);
+        remap(Math.max(records, MIN_CAPACITY));
+        if (fresh) {
+            StateSnapshot d = FileATMStateService.DEFAULTS;
+            map.putInt(H_MAGIC, MAGIC);
+            map.putInt(H_VERSION, VERSION);
+            map.putInt(H_COUNT, 0);
+            writeHeader(ALL_MACHINE_FIELDS, d.cashCents(), d.notes(), d.paper(), d.ink(), d.firmware());
+        } else if (map.getInt(H_MAGIC) != MAGIC || map.getInt(H_VERSION) != VERSION) {
+            close();
+            throw new IOException("Not a mapped account store: " + path);
+        }
+
+        // Owner -> record, so a save before any load still updates existing records in place.
+        // Mapped as it is; rebuilt from the records only if it does not match them.
+        owners.open(map.getInt(H_COUNT));
+    }
+
+    // A version 1 file is copied once into the version 2 layout: the same header fields with no note counts
+    // (the ATM then loads its cash total as the standard mix), and the records as one block. Records keep
+    // their slots, so the owner index and the history log stay valid. The copy replaces the file by rename,
+    // so a crash leaves either the old or the upgraded file.
+    private void upgradeVersion1() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(V1_HEADER_SIZE);
+        if (channel.read(header, 0) < V1_HEADER_SIZE) return; // New or empty file
+        if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != 1) return;
+        long records = (long) header.getInt(H_COUNT) * RECORD_SIZE;
+        header.putInt(H_VERSION, VERSION).rewind();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            out.write(header, 0);
+            out.write(ByteBuffer.allocate(HEADER_SIZE - V1_HEADER_SIZE), V1_HEADER_SIZE);
+            out.position(HEADER_SIZE);
+            for (long done = 0; done < records; ) {
+                done += channel.transferTo(V1_HEADER_SIZE + done, records - done, out);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private boolean openOrDefaults() {
+        try {
+            open();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void ensureCapacity(int records) throws IOException {
+        if (records <= capacity) return;
+        if (records > MAX_CAPACITY) throw new IOException("Mapped account store is full (" + MAX_CAPACITY + " accounts)");
+        remap((int) Math.min(MAX_CAPACITY, Math.max(records, 2L * capacity)));
+    }
+
+    // Mapping beyond the end of the file grows the file; the old mapping is released by the GC
+    private void remap(int records) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+        capacity = records;
+    }
+
+    private void force() throws IOException {
+        if (map == null) return;
+        history.force();
+        owners.force();
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (map != null) {
+                force();
+                owners.close();
+                channel.close();
+            }
+            history.close(); // Also open when only history pages were read
+        } catch (IOException e) {
+            System.out.println("[!] Close Error: " + e.getMessage());
+        }
+        map = null;
+        capacity = 0;
+    }
+
+    // ---------------------- FIXED-WIDTH STRINGS ----------------------
+    // One length byte followed by up to 'max' bytes of UTF-8
+    private void putString(int offset, int max, String value, String what) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > max) throw new IllegalArgumentException(what + " longer than " + max + " bytes: " + value);
+        map.put(offset, (byte) bytes.length);
+        map.put(offset + 1, bytes);
+    }
+
+    private String ownerKey(int slot) {
+        return readString(HEADER_SIZE + slot * RECORD_SIZE + R_OWNER).toLowerCase(Locale.ROOT);
+    }
+
+    private String readString(int offset) {
+        return readString(map, offset);
+    }
+
+    private static String readString(MappedByteBuffer map, int offset) {
+        int length = map.get(offset) & 0xFF;
+        byte[] bytes = new byte[length];
+        map.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------------------- GETTERS ----------------------
+    public synchronized int getAccountCount() {
+        return openOrDefaults() ? map.getInt(H_COUNT) : 0;
+    }
+
+    public synchronized long getRecordsWritten() { return recordsWritten; }
+
+    public synchronized long getHistoryEntriesWritten() { return historyEntriesWritten; }
+
+    public synchronized long getHistorySizeBytes() { return history.getSizeBytes(); }
+
+    public WriteStats getWriteStats() { return writeStats; }
+
+    @Override
+    public String getStorageStatus() {
+        return "mapped store " + getAccountCount() + " accounts, " + getRecordsWritten() + " records updated, history "
+                + (getHistorySizeBytes() >> 10) + " KB; writes " + writeStats;
+    }
+}
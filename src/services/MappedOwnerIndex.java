@@ -0,0 +1,124 @@
+package services;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+// MappedOwnerIndex is an on-disk hash table from case-folded owner name to record slot
+// OOP: Encapsulation of the table layout, the probing and the rebuild
+// SOLID - SRP: Only finds records; MappedAccountStore owns the records themselves
+// Open addressing with linear probing; a cell holds slot + 1 (0 = empty) and never the name, so a hit is
+// confirmed by comparing the record's owner. The table is at most half full and doubles when it would not be.
+// Opening maps the file and checks its account count against the store's: a missing or stale index (an
+// older store, a crash between the record and the index update) is rebuilt from the records once.
+//
+// <path>:  header [magic int][version int][indexed account count int][cell count int], then the cells
+final class MappedOwnerIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x41544D49; // "ATMI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int H_MAGIC = 0, H_VERSION = 4, H_COUNT = 8, H_CELLS = 12;
+    private static final int MIN_CELLS = 2048;
+    private static final int MAX_CELLS = 1 << 28; // 1 GB of cells, far above the store's record limit
+
+    private final Path path;
+    private final IntFunction<String> keyOfSlot; // Case-folded owner of a record
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int mask;
+    private int shift; // 32 - log2(cell count): the hash's top bits pick the cell
+
+    MappedOwnerIndex(Path path, IntFunction<String> keyOfSlot) {
+        this.path = path;
+        this.keyOfSlot = keyOfSlot;
+    }
+
+    // Maps the index for a store holding 'accounts' records, rebuilding it when it does not match
+    void open(int accounts) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() >= HEADER_SIZE) {
+            map(cellsIn(channel.size()));
+            if (map.getInt(H_MAGIC) == MAGIC && map.getInt(H_VERSION) == VERSION
+                    && map.getInt(H_COUNT) == accounts && map.getInt(H_CELLS) == mask + 1) {
+                return;
+            }
+        }
+        rebuild(accounts, cellsFor(accounts));
+    }
+
+    // Slot of the record owned by 'key' (case-folded), or -1
+    int find(String key) {
+        for (int cell = cellOf(key); ; cell = (cell + 1) & mask) {
+            int stored = map.getInt(HEADER_SIZE + cell * Integer.BYTES);
+            if (stored == 0) return -1;
+            if (keyOfSlot.apply(stored - 1).equals(key)) return stored - 1;
+        }
+    }
+
+    // Registers record 'slot' (already written) as the store's 'accounts'-th record
+    void add(String key, int slot, int accounts) throws IOException {
+        if (accounts * 2L > mask + 1L) {
+            rebuild(accounts, cellsFor(accounts)); // Covers the new record too: it is already in the store
+            return;
+        }
+        put(key, slot);
+        map.putInt(H_COUNT, accounts);
+    }
+
+    private void rebuild(int accounts, int cells) throws IOException {
+        channel.truncate(0); // Old cells must not survive in a mapping of the same size
+        map(cells);
+        for (int slot = 0; slot < accounts; slot++) {
+            String key = keyOfSlot.apply(slot);
+            if (find(key) < 0) put(key, slot); // First record of a name wins, as in every other store
+        }
+        map.putInt(H_MAGIC, MAGIC);
+        map.putInt(H_VERSION, VERSION);
+        map.putInt(H_CELLS, cells);
+        map.putInt(H_COUNT, accounts); // Count last: a crash before this makes the next open rebuild again
+    }
+
+    private void put(String key, int slot) {
+        int cell = cellOf(key);
+        while (map.getInt(HEADER_SIZE + cell * Integer.BYTES) != 0) cell = (cell + 1) & mask;
+        map.putInt(HEADER_SIZE + cell * Integer.BYTES, slot + 1);
+    }
+
+    private int cellOf(String key) {
+        return (key.hashCode() * 0x9E3779B9) >>> shift; // Fibonacci hashing: names differing only at the end spread too
+    }
+
+    private void map(int cells) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) cells * Integer.BYTES);
+        mask = cells - 1;
+        shift = Integer.numberOfLeadingZeros(cells) + 1;
+    }
+
+    private static int cellsIn(long fileSize) {
+        long cells = (fileSize - HEADER_SIZE) / Integer.BYTES;
+        return cells > 0 && Long.bitCount(cells) == 1 && cells <= MAX_CELLS ? (int) cells : MIN_CELLS;
+    }
+
+    // Power of two that keeps the table at most half full
+    private static int cellsFor(int accounts) {
+        long needed = Math.max(MIN_CELLS, accounts * 2L + 2);
+        return (int) Math.min(MAX_CELLS, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    void force() {
+        if (map != null) map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        force();
+        channel.close();
+        channel = null;
+        map = null;
+    }
+}
@@ -0,0 +1,129 @@
+package services;
+
+import interfaces.IATMStateService;
+import interfaces.IAccountDirectory;
+import model.Account;
+import model.StateSnapshot;
+
+import java.util.Collection;
+import java.util.List;
+
+// MeteredATMStateService times every save and load of the store it wraps
+// OOP: Composition - decorates any IATMStateService, like AsyncStateWriter and CachingATMStateService
+// SOLID - Open/Closed: the stores are unchanged; wrapping one is enough to measure it
+// SOLID - Liskov Substitution: Behaves exactly as the wrapped store, only slower by two nanoTime calls
+// Latencies go to the "store.*" histograms of the registry. Placed under an AsyncStateWriter, it measures
+// the writes the writer thread does; above one, it would only measure the enqueue.
+public class MeteredATMStateService implements IATMStateService {
+
+    private final IATMStateService delegate;
+    private final LatencyHistogram saves;
+    private final LatencyHistogram snapshots;
+    private final LatencyHistogram loads;
+
+    public MeteredATMStateService(IATMStateService delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.saves = metrics.histogram("store.save");
+        this.snapshots = metrics.histogram("store.writeSnapshot");
+        this.loads = metrics.histogram("store.load");
+    }
+
+    // ---------------------- SAVE STATE ----------------------
+    @Override
+    public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveState(accounts, cash, paper, ink, firmware);
+        } finally {
+            saves.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveStateCents(accounts, cashCents, paper, ink, firmware);
+        } finally {
+            saves.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                            long cashCents, int paper, int ink, String firmware) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveChanges(accounts, changed, machineFields, cashCents, paper, ink, firmware);
+        } finally {
+            saves.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                            long cashCents, int[] notes, int paper, int ink, String firmware) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveChanges(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware);
+        } finally {
+            saves.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean writeSnapshot(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        long start = System.nanoTime();
+        try {
+            return delegate.writeSnapshot(accounts, cashCents, paper, ink, firmware);
+        } finally {
+            snapshots.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean writeSnapshot(List<Account> accounts, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        long start = System.nanoTime();
+        try {
+            return delegate.writeSnapshot(accounts, cashCents, notes, paper, ink, firmware);
+        } finally {
+            snapshots.record(System.nanoTime() - start);
+        }
+    }
+
+    // ---------------------- LOAD STATE ----------------------
+    // Only the whole-state load is timed; the single-value loaders are startup helpers
+    @Override
+    public StateSnapshot loadSnapshot() {
+        long start = System.nanoTime();
+        try {
+            return delegate.loadSnapshot();
+        } finally {
+            loads.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Account> loadAccounts() { return delegate.loadAccounts(); }
+
+    @Override
+    public int loadPaperLevel() { return delegate.loadPaperLevel(); }
+
+    @Override
+    public int loadInkLevel() { return delegate.loadInkLevel(); }
+
+    @Override
+    public double loadCashLevel() { return delegate.loadCashLevel(); }
+
+    @Override
+    public long loadCashCents() { return delegate.loadCashCents(); }
+
+    @Override
+    public String loadFirmwareVersion() { return delegate.loadFirmwareVersion(); }
+
+    @Override
+    public IAccountDirectory accountDirectory() { return delegate.accountDirectory(); }
+
+    @Override
+    public String getStorageStatus() { return delegate.getStorageStatus(); }
+}
@@ -0,0 +1,116 @@
+package services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// MetricsRegistry holds the named counters and latency histograms of the running ATM
+// OOP: Encapsulation - metrics are created on first use and looked up by name
+// SOLID - SRP: Only collects and reports; the ATM and the stores decide what to measure
+// Counters are LongAdders (striped: no CAS retries when many sessions count at once) and histograms are
+// LatencyHistograms, so recording never blocks a customer. Callers keep the LatencyHistogram they got
+// from histogram() instead of looking it up per operation.
+// The report (technician panel, metrics file) lists count, mean, p50, p99, p999 and max per operation.
+public class MetricsRegistry implements AutoCloseable {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService dumper; // Guarded by this
+    private Path dumpFile;                   // Guarded by this
+
+    // ---------------------- METRICS ----------------------
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    // ---------------------- REPORT ----------------------
+    // One line per histogram, then one per counter, sorted by name:
+    // "atm.withdraw        count 1204  mean 38.1µs  p50 31.0µs  p99 120µs  p999 1.02ms  max 4.10ms"
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram.Snapshot s = e.getValue().snapshot();
+            lines.add(String.format(Locale.ROOT, "%-22s count %-8d mean %-8s p50 %-8s p99 %-8s p999 %-8s max %s",
+                    e.getKey(), s.count(), formatNanos(s.meanNanos()), formatNanos(s.p(0.50)), formatNanos(s.p(0.99)),
+                    formatNanos(s.p(0.999)), formatNanos(s.maxNanos())).stripTrailing());
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            lines.add(String.format(Locale.ROOT, "%-22s %d", e.getKey(), e.getValue().sum()));
+        }
+        return lines;
+    }
+
+    // Three significant digits: "850ns", "38.1µs", "1.02ms", "2.50s"
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return significant(nanos / 1e3) + "µs";
+        if (nanos < 1_000_000_000) return significant(nanos / 1e6) + "ms";
+        return significant(nanos / 1e9) + "s";
+    }
+
+    private static String significant(double v) {
+        return String.format(Locale.ROOT, v < 10 ? "%.2f" : v < 100 ? "%.1f" : "%.0f", v);
+    }
+
+    // ---------------------- METRICS FILE ----------------------
+    // Writes the report to 'file' now, replacing the previous one in one step (readers never see half a dump)
+    public void dump(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder("# ATM metrics ").append(Instant.now()).append('\n');
+        for (String line : report()) sb.append(line).append('\n');
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Dumps every 'periodSeconds' on a background thread, and once more on close()
+    public synchronized void startDumping(Path file, long periodSeconds) {
+        if (dumper != null || periodSeconds <= 0) return;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumpFile = file;
+        dumper.scheduleWithFixedDelay(() -> dumpQuietly(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private void dumpQuietly(Path file) {
+        try {
+            dump(file);
+        } catch (IOException e) {
+            System.out.println("[!] Metrics Error: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dumper == null) return;
+        dumper.shutdown();
+        try {
+            dumper.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dumpQuietly(dumpFile); // The final figures
+        dumper = null;
+    }
+}
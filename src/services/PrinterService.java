@@ -1,45 +1,93 @@
 package services;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 // PrinterService models the ATM receipt printer
 // OOP: Encapsulation of printer state and behavior
 // SOLID - Single Responsibility Principle (SRP):
 // Class handles only printer paper/ink levels and usage
 // SOLID - Potential for Liskov Substitution Principle (LSP):
 // Could be replaced with another implementation (e.g., ThermalPrinter, LaserPrinter) if it implements the same interface
+// Thread safety: receipts are printed by a background worker (ReceiptPrinter) while sessions and technicians
+// change the levels. Paper and ink share one AtomicLong (paper in the high 32 bits, ink in the low 32), so
+// every change to both is a single compare-and-set: a receipt can never take a sheet without its ink,
+// and no interleaving of sessions can take more than is in the printer.
 public class PrinterService {
 
-    private int paperLevel;  // Encapsulated: current number of paper sheets
-    private int inkLevel;    // Encapsulated: current ink units
+    private final AtomicLong levels = new AtomicLong(); // Encapsulated: available paper sheets and ink units
+    private final AtomicLong reserved = new AtomicLong(); // Receipts taken from the levels, not printed yet
+    private final AtomicLong printed = new AtomicLong();  // Receipts committed
 
     // Constructor initializes printer with paper and ink
     public PrinterService(int paper, int ink) {
-        this.paperLevel = paper;
-        this.inkLevel = ink;
+        levels.set(pack(Math.max(0, paper), Math.max(0, ink)));
     }
 
+    private static long pack(int paper, int ink) { return ((long) paper << 32) | (ink & 0xFFFFFFFFL); }
+    private static int paper(long levels) { return (int) (levels >>> 32); }
+    private static int ink(long levels) { return (int) levels; }
+
     // ---------------- GETTERS ----------------
     // Encapsulation: external classes can check printer state without modifying it directly
-    public int getPaperLevel() { return paperLevel; }
-    public int getInkLevel() { return inkLevel; }
-    public boolean hasPaper() { return paperLevel > 0; }
-    public boolean hasInk() { return inkLevel > 0; }
+    // Reserved receipts are already taken out of the levels
+    public int getPaperLevel() { return paper(levels.get()); }
+    public int getInkLevel() { return ink(levels.get()); }
+    public boolean hasPaper() { return getPaperLevel() > 0; }
+    public boolean hasInk() { return getInkLevel() > 0; }
+    public long getReserved() { return reserved.get(); }
+    public long getPrinted() { return printed.get(); }
 
     // ---------------- USE ----------------
     // Methods simulate printing, reducing paper and ink by one unit per use
-    // Encapsulation: internal state changes are controlled
-    public void usePaper() { if (paperLevel > 0) paperLevel--; }
-    public void useInk() { if (inkLevel > 0) inkLevel--; }
+    // Encapsulation: internal state changes are controlled; a level never goes below zero
+    public void usePaper() { levels.getAndUpdate(l -> paper(l) > 0 ? pack(paper(l) - 1, ink(l)) : l); }
+    public void useInk() { levels.getAndUpdate(l -> ink(l) > 0 ? pack(paper(l), ink(l) - 1) : l); }
+
+    // ---------------- RESERVE / COMMIT / RELEASE ----------------
+    // A receipt takes one sheet and one ink unit when it is queued, both or neither, in one CAS.
+    // Every successful reservation ends in exactly one commit (printed) or release (given back).
+    public boolean tryReserve() {
+        while (true) {
+            long l = levels.get();
+            if (paper(l) <= 0 || ink(l) <= 0) return false;
+            if (levels.compareAndSet(l, pack(paper(l) - 1, ink(l) - 1))) {
+                reserved.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    // The reserved receipt was printed: its sheet and ink are gone for good
+    public void commit() {
+        reserved.decrementAndGet();
+        printed.incrementAndGet();
+    }
+
+    // The reserved receipt was not printed: its sheet and ink go back into the printer
+    public void release() {
+        levels.getAndUpdate(l -> pack(paper(l) + 1, ink(l) + 1));
+        reserved.decrementAndGet();
+    }
 
     // ---------------- SETTERS (for technician use) ----------------
     // Allows refilling printer resources
     // Encapsulation: protects against negative values
     public void setPaperLevel(int paperLevel) {
-        if (paperLevel < 0) paperLevel = 0;
-        this.paperLevel = paperLevel;
+        int paper = Math.max(0, paperLevel);
+        levels.getAndUpdate(l -> pack(paper, ink(l)));
     }
 
     public void setInkLevel(int inkLevel) {
-        if (inkLevel < 0) inkLevel = 0;
-        this.inkLevel = inkLevel;
+        int ink = Math.max(0, inkLevel);
+        levels.getAndUpdate(l -> pack(paper(l), ink));
+    }
+
+    // Refills add to what is there in one step, so a receipt reserved meanwhile is not undone
+    public void addPaper(int sheets) {
+        levels.getAndUpdate(l -> pack((int) Math.min(Integer.MAX_VALUE, Math.max(0L, (long) paper(l) + sheets)), ink(l)));
+    }
+
+    public void addInk(int units) {
+        levels.getAndUpdate(l -> pack(paper(l), (int) Math.min(Integer.MAX_VALUE, Math.max(0L, (long) ink(l) + units))));
     }
 }
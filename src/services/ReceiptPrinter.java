@@ -0,0 +1,229 @@
+package services;
+
+import model.Receipt;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// ReceiptPrinter renders and prints receipts on a background worker, off the customer's thread
+// OOP: Composition - drives the PrinterService whose paper and ink the receipts were reserved from
+// SOLID - SRP: Only prints; reserving paper and ink (PrinterService.tryReserve) is done by the caller,
+// when the receipt is queued, so the levels are right even while receipts wait in the queue
+// The queue is bounded; when it is full, submit blocks until the worker catches up. A receipt that
+// cannot be printed gives its reservation back. The worker starts with the first receipt.
+// With an EReceiptSpool, receipts can also be sent electronically (submitElectronic): same queue and
+// worker, no paper or ink.
+// The release listener is told, on the worker thread, when a failed receipt gave its sheet and ink back,
+// so the owner can persist the restored levels.
+public class ReceiptPrinter implements AutoCloseable {
+
+    private record Job(Receipt receipt, boolean electronic) {}
+
+    private final PrinterService printer;
+    private final BlockingQueue<Job> queue;
+    private final Consumer<String> paper; // Where printed receipts go (the machine's console by default)
+    private final EReceiptSpool spool;    // null: paper only
+    private volatile Runnable releaseListener; // null: nobody to tell
+    private Thread worker; // Guarded by progress
+    private volatile boolean running = true; // Set under progress, so a submit counts either before close or not at all
+
+    // Sequence numbers: flush() waits until everything queued before it has been printed
+    private long submittedSeq;
+    private long printedSeq;
+    private long printed;
+    private long spooled;
+    private long failed;
+    private final Object progress = new Object();
+
+    public ReceiptPrinter(PrinterService printer, int queueCapacity) {
+        this(printer, queueCapacity, System.out::println);
+    }
+
+    public ReceiptPrinter(PrinterService printer, int queueCapacity, Consumer<String> paper) {
+        this(printer, queueCapacity, paper, null);
+    }
+
+    public ReceiptPrinter(PrinterService printer, int queueCapacity, Consumer<String> paper, EReceiptSpool spool) {
+        this.printer = printer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.paper = paper;
+        this.spool = spool;
+    }
+
+    // ---------------------- SUBMIT ----------------------
+    // Queues a receipt whose paper and ink are already reserved
+    public void submit(Receipt receipt) {
+        enqueue(new Job(receipt, false));
+    }
+
+    // Queues an e-receipt for the spool; needs no reservation
+    public void submitElectronic(Receipt receipt) {
+        if (spool == null) throw new IllegalStateException("No e-receipt spool");
+        enqueue(new Job(receipt, true));
+    }
+
+    // The running check and the count happen under the same lock as close(), so a receipt is either
+    // counted before close (then the worker or close prints it) or printed here after close
+    private void enqueue(Job job) {
+        boolean queued;
+        synchronized (progress) {
+            queued = running;
+            if (queued) {
+                if (worker == null) {
+                    worker = new Thread(this::runWorker, "receipt-printer");
+                    worker.setDaemon(true);
+                    worker.start();
+                }
+                submittedSeq++;
+            }
+        }
+        if (!queued) { // After close(): print on the caller's thread rather than dropping it
+            print(job);
+            return;
+        }
+        try {
+            queue.put(job); // Outside any monitor: a session's virtual thread may wait here
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (progress) {
+                submittedSeq--;
+                progress.notifyAll(); // close() may be waiting for this receipt
+            }
+            print(job);
+        }
+    }
+
+    // Blocks until every receipt queued before this call has been printed
+    public void flush() {
+        synchronized (progress) {
+            long target = submittedSeq;
+            while (printedSeq < target && worker.isAlive()) { // Counts, not identities: a barrier for shutdown
+                try {
+                    progress.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        Thread w;
+        synchronized (progress) {
+            running = false; // From here on submit prints on the caller's thread
+            w = worker;
+        }
+        if (w == null) return;
+        w.interrupt();
+        try {
+            w.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        printLeft();
+    }
+
+    // Receipts counted before close but put into the queue after the worker stopped (or while it was
+    // still busy when the join gave up) are printed here, so every reservation is used or given back.
+    // Waiting for a missing one is bounded like the join: a printer that hangs does not hang the shutdown.
+    private void printLeft() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (true) {
+            Job job = queue.poll();
+            if (job != null) {
+                print(job);
+                synchronized (progress) {
+                    printedSeq++;
+                    progress.notifyAll();
+                }
+                continue;
+            }
+            synchronized (progress) {
+                if (printedSeq >= submittedSeq || System.nanoTime() > deadline) return;
+                try {
+                    progress.wait(10); // A counted submitter is about to put its receipt
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // ---------------------- WORKER THREAD ----------------------
+    private void runWorker() {
+        while (running || !queue.isEmpty()) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                continue; // Closing: the loop condition drains what is left
+            }
+            print(job);
+            synchronized (progress) {
+                printedSeq++;
+                progress.notifyAll();
+            }
+        }
+    }
+
+    private void print(Job job) {
+        if (job.electronic()) {
+            try {
+                spool.append(job.receipt());
+                synchronized (progress) { spooled++; }
+            } catch (IOException | RuntimeException e) {
+                synchronized (progress) { failed++; }
+                System.out.println("[!] E-Receipt Error: " + e.getMessage());
+            }
+            return;
+        }
+        try {
+            paper.accept(job.receipt().render());
+            printer.commit(); // The reserved sheet and ink are used up
+            synchronized (progress) { printed++; }
+        } catch (RuntimeException e) {
+            printer.release(); // Not printed: the sheet and the ink are still in the printer
+            synchronized (progress) { failed++; }
+            System.out.println("[!] Receipt Error: " + e.getMessage());
+            notifyRelease();
+        }
+    }
+
+    private void notifyRelease() {
+        Runnable listener = releaseListener;
+        if (listener == null) return;
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            System.out.println("[!] Receipt Error: " + e.getMessage()); // Keep the worker alive
+        }
+    }
+
+    // ---------------------- LISTENER ----------------------
+    public void setReleaseListener(Runnable listener) { this.releaseListener = listener; }
+
+    // ---------------------- GETTERS ----------------------
+    public int getQueued() { return queue.size(); }
+
+    public long getPrinted() {
+        synchronized (progress) { return printed; }
+    }
+
+    public long getSpooled() {
+        synchronized (progress) { return spooled; }
+    }
+
+    public boolean hasSpool() { return spool != null; }
+    public EReceiptSpool getSpool() { return spool; }
+
+    public long getFailed() {
+        synchronized (progress) { return failed; }
+    }
+}
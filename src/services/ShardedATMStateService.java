@@ -0,0 +1,367 @@
+package services;
+
+import interfaces.IATMStateService;
+import model.Account;
+import model.HistoryRetention;
+import model.Money;
+import model.StateSnapshot;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// ShardedATMStateService spreads the accounts over N JSON shard files plus one small machine file
+// OOP: Composition - every shard is written by its own FileATMStateService (same format, atomic rename)
+// SOLID - Open/Closed: A new storage layout without changing the engine or the JSON store
+// SOLID - Liskov Substitution: Behaves like any other IATMStateService
+// An account lives in shard (hash of the case-folded owner) mod N, the same identity the engine uses.
+// Startup reads all shards in parallel on a fork-join pool; a save rewrites only the shards holding
+// a changed account (in parallel when there are several) and machine.json only when a machine field changed.
+//
+// <dir>/machine.json           cash, cassette notes, paper, ink, firmware (authoritative; shard headers are ignored)
+// <dir>/accounts-<i>-of-<N>.json   the accounts of shard i, in the JSON state format
+// <dir>/accounts-<i>-of-<N>.json.history   their transaction history (read lazily, see HistoryLog)
+// The shard count is part of the file name, so starting with a different count reshards once.
+// If any shard cannot be read, the load fails and the store refuses every save: a shard rewritten from a
+// partial load would lose the accounts that were not read.
+public class ShardedATMStateService implements IATMStateService, AutoCloseable {
+
+    private static final Pattern SHARD_FILE = Pattern.compile("accounts-(\\d+)-of-(\\d+)\\.json");
+
+    private final Path dir;
+    private final int shardCount;
+    private final ForkJoinPool pool;
+    private final FileATMStateService[] shardFiles;
+    private final FileATMStateService machineFile;
+
+    // Shard membership and the Account version each shard file last saw (-1: never written)
+    private final List<List<Account>> shards = new ArrayList<>();
+    private final Map<Account, Long> written = new IdentityHashMap<>();
+    private long cashCents;
+    private int[] notes; // Cassette note counts in machine.json, null when it has none
+    private int paper;
+    private int ink;
+    private String firmware;
+    private boolean loaded;
+    private boolean machineOnDisk; // machine.json exists, so unchanged levels need no write
+    private boolean pendingMachine; // The last machine.json write failed
+    private final boolean[] pendingShards; // Shards whose last write failed
+    private String loadFailure;    // Why the last load failed; no shard is written while set
+
+    private final WriteStats writeStats = new WriteStats();
+    private long lastLoadMillis;
+
+    public ShardedATMStateService(String dir, int shardCount, int parallelism) {
+        this(dir, shardCount, parallelism, HistoryRetention.DEFAULT);
+    }
+
+    public ShardedATMStateService(String dir, int shardCount, int parallelism, HistoryRetention retention) {
+        if (shardCount < 1) throw new IllegalArgumentException("shardCount must be at least 1");
+        this.dir = Paths.get(dir);
+        this.shardCount = shardCount;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.shardFiles = new FileATMStateService[shardCount];
+        this.pendingShards = new boolean[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shardFiles[i] = new FileATMStateService(shardPath(i, shardCount).toString(), retention);
+            shards.add(new ArrayList<>());
+        }
+        this.machineFile = new FileATMStateService(this.dir.resolve("machine.json").toString());
+        StateSnapshot d = FileATMStateService.DEFAULTS;
+        this.cashCents = d.cashCents();
+        this.paper = d.paper();
+        this.ink = d.ink();
+        this.firmware = d.firmware();
+    }
+
+    // Which shard an owner belongs to; case-folded like the engine's account index
+    public static int shardOf(String owner, int shardCount) {
+        String key = owner == null ? "" : owner.toLowerCase(Locale.ROOT);
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+
+    // ---------------------- SAVE STATE ----------------------
+    @Override
+    public void saveState(List<Account> accounts, double cash, int paper, int ink, String firmware) {
+        saveStateCents(accounts, Money.fromDouble(cash), paper, ink, firmware); // Legacy double entry point
+    }
+
+    // Full list: a shard is rewritten when one of its accounts is new or its version moved
+    @Override
+    public synchronized void saveStateCents(List<Account> accounts, long cashCents, int paper, int ink, String firmware) {
+        List<Account> copy;
+        synchronized (accounts) { copy = new ArrayList<>(accounts); } // Sessions may register meanwhile
+        boolean[] dirty = new boolean[shardCount];
+        for (Account a : copy) markShard(a, dirty);
+        write(dirty, ALL_MACHINE_FIELDS, cashCents, notes, paper, ink, firmware);
+    }
+
+    // Dirty tracking: only the shards of the reported accounts are rewritten
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int paper, int ink, String firmware) {
+        saveChanges(accounts, changed, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    @Override
+    public synchronized void saveChanges(List<Account> accounts, Collection<Account> changed, int machineFields,
+                                         long cashCents, int[] notes, int paper, int ink, String firmware) {
+        boolean[] dirty = new boolean[shardCount];
+        for (Account a : changed) markShard(a, dirty);
+        write(dirty, machineFields, cashCents, notes, paper, ink, firmware);
+    }
+
+    private void markShard(Account a, boolean[] dirty) {
+        Long version = written.get(a);
+        int shard = shardOf(a.getOwner(), shardCount);
+        if (version == null) {
+            shards.get(shard).add(a); // New account: joins its shard
+            written.put(a, -1L);      // A member, not written yet; versions start at 0
+            dirty[shard] = true;
+        } else if (version != a.getVersion()) {
+            dirty[shard] = true;
+        }
+    }
+
+    // Returns true when every shard and machine write succeeded. A failed shard or machine write stays pending:
+    // the engine has already cleared its dirty marks, so it is written again with the next save.
+    // 'notes' are the cassettes' note counts, or the ones machine.json holds for a save that brings none.
+    private boolean write(boolean[] dirty, int machineFields, long cashCents, int[] notes, int paper, int ink, String firmware) {
+        if (loadFailure != null) throw new IllegalStateException("Sharded store not loaded, save refused: " + loadFailure);
+        boolean machineChanged = cashCents != this.cashCents || !Arrays.equals(notes, this.notes)
+                || paper != this.paper || ink != this.ink
+                || !String.valueOf(firmware).equals(String.valueOf(this.firmware));
+
+        List<Integer> writing = new ArrayList<>();
+        List<long[]> versions = new ArrayList<>();
+        List<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            if (!dirty[i] && !pendingShards[i]) continue;
+            List<Account> members = shards.get(i);
+            long[] seen = new long[members.size()];
+            for (int m = 0; m < seen.length; m++) seen[m] = members.get(m).getVersion(); // Read before the write: a later change re-marks
+            FileATMStateService file = shardFiles[i];
+            writing.add(i);
+            versions.add(seen);
+            tasks.add(pool.submit(() -> file.trySave(members, cashCents, null, paper, ink, firmware)));
+        }
+        long bytes = 0;
+        boolean ok = true;
+        if ((machineFields != 0 && machineChanged) || !machineOnDisk || pendingMachine) {
+            if (machineFile.writeSnapshot(List.of(), cashCents, notes, paper, ink, firmware)) {
+                machineOnDisk = true;
+                pendingMachine = false;
+                this.cashCents = cashCents; // Recorded only once on disk, so a failed write is compared again
+                this.notes = notes == null ? null : notes.clone();
+                this.paper = paper;
+                this.ink = ink;
+                this.firmware = firmware;
+                bytes += machineFile.getWriteStats().getLastBytes();
+            } else {
+                pendingMachine = true;
+                ok = false;
+            }
+        }
+
+        long encoded = 0;
+        for (int t = 0; t < tasks.size(); t++) {
+            int shard = writing.get(t);
+            if (!tasks.get(t).join()) {
+                pendingShards[shard] = true; // Its accounts keep their old written versions
+                ok = false;
+                continue;
+            }
+            pendingShards[shard] = false;
+            List<Account> members = shards.get(shard);
+            long[] seen = versions.get(t);
+            for (int m = 0; m < seen.length; m++) written.put(members.get(m), seen[m]);
+            bytes += shardFiles[shard].getWriteStats().getLastBytes();
+            encoded += shardFiles[shard].getWriteStats().getLastAccounts();
+        }
+        writeStats.record(bytes, encoded);
+        return ok;
+    }
+
+    // ---------------------- LOAD SNAPSHOT ----------------------
+    // Every shard is read on the pool at the same time; the machine file is read meanwhile on this thread
+    @Override
+    public synchronized StateSnapshot loadSnapshot() {
+        long start = System.nanoTime();
+        List<Account> all = new ArrayList<>();
+        try {
+            Files.createDirectories(dir);
+            Map<Integer, List<Path>> existing = findShardFiles();
+            // Started with a different shard count: read the old set and spread it over the new shards.
+            // Old files are deleted only after the new set is written, so while both exist the old one is complete.
+            int source = existing.keySet().stream().filter(n -> n != shardCount).findFirst().orElse(shardCount);
+            boolean reshard = source != shardCount;
+
+            // A shard's accounts page through that shard's history log, so the reader must be the shard's store
+            List<FileATMStateService> oldFiles = new ArrayList<>();
+            List<ForkJoinTask<List<Account>>> tasks = new ArrayList<>();
+            for (Path p : existing.getOrDefault(source, List.of())) {
+                FileATMStateService file = reshard ? new FileATMStateService(p.toString()) : shardFiles[shardIndex(p)];
+                if (reshard) oldFiles.add(file);
+                tasks.add(pool.submit(() -> readShard(file, p)));
+            }
+            readMachine();
+            List<String> unreadable = new ArrayList<>();
+            for (ForkJoinTask<List<Account>> task : tasks) {
+                try {
+                    all.addAll(task.join());
+                } catch (RuntimeException e) {
+                    unreadable.add(e.getMessage()); // Every shard is waited for before failing
+                }
+            }
+            if (!unreadable.isEmpty()) throw new IllegalStateException(String.join("; ", unreadable));
+            loadFailure = null;
+
+            for (List<Account> shard : shards) shard.clear();
+            written.clear();
+            if (reshard) {
+                boolean[] every = new boolean[shardCount];
+                for (Account a : all) markShard(a, every);
+                if (!write(every, ALL_MACHINE_FIELDS, cashCents, notes, paper, ink, firmware)) { // Copies every history into the new logs
+                    throw new IOException("Resharding could not write the new shards; the old ones are kept");
+                }
+                for (FileATMStateService file : oldFiles) file.close();
+                for (Map.Entry<Integer, List<Path>> e : existing.entrySet()) {
+                    if (e.getKey() == shardCount) continue;
+                    for (Path p : e.getValue()) {
+                        Files.deleteIfExists(p);
+                        HistoryLog.delete(p.resolveSibling(p.getFileName() + ".history"));
+                    }
+                }
+                System.out.println("[+] Resharded " + all.size() + " accounts from " + source + " to " + shardCount + " shards.");
+            } else {
+                for (Account a : all) {
+                    shards.get(shardOf(a.getOwner(), shardCount)).add(a);
+                    written.put(a, a.getVersion());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Nothing may be written from a partial load: fail the start instead of carrying on without accounts
+            loadFailure = e.getMessage();
+            System.out.println("[!] Load Error: " + e.getMessage());
+            throw new IllegalStateException("Sharded store unreadable: " + e.getMessage(), e);
+        }
+
+        if (FileATMStateService.ensurePreset(all)) {
+            saveStateCents(all, cashCents, paper, ink, firmware);
+        }
+        loaded = true;
+        lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+        return new StateSnapshot(all, cashCents, notes, paper, ink, firmware);
+    }
+
+    private List<Account> readShard(FileATMStateService file, Path p) {
+        try {
+            return file.read().accounts();
+        } catch (IOException e) {
+            throw new IllegalStateException("Shard " + p.getFileName() + " unreadable: " + e.getMessage(), e);
+        }
+    }
+
+    private void readMachine() {
+        Path file = dir.resolve("machine.json");
+        if (!Files.exists(file)) return; // First start: defaults
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            StateSnapshot m = new StateJsonReader(in).read(FileATMStateService.DEFAULTS, true);
+            machineOnDisk = true;
+            cashCents = m.cashCents();
+            notes = m.notes();
+            paper = m.paper();
+            ink = m.ink();
+            firmware = m.firmware();
+        } catch (IOException e) {
+            System.out.println("[!] Load Error: " + e.getMessage());
+        }
+    }
+
+    // Shard count -> its shard files, from the names in the directory
+    private Map<Integer, List<Path>> findShardFiles() throws IOException {
+        Map<Integer, List<Path>> found = new TreeMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Matcher m = SHARD_FILE.matcher(p.getFileName().toString());
+                if (m.matches()) found.computeIfAbsent(Integer.parseInt(m.group(2)), n -> new ArrayList<>()).add(p);
+            }
+        }
+        return found;
+    }
+
+    private int shardIndex(Path file) {
+        Matcher m = SHARD_FILE.matcher(file.getFileName().toString());
+        int index = m.matches() ? Integer.parseInt(m.group(1)) : -1;
+        if (index < 0 || index >= shardCount) throw new IllegalStateException("Unexpected shard file " + file.getFileName());
+        return index;
+    }
+
+    private Path shardPath(int shard, int count) {
+        return dir.resolve("accounts-" + shard + "-of-" + count + ".json");
+    }
+
+    // ---------------------- LOAD ACCOUNTS / MACHINE LEVELS ----------------------
+    @Override
+    public List<Account> loadAccounts() {
+        return loadSnapshot().accounts();
+    }
+
+    // Machine levels come from machine.json alone; no shard is read
+    @Override
+    public synchronized int loadPaperLevel() { if (!loaded) readMachine(); return paper; }
+
+    @Override
+    public synchronized int loadInkLevel() { if (!loaded) readMachine(); return ink; }
+
+    @Override
+    public double loadCashLevel() { return Money.toDouble(loadCashCents()); }
+
+    @Override
+    public synchronized long loadCashCents() { if (!loaded) readMachine(); return cashCents; }
+
+    @Override
+    public synchronized String loadFirmwareVersion() { if (!loaded) readMachine(); return firmware; }
+
+    // True when no shard file exists yet (e.g. before the first import)
+    public boolean isEmpty() {
+        try {
+            return !Files.isDirectory(dir) || findShardFiles().isEmpty();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    // ---------------------- GETTERS ----------------------
+    public int getShardCount() { return shardCount; }
+    public long getLastLoadMillis() { return lastLoadMillis; }
+    public WriteStats getWriteStats() { return writeStats; }
+
+    @Override
+    public String getStorageStatus() {
+        return shardCount + " shards on " + pool.getParallelism() + " threads, load " + lastLoadMillis
+                + " ms; writes " + writeStats;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        for (FileATMStateService file : shardFiles) file.close();
+    }
+}
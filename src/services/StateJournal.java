@@ -0,0 +1,283 @@
+package services;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// StateJournal is an append-only write-ahead log of ATM state changes
+// OOP: Encapsulation of the record format, the file channel and fsync policy
+// SOLID - SRP: Only appends and replays records; deciding WHAT changed is JournaledATMStateService's job
+// Record format: one line per record, fields separated by TAB, with \t \n \r and \ escaped.
+// A crash can leave a half-written last line; replay stops at the first line without a newline and cuts it
+// off the live file, so the next record starts on a line of its own.
+// Compaction seals the live file as a numbered segment (<name>.1, <name>.2, ...) and keeps
+// appending to a fresh live file; sealed segments are deleted once a snapshot covers them.
+public class StateJournal implements AutoCloseable {
+
+    // When appended records are forced to the storage device
+    public enum Durability {
+        PER_RECORD, // fsync after every record: nothing acknowledged is ever lost
+        PER_GROUP   // fsync once per append(...) call: one sync covers all records of one save
+    }
+
+    private final Path path;
+    private final Durability durability;
+    private FileChannel channel;
+    private long liveRecords;
+    private long truncateTo = -1; // Length of the live file before a failed append that could not be rolled back
+    private final TreeMap<Long, Long> sealedRecords = new TreeMap<>(); // segment number -> record count
+
+    public StateJournal(Path path, Durability durability) {
+        this.path = path;
+        this.durability = durability;
+    }
+
+    // ---------------------- APPEND ----------------------
+    // Each record is a list of fields; the first field is the record type. Returns the bytes appended.
+    // All or nothing: if a write or fsync fails, the file is cut back to where this call started, so a retry
+    // neither follows an unterminated fragment nor repeats records that were already on disk.
+    public synchronized long append(List<String[]> records) throws IOException {
+        if (records.isEmpty()) return 0;
+        FileChannel ch = channel();
+        long start = ch.size();
+        long bytes = 0;
+        try {
+            if (durability == Durability.PER_RECORD) {
+                for (String[] record : records) {
+                    bytes += writeFully(ch, encode(List.<String[]>of(record)));
+                    ch.force(false);
+                }
+            } else {
+                bytes = writeFully(ch, encode(records));
+                ch.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            rollBack(start);
+            throw e;
+        }
+        liveRecords += records.size();
+        return bytes;
+    }
+
+    // Cuts the live file back to 'length'; if even that fails, the next append retries it first
+    private void rollBack(long length) {
+        truncateTo = length;
+        try {
+            channel.truncate(length);
+            channel.force(false);
+            truncateTo = -1;
+        } catch (IOException e) {
+            System.out.println("[!] Journal Error: rollback failed (" + e.getMessage() + ")");
+            try {
+                close(); // Reopened, and truncated, by the next append
+            } catch (IOException ignored) {
+                // The channel is unusable either way
+            }
+        }
+    }
+
+    // ---------------------- ROTATION ----------------------
+    // Seals the live file as the next segment and starts a new live file; returns the segment number
+    public synchronized long seal() throws IOException {
+        if (truncateTo >= 0) channel(); // A segment never ends in the fragment of a failed append
+        close();
+        long segment = sealedRecords.isEmpty() ? 1 : sealedRecords.lastKey() + 1;
+        if (Files.exists(path)) {
+            Files.move(path, segmentPath(segment), StandardCopyOption.ATOMIC_MOVE);
+        }
+        sealedRecords.put(segment, liveRecords);
+        liveRecords = 0;
+        return segment;
+    }
+
+    // Deletes sealed segments up to and including the given number (a snapshot now covers them)
+    public synchronized void dropSealed(long upTo) throws IOException {
+        while (!sealedRecords.isEmpty() && sealedRecords.firstKey() <= upTo) {
+            Files.deleteIfExists(segmentPath(sealedRecords.pollFirstEntry().getKey()));
+        }
+    }
+
+    // ---------------------- REPLAY ----------------------
+    // Feeds every complete record to the consumer in append order: sealed segments first, then the live file
+    public synchronized long replay(Consumer<String[]> consumer) throws IOException {
+        sealedRecords.clear();
+        for (long segment : findSealedSegments()) {
+            sealedRecords.put(segment, replayFile(segmentPath(segment), consumer).records());
+        }
+        close(); // The live file may be truncated below; appends reopen it
+        Replayed live = replayFile(path, consumer);
+        liveRecords = live.records();
+        if (Files.exists(path) && Files.size(path) > live.completeBytes()) {
+            // A torn write from a crash: it was never acknowledged, so it is dropped from the file too.
+            // Otherwise the next record would be appended onto the fragment and be lost with it.
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(live.completeBytes());
+                ch.force(false);
+            }
+        }
+        return getRecordCount();
+    }
+
+    // Records replayed from one file and the length of its complete lines (up to the last newline)
+    private record Replayed(long records, long completeBytes) {}
+
+    // Reads raw bytes and decodes only complete lines: a tail torn inside a multi-byte character (e.g. "€")
+    // is dropped like any other torn tail instead of failing the replay
+    private static Replayed replayFile(Path file, Consumer<String[]> consumer) throws IOException {
+        if (!Files.exists(file)) return new Replayed(0, 0);
+        long replayed = 0;
+        long complete = 0;
+        long offset = 0;
+        byte[] line = new byte[256];
+        int length = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                offset++;
+                if (b != '\n') {
+                    if (length == line.length) line = Arrays.copyOf(line, length * 2);
+                    line[length++] = (byte) b;
+                    continue;
+                }
+                consumer.accept(decode(new String(line, 0, length, StandardCharsets.UTF_8)));
+                replayed++;
+                complete = offset;
+                length = 0;
+            }
+        }
+        return new Replayed(replayed, complete);
+    }
+
+    // Records not yet covered by a snapshot (live file plus sealed segments still on disk)
+    public synchronized long getRecordCount() {
+        long total = liveRecords;
+        for (long n : sealedRecords.values()) total += n;
+        return total;
+    }
+
+    public synchronized long getSizeBytes() throws IOException {
+        long total = Files.exists(path) ? Files.size(path) : 0;
+        for (Map.Entry<Long, Long> e : sealedRecords.entrySet()) {
+            Path segment = segmentPath(e.getKey());
+            if (Files.exists(segment)) total += Files.size(segment);
+        }
+        return total;
+    }
+
+    public Path getPath() { return path; }
+
+    public Durability getDurability() { return durability; }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // ---------------------- HELPER METHODS ----------------------
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (truncateTo >= 0) { // The fragment of a failed append must go before anything follows it
+                try {
+                    channel.truncate(truncateTo);
+                    channel.force(false);
+                } catch (IOException e) {
+                    close();
+                    throw e;
+                }
+                truncateTo = -1;
+            }
+        }
+        return channel;
+    }
+
+    private Path segmentPath(long segment) {
+        return path.resolveSibling(path.getFileName() + "." + segment);
+    }
+
+    private List<Long> findSealedSegments() throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        List<Long> segments = new ArrayList<>();
+        if (dir == null || !Files.isDirectory(dir)) return segments;
+        String prefix = path.getFileName() + ".";
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(prefix) && n.length() > prefix.length()
+                            && n.substring(prefix.length()).chars().allMatch(Character::isDigit))
+                    .forEach(n -> segments.add(Long.parseLong(n.substring(prefix.length()))));
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    // Overridable so tests can fail a write partway through
+    protected int writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        int bytes = buf.remaining();
+        while (buf.hasRemaining()) ch.write(buf);
+        return bytes;
+    }
+
+    private static ByteBuffer encode(List<String[]> records) {
+        StringBuilder sb = new StringBuilder(64 * records.size());
+        for (String[] record : records) {
+            for (int i = 0; i < record.length; i++) {
+                if (i > 0) sb.append('\t');
+                escape(sb, record[i]);
+            }
+            sb.append('\n');
+        }
+        return StandardCharsets.UTF_8.encode(sb.toString());
+    }
+
+    private static void escape(StringBuilder sb, String field) {
+        if (field == null) field = "";
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    private static String[] decode(CharSequence line) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char n = line.charAt(++i);
+                field.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,274 @@
+package services;
+
+import interfaces.IHistoryArchive;
+import model.Account;
+import model.Money;
+import model.StateSnapshot;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// StateJsonReader parses atm_state.json in one streaming pass
+// OOP: Encapsulation of the tokenizer state (current character, reusable token buffer)
+// SOLID - SRP: Only turns characters into a StateSnapshot; FileATMStateService decides defaults and seeding
+// The file is consumed character by character through a private char buffer, so memory is bounded by the
+// accounts being built, never by the size of the file. Unknown keys are skipped, which keeps old and
+// newer files readable. Numbers are parsed from a reused buffer without creating Strings.
+// Accounts written with a history pointer ("historyHead"/"historyCount") get the archive attached and
+// no history is read; an inline "transactions" array (older files) is still loaded into memory.
+public class StateJsonReader {
+
+    private final Reader in;
+    private final IHistoryArchive archive; // Where history pointers point (null: pointers are ignored)
+    private final char[] buffer = new char[1 << 16]; // Own buffer: avoids a locked Reader.read() per character
+    private int position;
+    private int limit;
+    private final StringBuilder token = new StringBuilder(64); // Reused for every string and number
+    private int current = -2; // -2 = nothing read yet, -1 = end of input
+
+    public StateJsonReader(Reader in) {
+        this(in, null);
+    }
+
+    public StateJsonReader(Reader in, IHistoryArchive archive) {
+        this.in = in;
+        this.archive = archive;
+    }
+
+    // Reads the file into a snapshot; fields the file does not contain keep the values from 'defaults'.
+    // With headerOnly the accounts array is skipped, so cash/paper/ink/firmware cost almost nothing.
+    public StateSnapshot read(StateSnapshot defaults, boolean headerOnly) throws IOException {
+        long cash = defaults.cashCents();
+        int[] notes = defaults.notes();
+        int paper = defaults.paper();
+        int ink = defaults.ink();
+        String firmware = defaults.firmware();
+        List<Account> accounts = new ArrayList<>();
+        int headerFields = 0;
+
+        expect('{');
+        if (peek() == '}') { next(); return new StateSnapshot(accounts, cash, notes, paper, ink, firmware); }
+        while (true) {
+            String key = readString();
+            expect(':');
+            switch (key) {
+                case "cash" -> { cash = readAmount(); headerFields++; }
+                case "notes" -> notes = readIntArray(); // Optional, comes before the accounts
+                case "paper" -> { paper = readInt(); headerFields++; }
+                case "ink" -> { ink = readInt(); headerFields++; }
+                case "firmware" -> { firmware = readNullableString(); headerFields++; }
+                case "accounts" -> {
+                    // The writer puts the header first: nothing useful can follow the accounts array
+                    if (headerOnly && headerFields == 4) return new StateSnapshot(accounts, cash, notes, paper, ink, firmware);
+                    if (headerOnly) skipValue();
+                    else readAccounts(accounts);
+                }
+                default -> skipValue();
+            }
+            int c = nextNonSpace();
+            if (c == '}') break;
+            if (c != ',') throw error("',' or '}'", c);
+        }
+        return new StateSnapshot(accounts, cash, notes, paper, ink, firmware);
+    }
+
+    // ---------------------- ACCOUNTS ----------------------
+    private void readAccounts(List<Account> accounts) throws IOException {
+        expect('[');
+        if (peek() == ']') { next(); return; }
+        while (true) {
+            accounts.add(readAccount());
+            int c = nextNonSpace();
+            if (c == ']') return;
+            if (c != ',') throw error("',' or ']'", c);
+        }
+    }
+
+    private Account readAccount() throws IOException {
+        String owner = "";
+        String pin = "";
+        long balance = 0;
+        List<String> transactions = null;
+        long historyHead = -1;
+        int historyCount = 0;
+
+        expect('{');
+        if (peek() == '}') { next(); return Account.ofCents(owner, pin, balance); }
+        while (true) {
+            String key = readString();
+            expect(':');
+            switch (key) {
+                case "owner" -> owner = readNullableString();
+                case "pin" -> pin = readNullableString();
+                case "balance" -> balance = readAmount();
+                case "transactions" -> transactions = readStringArray();
+                case "historyHead" -> historyHead = readLong();
+                case "historyCount" -> historyCount = readInt();
+                default -> skipValue();
+            }
+            int c = nextNonSpace();
+            if (c == '}') break;
+            if (c != ',') throw error("',' or '}'", c);
+        }
+
+        Account account = Account.ofCents(owner, pin, balance);
+        if (archive != null && historyCount > 0) account.attachArchive(archive, historyHead, historyCount);
+        if (transactions != null) for (String t : transactions) account.restoreTransaction(t);
+        return account;
+    }
+
+    private int[] readIntArray() throws IOException {
+        List<Integer> values = new ArrayList<>();
+        expect('[');
+        if (peek() == ']') { next(); return new int[0]; }
+        while (true) {
+            values.add(readInt());
+            int c = nextNonSpace();
+            if (c == ']') break;
+            if (c != ',') throw error("',' or ']'", c);
+        }
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) result[i] = values.get(i);
+        return result;
+    }
+
+    private List<String> readStringArray() throws IOException {
+        List<String> values = new ArrayList<>();
+        expect('[');
+        if (peek() == ']') { next(); return values; }
+        while (true) {
+            values.add(readString());
+            int c = nextNonSpace();
+            if (c == ']') return values;
+            if (c != ',') throw error("',' or ']'", c);
+        }
+    }
+
+    // ---------------------- VALUES ----------------------
+    private String readString() throws IOException {
+        expect('"');
+        token.setLength(0);
+        while (true) {
+            int c = next();
+            if (c < 0) throw error("closing quote", c);
+            if (c == '"') return token.toString();
+            if (c != '\\') { token.append((char) c); continue; }
+            int e = next();
+            switch (e) {
+                case 'n' -> token.append('\n');
+                case 't' -> token.append('\t');
+                case 'r' -> token.append('\r');
+                case 'b' -> token.append('\b');
+                case 'f' -> token.append('\f');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) code = code * 16 + Character.digit(next(), 16);
+                    token.append((char) code);
+                }
+                default -> token.append((char) e); // \" \\ \/
+            }
+        }
+    }
+
+    private String readNullableString() throws IOException {
+        if (peek() == 'n') { readLiteral(); return null; }
+        return readString();
+    }
+
+    private long readAmount() throws IOException {
+        readNumberToken();
+        return Money.parse(token);
+    }
+
+    private int readInt() throws IOException {
+        readNumberToken();
+        int dot = token.indexOf(".");
+        return Integer.parseInt(token, 0, dot < 0 ? token.length() : dot, 10); // "4" or a legacy "4.0"
+    }
+
+    private long readLong() throws IOException {
+        readNumberToken();
+        return Long.parseLong(token, 0, token.length(), 10);
+    }
+
+    private void readNumberToken() throws IOException {
+        nextNonSpaceAsCurrent();
+        token.setLength(0);
+        while (current == '-' || current == '+' || current == '.' || current == 'e' || current == 'E'
+                || (current >= '0' && current <= '9')) {
+            token.append((char) current);
+            current = read();
+        }
+        if (token.length() == 0) throw error("number", current);
+    }
+
+    // Skips any JSON value (object, array, string, number or literal) without keeping it
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') { readString(); return; }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = next();
+                if (c == '"') { current = c; readString(); continue; }
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+                else if (c < 0) throw error("end of value", c);
+            } while (depth > 0);
+            return;
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) { readNumberToken(); return; }
+        readLiteral();
+    }
+
+    private void readLiteral() throws IOException { // true / false / null
+        nextNonSpaceAsCurrent();
+        while (current >= 'a' && current <= 'z') current = read();
+    }
+
+    // ---------------------- CHARACTER LEVEL ----------------------
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) { limit = 0; return -1; }
+        }
+        return buffer[position++];
+    }
+
+    // 'current' holds one character of look-ahead that has been read but not consumed
+
+    private int peek() throws IOException {
+        nextNonSpaceAsCurrent();
+        return current;
+    }
+
+    private int next() throws IOException {
+        if (current == -2) return read();
+        int c = current;
+        current = -2;
+        return c;
+    }
+
+    private int nextNonSpace() throws IOException {
+        nextNonSpaceAsCurrent();
+        return next();
+    }
+
+    private void nextNonSpaceAsCurrent() throws IOException {
+        if (current == -2) current = read();
+        while (current == ' ' || current == '\n' || current == '\r' || current == '\t') current = read();
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = nextNonSpace();
+        if (c != expected) throw error("'" + expected + "'", c);
+    }
+
+    private static IOException error(String expected, int found) {
+        return new IOException("Malformed state file: expected " + expected + " but found "
+                + (found < 0 ? "end of file" : "'" + (char) found + "'"));
+    }
+}
@@ -0,0 +1,39 @@
+package services;
+
+// WriteStats counts what each save of a store actually wrote
+// OOP: Encapsulation of the counters behind synchronized accessors
+// SOLID - SRP: Only bookkeeping; the stores decide what a "byte written" and an "encoded account" are
+// Shown on the technician status screen, so the effect of incremental saves is visible.
+public class WriteStats {
+
+    private long operations;
+    private long bytesWritten;
+    private long lastBytes;
+    private long accountsEncoded;
+    private long lastAccounts;
+
+    // One save: bytes that reached the file and accounts that had to be (re)encoded for it
+    public synchronized void record(long bytes, long accounts) {
+        operations++;
+        bytesWritten += bytes;
+        lastBytes = bytes;
+        accountsEncoded += accounts;
+        lastAccounts = accounts;
+    }
+
+    public synchronized long getOperations() { return operations; }
+    public synchronized long getBytesWritten() { return bytesWritten; }
+    public synchronized long getLastBytes() { return lastBytes; }
+    public synchronized long getAccountsEncoded() { return accountsEncoded; }
+    public synchronized long getLastAccounts() { return lastAccounts; }
+
+    public synchronized long getAverageBytes() {
+        return operations == 0 ? 0 : bytesWritten / operations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return operations + " saves, last " + lastBytes + " B / " + lastAccounts + " accounts, avg "
+                + getAverageBytes() + " B";
+    }
+}
@@ -0,0 +1,244 @@
+package users;
+
+import core.ATMMachineV2;
+import model.Account;
+import model.Money;
+import model.ReceiptMode;
+import model.TransactionRecords;
+import model.TransactionSummary;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Scanner;
+
+// CustomerPanel is the menu of a logged-in customer, on the console or on a remote terminal
+// OOP: Encapsulation - one panel per login, reading from the Scanner it was given
+// SOLID - SRP: Menu flow only; every balance change is done by the ATM
+public class CustomerPanel {
+
+    private final ATMMachineV2 atm;
+    private final Scanner sc;
+
+    public CustomerPanel(ATMMachineV2 atm, Scanner sc) {
+        this.atm = atm;
+        this.sc = sc;
+    }
+
+    // ------------------- USER MENU -------------------
+    // Returns when the customer logs out or the ATM goes out of service; the ATM session ends either way,
+    // also when the terminal disconnects (the Scanner throws NoSuchElementException)
+    public void run(Account user) {
+        try {
+            menuLoop(user);
+        } finally {
+            atm.logout();
+        }
+    }
+
+    private void menuLoop(Account user) {
+        boolean loggedIn = true;
+
+        while(loggedIn) {
+            System.out.println("\n--- USER MENU (" + user.getOwner() + ") ---");
+            System.out.println("1. Check Balance");
+            System.out.println("2. Deposit");
+            System.out.println("3. Withdraw");
+            System.out.println("4. Logout");
+            System.out.println("5. Transaction History");
+            System.out.println("6. Mini Statement");
+            System.out.print("Action: ");
+
+            int act;
+            try {
+                act = Integer.parseInt(sc.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input.");
+                continue;
+            }
+
+            switch(act) {
+                case 1 -> System.out.println("Balance: €" + Money.format(atm.checkBalanceCents(user.getOwner())));
+
+                case 2 -> {
+                    if (!depositMenu(user)) {
+                        System.out.println("[!] ATM out of service. Returning to home.");
+                        loggedIn = false;
+                    }
+                }
+
+                case 3 -> {
+                    if (!withdrawMenu(user)) {
+                        System.out.println("[!] ATM out of service. Returning to home.");
+                        loggedIn = false;
+                    }
+                }
+
+                case 4 -> loggedIn = false;
+
+                case 5 -> historyMenu(user);
+
+                case 6 -> miniStatement(user);
+
+                default -> System.out.println("Invalid option.");
+            } // switch
+        } // while
+    } // menuLoop
+
+    // ------------------- TRANSACTION HISTORY -------------------
+    // Newest first, one page at a time: only the entries shown are read from the history file
+    private void historyMenu(Account user) {
+        final int pageSize = 10;
+        int total = user.getTransactionCount();
+        if (total == 0) {
+            System.out.println("No transactions yet.");
+            return;
+        }
+
+        System.out.println("\n--- Transaction History (" + total + " entries, newest first) ---");
+        for (int page = 0; ; page++) {
+            List<String> entries;
+            try {
+                entries = user.getTransactionPage(page, pageSize);
+            } catch (UncheckedIOException e) {
+                System.out.println("[!] " + e.getMessage());
+                return;
+            }
+            entries.forEach(System.out::println);
+            if ((page + 1) * pageSize >= total) return;
+
+            System.out.print("Enter = more, q = back: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) return;
+        }
+    }
+
+    // ------------------- MINI STATEMENT -------------------
+    // The latest entries plus the totals of the last 30 days, looked up through the history's time index
+    private void miniStatement(Account user) {
+        final int entries = 5;
+        final int days = 30;
+        TransactionRecords latest;
+        TransactionSummary month;
+        try {
+            latest = user.getMiniStatement(entries);
+            long now = System.currentTimeMillis();
+            month = user.summarize(now - days * 86_400_000L, Long.MAX_VALUE);
+        } catch (UncheckedIOException e) {
+            System.out.println("[!] " + e.getMessage());
+            return;
+        }
+
+        System.out.println("\n--- Mini Statement (" + user.getOwner() + ") ---");
+        if (latest.size() == 0) System.out.println("No transactions yet.");
+        latest.formatRange(0, latest.size(), true).forEach(System.out::println);
+        System.out.println("Last " + days + " days: " + month.deposits() + " deposit(s) €" + Money.format(month.depositedCents())
+                + ", " + month.withdrawals() + " withdrawal(s) €" + Money.format(month.withdrawnCents())
+                + ", net €" + Money.format(month.netCents()));
+        System.out.println("Balance: €" + Money.format(atm.checkBalanceCents(user.getOwner())));
+    }
+
+    // ------------------- DEPOSIT MENU -------------------
+    private boolean depositMenu(Account user) {
+        if(!atm.checkPaperInkWarning(sc)) return true;
+
+        System.out.print("Desired total deposit (€): ");
+        int desired;
+        try { desired = Integer.parseInt(sc.nextLine()); }
+        catch (NumberFormatException e) { System.out.println("Invalid amount."); return true; }
+
+        if (desired <= 0 || desired % 5 != 0) {
+            System.out.println("Amount must be positive and in multiples of €5.");
+            return true;
+        }
+
+        int[] denoms = atm.getCassettes().getDenominations(); // Deposited notes are recycled into these
+        int[] notes = new int[denoms.length];
+        int sum = 0;
+
+        while (sum < desired) {
+            int remaining = desired - sum;
+            System.out.println("Choose a denomination to add (remaining: €" + remaining + "):");
+            for (int i = 0; i < denoms.length; i++) System.out.println((i+1) + ". €" + denoms[i]);
+            System.out.println("0. Cancel deposit");
+            System.out.print("Select: ");
+
+            int sel;
+            try { sel = Integer.parseInt(sc.nextLine()); } catch (NumberFormatException e){ System.out.println("Invalid."); continue; }
+            if (sel == 0) { System.out.println("Deposit cancelled."); return true; }
+            if (sel < 1 || sel > denoms.length) { System.out.println("Invalid selection."); continue; }
+
+            int chosen = denoms[sel-1];
+            int maxQty = remaining / chosen;
+            if (maxQty == 0) { System.out.println("[!] Cannot add €" + chosen + " note, exceeds remaining."); continue; }
+
+            System.out.print("How many €" + chosen + " notes? (max " + maxQty + "): ");
+            int qty;
+            try { qty = Integer.parseInt(sc.nextLine()); } catch (NumberFormatException e){ System.out.println("Invalid number."); continue; }
+            if (qty < 1 || qty > maxQty) { System.out.println("Enter a number between 1 and " + maxQty); continue; }
+
+            int add = chosen * qty;
+            sum += add;
+            notes[sel-1] += qty;
+            System.out.println("Added €" + add + " (" + qty + "x€" + chosen + ") (total: €" + sum + ")");
+        }
+
+        ReceiptMode receipt = chooseReceipt();
+        atm.depositNotes(user.getOwner(), notes); // The ATM records the transaction with the balance change
+        atm.printReceipt(user.getOwner(), receipt); // Queued: printed (or spooled) by the receipt worker
+
+        if (atm.isOutOfService()) {
+            System.out.println("[!] ATM out of service. Logging out...");
+            return false;
+        }
+        return true;
+    }
+
+    // ------------------- RECEIPT CHOICE -------------------
+    // Only asked when the ATM can send e-receipts; otherwise receipts are printed as before
+    private ReceiptMode chooseReceipt() {
+        if (!atm.hasEReceipts()) return ReceiptMode.PAPER;
+        System.out.println("Receipt: 1. Paper  2. E-receipt  3. None");
+        System.out.print("Select: ");
+        String choice = sc.nextLine().trim();
+        if (choice.equals("2")) return ReceiptMode.ELECTRONIC;
+        if (choice.equals("3")) return ReceiptMode.NONE;
+        return ReceiptMode.PAPER; // Default, also for invalid input
+    }
+
+    // ------------------- WITHDRAW MENU -------------------
+    private boolean withdrawMenu(Account user) {
+        if(!atm.checkPaperInkWarning(sc)) return true;
+
+        System.out.print("Desired total withdrawal (€): ");
+        int desired;
+        try { desired = Integer.parseInt(sc.nextLine()); } catch (NumberFormatException e) { System.out.println("Invalid amount."); return true; }
+
+        if (desired <= 0 || desired % 5 != 0) {
+            System.out.println("Amount must be positive and in multiples of €5.");
+            return true;
+        }
+
+        long desiredCents = Money.ofEuros(desired);
+        if (desiredCents > atm.checkBalanceCents(user.getOwner())) { System.out.println("[!] Insufficient account balance."); return true; }
+
+        // The note mix comes from the ATM's cassettes (fewest notes the stock allows), not from the customer
+        int[] plan = atm.planDispense(desired);
+        if (plan == null) {
+            int offer = atm.largestDispensable(desired);
+            System.out.println("[!] The ATM cannot pay out €" + desired + " with the notes it holds."
+                    + (offer > 0 ? " Largest possible amount: €" + offer : ""));
+            return true;
+        }
+        System.out.println("You will receive: " + atm.getCassettes().describe(plan));
+        ReceiptMode receipt = chooseReceipt();
+        System.out.print("Confirm withdrawal? (y/n): ");
+        if (!sc.nextLine().trim().equalsIgnoreCase("y")) { System.out.println("Withdrawal cancelled."); return true; }
+
+        if(!atm.withdraw(user.getOwner(), desired, receipt)) return true; // Transaction recorded by the ATM
+
+        if (atm.isOutOfService()) {
+            System.out.println("[!] ATM out of service. Logging out...");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package users;
+
+import core.ATMMachineV2;
+import core.SessionManager;
+
+import java.util.Scanner;
+
+// HomeScreen is the ATM's start screen: customer login, technician login, exit
+// OOP: Composition - hands a login over to CustomerPanel or TechnicianV2Panel
+// SOLID - SRP: Login flow only; MainV1 (console) and SessionServer (remote terminals) decide what exit means
+// On a remote terminal the session handle is bound to the logged-in customer, so the technician sees
+// who is on which session.
+public class HomeScreen {
+
+    private final ATMMachineV2 atm;
+    private final Scanner sc;
+    private final SessionManager sessions;          // null on the console
+    private final SessionManager.Session session;
+
+    public HomeScreen(ATMMachineV2 atm, Scanner sc) {
+        this(atm, sc, null, null);
+    }
+
+    public HomeScreen(ATMMachineV2 atm, Scanner sc, SessionManager sessions, SessionManager.Session session) {
+        this.atm = atm;
+        this.sc = sc;
+        this.sessions = sessions;
+        this.session = session;
+    }
+
+    // Returns when Exit is chosen
+    public void run() {
+        while (true) {
+            // ------------------- HOME SCREEN -------------------
+            System.out.println("\n--- ATM HOME SCREEN ---");
+            System.out.println("1. Customer Login");
+            System.out.println("2. Technician Login");
+            System.out.println("3. Exit");
+            System.out.print("Select: ");
+
+            int choice;
+            try {
+                choice = Integer.parseInt(sc.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input.");
+                continue;
+            }
+
+            switch(choice) {
+                // ---------------- CUSTOMER LOGIN ----------------
+                case 1 -> {
+                    if (atm.isOutOfService()) {
+                        System.out.println("ATM out of service. Please try again later.");
+                        break;
+                    }
+
+                    System.out.print("Name: ");
+                    String name = sc.nextLine();
+                    System.out.print("PIN: ");
+                    String pin = sc.nextLine();
+
+                    var user = atm.authenticateUser(name, pin); // Authentication + potential auto-registration
+                    if (user == null) break;
+                    if (sessions != null) sessions.bind(session, user.getOwner());
+                    try {
+                        new CustomerPanel(atm, sc).run(user); // Launch user menu
+                    } finally {
+                        if (sessions != null) sessions.unbind(session);
+                    }
+                }
+
+                // ---------------- TECHNICIAN LOGIN ----------------
+                case 2 -> {
+                    System.out.print("ID: ");
+                    String id = sc.nextLine();
+                    System.out.print("Pass: ");
+                    String pass = sc.nextLine();
+
+                    if (atm.authenticateTech(id, pass))
+                        new TechnicianV2Panel(atm, sc).run(); // Opens technician panel
+                    else
+                        System.out.println("Access Denied.");
+                }
+
+                // ---------------- EXIT ----------------
+                case 3 -> {
+                    System.out.println("Goodbye!");
+                    return;
+                }
+
+                default -> System.out.println("Invalid option.");
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package users;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+// SessionConsole sends what a thread prints with System.out to the terminal that thread serves
+// OOP: Encapsulation - the per-thread terminal is only set through attach/detach
+// SOLID - OCP: The ATM, the printer and the menus keep printing to System.out; the session server only
+// tells each session thread where that goes, instead of every class taking an output parameter.
+// Threads without a terminal (the console, background writers) still print to the original System.out.
+// Terminal output is buffered per session and flushed before the session reads its next line, so a
+// println under the shared PrintStream's lock only reaches a socket when a session's buffer is full.
+public final class SessionConsole {
+
+    private static final ThreadLocal<OutputStream> TERMINAL = new ThreadLocal<>();
+    private static final PrintStream ROUTED = new PrintStream(new Router(), true, StandardCharsets.UTF_8);
+    private static volatile PrintStream console = System.out; // System.out before install
+
+    private SessionConsole() {}
+
+    // Puts the routing stream in place of System.out, unless it already is
+    public static synchronized void install() {
+        if (System.out == ROUTED) return;
+        console = System.out;
+        System.setOut(ROUTED);
+    }
+
+    // From now on this thread's System.out writes go to 'terminal'
+    public static void attach(OutputStream terminal) { TERMINAL.set(terminal); }
+    public static void detach() { TERMINAL.remove(); }
+
+    private static final class Router extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            OutputStream terminal = TERMINAL.get();
+            if (terminal != null) terminal.write(b);
+            else console.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            OutputStream terminal = TERMINAL.get();
+            if (terminal != null) terminal.write(b, off, len);
+            else console.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            if (TERMINAL.get() == null) console.flush(); // A terminal is flushed by its session before reading
+        }
+    }
+}
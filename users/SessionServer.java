@@ -0,0 +1,140 @@
+package users;
+
+import core.ATMMachineV2;
+import core.SessionManager;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// SessionServer lets line-based terminals (telnet, nc, scripts) use one shared ATM over localhost TCP
+// OOP: Composition - every connection runs the same HomeScreen as the console, on its own Scanner
+// SOLID - SRP: Accepts and serves connections; ATMMachineV2 stays the only place balances change
+// Each connection is served by its own virtual thread, so thousands of mostly idle terminals cost a few
+// KB each instead of a platform thread stack. SessionConsole routes the thread's System.out to its socket;
+// SessionManager ends sessions left idle (their input is shut down, so the blocked read returns).
+public class SessionServer implements AutoCloseable {
+
+    private static final int BACKLOG = 4_096; // Pending connections while the acceptor catches up
+
+    private final ATMMachineV2 atm;
+    private final SessionManager sessions;
+    private final ServerSocket server;
+    private final Map<Socket, Thread> connections = new ConcurrentHashMap<>(); // Open terminal -> its thread
+    private final AtomicLong served = new AtomicLong();
+
+    // Port 0 picks a free port (see getPort)
+    public SessionServer(ATMMachineV2 atm, SessionManager sessions, int port) throws IOException {
+        this.atm = atm;
+        this.sessions = sessions;
+        this.server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress()); // Local terminals only
+        SessionConsole.install();
+        atm.setSessionManager(sessions); // Technicians see the sessions in the status screen
+        sessions.start();
+        Thread.ofVirtual().name("session-acceptor").start(this::acceptLoop);
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofVirtual().name("session-" + served.incrementAndGet()).start(() -> serve(socket));
+            } catch (IOException e) {
+                if (!server.isClosed()) System.out.println("[!] Session Server Error: " + e.getMessage());
+            }
+        }
+    }
+
+    // ------------------- ONE TERMINAL -------------------
+    private void serve(Socket socket) {
+        connections.put(socket, Thread.currentThread());
+        SessionManager.Session session = sessions.open(socket::shutdownInput); // Expiry ends the blocked read
+        try {
+            socket.setTcpNoDelay(true); // Prompts are small and interactive
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            SessionConsole.attach(out);
+            Scanner sc = new Scanner(new TerminalInput(socket.getInputStream(), out, session), StandardCharsets.UTF_8);
+            try {
+                new HomeScreen(atm, sc, sessions, session).run();
+            } catch (NoSuchElementException e) {
+                // The terminal disconnected, or the session expired and its input was shut down
+                if (session.isExpired()) System.out.println("\n[!] Session timed out.");
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The connection broke: the panels have already ended the customer's ATM session
+        } finally {
+            SessionConsole.detach();
+            sessions.close(session);
+            connections.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Flushes the session's output before blocking for input (the prompt must reach the terminal)
+    // and counts every received chunk as activity for the idle timeout
+    private final class TerminalInput extends FilterInputStream {
+        private final OutputStream out;
+        private final SessionManager.Session session;
+
+        TerminalInput(InputStream in, OutputStream out, SessionManager.Session session) {
+            super(in);
+            this.out = out;
+            this.session = session;
+        }
+
+        @Override
+        public int read() throws IOException {
+            out.flush();
+            int b = super.read();
+            if (b >= 0) sessions.touch(session);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            out.flush();
+            int n = super.read(b, off, len);
+            if (n > 0) sessions.touch(session);
+            return n;
+        }
+    }
+
+    // ------------------- GETTERS -------------------
+    public int getPort() { return server.getLocalPort(); }
+    public int getConnectionCount() { return connections.size(); }
+    public long getServedCount() { return served.get(); }
+
+    // Stops accepting, disconnects every terminal and waits (up to 5 s) for the session threads to end,
+    // so their customers are logged out and their last changes handed to the ATM before the stores close
+    @Override
+    public void close() throws IOException {
+        server.close();
+        sessions.close();
+        for (Socket socket : connections.keySet()) socket.close();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        try {
+            for (Thread t : connections.values()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || !t.join(Duration.ofNanos(left))) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package users;
 
 import core.ATMMachineV2;
+import core.ConsumptionForecaster;
+import core.SessionManager;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class TechnicianV2Panel {
 
     private final ATMMachineV2 atm;
+    private final Scanner sc; // null: reads the console
+    private static final long REFILL_NOTICE_MILLIS = 8 * ConsumptionForecaster.HOUR_MILLIS; // One shift ahead
 
     public TechnicianV2Panel(ATMMachineV2 atm) {
+        this(atm, null);
+    }
+
+    // The Scanner of the terminal the technician logged in on (console or remote session)
+    public TechnicianV2Panel(ATMMachineV2 atm, Scanner sc) {
         this.atm = atm;
+        this.sc = sc;
     }
 
     public void run() {
-        Scanner sc = new Scanner(System.in);
+        Scanner sc = this.sc != null ? this.sc : new Scanner(System.in);
         boolean running = true;
 
+        // Refills the forecast says are due before the end of the shift, so they are done before the ATM
+        // goes out of service
+        for (ConsumptionForecaster.Forecast due : atm.getRefillsDue(REFILL_NOTICE_MILLIS)) {
+            System.out.println("[!] Refill due - " + atm.getForecaster().describe(due));
+        }
+
         while (running) {
             System.out.println("\n--- TECHNICIAN PANEL ---");
             System.out.println("1. View ATM Status");
@@ -23,13 +40,17 @@ public class TechnicianV2Panel {
             System.out.println("4. Refill Paper");
             System.out.println("5. Refill Ink");
             System.out.println("6. Update Firmware");
+            System.out.println("7. Refill Cassette");
+            System.out.println("8. Collect Cassette");
+            System.out.println("9. View Terminal Sessions");
+            System.out.println("10. View Metrics");
             System.out.println("0. Logout");
             System.out.print("Select: ");
 
             int choice;
             try {
                 choice = Integer.parseInt(sc.nextLine());
-            } catch (Exception e) {
+            } catch (NumberFormatException e) {
                 System.out.println("Invalid input.");
                 continue;
             }
@@ -77,6 +98,32 @@ public class TechnicianV2Panel {
                     String version = sc.nextLine();
                     atm.updateFirmware(version);
                 }
+                case 7, 8 -> {
+                    System.out.print("Enter note denomination (" + Arrays.toString(atm.getCassettes().getDenominations()) + "): ");
+                    try {
+                        int denomination = Integer.parseInt(sc.nextLine());
+                        System.out.print("Enter number of notes: ");
+                        int notes = Integer.parseInt(sc.nextLine());
+                        if (choice == 7) atm.refillCassette(denomination, notes);
+                        else atm.collectCassette(denomination, notes);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid input. Please enter a number.");
+                    }
+                }
+                case 9 -> {
+                    SessionManager sessions = atm.getSessionManager();
+                    if (sessions == null) {
+                        System.out.println("No session server running.");
+                    } else {
+                        System.out.println("\n--- TERMINAL SESSIONS ---");
+                        System.out.println(sessions.describe());
+                        sessions.describeSessions().forEach(System.out::println);
+                    }
+                }
+                case 10 -> {
+                    System.out.println("\n--- METRICS (latency per operation) ---");
+                    atm.getMetrics().report().forEach(System.out::println);
+                }
                 case 0 -> {
                     System.out.println("Logging out...");
                     running = false;